@@ -15,6 +15,7 @@ import android.view.MenuInflater;
 import android.view.MenuItem;
 import android.view.View;
 import android.widget.ScrollView;
+import android.widget.Toast;
 
 import androidx.annotation.CallSuper;
 import androidx.annotation.ColorInt;
@@ -32,7 +33,6 @@ import com.nextcloud.android.sso.helper.SingleAccountHelper;
 import com.nextcloud.android.sso.model.SingleSignOnAccount;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -86,6 +86,10 @@ public abstract class BaseNoteFragment extends BrandedFragment implements Catego
     private boolean titleModified = false;
 
     protected boolean isNew = true;
+    /**
+     * The <code>content</code> of {@link #note} could not be updated, so the outdated local one is shown read only
+     */
+    protected boolean contentOutdated = false;
 
     @Override
     public void onAttach(@NonNull Context context) {
@@ -117,6 +121,22 @@ public abstract class BaseNoteFragment extends BrandedFragment implements Catego
                         }
                         isNew = false;
                         note = originalNote = repo.getNoteById(id);
+                        if (note != null && !note.isContentLoaded()) {
+                            // Only the metadata has been synchronized yet, but showing and editing requires the content
+                            if (repo.ensureContentLoaded(id)) {
+                                note = originalNote = repo.getNoteById(id);
+                            } else if (!note.getContent().isEmpty()) {
+                                // Editing an outdated content would override the remote changes, but it can still be read, e. g. while being offline
+                                contentOutdated = true;
+                                requireActivity().runOnUiThread(() -> Toast.makeText(requireContext(), R.string.error_note_content_outdated, Toast.LENGTH_LONG).show());
+                            } else {
+                                requireActivity().runOnUiThread(() -> {
+                                    Toast.makeText(requireContext(), R.string.error_note_content_not_available, Toast.LENGTH_LONG).show();
+                                    listener.close();
+                                });
+                                return;
+                            }
+                        }
                         requireActivity().runOnUiThread(() -> onNoteLoaded(note));
                         requireActivity().invalidateOptionsMenu();
                     } else {
@@ -126,7 +146,7 @@ public abstract class BaseNoteFragment extends BrandedFragment implements Catego
                             if (content == null) {
                                 throw new IllegalArgumentException(PARAM_NOTE_ID + " is not given, argument " + PARAM_NEWNOTE + " is missing and " + PARAM_CONTENT + " is missing.");
                             } else {
-                                note = new Note(-1, null, Calendar.getInstance(), NoteUtil.generateNoteTitle(content), content, getString(R.string.category_readonly), false, null, DBStatus.VOID, -1, "", 0);
+                                note = new Note(-1, null, System.currentTimeMillis(), NoteUtil.generateNoteTitle(content), content, getString(R.string.category_readonly), false, null, DBStatus.VOID, -1, "", 0);
                                 requireActivity().runOnUiThread(() -> onNoteLoaded(note));
                                 requireActivity().invalidateOptionsMenu();
                             }
@@ -305,7 +325,7 @@ public abstract class BaseNoteFragment extends BrandedFragment implements Catego
         Log.d(TAG, "saveData()");
         if (note != null) {
             final String newContent = getContent();
-            if (note.getContent().equals(newContent)) {
+            if (contentOutdated || note.getContent().equals(newContent)) {
                 if (note.getScrollY() != originalScrollY) {
                     Log.v(TAG, "... only saving new scroll state, since content did not change");
                     repo.updateScrollY(note.getId(), note.getScrollY());
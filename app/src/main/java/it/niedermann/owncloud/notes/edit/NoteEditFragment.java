@@ -149,12 +149,12 @@ public class NoteEditFragment extends SearchableBaseNoteFragment {
     @Override
     protected void onNoteLoaded(Note note) {
         super.onNoteLoaded(note);
-        if (TextUtils.isEmpty(note.getContent())) {
+        if (TextUtils.isEmpty(note.getContent()) && !contentOutdated) {
             openSoftKeyboard();
         }
 
         binding.editContent.setMarkdownString(note.getContent());
-        binding.editContent.setEnabled(true);
+        binding.editContent.setEnabled(!contentOutdated);
 
         final SharedPreferences sp = PreferenceManager.getDefaultSharedPreferences(requireContext().getApplicationContext());
         binding.editContent.setTextSize(TypedValue.COMPLEX_UNIT_PX, getFontSizeFromPreferences(requireContext(), sp));
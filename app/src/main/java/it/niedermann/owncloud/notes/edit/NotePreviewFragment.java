@@ -116,6 +116,9 @@ public class NotePreviewFragment extends SearchableBaseNoteFragment implements O
         registerInternalNoteLinkHandler();
         changedText = note.getContent();
         binding.singleNoteContent.setMarkdownString(note.getContent(), setScrollY);
+        if (contentOutdated) {
+            binding.singleNoteContent.setEnabled(false);
+        }
         binding.singleNoteContent.getMarkdownString().observe(requireActivity(), (newContent) -> {
             changedText = newContent.toString();
             saveNote(null);
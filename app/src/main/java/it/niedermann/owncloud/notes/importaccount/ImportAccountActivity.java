@@ -108,11 +108,21 @@ public class ImportAccountActivity extends AppCompatActivity {
                                 runOnUiThread(() -> {
                                     Log.i(TAG, capabilities.toString());
                                     BrandingUtil.saveBrandColors(ImportAccountActivity.this, capabilities.getColor(), capabilities.getTextColor());
-                                    setResult(RESULT_OK);
-                                    finish();
+                                    binding.status.setText(R.string.import_account_pulling_notes);
+                                    binding.status.setVisibility(View.VISIBLE);
+                                    importAccountViewModel.getPullProgress$(account.getId()).observe(ImportAccountActivity.this, pulledNotes -> {
+                                        if (pulledNotes != null && pulledNotes > 0) {
+                                            binding.status.setText(getResources().getQuantityString(R.plurals.import_account_pulled_notes, pulledNotes, pulledNotes));
+                                        }
+                                    });
                                 });
                                 SyncWorker.update(ImportAccountActivity.this, PreferenceManager.getDefaultSharedPreferences(ImportAccountActivity.this)
                                         .getBoolean(getString(R.string.pref_key_background_sync), true));
+                                // Stay until the initial pull has finished. If the app gets killed meanwhile, the next synchronization resumes the pull
+                                importAccountViewModel.synchronizeNotes(account, () -> runOnUiThread(() -> {
+                                    setResult(RESULT_OK);
+                                    finish();
+                                }));
                             }
 
                             @Override
@@ -1,9 +1,11 @@
 package it.niedermann.owncloud.notes.importaccount;
 
 import android.app.Application;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
 
@@ -11,6 +13,7 @@ import it.niedermann.owncloud.notes.persistence.NotesRepository;
 import it.niedermann.owncloud.notes.persistence.entity.Account;
 import it.niedermann.owncloud.notes.shared.model.Capabilities;
 import it.niedermann.owncloud.notes.shared.model.IResponseCallback;
+import it.niedermann.owncloud.notes.shared.model.ISyncCallback;
 
 public class ImportAccountViewModel extends AndroidViewModel {
 
@@ -27,4 +30,29 @@ public class ImportAccountViewModel extends AndroidViewModel {
     public void addAccount(@NonNull String url, @NonNull String username, @NonNull String accountName, @NonNull Capabilities capabilities, @Nullable String displayName, @NonNull IResponseCallback<Account> callback) {
         repo.addAccount(url, username, accountName, capabilities, displayName, callback);
     }
+
+    /**
+     * Pulls the {@link it.niedermann.owncloud.notes.persistence.entity.Note}s of the freshly imported {@param account}.
+     * The progress is persisted while pulling, so the next synchronization continues where an interrupted one stopped.
+     *
+     * @param callback will be called when the synchronization has finished or in case it is not possible right now
+     */
+    @WorkerThread
+    public void synchronizeNotes(@NonNull Account account, @NonNull ISyncCallback callback) {
+        if (!repo.isSyncPossible()) {
+            repo.updateNetworkStatus();
+        }
+        if (repo.isSyncPossible()) {
+            repo.addCallbackPull(account, callback);
+            repo.scheduleSync(account, false);
+        } else {
+            Log.i(TAG, "Synchronization of " + account.getAccountName() + " is not possible right now");
+            callback.onFinish();
+        }
+    }
+
+    @NonNull
+    public LiveData<Integer> getPullProgress$(long accountId) {
+        return repo.getPullProgress$(accountId);
+    }
 }
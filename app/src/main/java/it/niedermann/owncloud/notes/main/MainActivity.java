@@ -46,10 +46,12 @@ import com.nextcloud.android.sso.exceptions.UnknownErrorException;
 import com.nextcloud.android.sso.helper.SingleAccountHelper;
 
 import java.net.HttpURLConnection;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
@@ -85,6 +87,7 @@ import it.niedermann.owncloud.notes.persistence.entity.Note;
 import it.niedermann.owncloud.notes.shared.model.Capabilities;
 import it.niedermann.owncloud.notes.shared.model.CategorySortingMethod;
 import it.niedermann.owncloud.notes.shared.model.IResponseCallback;
+import it.niedermann.owncloud.notes.shared.model.Item;
 import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
 import it.niedermann.owncloud.notes.shared.model.NoteClickListener;
 import it.niedermann.owncloud.notes.shared.util.CustomAppGlideModule;
@@ -122,6 +125,10 @@ public class MainActivity extends LockedActivity implements NoteClickListener, A
 
     private static final int REQUEST_CODE_CREATE_NOTE = 0;
     private static final int REQUEST_CODE_SERVER_SETTINGS = 1;
+    /**
+     * Load the next page of notes when the user scrolled to one of the last items
+     */
+    private static final int LOAD_MORE_THRESHOLD = 20;
 
     protected ItemAdapter adapter;
     private NavigationAdapter adapterCategories;
@@ -264,24 +271,25 @@ public class MainActivity extends LockedActivity implements NoteClickListener, A
             // https://stackoverflow.com/a/37342327
             itemTouchHelper.attachToRecyclerView(null);
             itemTouchHelper.attachToRecyclerView(listView);
-            adapter.setItemList(notes);
+            // Positions only refer to the new items once they have been committed, wait until they have been laid out
+            adapter.setItemList(notes, () -> listView.post(this::fetchContentOfVisibleNotes));
             binding.activityNotesListView.progressCircular.setVisibility(GONE);
             binding.activityNotesListView.emptyContentView.getRoot().setVisibility(notes.size() > 0 ? GONE : VISIBLE);
-            // Remove deleted notes from the selection
+            // Remove deleted notes from the selection, the selection may also contain notes of pages which have not been loaded yet
             if (tracker.hasSelection()) {
-                final Collection<Long> deletedNotes = new LinkedList<>();
-                for (Long id : tracker.getSelection()) {
-                    if (notes
-                            .stream()
-                            .filter(item -> !item.isSection())
-                            .map(item -> (Note) item)
-                            .noneMatch(item -> item.getId() == id)) {
-                        deletedNotes.add(id);
+                final LiveData<Set<Long>> noteIds$ = mainViewModel.getNoteIdsOfNotesList();
+                noteIds$.observe(this, noteIds -> {
+                    noteIds$.removeObservers(this);
+                    final Collection<Long> deletedNotes = new LinkedList<>();
+                    for (Long id : tracker.getSelection()) {
+                        if (!noteIds.contains(id)) {
+                            deletedNotes.add(id);
+                        }
                     }
-                }
-                for (Long id : deletedNotes) {
-                    tracker.deselect(id);
-                }
+                    for (Long id : deletedNotes) {
+                        tracker.deselect(id);
+                    }
+                });
             }
         });
         mainViewModel.getSearchTerm().observe(this, adapter::setHighlightSearchQuery);
@@ -451,6 +459,16 @@ public class MainActivity extends LockedActivity implements NoteClickListener, A
                     fabCreate.hide();
                 else if (dy < 0)
                     fabCreate.show();
+                if (getLastVisibleItemPosition(recyclerView.getLayoutManager()) >= adapter.getItemCount() - LOAD_MORE_THRESHOLD) {
+                    mainViewModel.loadMoreNotes();
+                }
+            }
+
+            @Override
+            public void onScrollStateChanged(@NonNull RecyclerView recyclerView, int newState) {
+                if (newState == RecyclerView.SCROLL_STATE_IDLE) {
+                    fetchContentOfVisibleNotes();
+                }
             }
         });
 
@@ -514,6 +532,53 @@ public class MainActivity extends LockedActivity implements NoteClickListener, A
         itemTouchHelper.attachToRecyclerView(listView);
     }
 
+    /**
+     * Prefers fetching the content of the currently visible notes in case only their metadata has been synchronized yet.
+     */
+    private void fetchContentOfVisibleNotes() {
+        final int firstVisibleItemPosition = getFirstVisibleItemPosition(listView.getLayoutManager());
+        final int lastVisibleItemPosition = Math.min(getLastVisibleItemPosition(listView.getLayoutManager()), adapter.getItemCount() - 1);
+        if (firstVisibleItemPosition == RecyclerView.NO_POSITION || lastVisibleItemPosition < firstVisibleItemPosition) {
+            return;
+        }
+        final Collection<Long> noteIds = new ArrayList<>(lastVisibleItemPosition - firstVisibleItemPosition + 1);
+        for (int position = firstVisibleItemPosition; position <= lastVisibleItemPosition; position++) {
+            final Item item = adapter.getItem(position);
+            if (!item.isSection()) {
+                noteIds.add(((Note) item).getId());
+            }
+        }
+        mainViewModel.fetchContentOfVisibleNotes(noteIds);
+    }
+
+    private static int getFirstVisibleItemPosition(@Nullable RecyclerView.LayoutManager layoutManager) {
+        if (layoutManager instanceof LinearLayoutManager) {
+            return ((LinearLayoutManager) layoutManager).findFirstVisibleItemPosition();
+        } else if (layoutManager instanceof StaggeredGridLayoutManager) {
+            int firstVisibleItemPosition = RecyclerView.NO_POSITION;
+            for (int position : ((StaggeredGridLayoutManager) layoutManager).findFirstVisibleItemPositions(null)) {
+                if (position != RecyclerView.NO_POSITION && (firstVisibleItemPosition == RecyclerView.NO_POSITION || position < firstVisibleItemPosition)) {
+                    firstVisibleItemPosition = position;
+                }
+            }
+            return firstVisibleItemPosition;
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
+    private static int getLastVisibleItemPosition(@Nullable RecyclerView.LayoutManager layoutManager) {
+        if (layoutManager instanceof LinearLayoutManager) {
+            return ((LinearLayoutManager) layoutManager).findLastVisibleItemPosition();
+        } else if (layoutManager instanceof StaggeredGridLayoutManager) {
+            int lastVisibleItemPosition = RecyclerView.NO_POSITION;
+            for (int position : ((StaggeredGridLayoutManager) layoutManager).findLastVisibleItemPositions(null)) {
+                lastVisibleItemPosition = Math.max(lastVisibleItemPosition, position);
+            }
+            return lastVisibleItemPosition;
+        }
+        return RecyclerView.NO_POSITION;
+    }
+
     private void setupNavigationList() {
         adapterCategories = new NavigationAdapter(this, new NavigationClickListener() {
             @Override
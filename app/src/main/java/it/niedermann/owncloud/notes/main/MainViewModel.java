@@ -7,6 +7,7 @@ import android.text.TextUtils;
 import android.util.Log;
 import android.util.Pair;
 
+import androidx.annotation.AnyThread;
 import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
@@ -25,7 +26,9 @@ import com.nextcloud.android.sso.model.SingleSignOnAccount;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
@@ -36,6 +39,7 @@ import it.niedermann.owncloud.notes.branding.BrandingUtil;
 import it.niedermann.owncloud.notes.exception.IntendedOfflineException;
 import it.niedermann.owncloud.notes.main.navigation.NavigationAdapter;
 import it.niedermann.owncloud.notes.main.navigation.NavigationItem;
+import it.niedermann.owncloud.notes.main.slots.Timeslotter;
 import it.niedermann.owncloud.notes.persistence.ApiProvider;
 import it.niedermann.owncloud.notes.persistence.CapabilitiesClient;
 import it.niedermann.owncloud.notes.persistence.NotesRepository;
@@ -54,9 +58,9 @@ import static androidx.lifecycle.Transformations.map;
 import static androidx.lifecycle.Transformations.switchMap;
 import static it.niedermann.owncloud.notes.main.MainActivity.ADAPTER_KEY_RECENT;
 import static it.niedermann.owncloud.notes.main.MainActivity.ADAPTER_KEY_STARRED;
-import static it.niedermann.owncloud.notes.main.slots.SlotterUtil.fillListByCategory;
-import static it.niedermann.owncloud.notes.main.slots.SlotterUtil.fillListByInitials;
-import static it.niedermann.owncloud.notes.main.slots.SlotterUtil.fillListByTime;
+import static it.niedermann.owncloud.notes.main.slots.SlotterUtil.appendByCategory;
+import static it.niedermann.owncloud.notes.main.slots.SlotterUtil.appendByInitials;
+import static it.niedermann.owncloud.notes.main.slots.SlotterUtil.appendByTime;
 import static it.niedermann.owncloud.notes.shared.model.CategorySortingMethod.SORT_MODIFIED_DESC;
 import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.DEFAULT_CATEGORY;
 import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.FAVORITES;
@@ -70,6 +74,7 @@ public class MainViewModel extends AndroidViewModel {
     private static final String TAG = MainViewModel.class.getSimpleName();
 
     private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final ExecutorService pagingExecutor = Executors.newSingleThreadExecutor();
 
     private final SavedStateHandle state;
 
@@ -89,6 +94,8 @@ public class MainViewModel extends AndroidViewModel {
     private final MutableLiveData<NavigationCategory> selectedCategory = new MutableLiveData<>(new NavigationCategory(RECENT));
     @NonNull
     private final MutableLiveData<String> expandedCategory = new MutableLiveData<>(null);
+    @Nullable
+    private SearchPipeline searchPipeline;
 
     public MainViewModel(@NonNull Application application, @NonNull SavedStateHandle savedStateHandle) {
         super(application);
@@ -96,6 +103,12 @@ public class MainViewModel extends AndroidViewModel {
         this.state = savedStateHandle;
     }
 
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        pagingExecutor.shutdownNow();
+    }
+
     public void restoreInstanceState() {
         Log.v(TAG, "[restoreInstanceState]");
         final Account account = state.get(KEY_CURRENT_ACCOUNT);
@@ -220,52 +233,17 @@ public class MainViewModel extends AndroidViewModel {
                         return insufficientInformation;
                     } else {
                         Log.v(TAG, "[getNotesListLiveData] - selectedCategory: " + selectedCategory);
-                        return switchMap(getSearchTerm(), searchTerm -> {
-                            Log.v(TAG, "[getNotesListLiveData] - searchTerm: " + (BuildConfig.DEBUG ? "******" : searchTerm));
-                            return switchMap(getCategorySortingMethodOfSelectedCategory(), sortingMethod -> {
-                                final long accountId = currentAccount.getId();
-                                final String searchQueryOrWildcard = searchTerm == null ? "%" : "%" + searchTerm.trim() + "%";
-                                Log.v(TAG, "[getNotesListLiveData] - sortMethod: " + sortingMethod.second);
-                                final LiveData<List<Note>> fromDatabase;
-                                switch (selectedCategory.getType()) {
-                                    case RECENT: {
-                                        Log.v(TAG, "[getNotesListLiveData] - category: " + RECENT);
-                                        fromDatabase = sortingMethod.second == SORT_MODIFIED_DESC
-                                                ? repo.searchRecentByModified$(accountId, searchQueryOrWildcard)
-                                                : repo.searchRecentLexicographically$(accountId, searchQueryOrWildcard);
-                                        break;
-                                    }
-                                    case FAVORITES: {
-                                        Log.v(TAG, "[getNotesListLiveData] - category: " + FAVORITES);
-                                        fromDatabase = sortingMethod.second == SORT_MODIFIED_DESC
-                                                ? repo.searchFavoritesByModified$(accountId, searchQueryOrWildcard)
-                                                : repo.searchFavoritesLexicographically$(accountId, searchQueryOrWildcard);
-                                        break;
-                                    }
-                                    case UNCATEGORIZED: {
-                                        Log.v(TAG, "[getNotesListLiveData] - category: " + UNCATEGORIZED);
-                                        fromDatabase = sortingMethod.second == SORT_MODIFIED_DESC
-                                                ? repo.searchUncategorizedByModified$(accountId, searchQueryOrWildcard)
-                                                : repo.searchUncategorizedLexicographically$(accountId, searchQueryOrWildcard);
-                                        break;
-                                    }
-                                    case DEFAULT_CATEGORY:
-                                    default: {
-                                        final String category = selectedCategory.getCategory();
-                                        if (category == null) {
-                                            throw new IllegalStateException(NavigationCategory.class.getSimpleName() + " type is " + DEFAULT_CATEGORY + ", but category is null.");
-                                        }
-                                        Log.v(TAG, "[getNotesListLiveData] - category: " + category);
-                                        fromDatabase = sortingMethod.second == SORT_MODIFIED_DESC
-                                                ? repo.searchCategoryByModified$(accountId, searchQueryOrWildcard, category)
-                                                : repo.searchCategoryLexicographically$(accountId, searchQueryOrWildcard, category);
-                                        break;
-                                    }
-                                }
-
-                                Log.v(TAG, "[getNotesListLiveData] - -------------------------------------");
-                                return distinctUntilChanged(map(fromDatabase, noteList -> fromNotes(noteList, selectedCategory, sortingMethod.second)));
-                            });
+                        return switchMap(getCategorySortingMethodOfSelectedCategory(), sortingMethod -> {
+                            Log.v(TAG, "[getNotesListLiveData] - sortMethod: " + sortingMethod.second);
+                            Log.v(TAG, "[getNotesListLiveData] - category: " + (selectedCategory.getType() == DEFAULT_CATEGORY ? selectedCategory.getCategory() : selectedCategory.getType()));
+                            final SearchPipeline searchPipeline = new SearchPipeline(repo, pagingExecutor, currentAccount.getId(), selectedCategory, sortingMethod.second, getSectionSlotter(selectedCategory, sortingMethod.second));
+                            if (this.searchPipeline != null) {
+                                // Pending reloads of the replaced list would delay the new one on the paging executor
+                                this.searchPipeline.cancel();
+                            }
+                            this.searchPipeline = searchPipeline;
+                            Log.v(TAG, "[getNotesListLiveData] - -------------------------------------");
+                            return searchPipeline.search(getSearchTerm());
                         });
                     }
                 });
@@ -273,19 +251,72 @@ public class MainViewModel extends AndroidViewModel {
         }));
     }
 
-    private List<Item> fromNotes(List<Note> noteList, @NonNull NavigationCategory selectedCategory, @Nullable CategorySortingMethod sortingMethod) {
+    /**
+     * Loads the next page of the notes list, should be called when the user scrolls near to the end of the currently loaded {@link Item}s.
+     */
+    @MainThread
+    public void loadMoreNotes() {
+        if (searchPipeline != null) {
+            searchPipeline.loadNextPage();
+        }
+    }
+
+    /**
+     * Resolves the IDs of all notes of the notes list from the database, including the ones on pages which have not been loaded yet.
+     */
+    @NonNull
+    @MainThread
+    public LiveData<Set<Long>> getNoteIdsOfNotesList() {
+        final MutableLiveData<Set<Long>> noteIds = new MutableLiveData<>();
+        final PagedNotesLiveData pagedNotes = searchPipeline == null ? null : searchPipeline.getPagedNotes();
+        if (pagedNotes != null) {
+            executor.submit(() -> noteIds.postValue(new HashSet<>(pagedNotes.getNoteIds())));
+        }
+        return noteIds;
+    }
+
+    /**
+     * Fetches the content of the given notes first, in case only their metadata has been synchronized yet.
+     */
+    @AnyThread
+    public void fetchContentOfVisibleNotes(@NonNull Collection<Long> noteIds) {
+        repo.fetchContentOfVisibleNotes(noteIds);
+    }
+
+    @NonNull
+    private PagedNotesLiveData.SectionSlotter getSectionSlotter(@NonNull NavigationCategory selectedCategory, @Nullable CategorySortingMethod sortingMethod) {
         if (selectedCategory.getType() == DEFAULT_CATEGORY) {
             final String category = selectedCategory.getCategory();
-            if (category != null) {
-                return fillListByCategory(noteList, category);
-            } else {
+            if (category == null) {
                 throw new IllegalStateException(NavigationCategory.class.getSimpleName() + " type is " + DEFAULT_CATEGORY + ", but category is null.");
             }
+            return new PagedNotesLiveData.SectionSlotter() {
+                @Override
+                public String getInitialSection() {
+                    return category;
+                }
+
+                @Override
+                public String append(@NonNull List<Item> items, @NonNull List<Note> page, @Nullable String lastSection) {
+                    return appendByCategory(items, page, lastSection);
+                }
+            };
         }
         if (sortingMethod == SORT_MODIFIED_DESC) {
-            return fillListByTime(getApplication(), noteList);
+            final Timeslotter timeslotter = new Timeslotter(getApplication());
+            return new PagedNotesLiveData.SectionSlotter() {
+                @Override
+                public long getSectionsVersion() {
+                    return timeslotter.getValidUntil();
+                }
+
+                @Override
+                public String append(@NonNull List<Item> items, @NonNull List<Note> page, @Nullable String lastSection) {
+                    return appendByTime(items, timeslotter, page, lastSection);
+                }
+            };
         } else {
-            return fillListByInitials(getApplication(), noteList);
+            return (items, page, lastSection) -> appendByInitials(getApplication(), items, page, lastSection);
         }
     }
 
@@ -494,8 +525,12 @@ public class MainViewModel extends AndroidViewModel {
     }
 
     public LiveData<Note> moveNoteToAnotherAccount(Account account, long noteId) {
-        return switchMap(repo.getNoteById$(noteId), (note) -> {
+        return switchMap(getFullNote$(noteId), (note) -> {
             Log.v(TAG, "[moveNoteToAnotherAccount] - note: " + (BuildConfig.DEBUG ? note : note.getTitle()));
+            if (!note.isContentLoaded()) {
+                Log.w(TAG, "[moveNoteToAnotherAccount] - content of note " + noteId + " is not available, do not move it");
+                return new MutableLiveData<>(null);
+            }
             return repo.moveNoteToAnotherAccount(account, note);
         });
     }
@@ -561,7 +596,11 @@ public class MainViewModel extends AndroidViewModel {
                 executor.submit(() -> notes.postValue(
                         ids
                                 .stream()
-                                .map(repo::getNoteById)
+                                .map(id -> {
+                                    // Sharing or moving a note requires its whole content
+                                    repo.ensureContentLoaded(id);
+                                    return repo.getNoteById(id);
+                                })
                                 .collect(Collectors.toList())
                 ));
                 return notes;
@@ -21,6 +21,7 @@ import com.google.android.material.snackbar.Snackbar;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -151,6 +152,14 @@ public class MultiSelectedActionModeCallback implements Callback {
                 }
             });
             return true;
+        } else if (itemId == R.id.menu_select_all) {
+            // Also selects the notes of the pages which have not been loaded yet
+            final LiveData<Set<Long>> noteIds$ = mainViewModel.getNoteIdsOfNotesList();
+            noteIds$.observe(lifecycleOwner, noteIds -> {
+                noteIds$.removeObservers(lifecycleOwner);
+                tracker.setItemsSelected(noteIds, true);
+            });
+            return true;
         } else if (itemId == R.id.menu_category) {// TODO detect whether all selected notes do have the same category - in this case preselect it
             final LiveData<Account> accountLiveData = mainViewModel.getCurrentAccount();
             accountLiveData.observe(lifecycleOwner, account -> {
@@ -0,0 +1,351 @@
+package it.niedermann.owncloud.notes.main;
+
+import android.util.Log;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.niedermann.owncloud.notes.main.items.section.SectionItem;
+import it.niedermann.owncloud.notes.persistence.NotesRepository;
+import it.niedermann.owncloud.notes.persistence.dao.NotesPageQuery;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.CategorySortingMethod;
+import it.niedermann.owncloud.notes.shared.model.Item;
+import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
+
+/**
+ * Provides the {@link Item}s of the notes list page by page, using {@link NotesPageQuery}s.
+ * <p>
+ * Only the first page is observed, each change of it reloads as many pages as have been loaded before.
+ * Further pages are only fetched when {@link #loadNextPage()} is called, so memory and the costs of a change depend on how far the user scrolled, not on the number of {@link Note}s.
+ * {@link SectionItem}s are inserted per page, continuing with the section of the last {@link Note} of the previous page.
+ * <p>
+ * Loading and slotting happens on the executor, the main thread only submits the work. A reload only slots the {@link Note}s which differ from the previous result,
+ * the {@link Item}s of the unchanged {@link Note}s before and after them are taken over. Work which has been submitted before a newer emission of the first page is skipped.
+ */
+class PagedNotesLiveData extends MediatorLiveData<List<Item>> {
+
+    private static final String TAG = PagedNotesLiveData.class.getSimpleName();
+
+    static final int PAGE_SIZE = 100;
+
+    @NonNull
+    private final NotesRepository repo;
+    @NonNull
+    private final Executor executor;
+    private final long accountId;
+    @NonNull
+    private final NavigationCategory selectedCategory;
+    @NonNull
+    private final String query;
+    @Nullable
+    private final CategorySortingMethod sortingMethod;
+    @NonNull
+    private final SectionSlotter slotter;
+
+    private final AtomicBoolean nextPageRequested = new AtomicBoolean(false);
+    /**
+     * Incremented on each emission of the first page, submitted work of an older generation is stale
+     */
+    private final AtomicInteger generation = new AtomicInteger(0);
+
+    /**
+     * Whether the latest emission of the first page was empty, only accessed by the main thread
+     */
+    private boolean firstPageEmpty = false;
+
+    // Only accessed by the executor
+    @NonNull
+    private Slots slots = new Slots();
+    private int loadedPages = 0;
+    private boolean endReached = false;
+
+    /**
+     * @param executor                must execute one task after another, because the state of the pages is not synchronized
+     * @param firstPageKnownToBeEmpty the first page is not queried until the {@link Note}s change, see {@link NotesRepository#getFirstNotesPageKnownToBeEmpty$(long, NavigationCategory, String, CategorySortingMethod, int)}
+     */
+    PagedNotesLiveData(@NonNull NotesRepository repo, @NonNull Executor executor, long accountId, @NonNull NavigationCategory selectedCategory, @NonNull String query, @Nullable CategorySortingMethod sortingMethod, @NonNull SectionSlotter slotter, boolean firstPageKnownToBeEmpty) {
+        this.repo = repo;
+        this.executor = executor;
+        this.accountId = accountId;
+        this.selectedCategory = selectedCategory;
+        this.query = query;
+        this.sortingMethod = sortingMethod;
+        this.slotter = slotter;
+        final LiveData<List<Note>> firstPage$ = firstPageKnownToBeEmpty
+                ? repo.getFirstNotesPageKnownToBeEmpty$(accountId, selectedCategory, query, sortingMethod, PAGE_SIZE)
+                : repo.getFirstNotesPage$(accountId, selectedCategory, query, sortingMethod, PAGE_SIZE);
+        addSource(firstPage$, firstPage -> {
+            firstPageEmpty = firstPage.isEmpty();
+            final int currentGeneration = generation.incrementAndGet();
+            executor.execute(() -> reload(firstPage, currentGeneration));
+        });
+    }
+
+    /**
+     * Appends the next page, if there is one. Calls while the next page is still loading are ignored.
+     */
+    @AnyThread
+    public void loadNextPage() {
+        if (nextPageRequested.compareAndSet(false, true)) {
+            final int currentGeneration = generation.get();
+            executor.execute(() -> {
+                try {
+                    if (!endReached && !isStale(currentGeneration)) {
+                        final Note lastNote = slots.getLastNote();
+                        if (lastNote != null) {
+                            final List<Note> page = repo.getNextNotesPage(accountId, selectedCategory, query, sortingMethod, lastNote, PAGE_SIZE);
+                            if (isStale(currentGeneration)) {
+                                return;
+                            }
+                            loadedPages++;
+                            endReached = page.size() < PAGE_SIZE;
+                            slots = slots.appendPage(slotter, page);
+                            Log.v(TAG, "Loaded page " + loadedPages);
+                            postValue(slots.getItems());
+                        }
+                    }
+                } finally {
+                    nextPageRequested.set(false);
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the IDs of all {@link Note}s of this list, also of the pages which have not been loaded yet
+     */
+    @WorkerThread
+    public List<Long> getNoteIds() {
+        return repo.getNoteIds(accountId, selectedCategory, query);
+    }
+
+    /**
+     * @return <code>true</code> if no {@link Note} matched when the first page has been emitted the last time, even if it has not been slotted yet
+     */
+    @MainThread
+    public boolean isFirstPageEmpty() {
+        return firstPageEmpty;
+    }
+
+    /**
+     * Skips all work which has been submitted until now, e. g. because this {@link PagedNotesLiveData} has been replaced by another one.
+     * A later emission of the first page will be processed again.
+     */
+    @AnyThread
+    public void cancel() {
+        generation.incrementAndGet();
+    }
+
+    @AnyThread
+    private boolean isStale(int generation) {
+        return this.generation.get() != generation;
+    }
+
+    @WorkerThread
+    private void reload(@NonNull List<Note> firstPage, int currentGeneration) {
+        if (isStale(currentGeneration)) {
+            return;
+        }
+        final int pagesToLoad = Math.max(1, loadedPages);
+        final List<Note> notes = new ArrayList<>(firstPage);
+        int pages = 1;
+        boolean end = firstPage.size() < PAGE_SIZE;
+        while (pages < pagesToLoad && !end && !notes.isEmpty()) {
+            final List<Note> page = repo.getNextNotesPage(accountId, selectedCategory, query, sortingMethod, notes.get(notes.size() - 1), PAGE_SIZE);
+            if (isStale(currentGeneration)) {
+                Log.v(TAG, "Skipped stale reload after " + pages + " pages");
+                return;
+            }
+            notes.addAll(page);
+            pages++;
+            end = page.size() < PAGE_SIZE;
+        }
+        slots = slots.patch(slotter, notes);
+        loadedPages = pages;
+        endReached = end;
+        postValue(slots.getItems());
+    }
+
+    /**
+     * The loaded {@link Note}s with their {@link Item}s.
+     * Remembers for each {@link Note} its section and the position of its first {@link Item}, which is the {@link SectionItem} in case one has been inserted before it.
+     */
+    private static class Slots {
+
+        private final List<Note> notes = new ArrayList<>();
+        private final List<String> sections = new ArrayList<>();
+        private final List<Integer> itemStarts = new ArrayList<>();
+        private final List<Item> items = new ArrayList<>();
+        private boolean initialized = false;
+        @Nullable
+        private String initialSection;
+        /**
+         * {@link SectionSlotter#getSectionsVersion()} before the first {@link Note} has been slotted
+         */
+        private long sectionsVersion;
+
+        @Nullable
+        Note getLastNote() {
+            return notes.isEmpty() ? null : notes.get(notes.size() - 1);
+        }
+
+        /**
+         * @return a copy, because the {@link Item}s must not be modified after they have been posted
+         */
+        @NonNull
+        List<Item> getItems() {
+            return new ArrayList<>(items);
+        }
+
+        /**
+         * Appends the {@param page}. In case the sections of the already slotted {@link Note}s are outdated, all {@link Note}s get slotted again.
+         *
+         * @return the {@link Slots} including the {@param page}
+         */
+        @NonNull
+        Slots appendPage(@NonNull SectionSlotter slotter, @NonNull List<Note> page) {
+            if (isOutdated(slotter)) {
+                final List<Note> allNotes = new ArrayList<>(notes.size() + page.size());
+                allNotes.addAll(notes);
+                allNotes.addAll(page);
+                return slotAll(slotter, allNotes);
+            }
+            append(slotter, page);
+            return this;
+        }
+
+        void append(@NonNull SectionSlotter slotter, @NonNull List<Note> notes) {
+            if (!initialized) {
+                sectionsVersion = slotter.getSectionsVersion();
+                initialSection = slotter.getInitialSection();
+                initialized = true;
+            }
+            String lastSection = getSectionBefore(this.notes.size());
+            for (Note note : notes) {
+                this.notes.add(note);
+                itemStarts.add(items.size());
+                lastSection = slotter.append(items, Collections.singletonList(note), lastSection);
+                sections.add(lastSection);
+            }
+        }
+
+        /**
+         * Only the {@link Note}s between the unchanged leading and trailing {@link Note}s get slotted.
+         * Trailing {@link Note}s get slotted again until the section before one of them is the same as before, from there on their {@link Item}s are taken over.
+         * All {@link Note}s get slotted again in case the sections of the unchanged {@link Note}s are outdated.
+         *
+         * @return the {@link Slots} of the {@param newNotes}
+         */
+        @NonNull
+        Slots patch(@NonNull SectionSlotter slotter, @NonNull List<Note> newNotes) {
+            if (isOutdated(slotter)) {
+                return slotAll(slotter, newNotes);
+            }
+            final int oldSize = notes.size();
+            final int newSize = newNotes.size();
+            int prefix = 0;
+            while (prefix < oldSize && prefix < newSize && notes.get(prefix).equals(newNotes.get(prefix))) {
+                prefix++;
+            }
+            int suffix = 0;
+            while (suffix < oldSize - prefix && suffix < newSize - prefix && notes.get(oldSize - 1 - suffix).equals(newNotes.get(newSize - 1 - suffix))) {
+                suffix++;
+            }
+
+            final Slots patched = new Slots();
+            patched.initialized = initialized;
+            patched.initialSection = initialSection;
+            patched.sectionsVersion = sectionsVersion;
+            patched.notes.addAll(notes.subList(0, prefix));
+            patched.sections.addAll(sections.subList(0, prefix));
+            patched.itemStarts.addAll(itemStarts.subList(0, prefix));
+            patched.items.addAll(items.subList(0, getItemStart(prefix)));
+            patched.append(slotter, newNotes.subList(prefix, newSize - suffix));
+
+            // The section of a trailing note only depends on the note itself, but whether a SectionItem precedes it depends on the section before it
+            int oldIndex = oldSize - suffix;
+            while (oldIndex < oldSize && !Objects.equals(patched.getSectionBefore(patched.notes.size()), getSectionBefore(oldIndex))) {
+                patched.append(slotter, notes.subList(oldIndex, oldIndex + 1));
+                oldIndex++;
+            }
+            if (oldIndex < oldSize) {
+                final int offset = patched.items.size() - itemStarts.get(oldIndex);
+                patched.notes.addAll(notes.subList(oldIndex, oldSize));
+                patched.sections.addAll(sections.subList(oldIndex, oldSize));
+                for (int i = oldIndex; i < oldSize; i++) {
+                    patched.itemStarts.add(itemStarts.get(i) + offset);
+                }
+                patched.items.addAll(items.subList(itemStarts.get(oldIndex), items.size()));
+            }
+            Log.v(TAG, "Slotted " + (newSize - prefix - (oldSize - oldIndex)) + " of " + newSize + " notes");
+            return patched;
+        }
+
+        /**
+         * @return whether the sections of the slotted {@link Note}s might differ from the ones the {@param slotter} assigns now, e. g. after midnight
+         */
+        private boolean isOutdated(@NonNull SectionSlotter slotter) {
+            return initialized && sectionsVersion != slotter.getSectionsVersion();
+        }
+
+        @NonNull
+        private static Slots slotAll(@NonNull SectionSlotter slotter, @NonNull List<Note> notes) {
+            final Slots slots = new Slots();
+            slots.append(slotter, notes);
+            Log.v(TAG, "Sections are outdated, slotted all " + notes.size() + " notes");
+            return slots;
+        }
+
+        private int getItemStart(int noteIndex) {
+            return noteIndex < itemStarts.size() ? itemStarts.get(noteIndex) : items.size();
+        }
+
+        @Nullable
+        private String getSectionBefore(int noteIndex) {
+            return noteIndex == 0 ? initialSection : sections.get(noteIndex - 1);
+        }
+    }
+
+    /**
+     * Inserts {@link SectionItem}s between the {@link Note}s of a page.
+     */
+    interface SectionSlotter {
+
+        /**
+         * @return the section before the first {@link Note}, so the first {@link Note} gets a {@link SectionItem} in case it belongs to a different one
+         */
+        @Nullable
+        default String getInitialSection() {
+            return null;
+        }
+
+        /**
+         * @return a value which changes whenever the sections of already slotted {@link Note}s might have changed, e. g. because "Today" became "Yesterday"
+         */
+        default long getSectionsVersion() {
+            return 0;
+        }
+
+        /**
+         * Appends the {@param page} and the needed {@link SectionItem}s to the {@param items}
+         *
+         * @return the section of the last {@link Note} of the {@param page}
+         */
+        @Nullable
+        String append(@NonNull List<Item> items, @NonNull List<Note> page, @Nullable String lastSection);
+    }
+}
@@ -0,0 +1,158 @@
+package it.niedermann.owncloud.notes.main;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.text.TextUtils;
+import android.util.Log;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import it.niedermann.owncloud.notes.persistence.NotesRepository;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.CategorySortingMethod;
+import it.niedermann.owncloud.notes.shared.model.Item;
+import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
+import it.niedermann.owncloud.notes.shared.util.NoteUtil;
+
+import static androidx.lifecycle.Transformations.distinctUntilChanged;
+import static androidx.lifecycle.Transformations.switchMap;
+
+/**
+ * Turns the search term typed by the user into the {@link Item}s of the notes list of one account, category and sorting method.
+ * <ul>
+ *     <li>Changes of the search term are debounced, only the term which has been typed last gets queried. Clearing the search term is applied immediately.</li>
+ *     <li>The {@link PagedNotesLiveData} of the previous term gets cancelled, so its pending pages are not loaded anymore.</li>
+ *     <li>If no {@link Note} matched the previous term, no {@link Note} can match a term which extends it. Its first page is not queried until the {@link Note}s change.</li>
+ * </ul>
+ */
+class SearchPipeline {
+
+    private static final String TAG = SearchPipeline.class.getSimpleName();
+
+    static final long DEBOUNCE_MILLIS = 300;
+
+    @NonNull
+    private final NotesRepository repo;
+    @NonNull
+    private final Executor executor;
+    private final long accountId;
+    @NonNull
+    private final NavigationCategory selectedCategory;
+    @Nullable
+    private final CategorySortingMethod sortingMethod;
+    @NonNull
+    private final PagedNotesLiveData.SectionSlotter slotter;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+
+    // Only accessed by the main thread
+    private boolean debounced = false;
+    @Nullable
+    private PagedNotesLiveData pagedNotes;
+    @Nullable
+    private String pagedSearchTerm;
+
+    /**
+     * @param executor see {@link PagedNotesLiveData}
+     */
+    SearchPipeline(@NonNull NotesRepository repo, @NonNull Executor executor, long accountId, @NonNull NavigationCategory selectedCategory, @Nullable CategorySortingMethod sortingMethod, @NonNull PagedNotesLiveData.SectionSlotter slotter) {
+        this.repo = repo;
+        this.executor = executor;
+        this.accountId = accountId;
+        this.selectedCategory = selectedCategory;
+        this.sortingMethod = sortingMethod;
+        this.slotter = slotter;
+    }
+
+    /**
+     * @param searchTerm the raw search term as typed by the user
+     */
+    @NonNull
+    @MainThread
+    public LiveData<List<Item>> search(@NonNull LiveData<String> searchTerm) {
+        return switchMap(debounce(searchTerm), this::createPagedNotes);
+    }
+
+    /**
+     * @see PagedNotesLiveData#loadNextPage()
+     */
+    @MainThread
+    public void loadNextPage() {
+        if (pagedNotes != null) {
+            pagedNotes.loadNextPage();
+        }
+    }
+
+    /**
+     * @return the {@link PagedNotesLiveData} of the current search term or <code>null</code> if it has not been created yet
+     */
+    @Nullable
+    @MainThread
+    public PagedNotesLiveData getPagedNotes() {
+        return pagedNotes;
+    }
+
+    /**
+     * Skips pending changes of the search term and the pending work of the current {@link PagedNotesLiveData}, e. g. because this {@link SearchPipeline} has been replaced by another one.
+     */
+    @MainThread
+    public void cancel() {
+        handler.removeCallbacksAndMessages(null);
+        if (pagedNotes != null) {
+            pagedNotes.cancel();
+        }
+    }
+
+    /**
+     * The first search term is applied immediately, so the notes list is shown without delay
+     */
+    @NonNull
+    @MainThread
+    private LiveData<String> debounce(@NonNull LiveData<String> searchTerm) {
+        final MediatorLiveData<String> debouncedSearchTerm = new MediatorLiveData<>();
+        debouncedSearchTerm.addSource(searchTerm, term -> {
+            handler.removeCallbacksAndMessages(null);
+            if (!debounced || TextUtils.isEmpty(term)) {
+                debounced = true;
+                debouncedSearchTerm.setValue(term);
+            } else {
+                handler.postDelayed(() -> debouncedSearchTerm.setValue(term), DEBOUNCE_MILLIS);
+            }
+        });
+        return distinctUntilChanged(debouncedSearchTerm);
+    }
+
+    @NonNull
+    @MainThread
+    private LiveData<List<Item>> createPagedNotes(@Nullable String term) {
+        final String searchTerm = term == null ? "" : term;
+        final boolean knownToBeEmpty = pagedNotes != null && pagedNotes.isFirstPageEmpty() && isNarrowing(pagedSearchTerm, searchTerm);
+        if (pagedNotes != null) {
+            pagedNotes.cancel();
+        }
+        Log.v(TAG, "[createPagedNotes] - knownToBeEmpty: " + knownToBeEmpty);
+        pagedNotes = new PagedNotesLiveData(repo, executor, accountId, selectedCategory, NoteUtil.toFtsMatchQuery(searchTerm), sortingMethod, slotter, knownToBeEmpty);
+        pagedSearchTerm = searchTerm;
+        return distinctUntilChanged(pagedNotes);
+    }
+
+    /**
+     * The new term starts with the previous one, so each token of the previous term is a prefix of a token of the new term.
+     * The {@link Note}s matching the new term are therefore a subset of the ones matching the previous term,
+     * unless the previous term did not contain any token and therefore matched no {@link Note} at all.
+     *
+     * @see NoteUtil#toFtsMatchQuery(CharSequence)
+     */
+    @AnyThread
+    static boolean isNarrowing(@Nullable String previousSearchTerm, @NonNull String searchTerm) {
+        return previousSearchTerm != null && searchTerm.startsWith(previousSearchTerm)
+                && !NoteUtil.FTS_MATCH_NOTHING.equals(NoteUtil.toFtsMatchQuery(previousSearchTerm));
+    }
+}
@@ -12,16 +12,22 @@ import androidx.annotation.IntRange;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.Px;
+import androidx.annotation.VisibleForTesting;
 import androidx.core.content.ContextCompat;
 import androidx.preference.PreferenceManager;
 import androidx.recyclerview.selection.SelectionTracker;
+import androidx.recyclerview.widget.AdapterListUpdateCallback;
+import androidx.recyclerview.widget.AsyncDifferConfig;
+import androidx.recyclerview.widget.AsyncListDiffer;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
 import it.niedermann.owncloud.notes.R;
 import it.niedermann.owncloud.notes.branding.Branded;
+import it.niedermann.owncloud.notes.branding.BrandingUtil;
 import it.niedermann.owncloud.notes.databinding.ItemNotesListNoteItemGridBinding;
 import it.niedermann.owncloud.notes.databinding.ItemNotesListNoteItemGridOnlyTitleBinding;
 import it.niedermann.owncloud.notes.databinding.ItemNotesListNoteItemWithExcerptBinding;
@@ -51,9 +57,14 @@ public class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> i
     private final NoteClickListener noteClickListener;
     private final boolean gridView;
     @NonNull
-    private final List<Item> itemList = new ArrayList<>();
+    private final AsyncListDiffer<Item> differ;
     private boolean showCategory = true;
     private CharSequence searchQuery;
+    /**
+     * Shared by all {@link NoteViewHolder}s, created lazily for the current {@link #searchQuery} and colors
+     */
+    @Nullable
+    private SearchHighlighter searchHighlighter;
     private SelectionTracker<Long> tracker = null;
     @Px
     private final float fontSize;
@@ -66,6 +77,19 @@ public class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> i
     private Integer swipedPosition;
 
     public <T extends Context & NoteClickListener> ItemAdapter(@NonNull T context, boolean gridView) {
+        this(context, gridView, null);
+    }
+
+    /**
+     * @param diffExecutor executes the calculation of the differences between two item lists, a shared background pool is used in case it is <code>null</code>
+     */
+    @VisibleForTesting
+    <T extends Context & NoteClickListener> ItemAdapter(@NonNull T context, boolean gridView, @Nullable Executor diffExecutor) {
+        final AsyncDifferConfig.Builder<Item> differConfig = new AsyncDifferConfig.Builder<>(new ItemDiffCallback());
+        if (diffExecutor != null) {
+            differConfig.setBackgroundThreadExecutor(diffExecutor);
+        }
+        this.differ = new AsyncListDiffer<>(new AdapterListUpdateCallback(this), differConfig.build());
         this.noteClickListener = context;
         this.gridView = gridView;
         this.mainColor = ContextCompat.getColor(context, R.color.defaultBrand);
@@ -86,15 +110,23 @@ public class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> i
     }
 
     /**
-     * Updates the item list and notifies respective view to update.
+     * Updates the item list. The differences to the current item list are calculated in the background,
+     * afterwards only the views of changed {@link Item}s are notified to update.
      *
-     * @param itemList List of items to be set
+     * @param itemList List of items to be set, must not be modified afterwards
      */
     public void setItemList(@NonNull List<Item> itemList) {
-        this.itemList.clear();
-        this.itemList.addAll(itemList);
+        setItemList(itemList, null);
+    }
+
+    /**
+     * Like {@link #setItemList(List)}
+     *
+     * @param commitCallback is executed on the main thread as soon as the {@param itemList} has been committed, positions refer to it from then on
+     */
+    public void setItemList(@NonNull List<Item> itemList, @Nullable Runnable commitCallback) {
         this.swipedPosition = null;
-        notifyDataSetChanged();
+        differ.submitList(itemList, commitCallback);
     }
 
     @NonNull
@@ -150,13 +182,13 @@ public class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> i
         }
         switch (getItemViewType(position)) {
             case TYPE_SECTION: {
-                ((SectionViewHolder) holder).bind((SectionItem) itemList.get(position));
+                ((SectionViewHolder) holder).bind((SectionItem) getItem(position));
                 break;
             }
             case TYPE_NOTE_WITH_EXCERPT:
             case TYPE_NOTE_WITHOUT_EXCERPT:
             case TYPE_NOTE_ONLY_TITLE: {
-                ((NoteViewHolder) holder).bind(isSelected, (Note) itemList.get(position), showCategory, mainColor, textColor, searchQuery);
+                ((NoteViewHolder) holder).bind(isSelected, (Note) getItem(position), showCategory, mainColor, textColor, getSearchHighlighter(holder.itemView.getContext()));
                 break;
             }
         }
@@ -167,21 +199,26 @@ public class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> i
     }
 
     public Item getItem(int notePosition) {
-        return itemList.get(notePosition);
+        return differ.getCurrentList().get(notePosition);
     }
 
     public void remove(@NonNull Item item) {
-        itemList.remove(item);
-        notifyDataSetChanged();
+        final List<Item> itemList = new ArrayList<>(differ.getCurrentList());
+        if (itemList.remove(item)) {
+            differ.submitList(itemList);
+        }
     }
 
     public void setShowCategory(boolean showCategory) {
-        this.showCategory = showCategory;
+        if (this.showCategory != showCategory) {
+            this.showCategory = showCategory;
+            notifyItemRangeChanged(0, getItemCount());
+        }
     }
 
     @Override
     public int getItemCount() {
-        return itemList.size();
+        return differ.getCurrentList().size();
     }
 
     @IntRange(from = 0, to = 3)
@@ -205,21 +242,40 @@ public class ItemAdapter extends RecyclerView.Adapter<RecyclerView.ViewHolder> i
 
     @Override
     public void applyBrand(int mainColor, int textColor) {
-        this.mainColor = mainColor;
-        this.textColor = textColor;
-        notifyDataSetChanged();
+        if (this.mainColor != mainColor || this.textColor != textColor) {
+            this.mainColor = mainColor;
+            this.textColor = textColor;
+            this.searchHighlighter = null;
+            notifyItemRangeChanged(0, getItemCount());
+        }
     }
 
     public void setHighlightSearchQuery(CharSequence searchQuery) {
-        this.searchQuery = searchQuery;
-        notifyDataSetChanged();
+        if (!TextUtils.equals(this.searchQuery, searchQuery)) {
+            this.searchQuery = searchQuery;
+            this.searchHighlighter = null;
+            notifyItemRangeChanged(0, getItemCount());
+        }
+    }
+
+    @Nullable
+    private SearchHighlighter getSearchHighlighter(@NonNull Context context) {
+        if (TextUtils.isEmpty(searchQuery)) {
+            return null;
+        }
+        if (searchHighlighter == null) {
+            searchHighlighter = new SearchHighlighter(searchQuery.toString(),
+                    BrandingUtil.getSecondaryForegroundColorDependingOnTheme(context, mainColor),
+                    ContextCompat.getColor(context, R.color.bg_highlighted));
+        }
+        return searchHighlighter;
     }
 
     /**
      * @return the position of the first {@link Item} which matches the given viewtype, -1 if not available
      */
     public int getFirstPositionOfViewType(@IntRange(from = 0, to = 3) int viewType) {
-        for (int i = 0; i < itemList.size(); i++) {
+        for (int i = 0; i < getItemCount(); i++) {
             if (getItemViewType(i) == viewType) {
                 return i;
             }
@@ -0,0 +1,40 @@
+package it.niedermann.owncloud.notes.main.items;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.DiffUtil;
+
+import it.niedermann.owncloud.notes.main.items.section.SectionItem;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.Item;
+
+/**
+ * Identifies {@link Item}s the same way as {@link ItemAdapter#getItemId(int)} and only compares the properties which are actually rendered by the {@link NoteViewHolder}s.
+ * The content of a {@link Note} is not part of the list, so changing it does not cause a rebind.
+ */
+class ItemDiffCallback extends DiffUtil.ItemCallback<Item> {
+
+    @Override
+    public boolean areItemsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+        if (oldItem.isSection() != newItem.isSection()) {
+            return false;
+        }
+        if (oldItem.isSection()) {
+            return oldItem.equals(newItem);
+        }
+        return ((Note) oldItem).getId() == ((Note) newItem).getId();
+    }
+
+    @Override
+    public boolean areContentsTheSame(@NonNull Item oldItem, @NonNull Item newItem) {
+        if (oldItem.isSection()) {
+            return ((SectionItem) oldItem).getTitle().equals(((SectionItem) newItem).getTitle());
+        }
+        final Note oldNote = (Note) oldItem;
+        final Note newNote = (Note) newItem;
+        return oldNote.getFavorite() == newNote.getFavorite()
+                && oldNote.getStatus() == newNote.getStatus()
+                && oldNote.getTitle().equals(newNote.getTitle())
+                && oldNote.getExcerpt().equals(newNote.getExcerpt())
+                && oldNote.getCategory().equals(newNote.getCategory());
+    }
+}
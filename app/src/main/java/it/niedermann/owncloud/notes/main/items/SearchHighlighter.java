@@ -0,0 +1,118 @@
+package it.niedermann.owncloud.notes.main.items;
+
+import android.text.SpannableString;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ForegroundColorSpan;
+import android.util.LruCache;
+
+import androidx.annotation.ColorInt;
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Highlights all occurrences of one search term, it is created once per term and shared by all {@link NoteViewHolder}s.
+ * <p>
+ * The term is searched case insensitive char by char instead of compiling a {@link java.util.regex.Pattern}.
+ * The highlighted texts are cached, so binding a {@link NoteViewHolder} again while scrolling does not search again.
+ * The immutable spans are shared by all highlighted texts, the n-th occurrence of each text uses the same span instances.
+ */
+public class SearchHighlighter {
+
+    private static final int CACHE_SIZE = 200;
+
+    @NonNull
+    private final String searchTerm;
+    @ColorInt
+    private final int foregroundColor;
+    @ColorInt
+    private final int backgroundColor;
+    private final List<ForegroundColorSpan> foregroundSpans = new ArrayList<>();
+    private final List<BackgroundColorSpan> backgroundSpans = new ArrayList<>();
+    /**
+     * Texts of the title and the excerpt of the {@link it.niedermann.owncloud.notes.persistence.entity.Note}s mapped to their highlighted version.
+     * Texts without an occurrence are mapped to themselves.
+     */
+    private final LruCache<String, CharSequence> cache = new LruCache<>(CACHE_SIZE);
+
+    /**
+     * @param searchTerm must not be empty
+     */
+    public SearchHighlighter(@NonNull String searchTerm, @ColorInt int foregroundColor, @ColorInt int backgroundColor) {
+        if (searchTerm.isEmpty()) {
+            throw new IllegalArgumentException("searchTerm must not be empty");
+        }
+        this.searchTerm = searchTerm;
+        this.foregroundColor = foregroundColor;
+        this.backgroundColor = backgroundColor;
+    }
+
+    @NonNull
+    public String getSearchTerm() {
+        return searchTerm;
+    }
+
+    @NonNull
+    @MainThread
+    public CharSequence highlight(@NonNull String text) {
+        final CharSequence cached = cache.get(text);
+        if (cached != null) {
+            return cached;
+        }
+        final CharSequence highlighted = computeHighlight(text);
+        cache.put(text, highlighted);
+        return highlighted;
+    }
+
+    @NonNull
+    private CharSequence computeHighlight(@NonNull String text) {
+        SpannableString spannableString = null;
+        int occurrence = 0;
+        final int length = searchTerm.length();
+        int start = indexOf(text, 0);
+        while (start >= 0) {
+            if (spannableString == null) {
+                spannableString = new SpannableString(text);
+            }
+            spannableString.setSpan(getForegroundSpan(occurrence), start, start + length, 0);
+            spannableString.setSpan(getBackgroundSpan(occurrence), start, start + length, 0);
+            occurrence++;
+            start = indexOf(text, start + length);
+        }
+        return spannableString == null ? text : spannableString;
+    }
+
+    /**
+     * @return the index of the next occurrence of the {@link #searchTerm} in the {@param text}, starting at {@param fromIndex}, or <code>-1</code>
+     */
+    private int indexOf(@NonNull String text, int fromIndex) {
+        final int last = text.length() - searchTerm.length();
+        for (int i = fromIndex; i <= last; i++) {
+            if (text.regionMatches(true, i, searchTerm, 0, searchTerm.length())) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * A span can only be set once per {@link SpannableString}, so each occurrence needs its own instance
+     */
+    @NonNull
+    private ForegroundColorSpan getForegroundSpan(int occurrence) {
+        if (occurrence == foregroundSpans.size()) {
+            foregroundSpans.add(new ForegroundColorSpan(foregroundColor));
+        }
+        return foregroundSpans.get(occurrence);
+    }
+
+    @NonNull
+    private BackgroundColorSpan getBackgroundSpan(int occurrence) {
+        if (occurrence == backgroundSpans.size()) {
+            backgroundSpans.add(new BackgroundColorSpan(backgroundColor));
+        }
+        return backgroundSpans.get(occurrence);
+    }
+}
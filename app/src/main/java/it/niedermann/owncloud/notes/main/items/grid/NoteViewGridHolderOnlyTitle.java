@@ -1,6 +1,5 @@
 package it.niedermann.owncloud.notes.main.items.grid;
 
-import android.content.Context;
 import android.graphics.Typeface;
 import android.util.TypedValue;
 import android.view.View;
@@ -11,6 +10,7 @@ import androidx.annotation.Px;
 
 import it.niedermann.owncloud.notes.databinding.ItemNotesListNoteItemGridOnlyTitleBinding;
 import it.niedermann.owncloud.notes.main.items.NoteViewHolder;
+import it.niedermann.owncloud.notes.main.items.SearchHighlighter;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
 import it.niedermann.owncloud.notes.shared.model.NoteClickListener;
 
@@ -32,12 +32,11 @@ public class NoteViewGridHolderOnlyTitle extends NoteViewHolder {
         throw new UnsupportedOperationException(NoteViewGridHolderOnlyTitle.class.getSimpleName() + " does not support swiping");
     }
 
-    public void bind(boolean isSelected, @NonNull Note note, boolean showCategory, int mainColor, int textColor, @Nullable CharSequence searchQuery) {
-        super.bind(isSelected, note, showCategory, mainColor, textColor, searchQuery);
-        @NonNull final Context context = itemView.getContext();
+    public void bind(boolean isSelected, @NonNull Note note, boolean showCategory, int mainColor, int textColor, @Nullable SearchHighlighter searchHighlighter) {
+        super.bind(isSelected, note, showCategory, mainColor, textColor, searchHighlighter);
         bindStatus(binding.noteStatus, note.getStatus(), mainColor);
         bindFavorite(binding.noteFavorite, note.getFavorite());
-        bindSearchableContent(context, binding.noteTitle, searchQuery, note.getTitle(), mainColor);
+        bindSearchableContent(binding.noteTitle, searchHighlighter, note.getTitle());
     }
 
     @Nullable
@@ -14,6 +14,10 @@ import it.niedermann.owncloud.notes.persistence.entity.Note;
 import it.niedermann.owncloud.notes.shared.model.Item;
 import it.niedermann.owncloud.notes.shared.util.NoteUtil;
 
+/**
+ * The <code>append…</code> methods allow to insert {@link SectionItem}s page by page,
+ * they continue with the section of the last {@link Note} of the previous page.
+ */
 public class SlotterUtil {
 
     private SlotterUtil() {
@@ -22,7 +26,17 @@ public class SlotterUtil {
 
     @NonNull
     public static List<Item> fillListByCategory(@NonNull List<Note> noteList, @Nullable String currentCategory) {
-        List<Item> itemList = new ArrayList<>();
+        final List<Item> itemList = new ArrayList<>();
+        appendByCategory(itemList, noteList, currentCategory);
+        return itemList;
+    }
+
+    /**
+     * @param currentCategory the category of the last {@link Note} of the previous page or the selected category for the first page
+     * @return the category of the last appended {@link Note}
+     */
+    @Nullable
+    public static String appendByCategory(@NonNull List<Item> itemList, @NonNull List<Note> noteList, @Nullable String currentCategory) {
         for (Note note : noteList) {
             if (currentCategory != null && !currentCategory.equals(note.getCategory())) {
                 itemList.add(new SectionItem(NoteUtil.extendCategory(note.getCategory())));
@@ -31,44 +45,57 @@ public class SlotterUtil {
             itemList.add(note);
             currentCategory = note.getCategory();
         }
-        return itemList;
+        return currentCategory;
     }
 
     @NonNull
     public static List<Item> fillListByTime(@NonNull Context context, @NonNull List<Note> noteList) {
-        List<Item> itemList = new ArrayList<>();
-        Timeslotter timeslotter = new Timeslotter(context);
-        String lastTimeslot = null;
-        for (int i = 0; i < noteList.size(); i++) {
-            Note currentNote = noteList.get(i);
+        final List<Item> itemList = new ArrayList<>();
+        appendByTime(itemList, new Timeslotter(context), noteList, null);
+        return itemList;
+    }
+
+    /**
+     * @param lastTimeslot the timeslot of the last {@link Note} of the previous page or <code>null</code> for the first page
+     * @return the timeslot of the last appended {@link Note}
+     */
+    @Nullable
+    public static String appendByTime(@NonNull List<Item> itemList, @NonNull Timeslotter timeslotter, @NonNull List<Note> noteList, @Nullable String lastTimeslot) {
+        for (Note currentNote : noteList) {
             String timeslot = timeslotter.getTimeslot(currentNote);
-            if (i > 0 && !timeslot.equals(lastTimeslot)) {
+            if (lastTimeslot != null && !timeslot.equals(lastTimeslot)) {
                 itemList.add(new SectionItem(timeslot));
             }
             itemList.add(currentNote);
             lastTimeslot = timeslot;
         }
-
-        return itemList;
+        return lastTimeslot;
     }
 
     @NonNull
     public static List<Item> fillListByInitials(@NonNull Context context, @NonNull List<Note> noteList) {
-        List<Item> itemList = new ArrayList<>();
-        String lastInitials = null;
-        for (int i = 0; i < noteList.size(); i++) {
-            Note currentNote = noteList.get(i);
+        final List<Item> itemList = new ArrayList<>();
+        appendByInitials(context, itemList, noteList, null);
+        return itemList;
+    }
+
+    /**
+     * @param lastInitials the initials of the last {@link Note} of the previous page or <code>null</code> for the first page
+     * @return the initials of the last appended {@link Note}
+     */
+    @Nullable
+    public static String appendByInitials(@NonNull Context context, @NonNull List<Item> itemList, @NonNull List<Note> noteList, @Nullable String lastInitials) {
+        for (Note currentNote : noteList) {
             String initials = currentNote.getTitle().substring(0, 1).toUpperCase();
             if (!initials.matches("[A-Z\\u00C0-\\u00DF]")) {
                 initials = initials.matches("[\\u0250-\\uFFFF]") ? context.getString(R.string.simple_other) : "#";
             }
-            if (i > 0 && !initials.equals(lastInitials)) {
+            if (lastInitials != null && !initials.equals(lastInitials)) {
                 itemList.add(new SectionItem(initials));
             }
             itemList.add(currentNote);
             lastInitials = initials;
         }
-
-        return itemList;
+        return lastInitials;
     }
 }
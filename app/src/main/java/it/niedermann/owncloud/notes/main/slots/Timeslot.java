@@ -1,22 +1,22 @@
 package it.niedermann.owncloud.notes.main.slots;
 
-import java.util.Calendar;
-
 public class Timeslot {
     private final String label;
-    private final Calendar time;
+    /**
+     * Start of this {@link Timeslot} in milliseconds since the epoch
+     */
+    private final long time;
 
-    Timeslot(String label, int month, int day) {
+    Timeslot(String label, long time) {
         this.label = label;
-        this.time = Calendar.getInstance();
-        this.time.set(this.time.get(Calendar.YEAR), month, day, 0, 0, 0);
+        this.time = time;
     }
 
     public String getLabel() {
         return label;
     }
 
-    public Calendar getTime() {
+    public long getTime() {
         return time;
     }
-}
\ No newline at end of file
+}
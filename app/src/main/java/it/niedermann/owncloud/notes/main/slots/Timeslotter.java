@@ -1,53 +1,170 @@
 package it.niedermann.owncloud.notes.main.slots;
 
 import android.content.Context;
+import android.content.res.Resources;
 import android.text.format.DateUtils;
 
 import androidx.annotation.NonNull;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.List;
+import java.util.TreeSet;
+import java.util.function.LongSupplier;
 
 import it.niedermann.owncloud.notes.R;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
 
+/**
+ * Precomputes the starts of all timeslots and their labels once per day as sorted arrays, so looking up the timeslot of a {@link Note} is a binary search without allocations.
+ * <p>
+ * The named timeslots (today, yesterday, …) take precedence in their order, older {@link Note}s are slotted by month since the beginning of the last year and by year before.
+ * Not thread safe, each thread should use its own instance.
+ */
 public class Timeslotter {
-    private final List<Timeslot> timeslots = new ArrayList<>();
-    private final Calendar lastYear;
+
+    private static final int FORMAT_MONTH = DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_YEAR | DateUtils.FORMAT_NO_MONTH_DAY;
+    /**
+     * {@link Note}s without modification date are slotted at the epoch, which is still in 1969 in western time zones
+     */
+    private static final int FIRST_PRECOMPUTED_YEAR = 1969;
+
     private final Context context;
+    @NonNull
+    private final LongSupplier clock;
+    /**
+     * Ascending starts of the timeslots in milliseconds since the epoch
+     */
+    private long[] starts;
+    private String[] labels;
+    /**
+     * Start of the next day, the timeslots need to be computed again from then on
+     */
+    private long validUntil;
 
     public Timeslotter(@NonNull Context context) {
+        this(context, System::currentTimeMillis);
+    }
+
+    /**
+     * @param clock provides the current time in milliseconds since the epoch
+     */
+    public Timeslotter(@NonNull Context context, @NonNull LongSupplier clock) {
         this.context = context;
-        Calendar now = Calendar.getInstance();
-        int month = now.get(Calendar.MONTH);
-        int day = now.get(Calendar.DAY_OF_MONTH);
-        int offsetWeekStart = (now.get(Calendar.DAY_OF_WEEK) - now.getFirstDayOfWeek() + 7) % 7;
-        timeslots.add(new Timeslot(context.getResources().getString(R.string.listview_updated_today), month, day));
-        timeslots.add(new Timeslot(context.getResources().getString(R.string.listview_updated_yesterday), month, day - 1));
-        timeslots.add(new Timeslot(context.getResources().getString(R.string.listview_updated_this_week), month, day - offsetWeekStart));
-        timeslots.add(new Timeslot(context.getResources().getString(R.string.listview_updated_last_week), month, day - offsetWeekStart - 7));
-        timeslots.add(new Timeslot(context.getResources().getString(R.string.listview_updated_this_month), month, 1));
-        timeslots.add(new Timeslot(context.getResources().getString(R.string.listview_updated_last_month), month - 1, 1));
-        lastYear = Calendar.getInstance();
-        lastYear.set(now.get(Calendar.YEAR) - 1, 0, 1, 0, 0, 0);
+        this.clock = clock;
+        computeTimeslots(clock.getAsLong());
     }
 
     public String getTimeslot(Note note) {
         if (note.getFavorite()) {
             return "";
         }
-        Calendar modified = note.getModified();
-        for (Timeslot timeslot : timeslots) {
-            if (!modified.before(timeslot.getTime())) {
+        ensureTimeslotsAreCurrent();
+        final long modified = note.getModified() == null ? 0 : note.getModified();
+        final int index = Arrays.binarySearch(starts, modified);
+        if (index >= 0) {
+            return labels[index];
+        }
+        final int insertionPoint = -index - 1;
+        return insertionPoint == 0
+                ? getYear(modified)
+                : labels[insertionPoint - 1];
+    }
+
+    /**
+     * @return the start of the next day, the timeslots of already slotted {@link Note}s might be outdated as soon as this changes
+     */
+    public long getValidUntil() {
+        ensureTimeslotsAreCurrent();
+        return validUntil;
+    }
+
+    private void ensureTimeslotsAreCurrent() {
+        final long now = clock.getAsLong();
+        if (now >= validUntil) {
+            computeTimeslots(now);
+        }
+    }
+
+    private void computeTimeslots(long now) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(now);
+        final int year = calendar.get(Calendar.YEAR);
+        final int month = calendar.get(Calendar.MONTH);
+        final int day = calendar.get(Calendar.DAY_OF_MONTH);
+        final int offsetWeekStart = (calendar.get(Calendar.DAY_OF_WEEK) - calendar.getFirstDayOfWeek() + 7) % 7;
+
+        final Resources resources = context.getResources();
+        final List<Timeslot> namedTimeslots = new ArrayList<>(6);
+        namedTimeslots.add(new Timeslot(resources.getString(R.string.listview_updated_today), getStartOfDay(year, month, day)));
+        namedTimeslots.add(new Timeslot(resources.getString(R.string.listview_updated_yesterday), getStartOfDay(year, month, day - 1)));
+        namedTimeslots.add(new Timeslot(resources.getString(R.string.listview_updated_this_week), getStartOfDay(year, month, day - offsetWeekStart)));
+        namedTimeslots.add(new Timeslot(resources.getString(R.string.listview_updated_last_week), getStartOfDay(year, month, day - offsetWeekStart - 7)));
+        namedTimeslots.add(new Timeslot(resources.getString(R.string.listview_updated_this_month), getStartOfDay(year, month, 1)));
+        namedTimeslots.add(new Timeslot(resources.getString(R.string.listview_updated_last_month), getStartOfDay(year, month - 1, 1)));
+        final long lastYear = getStartOfDay(year - 1, 0, 1);
+
+        // The label can only change at one of these points in time
+        final TreeSet<Long> candidates = new TreeSet<>();
+        for (int y = FIRST_PRECOMPUTED_YEAR; y < year - 1; y++) {
+            candidates.add(getStartOfDay(y, 0, 1));
+        }
+        for (int m = 0; m <= 12 + month; m++) {
+            candidates.add(getStartOfDay(year - 1, m, 1));
+        }
+        for (Timeslot timeslot : namedTimeslots) {
+            candidates.add(timeslot.getTime());
+        }
+
+        final List<Timeslot> timeslots = new ArrayList<>(candidates.size());
+        for (long start : candidates) {
+            final String label = getLabel(namedTimeslots, lastYear, start);
+            if (timeslots.isEmpty() || !timeslots.get(timeslots.size() - 1).getLabel().equals(label)) {
+                timeslots.add(new Timeslot(label, start));
+            }
+        }
+        starts = new long[timeslots.size()];
+        labels = new String[timeslots.size()];
+        for (int i = 0; i < timeslots.size(); i++) {
+            starts[i] = timeslots.get(i).getTime();
+            labels[i] = timeslots.get(i).getLabel();
+        }
+        validUntil = getStartOfDay(year, month, day + 1);
+    }
+
+    @NonNull
+    private String getLabel(@NonNull List<Timeslot> namedTimeslots, long lastYear, long modified) {
+        for (Timeslot timeslot : namedTimeslots) {
+            if (modified >= timeslot.getTime()) {
                 return timeslot.getLabel();
             }
         }
-        if (!modified.before(this.lastYear)) {
+        if (modified >= lastYear) {
             // use YEAR and MONTH in a format based on current locale
-            return DateUtils.formatDateTime(context, modified.getTimeInMillis(), DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_YEAR | DateUtils.FORMAT_NO_MONTH_DAY);
+            return DateUtils.formatDateTime(context, modified, FORMAT_MONTH);
         } else {
-            return Integer.toString(modified.get(Calendar.YEAR));
+            return getYear(modified);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Only called for the precomputation and for {@link Note}s which are older than {@link #FIRST_PRECOMPUTED_YEAR}
+     */
+    @NonNull
+    private static String getYear(long modified) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.setTimeInMillis(modified);
+        return Integer.toString(calendar.get(Calendar.YEAR));
+    }
+
+    /**
+     * @param month and {@param day} may exceed their ranges, e. g. day <code>0</code> is the last day of the previous month
+     */
+    private static long getStartOfDay(int year, int month, int day) {
+        final Calendar calendar = Calendar.getInstance();
+        calendar.clear();
+        calendar.set(year, month, day, 0, 0, 0);
+        return calendar.getTimeInMillis();
+    }
+}
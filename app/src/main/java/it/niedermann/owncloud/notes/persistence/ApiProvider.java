@@ -9,17 +9,15 @@ import androidx.annotation.WorkerThread;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonPrimitive;
-import com.google.gson.JsonSerializer;
 import com.nextcloud.android.sso.api.NextcloudAPI;
 import com.nextcloud.android.sso.model.SingleSignOnAccount;
 
-import java.util.Calendar;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
+import it.niedermann.owncloud.notes.persistence.entity.Note;
 import it.niedermann.owncloud.notes.persistence.sync.CapabilitiesDeserializer;
+import it.niedermann.owncloud.notes.persistence.sync.NoteTypeAdapter;
 import it.niedermann.owncloud.notes.persistence.sync.NotesAPI;
 import it.niedermann.owncloud.notes.persistence.sync.OcsAPI;
 import it.niedermann.owncloud.notes.shared.model.ApiVersion;
@@ -45,6 +43,12 @@ public class ApiProvider {
     private static final Map<String, OcsAPI> API_CACHE_OCS = new ConcurrentHashMap<>();
     private static final Map<String, NotesAPI> API_CACHE_NOTES = new ConcurrentHashMap<>();
 
+    static final Gson GSON = new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation()
+            .registerTypeAdapter(Note.class, new NoteTypeAdapter())
+            .registerTypeAdapter(Capabilities.class, new CapabilitiesDeserializer())
+            .create();
+
     public static ApiProvider getInstance() {
         return INSTANCE;
     }
@@ -53,9 +57,6 @@ public class ApiProvider {
         // Singleton
     }
 
-    /**
-     * An {@link OcsAPI} currently shares the {@link Gson} configuration with the {@link NotesAPI} and therefore divides all {@link Calendar} milliseconds by 1000 while serializing and multiplies values by 1000 during deserialization.
-     */
     public synchronized OcsAPI getOcsAPI(@NonNull Context context, @NonNull SingleSignOnAccount ssoAccount) {
         if (API_CACHE_OCS.containsKey(ssoAccount.name)) {
             return API_CACHE_OCS.get(ssoAccount.name);
@@ -72,7 +73,7 @@ public class ApiProvider {
         if (API_CACHE_NOTES.containsKey(ssoAccount.name)) {
             return API_CACHE_NOTES.get(ssoAccount.name);
         }
-        final NotesAPI notesAPI = new NotesAPI(getNextcloudAPI(context, ssoAccount), preferredApiVersion);
+        final NotesAPI notesAPI = new NotesAPI(getNextcloudAPI(context, ssoAccount), GSON, preferredApiVersion);
         API_CACHE_NOTES.put(ssoAccount.name, notesAPI);
         return notesAPI;
     }
@@ -82,17 +83,7 @@ public class ApiProvider {
             return API_CACHE.get(ssoAccount.name);
         } else {
             Log.v(TAG, "NextcloudRequest account: " + ssoAccount.name);
-            final NextcloudAPI nextcloudAPI = new NextcloudAPI(context.getApplicationContext(), ssoAccount,
-                    new GsonBuilder()
-                            .excludeFieldsWithoutExposeAnnotation()
-                            .registerTypeHierarchyAdapter(Calendar.class, (JsonSerializer<Calendar>) (src, typeOfSrc, ctx) -> new JsonPrimitive(src.getTimeInMillis() / 1_000))
-                            .registerTypeHierarchyAdapter(Calendar.class, (JsonDeserializer<Calendar>) (src, typeOfSrc, ctx) -> {
-                                final Calendar calendar = Calendar.getInstance();
-                                calendar.setTimeInMillis(src.getAsLong() * 1_000);
-                                return calendar;
-                            })
-                            .registerTypeAdapter(Capabilities.class, new CapabilitiesDeserializer())
-                            .create(), new NextcloudAPI.ApiConnectedListener() {
+            final NextcloudAPI nextcloudAPI = new NextcloudAPI(context.getApplicationContext(), ssoAccount, GSON, new NextcloudAPI.ApiConnectedListener() {
                 @Override
                 public void onConnected() {
                     Log.i(TAG, "SSO API connected for " + ssoAccount);
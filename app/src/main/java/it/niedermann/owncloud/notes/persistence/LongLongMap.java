@@ -0,0 +1,162 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Map of primitive <code>long</code> keys to primitive <code>long</code> values.
+ * <p>
+ * Uses open addressing with linear probing on two plain arrays, so unlike a {@link java.util.HashMap} it neither boxes keys and values nor allocates an entry object per mapping.
+ * This matters while synchronizing huge accounts, where the IDs of all {@link it.niedermann.owncloud.notes.persistence.entity.Note}s are kept in memory.
+ * Mappings can not be removed, which is not needed for bookkeeping during a synchronization.
+ */
+class LongLongMap {
+
+    /**
+     * Marks an unused slot, the key <code>0</code> itself is stored separately
+     */
+    private static final long EMPTY = 0;
+    private static final float LOAD_FACTOR = .75f;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    LongLongMap() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of mappings which can be stored without growing
+     */
+    LongLongMap(int expectedSize) {
+        final int capacity = capacityFor(expectedSize);
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * Associates the {@param value} with the {@param key} and replaces the previous value, if any.
+     */
+    void put(long key, long value) {
+        if (key == EMPTY) {
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return;
+        }
+        int slot = slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                values[slot] = value;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+        size++;
+        if (size > (mask + 1) * LOAD_FACTOR) {
+            grow();
+        }
+    }
+
+    /**
+     * @return the value which is associated with the {@param key} or {@param defaultValue} if there is none
+     */
+    long get(long key, long defaultValue) {
+        if (key == EMPTY) {
+            return hasZeroKey ? zeroValue : defaultValue;
+        }
+        int slot = slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return defaultValue;
+    }
+
+    boolean containsKey(long key) {
+        if (key == EMPTY) {
+            return hasZeroKey;
+        }
+        int slot = slot(key, mask);
+        while (keys[slot] != EMPTY) {
+            if (keys[slot] == key) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Calls the {@param consumer} for each mapping in no particular order.
+     */
+    void forEach(@NonNull LongLongConsumer consumer) {
+        if (hasZeroKey) {
+            consumer.accept(EMPTY, zeroValue);
+        }
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != EMPTY) {
+                consumer.accept(keys[slot], values[slot]);
+            }
+        }
+    }
+
+    private void grow() {
+        final long[] oldKeys = keys;
+        final long[] oldValues = values;
+        final int capacity = oldKeys.length << 1;
+        keys = new long[capacity];
+        values = new long[capacity];
+        mask = capacity - 1;
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            final long key = oldKeys[oldSlot];
+            if (key != EMPTY) {
+                int slot = slot(key, mask);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+                values[slot] = oldValues[oldSlot];
+            }
+        }
+    }
+
+    /**
+     * @return the smallest power of two which can hold {@param expectedSize} elements without exceeding the {@link #LOAD_FACTOR}
+     */
+    static int capacityFor(int expectedSize) {
+        final int minCapacity = (int) Math.ceil(Math.max(expectedSize, 1) / LOAD_FACTOR);
+        final int capacity = Integer.highestOneBit(minCapacity);
+        return Math.max(capacity == minCapacity ? capacity : capacity << 1, 2);
+    }
+
+    /**
+     * Spreads sequential IDs over the whole table, see <a href="https://en.wikipedia.org/wiki/Hash_function#Fibonacci_hashing">Fibonacci hashing</a>
+     */
+    static int slot(long key, int mask) {
+        final long hash = key * 0x9E3779B97F4A7C15L;
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+
+    interface LongLongConsumer {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,89 @@
+package it.niedermann.owncloud.notes.persistence;
+
+/**
+ * Set of primitive <code>long</code>s, the counterpart of {@link LongLongMap} without values.
+ */
+class LongSet {
+
+    private static final long EMPTY = 0;
+    private static final float LOAD_FACTOR = .75f;
+
+    private long[] elements;
+    private int mask;
+    private int size;
+    private boolean hasZero;
+
+    LongSet() {
+        this(16);
+    }
+
+    /**
+     * @param expectedSize number of elements which can be stored without growing
+     */
+    LongSet(int expectedSize) {
+        final int capacity = LongLongMap.capacityFor(expectedSize);
+        elements = new long[capacity];
+        mask = capacity - 1;
+    }
+
+    /**
+     * @return <code>true</code> if the {@param element} has not been contained yet
+     */
+    boolean add(long element) {
+        if (element == EMPTY) {
+            if (hasZero) {
+                return false;
+            }
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int slot = LongLongMap.slot(element, mask);
+        while (elements[slot] != EMPTY) {
+            if (elements[slot] == element) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        elements[slot] = element;
+        size++;
+        if (size > (mask + 1) * LOAD_FACTOR) {
+            grow();
+        }
+        return true;
+    }
+
+    boolean contains(long element) {
+        if (element == EMPTY) {
+            return hasZero;
+        }
+        int slot = LongLongMap.slot(element, mask);
+        while (elements[slot] != EMPTY) {
+            if (elements[slot] == element) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private void grow() {
+        final long[] oldElements = elements;
+        final int capacity = oldElements.length << 1;
+        elements = new long[capacity];
+        mask = capacity - 1;
+        for (long element : oldElements) {
+            if (element != EMPTY) {
+                int slot = LongLongMap.slot(element, mask);
+                while (elements[slot] != EMPTY) {
+                    slot = (slot + 1) & mask;
+                }
+                elements[slot] = element;
+            }
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import android.util.Log;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+
+import it.niedermann.owncloud.notes.persistence.entity.Account;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+
+/**
+ * Fetches the <code>content</code> of {@link Note}s which have only been synchronized with their metadata.
+ * <p>
+ * Requests are served by {@link Priority}, so the currently opened {@link Note} does not have to wait for thousands of {@link Note}s which are fetched in the background.
+ * Within the same {@link Priority} the most recent request is served first, because it most likely reflects what the user currently looks at.
+ * Only {@link Priority#BACKGROUND} requests are served in the order they have been submitted.
+ * Requesting a {@link Note} which is already queued does not fetch it twice but only raises its {@link Priority} if necessary.
+ * While the loader is held, e. g. because only Wi-Fi may be used for synchronizations, queued requests wait until it is released.
+ */
+class NoteContentLoader {
+
+    private static final String TAG = NoteContentLoader.class.getSimpleName();
+
+    /**
+     * Default maximum number of {@link Note}s whose <code>content</code> is fetched at the same time
+     */
+    static final int DEFAULT_MAX_PARALLEL_FETCHES = 2;
+
+    enum Priority {
+        /**
+         * The {@link Note} is currently opened and the user waits for its <code>content</code>
+         */
+        OPENED,
+        /**
+         * The {@link Note} is visible in the list of {@link Note}s
+         */
+        VISIBLE,
+        /**
+         * Fetched after a synchronization, so the {@link Note}s are available offline
+         */
+        BACKGROUND
+    }
+
+    interface ContentFetcher {
+        /**
+         * @return whether the <code>content</code> of the {@link Note} has been fetched and stored
+         */
+        @WorkerThread
+        boolean fetch(long noteId) throws Exception;
+    }
+
+    private static final Comparator<Request> ORDER = (a, b) -> {
+        final int byPriority = a.priority.compareTo(b.priority);
+        if (byPriority != 0) {
+            return byPriority;
+        }
+        return a.priority == Priority.BACKGROUND
+                ? Long.compare(a.sequence, b.sequence)
+                : Long.compare(b.sequence, a.sequence);
+    };
+
+    @NonNull
+    private final ExecutorService executor;
+    @NonNull
+    private final ContentFetcher fetcher;
+    private final int maxParallelFetches;
+
+    // Guarded by this
+    private final TreeSet<Request> queue = new TreeSet<>(ORDER);
+    private final Map<Long, Request> queuedRequests = new HashMap<>();
+    private final Map<Long, Request> runningRequests = new HashMap<>();
+    private long sequence = 0;
+    private boolean held = false;
+
+    NoteContentLoader(@NonNull ExecutorService executor, @NonNull ContentFetcher fetcher, int maxParallelFetches) {
+        if (maxParallelFetches < 1) {
+            throw new IllegalArgumentException("maxParallelFetches must be at least 1 but was " + maxParallelFetches);
+        }
+        this.executor = executor;
+        this.fetcher = fetcher;
+        this.maxParallelFetches = maxParallelFetches;
+    }
+
+    /**
+     * Enqueues fetching the <code>content</code> of the given {@link Note}.
+     *
+     * @return a {@link Future} which completes with <code>true</code> as soon as the <code>content</code> has been stored, or a cancelled one for a {@link Priority#OPENED} {@link Note} while the loader is held
+     */
+    @NonNull
+    @AnyThread
+    synchronized Future<Boolean> load(long accountId, long noteId, @NonNull Priority priority) {
+        final Request running = runningRequests.get(noteId);
+        if (running != null) {
+            return running.task;
+        }
+        if (held && priority == Priority.OPENED) {
+            final FutureTask<Boolean> cancelled = new FutureTask<>(() -> false);
+            cancelled.cancel(false);
+            return cancelled;
+        }
+        Request request = queuedRequests.get(noteId);
+        if (request == null) {
+            request = new Request(accountId, noteId);
+            queuedRequests.put(noteId, request);
+        } else if (priority == Priority.BACKGROUND) {
+            // Keep the position of already queued requests
+            return request.task;
+        } else {
+            queue.remove(request);
+        }
+        if (priority.compareTo(request.priority) < 0) {
+            request.priority = priority;
+        }
+        request.sequence = ++sequence;
+        queue.add(request);
+        dispatch();
+        return request.task;
+    }
+
+    /**
+     * Drops all queued requests of the given {@link Account}, e. g. because the {@link Account} has been deleted.
+     * Requests which are already running are not interrupted.
+     */
+    @AnyThread
+    synchronized void discard(long accountId) {
+        int discarded = 0;
+        final Iterator<Request> iterator = queue.iterator();
+        while (iterator.hasNext()) {
+            final Request request = iterator.next();
+            if (request.accountId == accountId) {
+                iterator.remove();
+                queuedRequests.remove(request.noteId);
+                request.task.cancel(false);
+                discarded++;
+            }
+        }
+        Log.i(TAG, "Discarded " + discarded + " queued requests of account " + accountId);
+    }
+
+    /**
+     * Holds back or releases all queued requests.
+     * Requests which are already running are not interrupted, queued {@link Priority#OPENED} requests are cancelled on hold, because the user would wait for them.
+     */
+    @AnyThread
+    synchronized void setHeld(boolean held) {
+        if (this.held == held) {
+            return;
+        }
+        this.held = held;
+        if (held) {
+            final Iterator<Request> iterator = queue.iterator();
+            while (iterator.hasNext()) {
+                final Request request = iterator.next();
+                if (request.priority == Priority.OPENED) {
+                    iterator.remove();
+                    queuedRequests.remove(request.noteId);
+                    request.task.cancel(false);
+                }
+            }
+            Log.i(TAG, "Hold " + queue.size() + " queued requests");
+        } else {
+            dispatch();
+        }
+    }
+
+    /**
+     * @return the number of {@link Note}s whose <code>content</code> is waiting to be fetched
+     */
+    @AnyThread
+    synchronized int getQueuedCount() {
+        return queue.size();
+    }
+
+    private void dispatch() {
+        while (!held && runningRequests.size() < maxParallelFetches && !queue.isEmpty()) {
+            final Request request = queue.pollFirst();
+            queuedRequests.remove(request.noteId);
+            // Marked as running before the submission, because the executor might run the request immediately on this thread
+            runningRequests.put(request.noteId, request);
+            executor.execute(request.task);
+        }
+    }
+
+    private synchronized void onFinished(@NonNull Request request) {
+        if (runningRequests.get(request.noteId) == request) {
+            runningRequests.remove(request.noteId);
+        }
+        dispatch();
+    }
+
+    private class Request {
+        private final long accountId;
+        private final long noteId;
+        @NonNull
+        private final FutureTask<Boolean> task;
+        @NonNull
+        private Priority priority = Priority.BACKGROUND;
+        private long sequence;
+
+        private Request(long accountId, long noteId) {
+            this.accountId = accountId;
+            this.noteId = noteId;
+            this.task = new FutureTask<>(() -> {
+                try {
+                    return fetcher.fetch(noteId);
+                } catch (Exception e) {
+                    Log.w(TAG, "Could not fetch content of note " + noteId, e);
+                    throw e;
+                } finally {
+                    onFinished(this);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,374 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import it.niedermann.owncloud.notes.persistence.dao.NotesPageQuery;
+import it.niedermann.owncloud.notes.persistence.entity.Converters;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.CategorySortingMethod;
+import it.niedermann.owncloud.notes.shared.model.DBStatus;
+import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
+
+import static it.niedermann.owncloud.notes.shared.model.CategorySortingMethod.SORT_MODIFIED_DESC;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.DEFAULT_CATEGORY;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.FAVORITES;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.UNCATEGORIZED;
+
+/**
+ * Metadata of all not deleted {@link Note}s of one {@link it.niedermann.owncloud.notes.persistence.entity.Account}, so pages of the notes list can be served without querying SQLite.
+ * <p>
+ * Each {@link Note} occupies one slot of several primitive arrays, categories are stored once and referenced by their position.
+ * The order of the {@link Note}s for a combination of {@link NavigationCategory} and {@link CategorySortingMethod} is computed on demand and cached until the next change.
+ * Pages contain the same partial {@link Note}s in the same order as {@link NotesPageQuery}, which is still used to search in the <code>content</code>.
+ * <p>
+ * Slots of removed {@link Note}s are kept, so the mapping of IDs to slots only grows. The index of an account is built again after the app has been restarted.
+ */
+class NoteMetadataIndex {
+
+    /**
+     * Stands for <code>null</code> in {@link #remoteIds} and {@link #modified}, it sorts {@link Note}s without modification date last like SQLite does in descending order
+     */
+    private static final long NO_VALUE = Long.MIN_VALUE;
+    private static final byte FLAG_FAVORITE = 1;
+    private static final byte FLAG_REMOVED = 1 << 1;
+    private static final DBStatus[] STATUSES = DBStatus.values();
+
+    /**
+     * Rough size of a {@link String} without its chars and of a reference to it
+     */
+    private static final int STRING_OVERHEAD_BYTES = 40;
+
+    private final long accountId;
+    private final LongLongMap slotsById;
+    private long[] ids;
+    private long[] remoteIds;
+    private long[] modified;
+    private int[] categories;
+    private byte[] flags;
+    private byte[] statuses;
+    private String[] titles;
+    private String[] excerpts;
+    private int slotCount = 0;
+    private int size = 0;
+
+    private final List<String> categoryNames = new ArrayList<>();
+    private final Map<String, Integer> categoryPositions = new HashMap<>();
+
+    /**
+     * Slots sorted by the {@link NavigationCategory} and {@link CategorySortingMethod} of their key, cleared on each change
+     */
+    private final Map<String, int[]> orders = new HashMap<>();
+
+    NoteMetadataIndex(long accountId, int expectedSize) {
+        final int capacity = Math.max(expectedSize, 16);
+        this.accountId = accountId;
+        this.slotsById = new LongLongMap(capacity);
+        this.ids = new long[capacity];
+        this.remoteIds = new long[capacity];
+        this.modified = new long[capacity];
+        this.categories = new int[capacity];
+        this.flags = new byte[capacity];
+        this.statuses = new byte[capacity];
+        this.titles = new String[capacity];
+        this.excerpts = new String[capacity];
+    }
+
+    /**
+     * @param cursor rows of {@link it.niedermann.owncloud.notes.persistence.dao.NoteDao#getNoteMetadata(long)}
+     */
+    @NonNull
+    static NoteMetadataIndex build(long accountId, @NonNull Cursor cursor) {
+        final NoteMetadataIndex index = new NoteMetadataIndex(accountId, cursor.getCount());
+        final int idColumn = cursor.getColumnIndexOrThrow("id");
+        final int remoteIdColumn = cursor.getColumnIndexOrThrow("remoteId");
+        final int titleColumn = cursor.getColumnIndexOrThrow("title");
+        final int favoriteColumn = cursor.getColumnIndexOrThrow("favorite");
+        final int excerptColumn = cursor.getColumnIndexOrThrow("excerpt");
+        final int modifiedColumn = cursor.getColumnIndexOrThrow("modified");
+        final int categoryColumn = cursor.getColumnIndexOrThrow("category");
+        final int statusColumn = cursor.getColumnIndexOrThrow("status");
+        while (cursor.moveToNext()) {
+            index.put(
+                    cursor.getLong(idColumn),
+                    cursor.isNull(remoteIdColumn) ? NO_VALUE : cursor.getLong(remoteIdColumn),
+                    cursor.getString(titleColumn),
+                    cursor.getInt(favoriteColumn) != 0,
+                    cursor.getString(excerptColumn),
+                    cursor.isNull(modifiedColumn) ? NO_VALUE : cursor.getLong(modifiedColumn),
+                    cursor.getString(categoryColumn),
+                    Converters.fromString(cursor.getString(statusColumn)));
+        }
+        return index;
+    }
+
+    long getAccountId() {
+        return accountId;
+    }
+
+    /**
+     * @return the number of indexed {@link Note}s
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Adds the metadata of the {@param note} or replaces its previous metadata. {@link DBStatus#LOCAL_DELETED} {@link Note}s get removed.
+     */
+    synchronized void put(@NonNull Note note) {
+        if (note.getStatus() == DBStatus.LOCAL_DELETED) {
+            remove(note.getId());
+        } else {
+            put(note.getId(), note.getRemoteId() == null ? NO_VALUE : note.getRemoteId(), note.getTitle(), note.getFavorite(), note.getExcerpt(), note.getModified() == null ? NO_VALUE : note.getModified(), note.getCategory(), note.getStatus());
+        }
+    }
+
+    synchronized void remove(long id) {
+        final int slot = (int) slotsById.get(id, -1);
+        if (slot >= 0 && (flags[slot] & FLAG_REMOVED) == 0) {
+            flags[slot] = FLAG_REMOVED;
+            titles[slot] = null;
+            excerpts[slot] = null;
+            size--;
+            orders.clear();
+        }
+    }
+
+    /**
+     * @return the page of the {@link Note}s matching the {@param selectedCategory} which follows {@param lastOfPreviousPage}, like {@link NotesPageQuery} without a <code>query</code>
+     */
+    @NonNull
+    synchronized List<Note> getPage(@NonNull NavigationCategory selectedCategory, @Nullable CategorySortingMethod sortingMethod, @Nullable Note lastOfPreviousPage, int pageSize) {
+        final boolean byCategory = selectedCategory.getType() == DEFAULT_CATEGORY;
+        final boolean byModified = sortingMethod == SORT_MODIFIED_DESC;
+        final int[] order = getOrder(selectedCategory, byCategory, byModified);
+        int start = 0;
+        if (lastOfPreviousPage != null) {
+            // Keyset pagination: the page starts after the sort key of the last note, even if that one has been changed or removed meanwhile
+            final long lastModified = lastOfPreviousPage.getModified() == null ? NO_VALUE : lastOfPreviousPage.getModified();
+            int end = order.length;
+            while (start < end) {
+                final int middle = (start + end) >>> 1;
+                final int slot = order[middle];
+                if (compare(byCategory, byModified,
+                        categoryNames.get(categories[slot]), (flags[slot] & FLAG_FAVORITE) != 0, modified[slot], titles[slot], ids[slot],
+                        lastOfPreviousPage.getCategory(), lastOfPreviousPage.getFavorite(), lastModified, lastOfPreviousPage.getTitle(), lastOfPreviousPage.getId()) <= 0) {
+                    start = middle + 1;
+                } else {
+                    end = middle;
+                }
+            }
+        }
+        final int end = Math.min(order.length, start + pageSize);
+        if (start >= end) {
+            return Collections.emptyList();
+        }
+        final List<Note> page = new ArrayList<>(end - start);
+        for (int i = start; i < end; i++) {
+            page.add(toNote(order[i]));
+        }
+        return page;
+    }
+
+    /**
+     * @return the approximate number of bytes occupied by this index, including the {@link String}s it references
+     */
+    synchronized long estimateMemoryUsage() {
+        // Three long arrays, one int array, two byte arrays and two String arrays, and the two long arrays of the LongLongMap
+        long bytes = ids.length * (3L * 8 + 4 + 2 + 2L * STRING_OVERHEAD_BYTES) + LongLongMap.capacityFor(slotCount) * 2L * 8;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if ((flags[slot] & FLAG_REMOVED) == 0) {
+                bytes += 2L * (titles[slot].length() + excerpts[slot].length());
+            }
+        }
+        for (String categoryName : categoryNames) {
+            bytes += STRING_OVERHEAD_BYTES + 2L * categoryName.length();
+        }
+        for (int[] order : orders.values()) {
+            bytes += order.length * 4L;
+        }
+        return bytes;
+    }
+
+    private void put(long id, long remoteId, @NonNull String title, boolean favorite, @NonNull String excerpt, long modified, @NonNull String category, @NonNull DBStatus status) {
+        int slot = (int) slotsById.get(id, -1);
+        if (slot < 0) {
+            slot = slotCount++;
+            ensureCapacity(slotCount);
+            slotsById.put(id, slot);
+            size++;
+        } else if ((flags[slot] & FLAG_REMOVED) != 0) {
+            size++;
+        }
+        ids[slot] = id;
+        remoteIds[slot] = remoteId;
+        this.modified[slot] = modified;
+        categories[slot] = getCategoryPosition(category);
+        flags[slot] = favorite ? FLAG_FAVORITE : 0;
+        statuses[slot] = (byte) status.ordinal();
+        titles[slot] = title;
+        excerpts[slot] = excerpt;
+        orders.clear();
+    }
+
+    private void ensureCapacity(int minCapacity) {
+        if (minCapacity > ids.length) {
+            final int capacity = Math.max(minCapacity, ids.length + (ids.length >> 1));
+            ids = Arrays.copyOf(ids, capacity);
+            remoteIds = Arrays.copyOf(remoteIds, capacity);
+            modified = Arrays.copyOf(modified, capacity);
+            categories = Arrays.copyOf(categories, capacity);
+            flags = Arrays.copyOf(flags, capacity);
+            statuses = Arrays.copyOf(statuses, capacity);
+            titles = Arrays.copyOf(titles, capacity);
+            excerpts = Arrays.copyOf(excerpts, capacity);
+        }
+    }
+
+    private int getCategoryPosition(@NonNull String category) {
+        final Integer position = categoryPositions.get(category);
+        if (position != null) {
+            return position;
+        }
+        categoryNames.add(category);
+        categoryPositions.put(category, categoryNames.size() - 1);
+        return categoryNames.size() - 1;
+    }
+
+    @NonNull
+    private Note toNote(int slot) {
+        return new Note(ids[slot], remoteIds[slot] == NO_VALUE ? null : remoteIds[slot], modified[slot] == NO_VALUE ? null : modified[slot], titles[slot], "",
+                categoryNames.get(categories[slot]), (flags[slot] & FLAG_FAVORITE) != 0, "", STATUSES[statuses[slot]], accountId, excerpts[slot], 0);
+    }
+
+    /**
+     * @return the slots of all {@link Note}s matching the {@param selectedCategory} in the order of {@link NotesPageQuery}
+     */
+    @NonNull
+    private int[] getOrder(@NonNull NavigationCategory selectedCategory, boolean byCategory, boolean byModified) {
+        final String key = selectedCategory.getType() + "/" + selectedCategory.getCategory() + "/" + byModified;
+        final int[] cachedOrder = orders.get(key);
+        if (cachedOrder != null) {
+            return cachedOrder;
+        }
+        final boolean[] matchingCategories = new boolean[categoryNames.size()];
+        for (int i = 0; i < matchingCategories.length; i++) {
+            matchingCategories[i] = matches(selectedCategory, categoryNames.get(i));
+        }
+        final boolean favoritesOnly = selectedCategory.getType() == FAVORITES;
+        final int[] order = new int[size];
+        int count = 0;
+        for (int slot = 0; slot < slotCount; slot++) {
+            if ((flags[slot] & FLAG_REMOVED) == 0 && matchingCategories[categories[slot]] && (!favoritesOnly || (flags[slot] & FLAG_FAVORITE) != 0)) {
+                order[count++] = slot;
+            }
+        }
+        final int[] sortedOrder = Arrays.copyOf(order, count);
+        sort(sortedOrder, Arrays.copyOf(order, count), 0, count, byCategory, byModified);
+        orders.put(key, sortedOrder);
+        return sortedOrder;
+    }
+
+    /**
+     * The condition of {@link NotesPageQuery} for a category also matches its sub categories, <code>LIKE</code> compares the prefix case insensitive for ASCII characters.
+     */
+    private static boolean matches(@NonNull NavigationCategory selectedCategory, @NonNull String category) {
+        if (selectedCategory.getType() == UNCATEGORIZED) {
+            return category.isEmpty();
+        } else if (selectedCategory.getType() == DEFAULT_CATEGORY) {
+            final String selected = selectedCategory.getCategory() == null ? "" : selectedCategory.getCategory();
+            return category.equals(selected) || (category.length() > selected.length()
+                    && category.charAt(selected.length()) == '/'
+                    && compare(category.substring(0, selected.length()), selected, true) == 0);
+        }
+        return true;
+    }
+
+    /**
+     * Stable merge sort of the {@param slots} between {@param from} and {@param to}, using {@param buffer} which must contain the same slots
+     */
+    private void sort(@NonNull int[] slots, @NonNull int[] buffer, int from, int to, boolean byCategory, boolean byModified) {
+        if (to - from < 2) {
+            return;
+        }
+        final int middle = (from + to) >>> 1;
+        sort(buffer, slots, from, middle, byCategory, byModified);
+        sort(buffer, slots, middle, to, byCategory, byModified);
+        int left = from;
+        int right = middle;
+        for (int i = from; i < to; i++) {
+            if (right >= to || (left < middle && compare(buffer[left], buffer[right], byCategory, byModified) <= 0)) {
+                slots[i] = buffer[left++];
+            } else {
+                slots[i] = buffer[right++];
+            }
+        }
+    }
+
+    private int compare(int slotA, int slotB, boolean byCategory, boolean byModified) {
+        return compare(byCategory, byModified,
+                categoryNames.get(categories[slotA]), (flags[slotA] & FLAG_FAVORITE) != 0, modified[slotA], titles[slotA], ids[slotA],
+                categoryNames.get(categories[slotB]), (flags[slotB] & FLAG_FAVORITE) != 0, modified[slotB], titles[slotB], ids[slotB]);
+    }
+
+    /**
+     * Compares like the <code>ORDER BY</code> clause of {@link NotesPageQuery}
+     */
+    private static int compare(boolean byCategory, boolean byModified,
+                               @NonNull String categoryA, boolean favoriteA, long modifiedA, @NonNull String titleA, long idA,
+                               @NonNull String categoryB, boolean favoriteB, long modifiedB, @NonNull String titleB, long idB) {
+        if (byCategory) {
+            final int result = compare(categoryA, categoryB, false);
+            if (result != 0) {
+                return result;
+            }
+        }
+        if (favoriteA != favoriteB) {
+            return favoriteA ? -1 : 1;
+        }
+        if (byModified) {
+            final int result = Long.compare(modifiedB, modifiedA);
+            return result == 0 ? Long.compare(idB, idA) : result;
+        } else {
+            final int result = compare(titleA, titleB, true);
+            return result == 0 ? Long.compare(idA, idB) : result;
+        }
+    }
+
+    /**
+     * Compares by code points like the <code>BINARY</code> collation of SQLite, which compares UTF-8 bytes.
+     * {@param ignoreAsciiCase} folds only ASCII characters like the <code>NOCASE</code> collation.
+     */
+    static int compare(@NonNull String a, @NonNull String b, boolean ignoreAsciiCase) {
+        int i = 0;
+        int j = 0;
+        while (i < a.length() && j < b.length()) {
+            int codePointA = a.codePointAt(i);
+            int codePointB = b.codePointAt(j);
+            if (ignoreAsciiCase) {
+                codePointA = toLowerAscii(codePointA);
+                codePointB = toLowerAscii(codePointB);
+            }
+            if (codePointA != codePointB) {
+                return Integer.compare(codePointA, codePointB);
+            }
+            i += Character.charCount(codePointA);
+            j += Character.charCount(codePointB);
+        }
+        return Integer.compare(a.length() - i, b.length() - j);
+    }
+
+    private static int toLowerAscii(int codePoint) {
+        return codePoint >= 'A' && codePoint <= 'Z' ? codePoint + ('a' - 'A') : codePoint;
+    }
+}
@@ -1,6 +1,7 @@
 package it.niedermann.owncloud.notes.persistence;
 
 import android.content.Context;
+import android.database.Cursor;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -13,14 +14,20 @@ import androidx.sqlite.db.SupportSQLiteDatabase;
 import it.niedermann.owncloud.notes.persistence.dao.AccountDao;
 import it.niedermann.owncloud.notes.persistence.dao.CategoryOptionsDao;
 import it.niedermann.owncloud.notes.persistence.dao.NoteDao;
+import it.niedermann.owncloud.notes.persistence.dao.OutboxDao;
+import it.niedermann.owncloud.notes.persistence.dao.SyncCheckpointDao;
 import it.niedermann.owncloud.notes.persistence.dao.WidgetNotesListDao;
 import it.niedermann.owncloud.notes.persistence.dao.WidgetSingleNoteDao;
 import it.niedermann.owncloud.notes.persistence.entity.Account;
 import it.niedermann.owncloud.notes.persistence.entity.CategoryOptions;
 import it.niedermann.owncloud.notes.persistence.entity.Converters;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.NoteContent;
+import it.niedermann.owncloud.notes.persistence.entity.NoteFts;
 import it.niedermann.owncloud.notes.persistence.entity.NotesListWidgetData;
+import it.niedermann.owncloud.notes.persistence.entity.OutboxOperation;
 import it.niedermann.owncloud.notes.persistence.entity.SingleNoteWidgetData;
+import it.niedermann.owncloud.notes.persistence.entity.SyncCheckpoint;
 import it.niedermann.owncloud.notes.persistence.migration.Migration_10_11;
 import it.niedermann.owncloud.notes.persistence.migration.Migration_11_12;
 import it.niedermann.owncloud.notes.persistence.migration.Migration_12_13;
@@ -34,16 +41,29 @@ import it.niedermann.owncloud.notes.persistence.migration.Migration_19_20;
 import it.niedermann.owncloud.notes.persistence.migration.Migration_20_21;
 import it.niedermann.owncloud.notes.persistence.migration.Migration_21_22;
 import it.niedermann.owncloud.notes.persistence.migration.Migration_22_23;
+import it.niedermann.owncloud.notes.persistence.migration.Migration_23_24;
+import it.niedermann.owncloud.notes.persistence.migration.Migration_24_25;
+import it.niedermann.owncloud.notes.persistence.migration.Migration_25_26;
+import it.niedermann.owncloud.notes.persistence.migration.Migration_26_27;
+import it.niedermann.owncloud.notes.persistence.migration.Migration_27_28;
+import it.niedermann.owncloud.notes.persistence.migration.Migration_28_29;
+import it.niedermann.owncloud.notes.persistence.migration.Migration_29_30;
+import it.niedermann.owncloud.notes.persistence.migration.Migration_30_31;
+import it.niedermann.owncloud.notes.persistence.migration.Migration_31_32;
 import it.niedermann.owncloud.notes.persistence.migration.Migration_9_10;
 
 @Database(
         entities = {
                 Account.class,
                 Note.class,
+                NoteContent.class,
+                NoteFts.class,
+                OutboxOperation.class,
                 CategoryOptions.class,
                 SingleNoteWidgetData.class,
-                NotesListWidgetData.class
-        }, version = 23
+                NotesListWidgetData.class,
+                SyncCheckpoint.class
+        }, version = 32
 )
 @TypeConverters({Converters.class})
 public abstract class NotesDatabase extends RoomDatabase {
@@ -52,6 +72,71 @@ public abstract class NotesDatabase extends RoomDatabase {
     private static final String NOTES_DB_NAME = "OWNCLOUD_NOTES";
     private static volatile NotesDatabase instance;
 
+    /**
+     * Creates the triggers which are not managed by Room. Must be added to every {@link NotesDatabase}, also to in-memory ones.
+     * <p>
+     * Room can neither declare descending index columns nor their collation, but only validates the indexed columns.
+     * Therefore the indices which serve <code>ORDER BY favorite DESC, title COLLATE NOCASE</code> and <code>ORDER BY category, favorite DESC, modified DESC</code> are replaced.
+     * <p>
+     * This happens whenever the database is opened, because a destructive migration recreates all tables without calling {@link RoomDatabase.Callback#onCreate(SupportSQLiteDatabase)}.
+     */
+    static final RoomDatabase.Callback CALLBACK = new RoomDatabase.Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            super.onCreate(db);
+            Log.v(TAG, NotesDatabase.class.getSimpleName() + " created.");
+        }
+
+        @Override
+        public void onOpen(@NonNull SupportSQLiteDatabase db) {
+            super.onOpen(db);
+            db.beginTransaction();
+            try {
+                createUnmanagedSchema(db);
+                db.setTransactionSuccessful();
+            } finally {
+                db.endTransaction();
+            }
+        }
+    };
+
+    /**
+     * Idempotent, so it can be executed on every start
+     */
+    private static void createUnmanagedSchema(@NonNull SupportSQLiteDatabase db) {
+        replaceIndex(db, "IDX_NOTE_ACCOUNTID_FAVORITE_TITLE", "(accountId, favorite DESC, title COLLATE NOCASE)");
+        replaceIndex(db, "IDX_NOTE_ACCOUNTID_CATEGORY_FAVORITE_MODIFIED", "(accountId, category DESC, favorite, modified)");
+        replaceIndex(db, "IDX_NOTE_ACCOUNTID_CATEGORY_FAVORITE_TITLE", "(accountId, category, favorite DESC, title COLLATE NOCASE)");
+        final String oldCategoryUnused = "NOT EXISTS (SELECT 1 FROM Note WHERE Note.accountId = OLD.accountId AND Note.category = OLD.category)";
+        final String cleanUpStatement = "DELETE FROM CategoryOptions WHERE CategoryOptions.accountId = OLD.accountId AND CategoryOptions.category = OLD.category;";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_CLEANUP_CATEGORIES_DEL AFTER DELETE ON Note WHEN " + oldCategoryUnused + " BEGIN " + cleanUpStatement + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_CLEANUP_CATEGORIES_UPD AFTER UPDATE OF category, accountId ON Note WHEN (OLD.category != NEW.category OR OLD.accountId != NEW.accountId) AND " + oldCategoryUnused + " BEGIN " + cleanUpStatement + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_NOTECONTENT_TITLE_UPD AFTER UPDATE OF title ON Note WHEN OLD.title IS NOT NEW.title BEGIN UPDATE NoteContent SET title = NEW.title WHERE noteId = NEW.id; END;");
+        final String insertOperation = "INSERT OR IGNORE INTO OutboxOperation(accountId, noteId, type) VALUES (NEW.accountId, NEW.id, ";
+        final String noColumnChanged = "OLD.title IS NEW.title AND OLD.favorite IS NEW.favorite AND OLD.category IS NEW.category";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_INS AFTER INSERT ON Note WHEN NEW.status != '' BEGIN " + insertOperation + "CASE NEW.status WHEN 'LOCAL_DELETED' THEN 'DELETE' ELSE 'FULL' END); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_CONTENT AFTER UPDATE OF title ON Note WHEN NEW.status = 'LOCAL_EDITED' AND OLD.title IS NOT NEW.title BEGIN " + insertOperation + "'CONTENT'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_FAVORITE AFTER UPDATE OF favorite ON Note WHEN NEW.status = 'LOCAL_EDITED' AND OLD.favorite IS NOT NEW.favorite BEGIN " + insertOperation + "'FAVORITE'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_CATEGORY AFTER UPDATE OF category ON Note WHEN NEW.status = 'LOCAL_EDITED' AND OLD.category IS NOT NEW.category BEGIN " + insertOperation + "'CATEGORY'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_EDITED AFTER UPDATE OF status ON Note WHEN NEW.status = 'LOCAL_EDITED' AND (OLD.status IS 'LOCAL_DELETED' OR (" + noColumnChanged + " AND NOT EXISTS (SELECT 1 FROM OutboxOperation WHERE noteId = NEW.id))) BEGIN DELETE FROM OutboxOperation WHERE noteId = NEW.id AND type = 'DELETE'; " + insertOperation + "'FULL'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_DELETED AFTER UPDATE OF status ON Note WHEN NEW.status = 'LOCAL_DELETED' AND OLD.status IS NOT 'LOCAL_DELETED' BEGIN DELETE FROM OutboxOperation WHERE noteId = NEW.id; " + insertOperation + "'DELETE'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_SYNCED AFTER UPDATE OF status ON Note WHEN NEW.status = '' AND OLD.status != '' BEGIN DELETE FROM OutboxOperation WHERE noteId = NEW.id; END;");
+    }
+
+    /**
+     * Replaces the index which has been created by Room with the given columns, unless this already happened
+     */
+    private static void replaceIndex(@NonNull SupportSQLiteDatabase db, @NonNull String name, @NonNull String columns) {
+        final String createStatement = "CREATE INDEX " + name + " ON Note " + columns;
+        try (Cursor cursor = db.query("SELECT sql FROM sqlite_master WHERE type = 'index' AND name = ?", new Object[]{name})) {
+            if (cursor.moveToFirst() && createStatement.equals(cursor.getString(0))) {
+                return;
+            }
+        }
+        db.execSQL("DROP INDEX IF EXISTS " + name);
+        db.execSQL(createStatement);
+    }
+
     public static NotesDatabase getInstance(@NonNull Context context) {
         if (instance == null) {
             instance = create(context.getApplicationContext());
@@ -78,20 +163,20 @@ public abstract class NotesDatabase extends RoomDatabase {
                         new Migration_19_20(context),
                         new Migration_20_21(),
                         new Migration_21_22(context),
-                        new Migration_22_23()
+                        new Migration_22_23(),
+                        new Migration_23_24(),
+                        new Migration_24_25(),
+                        new Migration_25_26(),
+                        new Migration_26_27(),
+                        new Migration_27_28(),
+                        new Migration_28_29(),
+                        new Migration_29_30(),
+                        new Migration_30_31(),
+                        new Migration_31_32()
                 )
                 .fallbackToDestructiveMigrationOnDowngrade()
                 .fallbackToDestructiveMigration()
-                .addCallback(new RoomDatabase.Callback() {
-                    @Override
-                    public void onCreate(@NonNull SupportSQLiteDatabase db) {
-                        super.onCreate(db);
-                        final String cleanUpStatement = "DELETE FROM CategoryOptions WHERE CategoryOptions.category NOT IN (SELECT Note.category FROM Note WHERE Note.accountId = CategoryOptions.accountId);";
-                        db.execSQL("CREATE TRIGGER TRG_CLEANUP_CATEGORIES_DEL AFTER DELETE ON Note BEGIN " + cleanUpStatement + " END;");
-                        db.execSQL("CREATE TRIGGER TRG_CLEANUP_CATEGORIES_UPD AFTER UPDATE ON Note BEGIN " + cleanUpStatement + " END;");
-                        Log.v(TAG, NotesDatabase.class.getSimpleName() + " created.");
-                    }
-                })
+                .addCallback(CALLBACK)
                 .allowMainThreadQueries() // FIXME Needed in BaseNoteFragment#saveNote()
                 .build();
     }
@@ -102,6 +187,10 @@ public abstract class NotesDatabase extends RoomDatabase {
 
     public abstract NoteDao getNoteDao();
 
+    public abstract OutboxDao getOutboxDao();
+
+    public abstract SyncCheckpointDao getSyncCheckpointDao();
+
     public abstract WidgetSingleNoteDao getWidgetSingleNoteDao();
 
     public abstract WidgetNotesListDao getWidgetNotesListDao();
@@ -8,6 +8,7 @@ import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.content.pm.ShortcutInfo;
 import android.content.pm.ShortcutManager;
+import android.database.Cursor;
 import android.graphics.drawable.Icon;
 import android.net.ConnectivityManager;
 import android.net.NetworkInfo;
@@ -23,6 +24,7 @@ import androidx.annotation.WorkerThread;
 import androidx.lifecycle.LiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.preference.PreferenceManager;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
 import com.nextcloud.android.sso.AccountImporter;
 import com.nextcloud.android.sso.exceptions.NextcloudFilesAppAccountNotFoundException;
@@ -31,25 +33,33 @@ import com.nextcloud.android.sso.helper.SingleAccountHelper;
 import com.nextcloud.android.sso.model.SingleSignOnAccount;
 
 import java.util.ArrayList;
-import java.util.Calendar;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import it.niedermann.android.sharedpreferences.SharedPreferenceIntLiveData;
 import it.niedermann.owncloud.notes.BuildConfig;
 import it.niedermann.owncloud.notes.R;
 import it.niedermann.owncloud.notes.edit.EditNoteActivity;
+import it.niedermann.owncloud.notes.persistence.dao.NotesPageQuery;
 import it.niedermann.owncloud.notes.persistence.entity.Account;
 import it.niedermann.owncloud.notes.persistence.entity.CategoryOptions;
 import it.niedermann.owncloud.notes.persistence.entity.CategoryWithNotesCount;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
 import it.niedermann.owncloud.notes.persistence.entity.NotesListWidgetData;
+import it.niedermann.owncloud.notes.persistence.entity.OutboxOperation;
+import it.niedermann.owncloud.notes.persistence.entity.SyncCheckpoint;
 import it.niedermann.owncloud.notes.persistence.entity.SingleNoteWidgetData;
 import it.niedermann.owncloud.notes.shared.model.ApiVersion;
 import it.niedermann.owncloud.notes.shared.model.Capabilities;
@@ -65,16 +75,17 @@ import it.niedermann.owncloud.notes.shared.util.ApiVersionUtil;
 import it.niedermann.owncloud.notes.shared.util.NoteUtil;
 import it.niedermann.owncloud.notes.shared.util.SSOUtil;
 import retrofit2.Call;
+import retrofit2.Response;
 
 import static android.os.Build.VERSION.SDK_INT;
 import static android.os.Build.VERSION_CODES.O;
 import static androidx.lifecycle.Transformations.distinctUntilChanged;
 import static androidx.lifecycle.Transformations.map;
+import static androidx.lifecycle.Transformations.switchMap;
 import static it.niedermann.owncloud.notes.edit.EditNoteActivity.ACTION_SHORTCUT;
 import static it.niedermann.owncloud.notes.shared.util.NoteUtil.generateNoteExcerpt;
 import static it.niedermann.owncloud.notes.widget.notelist.NoteListWidget.updateNoteListWidgets;
 import static it.niedermann.owncloud.notes.widget.singlenote.SingleNoteWidget.updateSingleNoteWidgets;
-import static java.util.stream.Collectors.toMap;
 
 @SuppressWarnings("UnusedReturnValue")
 public class NotesRepository {
@@ -85,7 +96,9 @@ public class NotesRepository {
 
     private final ApiProvider apiProvider;
     private final ExecutorService executor;
-    private final ExecutorService syncExecutor;
+    private final SyncScheduler syncScheduler;
+    private final SyncCoalescer syncCoalescer;
+    private final NoteContentLoader contentLoader;
     private final Context context;
     private final NotesDatabase db;
     private final String defaultNonEmptyTitle;
@@ -98,6 +111,7 @@ public class NotesRepository {
     private String syncOnlyOnWifiKey;
     private boolean syncOnlyOnWifi;
     private final MutableLiveData<Boolean> syncStatus = new MutableLiveData<>(false);
+    private final AtomicInteger runningSyncCount = new AtomicInteger(0);
     private final MutableLiveData<ArrayList<Throwable>> syncErrors = new MutableLiveData<>();
 
     /**
@@ -127,18 +141,23 @@ public class NotesRepository {
         }
     };
 
-    // current state of the synchronization
-    private final Map<Long, Boolean> syncActive = new ConcurrentHashMap<>();
-    private final Map<Long, Boolean> syncScheduled = new ConcurrentHashMap<>();
+    // number of pulled notes of the currently running synchronization
+    private final Map<Long, MutableLiveData<Integer>> pullProgress = new ConcurrentHashMap<>();
 
-    // list of callbacks for both parts of synchronization
+    // list of callbacks for both parts of synchronization, taken by the next synchronization which starts
     private final Map<Long, List<ISyncCallback>> callbacksPush = new ConcurrentHashMap<>();
     private final Map<Long, List<ISyncCallback>> callbacksPull = new ConcurrentHashMap<>();
 
+    // metadata of the notes by account, built when the notes list of an account is shown for the first time
+    private final Map<Long, NoteMetadataIndex> metadataIndices = new ConcurrentHashMap<>();
+    // incremented whenever the metadata indices have been dropped, so pages which have been served by them get read again
+    private final AtomicInteger metadataIndicesGeneration = new AtomicInteger(0);
+    private final MutableLiveData<Integer> metadataIndicesGeneration$ = new MutableLiveData<>(0);
+
 
     public static synchronized NotesRepository getInstance(@NonNull Context context) {
         if (instance == null) {
-            instance = new NotesRepository(context, NotesDatabase.getInstance(context.getApplicationContext()), Executors.newCachedThreadPool(), Executors.newSingleThreadExecutor(), ApiProvider.getInstance());
+            instance = new NotesRepository(context, NotesDatabase.getInstance(context.getApplicationContext()), Executors.newCachedThreadPool(), Executors.newFixedThreadPool(SyncScheduler.DEFAULT_MAX_CONCURRENT_ACCOUNTS), ApiProvider.getInstance());
         }
         return instance;
     }
@@ -147,7 +166,9 @@ public class NotesRepository {
         this.context = context.getApplicationContext();
         this.db = db;
         this.executor = executor;
-        this.syncExecutor = syncExecutor;
+        this.syncScheduler = new SyncScheduler(syncExecutor, SyncScheduler.DEFAULT_MAX_CONCURRENT_ACCOUNTS);
+        this.syncCoalescer = new SyncCoalescer(Executors.newSingleThreadScheduledExecutor(), SyncCoalescer.DEFAULT_WINDOW_MILLIS, this::scheduleSync);
+        this.contentLoader = new NoteContentLoader(executor, this::fetchNoteContent, NoteContentLoader.DEFAULT_MAX_PARALLEL_FETCHES);
         this.apiProvider = apiProvider;
         this.defaultNonEmptyTitle = NoteUtil.generateNonEmptyNoteTitle("", this.context);
         this.syncOnlyOnWifiKey = context.getApplicationContext().getResources().getString(R.string.pref_key_wifi_only);
@@ -182,6 +203,14 @@ public class NotesRepository {
 
     @WorkerThread
     public void deleteAccount(@NonNull Account account) {
+        syncCoalescer.discard(account.getId());
+        syncScheduler.cancel(account.getId());
+        contentLoader.discard(account.getId());
+        // Cancelled synchronizations which have not been started yet did not take any callbacks, they would otherwise wait forever
+        finishCallbacks(callbacksPush.remove(account.getId()));
+        finishCallbacks(callbacksPull.remove(account.getId()));
+        pullProgress.remove(account.getId());
+
         try {
             apiProvider.invalidateAPICache(AccountImporter.getSingleSignOnAccount(context, account.getAccountName()));
         } catch (NextcloudFilesAppAccountNotFoundException e) {
@@ -190,6 +219,7 @@ public class NotesRepository {
         }
 
         db.getAccountDao().deleteAccount(account);
+        metadataIndices.remove(account.getId());
     }
 
     public Account getAccountByName(String accountName) {
@@ -228,6 +258,19 @@ public class NotesRepository {
         db.getAccountDao().updateModified(id, modified);
     }
 
+    @Nullable
+    public SyncCheckpoint getSyncCheckpoint(long accountId) {
+        return db.getSyncCheckpointDao().getSyncCheckpoint(accountId);
+    }
+
+    public void saveSyncCheckpoint(@NonNull SyncCheckpoint syncCheckpoint) {
+        db.getSyncCheckpointDao().saveSyncCheckpoint(syncCheckpoint);
+    }
+
+    public void deleteSyncCheckpoint(long accountId) {
+        db.getSyncCheckpointDao().deleteSyncCheckpoint(accountId);
+    }
+
 
     // Notes
 
@@ -239,6 +282,87 @@ public class NotesRepository {
         return db.getNoteDao().getNoteById(id);
     }
 
+    /**
+     * Fetches the <code>content</code> of the given {@link Note} in case only its metadata has been synchronized yet, see {@link Note#isContentLoaded()}.
+     * The request is preferred over all other pending requests, because the user is waiting for it.
+     * Returns immediately while no synchronization is possible, e. g. because only Wi-Fi may be used.
+     *
+     * @return whether the <code>content</code> of the {@link Note} is available locally
+     */
+    @WorkerThread
+    public boolean ensureContentLoaded(long noteId) {
+        final Note note = db.getNoteDao().getNoteById(noteId);
+        if (note == null) {
+            return false;
+        } else if (note.isContentLoaded()) {
+            return true;
+        }
+        try {
+            return contentLoader.load(note.getAccountId(), noteId, NoteContentLoader.Priority.OPENED).get();
+        } catch (Exception e) {
+            Log.w(TAG, "Could not load content of note " + noteId, e);
+            return false;
+        }
+    }
+
+    /**
+     * Fetches the <code>content</code> of the given {@link Note}s with a higher priority than the background fetching after a synchronization,
+     * so the excerpts of the {@link Note}s which are currently visible in the list are filled in first.
+     */
+    @AnyThread
+    public void fetchContentOfVisibleNotes(@NonNull Collection<Long> noteIds) {
+        if (noteIds.isEmpty()) {
+            return;
+        }
+        executor.submit(() -> {
+            for (Long noteId : db.getNoteDao().filterIdsWithoutContent(noteIds)) {
+                final Note note = db.getNoteDao().getNoteById(noteId);
+                if (note != null) {
+                    contentLoader.load(note.getAccountId(), noteId, NoteContentLoader.Priority.VISIBLE);
+                }
+            }
+        });
+    }
+
+    /**
+     * Enqueues fetching the <code>content</code> of all {@link Note}s of the given {@link Account} which have only been synchronized with their metadata.
+     */
+    @WorkerThread
+    void fetchMissingContent(long accountId) {
+        final List<Long> noteIds = db.getNoteDao().getIdsWithoutContent(accountId);
+        if (!noteIds.isEmpty()) {
+            Log.i(TAG, "Fetching content of " + noteIds.size() + " notes of account " + accountId + " in the background");
+        }
+        for (Long noteId : noteIds) {
+            contentLoader.load(accountId, noteId, NoteContentLoader.Priority.BACKGROUND);
+        }
+    }
+
+    @WorkerThread
+    private boolean fetchNoteContent(long noteId) throws Exception {
+        final Note note = db.getNoteDao().getNoteById(noteId);
+        if (note == null || note.getRemoteId() == null) {
+            return false;
+        } else if (note.isContentLoaded()) {
+            return true;
+        }
+        final Account account = db.getAccountDao().getAccountById(note.getAccountId());
+        if (account == null) {
+            return false;
+        }
+        final SingleSignOnAccount ssoAccount = AccountImporter.getSingleSignOnAccount(context, account.getAccountName());
+        final Response<Note> response = apiProvider.getNotesAPI(context, ssoAccount, ApiVersionUtil.getPreferredApiVersion(account.getApiVersion()))
+                .getNote(note.getRemoteId())
+                .execute();
+        final Note remoteNote = response.body();
+        if (!response.isSuccessful() || remoteNote == null) {
+            throw new Exception("Could not fetch content of \"" + note.getTitle() + "\" (#" + noteId + "): " + response.message());
+        }
+        writeNote(noteId, () -> db.getNoteDao().updateContentIfNotLoaded(noteId, remoteNote.getContent(), generateNoteExcerpt(remoteNote.getContent(), note.getTitle())));
+        final Note updatedNote = db.getNoteDao().getNoteById(noteId);
+        return updatedNote != null && updatedNote.isContentLoaded();
+    }
+
     public LiveData<Integer> count$(long accountId) {
         return db.getNoteDao().count$(accountId);
     }
@@ -303,12 +427,131 @@ public class NotesRepository {
         return db.getNoteDao().searchCategoryLexicographically$(accountId, query, category);
     }
 
+    /**
+     * Observes the first page of the {@link Note}s matching the given criteria, see {@link NotesPageQuery}.
+     * Without a {@param query} the pages are served by the {@link NoteMetadataIndex} of the account, so switching the category or the sorting method does not query SQLite.
+     */
+    public LiveData<List<Note>> getFirstNotesPage$(long accountId, @NonNull NavigationCategory selectedCategory, @NonNull String query, @Nullable CategorySortingMethod sortingMethod, int pageSize) {
+        if (query.isEmpty()) {
+            return switchMap(metadataIndicesGeneration$, generation -> db.getInvalidationTracker().createLiveData(new String[]{"Note"}, false, () -> getMetadataIndex(accountId).getPage(selectedCategory, sortingMethod, null, pageSize)));
+        }
+        return db.getNoteDao().getNotesPage$(NotesPageQuery.create(accountId, selectedCategory, query, sortingMethod, null, pageSize));
+    }
+
+    /**
+     * Like {@link #getFirstNotesPage$(long, NavigationCategory, String, CategorySortingMethod, int)}, but it is already known that no {@link Note} matches.
+     * The first page is therefore emitted empty without querying, it is only queried after the {@link Note}s changed.
+     */
+    public LiveData<List<Note>> getFirstNotesPageKnownToBeEmpty$(long accountId, @NonNull NavigationCategory selectedCategory, @NonNull String query, @Nullable CategorySortingMethod sortingMethod, int pageSize) {
+        final SupportSQLiteQuery pageQuery = NotesPageQuery.create(accountId, selectedCategory, query, sortingMethod, null, pageSize);
+        final AtomicBoolean knownToBeEmpty = new AtomicBoolean(true);
+        return db.getInvalidationTracker().createLiveData(new String[]{"Note"}, false, () -> knownToBeEmpty.getAndSet(false)
+                ? Collections.emptyList()
+                : db.getNoteDao().getNotesPage(pageQuery));
+    }
+
+    /**
+     * Fetches the page of the {@link Note}s matching the given criteria which follows {@param lastOfPreviousPage}, see {@link NotesPageQuery}.
+     */
+    @WorkerThread
+    public List<Note> getNextNotesPage(long accountId, @NonNull NavigationCategory selectedCategory, @NonNull String query, @Nullable CategorySortingMethod sortingMethod, @NonNull Note lastOfPreviousPage, int pageSize) {
+        if (query.isEmpty()) {
+            return getMetadataIndex(accountId).getPage(selectedCategory, sortingMethod, lastOfPreviousPage, pageSize);
+        }
+        return db.getNoteDao().getNotesPage(NotesPageQuery.create(accountId, selectedCategory, query, sortingMethod, lastOfPreviousPage, pageSize));
+    }
+
+    /**
+     * @return the IDs of all {@link Note}s matching the given criteria, not only of the pages which have been loaded yet
+     */
+    @WorkerThread
+    public List<Long> getNoteIds(long accountId, @NonNull NavigationCategory selectedCategory, @NonNull String query) {
+        return db.getNoteDao().getNoteIds(NotesPageQuery.createIds(accountId, selectedCategory, query));
+    }
+
+    /**
+     * @return the {@link NoteMetadataIndex} of the given account, which is built in case it does not exist yet
+     */
+    @NonNull
+    @WorkerThread
+    NoteMetadataIndex getMetadataIndex(long accountId) {
+        final NoteMetadataIndex existingIndex = metadataIndices.get(accountId);
+        if (existingIndex != null) {
+            return existingIndex;
+        }
+        // Writes update the index in their transaction, so building it in a transaction ensures that no write happens between reading and registering it
+        return db.runInTransaction(() -> {
+            final long start = System.currentTimeMillis();
+            try (Cursor cursor = db.getNoteDao().getNoteMetadata(accountId)) {
+                final NoteMetadataIndex index = NoteMetadataIndex.build(accountId, cursor);
+                metadataIndices.put(accountId, index);
+                Log.i(TAG, "Indexed " + index.size() + " notes of account " + accountId + " in " + (System.currentTimeMillis() - start) + " ms, using about " + index.estimateMemoryUsage() / 1024 + " KiB");
+                return index;
+            }
+        });
+    }
+
+    /**
+     * Executes the {@param write} of the {@link Note} with the given {@param noteId} and applies the changed {@link Note} to the {@link NoteMetadataIndex} in the same transaction,
+     * so observers of the {@link Note} table, which are notified after the commit, never read an outdated index.
+     *
+     * @param write returns the number of changed rows
+     * @return the number of changed rows
+     */
+    @WorkerThread
+    private int writeNote(long noteId, @NonNull Callable<Integer> write) {
+        return runInIndexedTransaction(() -> {
+            final int rows = write.call();
+            if (rows > 0) {
+                updateMetadataIndex(noteId);
+            }
+            return rows;
+        });
+    }
+
+    /**
+     * Like {@link NotesDatabase#runInTransaction(Callable)}, but the {@link NoteMetadataIndex}es are dropped in case the outermost transaction fails,
+     * because they might contain changes which have been applied before the transaction has been rolled back.
+     * They are built again as soon as they are needed.
+     */
+    @WorkerThread
+    private <V> V runInIndexedTransaction(@NonNull Callable<V> body) {
+        final boolean outermost = !db.inTransaction();
+        boolean successful = false;
+        try {
+            final V result = db.runInTransaction(body);
+            successful = true;
+            return result;
+        } finally {
+            if (outermost && !successful && !metadataIndices.isEmpty()) {
+                Log.w(TAG, "Transaction has been rolled back, drop metadata indices of accounts " + metadataIndices.keySet());
+                metadataIndices.clear();
+                metadataIndicesGeneration$.postValue(metadataIndicesGeneration.incrementAndGet());
+            }
+        }
+    }
+
+    @WorkerThread
+    private void updateMetadataIndex(long noteId) {
+        if (metadataIndices.isEmpty()) {
+            return;
+        }
+        final Note note = db.getNoteDao().getNoteMetadataById(noteId);
+        for (NoteMetadataIndex index : metadataIndices.values()) {
+            if (note != null && note.getAccountId() == index.getAccountId()) {
+                index.put(note);
+            } else {
+                index.remove(noteId);
+            }
+        }
+    }
+
     public LiveData<List<CategoryWithNotesCount>> getCategories$(Long accountId) {
         return db.getNoteDao().getCategories$(accountId);
     }
 
     public void updateRemoteId(long id, Long remoteId) {
-        db.getNoteDao().updateRemoteId(id, remoteId);
+        writeNote(id, () -> db.getNoteDao().updateRemoteId(id, remoteId));
     }
 
     public Long getLocalIdByRemoteId(long accountId, long remoteId) {
@@ -319,24 +562,61 @@ public class NotesRepository {
         return db.getNoteDao().getLocalModifiedNotes(accountId);
     }
 
+    /**
+     * @return the {@link OutboxOperation.Type}s of all pending local changes of the given account by the local ID of the {@link Note}, without loading any {@link Note}
+     */
+    @NonNull
+    @WorkerThread
+    public Map<Long, Set<OutboxOperation.Type>> getPendingOperations(long accountId) {
+        final Map<Long, Set<OutboxOperation.Type>> pendingOperations = new LinkedHashMap<>();
+        for (OutboxOperation operation : db.getOutboxDao().getOperations(accountId)) {
+            Set<OutboxOperation.Type> types = pendingOperations.get(operation.getNoteId());
+            if (types == null) {
+                types = EnumSet.noneOf(OutboxOperation.Type.class);
+                pendingOperations.put(operation.getNoteId(), types);
+            }
+            types.add(operation.getType());
+        }
+        return pendingOperations;
+    }
+
+    public Long getRemoteId(long noteId) {
+        return db.getNoteDao().getRemoteId(noteId);
+    }
+
+    /**
+     * Executes all database operations of the given {@link Runnable} in one transaction.
+     * Observers will be notified only once after the transaction has been committed.
+     */
+    @WorkerThread
+    public void runInTransaction(@NonNull Runnable runnable) {
+        runInIndexedTransaction(() -> {
+            runnable.run();
+            return null;
+        });
+    }
+
     public void deleteByNoteId(long id, DBStatus forceDBStatus) {
-        db.getNoteDao().deleteByNoteId(id, forceDBStatus);
+        writeNote(id, () -> db.getNoteDao().deleteByNoteId(id, forceDBStatus));
     }
 
     /**
      * Please note, that db.updateNote() realized an optimistic conflict resolution, which is required for parallel changes of this Note from the UI.
      */
     public int updateIfNotModifiedLocallyDuringSync(long noteId, Long targetModified, String targetTitle, boolean targetFavorite, String targetETag, String targetContent, String targetExcerpt, String contentBeforeSyncStart, String categoryBeforeSyncStart, boolean favoriteBeforeSyncStart) {
-        return db.getNoteDao().updateIfNotModifiedLocallyDuringSync(noteId, targetModified, targetTitle, targetFavorite, targetETag, targetContent, targetExcerpt, contentBeforeSyncStart, categoryBeforeSyncStart, favoriteBeforeSyncStart);
+        return writeNote(noteId, () -> db.getNoteDao().updateIfNotModifiedLocallyDuringSync(noteId, targetModified, targetTitle, targetFavorite, targetETag, targetContent, targetExcerpt, contentBeforeSyncStart, categoryBeforeSyncStart, favoriteBeforeSyncStart));
     }
 
     public int updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(long id, Long modified, String title, boolean favorite, String category, String eTag, String content, String excerpt) {
-        return db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(id, modified, title, favorite, category, eTag, content, excerpt);
+        return writeNote(id, () -> db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(id, modified, title, favorite, category, eTag, content, excerpt));
+    }
+
+    public int updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(long id, Long modified, String title, boolean favorite, String category, String eTag) {
+        return writeNote(id, () -> db.getNoteDao().updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(id, modified, title, favorite, category, eTag));
     }
 
     public long countUnsynchronizedNotes(long accountId) {
-        final Long unsynchronizedNotesCount = db.getNoteDao().countUnsynchronizedNotes(accountId);
-        return unsynchronizedNotesCount == null ? 0 : unsynchronizedNotesCount;
+        return db.getOutboxDao().countNotes(accountId);
     }
 
 
@@ -382,7 +662,7 @@ public class NotesRepository {
         executor.submit(() -> ret.postValue(addNote(account.getId(), entity)));
         return map(ret, newNote -> {
             notifyWidgets();
-            scheduleSync(account, true);
+            scheduleCoalescedSync(account, true);
             return newNote;
         });
     }
@@ -401,7 +681,12 @@ public class NotesRepository {
         note.setStatus(note.getId() > 0 ? DBStatus.LOCAL_EDITED : DBStatus.VOID);
         note.setAccountId(accountId);
         note.setExcerpt(generateNoteExcerpt(note.getContent(), note.getTitle()));
-        return db.getNoteDao().getNoteById(db.getNoteDao().addNote(note));
+        final long id = runInIndexedTransaction(() -> {
+            final long noteId = db.getNoteDao().addNote(note);
+            updateMetadataIndex(noteId);
+            return noteId;
+        });
+        return db.getNoteDao().getNoteById(id);
     }
 
     @MainThread
@@ -409,30 +694,33 @@ public class NotesRepository {
         final Note fullNote = new Note(null, note.getModified(), note.getTitle(), note.getContent(), note.getCategory(), note.getFavorite(), null);
         deleteNoteAndSync(account, note.getId());
         return map(addNoteAndSync(account, fullNote), (createdNote) -> {
-            db.getNoteDao().updateStatus(createdNote.getId(), DBStatus.LOCAL_EDITED);
+            writeNote(createdNote.getId(), () -> db.getNoteDao().updateStatus(createdNote.getId(), DBStatus.LOCAL_EDITED));
             createdNote.setStatus(DBStatus.LOCAL_EDITED);
             return createdNote;
         });
     }
 
     /**
-     * @return a {@link Map} of remote IDs as keys and local IDs as values of all {@link Note}s of
+     * @return a {@link LongLongMap} of remote IDs as keys and local IDs as values of all {@link Note}s of
      * the given {@param accountId} which are not {@link DBStatus#LOCAL_DELETED}
      */
     @NonNull
     @WorkerThread
-    public Map<Long, Long> getIdMap(long accountId) {
-        return db.getNoteDao()
-                .getRemoteIdAndId(accountId)
-                .stream()
-                .collect(toMap(Note::getRemoteId, Note::getId));
+    LongLongMap getIdMap(long accountId) {
+        try (Cursor cursor = db.getNoteDao().getRemoteIdAndId(accountId)) {
+            final LongLongMap idMap = new LongLongMap(cursor.getCount());
+            while (cursor.moveToNext()) {
+                idMap.put(cursor.getLong(0), cursor.getLong(1));
+            }
+            return idMap;
+        }
     }
 
     @AnyThread
     public void toggleFavoriteAndSync(Account account, long noteId) {
         executor.submit(() -> {
-            db.getNoteDao().toggleFavorite(noteId);
-            scheduleSync(account, true);
+            writeNote(noteId, () -> db.getNoteDao().toggleFavorite(noteId));
+            scheduleCoalescedSync(account, true);
         });
     }
 
@@ -448,9 +736,8 @@ public class NotesRepository {
     @AnyThread
     public void setCategory(@NonNull Account account, long noteId, @NonNull String category) {
         executor.submit(() -> {
-            db.getNoteDao().updateStatus(noteId, DBStatus.LOCAL_EDITED);
-            db.getNoteDao().updateCategory(noteId, category);
-            scheduleSync(account, true);
+            writeNote(noteId, () -> db.getNoteDao().updateCategoryAndStatus(noteId, category));
+            scheduleCoalescedSync(account, true);
         });
     }
 
@@ -485,16 +772,16 @@ public class NotesRepository {
                     title = oldNote.getTitle();
                 }
             }
-            newNote = new Note(oldNote.getId(), remoteId, Calendar.getInstance(), title, newContent, oldNote.getCategory(), oldNote.getFavorite(), oldNote.getETag(), DBStatus.LOCAL_EDITED, localAccount.getId(), generateNoteExcerpt(newContent, title), oldNote.getScrollY());
+            newNote = new Note(oldNote.getId(), remoteId, System.currentTimeMillis(), title, newContent, oldNote.getCategory(), oldNote.getFavorite(), oldNote.getETag(), DBStatus.LOCAL_EDITED, localAccount.getId(), generateNoteExcerpt(newContent, title), oldNote.getScrollY());
         }
-        int rows = db.getNoteDao().updateNote(newNote);
+        int rows = writeNote(newNote.getId(), () -> db.getNoteDao().updateNote(newNote));
         // if data was changed, set new status and schedule sync (with callback); otherwise invoke callback directly.
         if (rows > 0) {
             notifyWidgets();
             if (callback != null) {
                 addCallbackPush(localAccount, callback);
             }
-            scheduleSync(localAccount, true);
+            scheduleCoalescedSync(localAccount, true);
             return newNote;
         } else {
             if (callback != null) {
@@ -513,9 +800,9 @@ public class NotesRepository {
     @AnyThread
     public void deleteNoteAndSync(Account account, long id) {
         executor.submit(() -> {
-            db.getNoteDao().updateStatus(id, DBStatus.LOCAL_DELETED);
+            writeNote(id, () -> db.getNoteDao().updateStatus(id, DBStatus.LOCAL_DELETED));
             notifyWidgets();
-            scheduleSync(account, true);
+            scheduleCoalescedSync(account, true);
 
             if (SDK_INT >= O) {
                 ShortcutManager shortcutManager = context.getSystemService(ShortcutManager.class);
@@ -741,10 +1028,11 @@ public class NotesRepository {
             callback.onScheduled();
             callback.onFinish();
         } else {
-            if (!callbacksPush.containsKey(account.getId())) {
-                callbacksPush.put(account.getId(), new ArrayList<>());
-            }
-            Objects.requireNonNull(callbacksPush.get(account.getId())).add(callback);
+            callbacksPush.compute(account.getId(), (accountId, callbacks) -> {
+                final List<ISyncCallback> list = callbacks == null ? new CopyOnWriteArrayList<>() : callbacks;
+                list.add(callback);
+                return list;
+            });
         }
     }
 
@@ -762,16 +1050,30 @@ public class NotesRepository {
             callback.onScheduled();
             callback.onFinish();
         } else {
-            if (!callbacksPull.containsKey(account.getId())) {
-                callbacksPull.put(account.getId(), new ArrayList<>());
-            }
-            Objects.requireNonNull(callbacksPull.get(account.getId())).add(callback);
+            callbacksPull.compute(account.getId(), (accountId, callbacks) -> {
+                final List<ISyncCallback> list = callbacks == null ? new CopyOnWriteArrayList<>() : callbacks;
+                list.add(callback);
+                return list;
+            });
+        }
+    }
+
+    /**
+     * Schedules a synchronization like {@link #scheduleSync(Account, boolean)}, but merges it with further requests for the same {@link Account} which arrive shortly after.
+     * Use this for changes which tend to come in bursts, like autosaving or changing multiple {@link Note}s at once.
+     */
+    private void scheduleCoalescedSync(@Nullable Account account, boolean onlyLocalChanges) {
+        if (account == null) {
+            scheduleSync(null, onlyLocalChanges);
+        } else {
+            syncCoalescer.request(account, onlyLocalChanges);
         }
     }
 
     /**
      * Schedules a synchronization and start it directly, if the network is connected and no
-     * synchronization is currently running.
+     * synchronization of this {@link Account} is currently running.
+     * The request is dropped in case a synchronization of this {@link Account} which has not been started yet covers it already.
      *
      * @param onlyLocalChanges Whether to only push local changes to the server or to also load the whole list of notes from the server.
      */
@@ -779,26 +1081,34 @@ public class NotesRepository {
         if (account == null) {
             Log.i(TAG, SingleSignOnAccount.class.getSimpleName() + " is null. Is this a local account?");
         } else {
-            if (syncActive.get(account.getId()) == null) {
-                syncActive.put(account.getId(), false);
-            }
-            Log.d(TAG, "Sync requested (" + (onlyLocalChanges ? "onlyLocalChanges" : "full") + "; " + (Boolean.TRUE.equals(syncActive.get(account.getId())) ? "sync active" : "sync NOT active") + ") ...");
-            if (isSyncPossible() && (!Boolean.TRUE.equals(syncActive.get(account.getId())) || onlyLocalChanges)) {
-                syncActive.put(account.getId(), true);
+            Log.d(TAG, "Sync requested (" + (onlyLocalChanges ? "onlyLocalChanges" : "full") + ") ...");
+            if (!isSyncPossible()) {
+                Log.d(TAG, "... do nothing");
+                notifyScheduled(account);
+            } else if (syncScheduler.hasPending(account.getId(), sync -> onlyLocalChanges || (sync instanceof NotesServerSyncTask && !((NotesServerSyncTask) sync).isOnlyLocalChanges()))) {
+                // Callbacks are attached when a synchronization starts, so the pending one will also notify the callbacks of this request
+                Log.d(TAG, "... scheduled");
+                discardCoalescedSync(account, onlyLocalChanges);
+                notifyScheduled(account);
+            } else {
                 try {
-                    Log.d(TAG, "... starting now");
+                    Log.d(TAG, "... starting as soon as possible");
                     final NotesServerSyncTask syncTask = new NotesServerSyncTask(context, this, account, onlyLocalChanges, apiProvider) {
                         @Override
                         void onPreExecute() {
+                            runningSyncCount.incrementAndGet();
                             syncStatus.postValue(true);
-                            if (!syncScheduled.containsKey(localAccount.getId()) || syncScheduled.get(localAccount.getId()) == null) {
-                                syncScheduled.put(localAccount.getId(), false);
-                            }
-                            if (!onlyLocalChanges && Boolean.TRUE.equals(syncScheduled.get(localAccount.getId()))) {
-                                syncScheduled.put(localAccount.getId(), false);
+                            addCallbacks(localAccount, callbacksPush.remove(localAccount.getId()));
+                            if (!onlyLocalChanges) {
+                                addCallbacks(localAccount, callbacksPull.remove(localAccount.getId()));
                             }
                         }
 
+                        @Override
+                        void onPullProgress(int pulledNotes) {
+                            getPullProgressLiveData(localAccount.getId()).postValue(pulledNotes);
+                        }
+
                         @Override
                         void onPostExecute(SyncResultStatus status) {
                             for (Throwable e : exceptions) {
@@ -807,58 +1117,47 @@ public class NotesRepository {
                             if (!status.pullSuccessful || !status.pushSuccessful) {
                                 syncErrors.postValue(exceptions);
                             }
-                            syncActive.put(localAccount.getId(), false);
                             // notify callbacks
-                            if (callbacks.containsKey(localAccount.getId()) && callbacks.get(localAccount.getId()) != null) {
-                                for (ISyncCallback callback : Objects.requireNonNull(callbacks.get(localAccount.getId()))) {
-                                    callback.onFinish();
-                                }
-                            }
+                            finishCallbacks(callbacks.get(localAccount.getId()));
                             notifyWidgets();
                             updateDynamicShortcuts(localAccount.getId());
-                            // start next sync if scheduled meanwhile
-                            if (syncScheduled.containsKey(localAccount.getId()) && syncScheduled.get(localAccount.getId()) != null && Boolean.TRUE.equals(syncScheduled.get(localAccount.getId()))) {
-                                scheduleSync(localAccount, false);
-                            }
-                            syncStatus.postValue(false);
+                            Log.v(TAG, "Synchronization metrics: " + syncScheduler.getMetrics());
+                            syncStatus.postValue(runningSyncCount.decrementAndGet() > 0);
                         }
                     };
-                    syncTask.addCallbacks(account, callbacksPush.get(account.getId()));
-                    callbacksPush.put(account.getId(), new ArrayList<>());
-                    if (!onlyLocalChanges) {
-                        syncTask.addCallbacks(account, callbacksPull.get(account.getId()));
-                        callbacksPull.put(account.getId(), new ArrayList<>());
-                    }
-                    syncExecutor.submit(syncTask);
+                    syncScheduler.submit(account.getId(), syncTask);
+                    discardCoalescedSync(account, onlyLocalChanges);
                 } catch (NextcloudFilesAppAccountNotFoundException e) {
                     Log.e(TAG, "... Could not find " + SingleSignOnAccount.class.getSimpleName() + " for account name " + account.getAccountName());
                     e.printStackTrace();
                 }
-            } else if (!onlyLocalChanges) {
-                Log.d(TAG, "... scheduled");
-                syncScheduled.put(account.getId(), true);
-                if (callbacksPush.containsKey(account.getId()) && callbacksPush.get(account.getId()) != null) {
-                    final List<ISyncCallback> callbacks = callbacksPush.get(account.getId());
-                    if (callbacks != null) {
-                        for (ISyncCallback callback : callbacks) {
-                            callback.onScheduled();
-                        }
-                    } else {
-                        Log.w(TAG, "List of push-callbacks was set for account \"" + account.getAccountName() + "\" but it was null");
-                    }
-                }
-            } else {
-                Log.d(TAG, "... do nothing");
-                if (callbacksPush.containsKey(account.getId()) && callbacksPush.get(account.getId()) != null) {
-                    final List<ISyncCallback> callbacks = callbacksPush.get(account.getId());
-                    if (callbacks != null) {
-                        for (ISyncCallback callback : callbacks) {
-                            callback.onScheduled();
-                        }
-                    } else {
-                        Log.w(TAG, "List of push-callbacks was set for account \"" + account.getAccountName() + "\" but it was null");
-                    }
-                }
+            }
+        }
+    }
+
+    /**
+     * Drops the coalesced request of the given {@link Account} once a full synchronization has been submitted, because it pushes the local changes anyway.
+     * Must not be called before, otherwise the local changes would not be pushed while no synchronization is possible.
+     */
+    private void discardCoalescedSync(@NonNull Account account, boolean onlyLocalChanges) {
+        if (!onlyLocalChanges) {
+            syncCoalescer.discard(account.getId());
+        }
+    }
+
+    private void notifyScheduled(@NonNull Account account) {
+        final List<ISyncCallback> callbacks = callbacksPush.get(account.getId());
+        if (callbacks != null) {
+            for (ISyncCallback callback : callbacks) {
+                callback.onScheduled();
+            }
+        }
+    }
+
+    private static void finishCallbacks(@Nullable List<ISyncCallback> callbacks) {
+        if (callbacks != null) {
+            for (ISyncCallback callback : callbacks) {
+                callback.onFinish();
             }
         }
     }
@@ -900,6 +1199,8 @@ public class NotesRepository {
             networkConnected = false;
             isSyncPossible = false;
         }
+        // Fetching the content of notes respects the "sync only on Wi-Fi" setting like synchronizations do
+        contentLoader.setHeld(!isSyncPossible);
     }
 
     @NonNull
@@ -912,6 +1213,20 @@ public class NotesRepository {
         return this.syncErrors;
     }
 
+    /**
+     * @return the number of {@link Note}s which have been pulled by the current synchronization of the given {@link Account}.
+     * A resumed synchronization starts with the number of {@link Note}s which have been pulled before it has been interrupted.
+     */
+    @NonNull
+    public LiveData<Integer> getPullProgress$(long accountId) {
+        return distinctUntilChanged(getPullProgressLiveData(accountId));
+    }
+
+    @NonNull
+    private MutableLiveData<Integer> getPullProgressLiveData(long accountId) {
+        return pullProgress.computeIfAbsent(accountId, id -> new MutableLiveData<>(0));
+    }
+
     public Call<NotesSettings> getServerSettings(@NonNull SingleSignOnAccount ssoAccount, @Nullable ApiVersion preferredApiVersion) {
         return ApiProvider.getInstance().getNotesAPI(context, ssoAccount, preferredApiVersion).getSettings();
     }
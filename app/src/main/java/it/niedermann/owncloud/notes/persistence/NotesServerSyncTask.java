@@ -1,12 +1,13 @@
 package it.niedermann.owncloud.notes.persistence;
 
 import android.content.Context;
+import android.os.SystemClock;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 
 import com.nextcloud.android.sso.AccountImporter;
-import com.nextcloud.android.sso.api.ParsedResponse;
 import com.nextcloud.android.sso.exceptions.NextcloudApiNotRespondingException;
 import com.nextcloud.android.sso.exceptions.NextcloudFilesAppAccountNotFoundException;
 import com.nextcloud.android.sso.exceptions.NextcloudHttpRequestFailedException;
@@ -16,16 +17,23 @@ import com.nextcloud.android.sso.model.SingleSignOnAccount;
 import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
+import java.util.EnumSet;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import it.niedermann.owncloud.notes.BuildConfig;
 import it.niedermann.owncloud.notes.persistence.entity.Account;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.OutboxOperation;
+import it.niedermann.owncloud.notes.persistence.entity.SyncCheckpoint;
 import it.niedermann.owncloud.notes.persistence.sync.NotesAPI;
+import it.niedermann.owncloud.notes.persistence.sync.StreamingNotesResponse;
 import it.niedermann.owncloud.notes.shared.model.DBStatus;
 import it.niedermann.owncloud.notes.shared.model.ISyncCallback;
 import it.niedermann.owncloud.notes.shared.model.SyncResultStatus;
@@ -34,6 +42,7 @@ import retrofit2.Response;
 
 import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_DELETED;
 import static it.niedermann.owncloud.notes.shared.util.NoteUtil.generateNoteExcerpt;
+import static java.net.HttpURLConnection.HTTP_BAD_REQUEST;
 import static java.net.HttpURLConnection.HTTP_NOT_FOUND;
 import static java.net.HttpURLConnection.HTTP_NOT_MODIFIED;
 import static java.net.HttpURLConnection.HTTP_UNAVAILABLE;
@@ -51,6 +60,21 @@ abstract class NotesServerSyncTask extends Thread {
     private static final String HEADER_KEY_ETAG = "ETag";
     private static final String HEADER_KEY_LAST_MODIFIED = "Last-Modified";
 
+    /**
+     * Maximum number of {@link Note}s which are written to the database in a single transaction while pulling remote changes
+     */
+    private static final int PULL_BATCH_SIZE = 100;
+
+    /**
+     * Maximum number of {@link Note}s which are requested at once if the server supports chunked pulls
+     */
+    static final int PULL_CHUNK_SIZE = 1_000;
+
+    /**
+     * Default maximum number of {@link Note}s which are pushed to the server at the same time
+     */
+    static final int DEFAULT_MAX_PARALLEL_PUSHES = 4;
+
     private NotesAPI notesAPI;
     @NonNull
     private final ApiProvider apiProvider;
@@ -63,23 +87,51 @@ abstract class NotesServerSyncTask extends Thread {
     @NonNull
     private final SingleSignOnAccount ssoAccount;
     private final boolean onlyLocalChanges;
+    private final int maxParallelPushes;
     @NonNull
     protected final Map<Long, List<ISyncCallback>> callbacks = new HashMap<>();
     @NonNull
     protected final ArrayList<Throwable> exceptions = new ArrayList<>();
+    /**
+     * Number of {@link Note}s which have been written to the database by the current pull, including those of an interrupted previous attempt
+     */
+    private int pulledNotes = 0;
 
     NotesServerSyncTask(@NonNull Context context, @NonNull NotesRepository repo, @NonNull Account localAccount, boolean onlyLocalChanges, @NonNull ApiProvider apiProvider) throws NextcloudFilesAppAccountNotFoundException {
+        this(context, repo, localAccount, onlyLocalChanges, apiProvider, DEFAULT_MAX_PARALLEL_PUSHES);
+    }
+
+    /**
+     * @param maxParallelPushes maximum number of {@link Note}s of this {@link Account} which are pushed to the server at the same time
+     */
+    NotesServerSyncTask(@NonNull Context context, @NonNull NotesRepository repo, @NonNull Account localAccount, boolean onlyLocalChanges, @NonNull ApiProvider apiProvider, int maxParallelPushes) throws NextcloudFilesAppAccountNotFoundException {
         super(TAG);
+        if (maxParallelPushes < 1) {
+            throw new IllegalArgumentException("maxParallelPushes must be at least 1 but was " + maxParallelPushes);
+        }
         this.context = context;
         this.repo = repo;
         this.localAccount = localAccount;
         this.ssoAccount = AccountImporter.getSingleSignOnAccount(context, localAccount.getAccountName());
         this.onlyLocalChanges = onlyLocalChanges;
         this.apiProvider = apiProvider;
+        this.maxParallelPushes = maxParallelPushes;
     }
 
-    void addCallbacks(Account account, List<ISyncCallback> callbacks) {
-        this.callbacks.put(account.getId(), callbacks);
+    void addCallbacks(Account account, @Nullable List<ISyncCallback> callbacks) {
+        if (callbacks == null) {
+            return;
+        }
+        final List<ISyncCallback> existingCallbacks = this.callbacks.get(account.getId());
+        if (existingCallbacks == null) {
+            this.callbacks.put(account.getId(), new ArrayList<>(callbacks));
+        } else {
+            existingCallbacks.addAll(callbacks);
+        }
+    }
+
+    boolean isOnlyLocalChanges() {
+        return onlyLocalChanges;
     }
 
     @Override
@@ -105,98 +157,250 @@ abstract class NotesServerSyncTask extends Thread {
 
     abstract void onPostExecute(SyncResultStatus status);
 
+    /**
+     * Called after each batch of pulled {@link Note}s has been committed to the database.
+     *
+     * @param pulledNotes total number of {@link Note}s which have been pulled so far
+     */
+    void onPullProgress(int pulledNotes) {
+        // Nothing to do by default
+    }
+
     /**
      * Push local changes: for each locally created/edited/deleted Note, use NotesClient in order to push the changed to the server.
+     * Up to {@link #maxParallelPushes} {@link Note}s are pushed at the same time, a failure of one {@link Note} does not affect the others.
      */
     private boolean pushLocalChanges() {
         Log.d(TAG, "pushLocalChanges()");
 
         boolean success = true;
-        final List<Note> notes = repo.getLocalModifiedNotes(localAccount.getId());
-        for (Note note : notes) {
-            Log.d(TAG, "   Process Local Note: " + (BuildConfig.DEBUG ? note : note.getTitle()));
-            try {
-                Note remoteNote;
-                switch (note.getStatus()) {
-                    case LOCAL_EDITED:
-                        Log.v(TAG, "   ...create/edit");
-                        if (note.getRemoteId() != null) {
-                            Log.v(TAG, "   ...Note has remoteId → try to edit");
-                            final Response<Note> editResponse = notesAPI.editNote(note).execute();
-                            if (editResponse.isSuccessful()) {
-                                remoteNote = editResponse.body();
-                                if (remoteNote == null) {
-                                    Log.e(TAG, "   ...Tried to edit \"" + note.getTitle() + "\" (#" + note.getId() + ") but the server response was null.");
-                                    throw new Exception("Server returned null after editing \"" + note.getTitle() + "\" (#" + note.getId() + ")");
-                                }
-                            } else if (editResponse.code() == HTTP_NOT_FOUND) {
-                                Log.v(TAG, "   ...Note does no longer exist on server → recreate");
-                                final Response<Note> createResponse = notesAPI.createNote(note).execute();
-                                if (createResponse.isSuccessful()) {
-                                    remoteNote = createResponse.body();
-                                    if (remoteNote == null) {
-                                        Log.e(TAG, "   ...Tried to recreate \"" + note.getTitle() + "\" (#" + note.getId() + ") but the server response was null.");
-                                        throw new Exception("Server returned null after recreating \"" + note.getTitle() + "\" (#" + note.getId() + ")");
-                                    }
-                                } else {
-                                    throw new Exception(createResponse.message());
-                                }
-                            } else {
-                                throw new Exception(editResponse.message());
-                            }
-                        } else {
-                            Log.v(TAG, "   ...Note does not have a remoteId yet → create");
-                            final Response<Note> createResponse = notesAPI.createNote(note).execute();
-                            if (createResponse.isSuccessful()) {
-                                remoteNote = createResponse.body();
-                                if (remoteNote == null) {
-                                    Log.e(TAG, "   ...Tried to create \"" + note.getTitle() + "\" (#" + note.getId() + ") but the server response was null.");
-                                    throw new Exception("Server returned null after creating \"" + note.getTitle() + "\" (#" + note.getId() + ")");
-                                }
-                                repo.updateRemoteId(note.getId(), remoteNote.getRemoteId());
-                            } else {
-                                throw new Exception(createResponse.message());
-                            }
-                        }
-                        // Please note, that db.updateNote() realized an optimistic conflict resolution, which is required for parallel changes of this Note from the UI.
-                        repo.updateIfNotModifiedLocallyDuringSync(note.getId(), remoteNote.getModified().getTimeInMillis(), remoteNote.getTitle(), remoteNote.getFavorite(), remoteNote.getETag(), remoteNote.getContent(), generateNoteExcerpt(remoteNote.getContent(), remoteNote.getTitle()), note.getContent(), note.getCategory(), note.getFavorite());
-                        break;
-                    case LOCAL_DELETED:
-                        if (note.getRemoteId() == null) {
-                            Log.v(TAG, "   ...delete (only local, since it has never been synchronized)");
-                        } else {
-                            Log.v(TAG, "   ...delete (from server and local)");
-                            final Response<Void> deleteResponse = notesAPI.deleteNote(note.getRemoteId()).execute();
-                            if (!deleteResponse.isSuccessful()) {
-                                if (deleteResponse.code() == HTTP_NOT_FOUND) {
-                                    Log.v(TAG, "   ...delete (note has already been deleted remotely)");
-                                } else {
-                                    throw new Exception(deleteResponse.message());
-                                }
-                            }
+        final Map<Long, Set<OutboxOperation.Type>> pendingOperations = repo.getPendingOperations(localAccount.getId());
+        if (pendingOperations.isEmpty()) {
+            return true;
+        }
+        final ExecutorService pushExecutor = Executors.newFixedThreadPool(Math.min(maxParallelPushes, pendingOperations.size()));
+        try {
+            final List<Future<?>> pushes = new ArrayList<>(pendingOperations.size());
+            for (Map.Entry<Long, Set<OutboxOperation.Type>> entry : pendingOperations.entrySet()) {
+                pushes.add(pushExecutor.submit(() -> {
+                    pushLocalNote(entry.getKey(), entry.getValue());
+                    return null;
+                }));
+            }
+            for (Future<?> push : pushes) {
+                try {
+                    push.get();
+                } catch (ExecutionException executionException) {
+                    final Throwable e = executionException.getCause() == null ? executionException : executionException.getCause();
+                    if (e instanceof NextcloudHttpRequestFailedException && ((NextcloudHttpRequestFailedException) e).getStatusCode() == HTTP_NOT_MODIFIED) {
+                        Log.d(TAG, "Server returned HTTP Status Code 304 - Not Modified");
+                    } else {
+                        if (e instanceof TokenMismatchException) {
+                            apiProvider.invalidateAPICache(ssoAccount);
                         }
-                        // Please note, that db.deleteNote() realizes an optimistic conflict resolution, which is required for parallel changes of this Note from the UI.
-                        repo.deleteByNoteId(note.getId(), LOCAL_DELETED);
-                        break;
-                    default:
-                        throw new IllegalStateException("Unknown State of Note " + note + ": " + note.getStatus());
+                        exceptions.add(e);
+                        success = false;
+                    }
+                } catch (InterruptedException e) {
+                    Log.w(TAG, "Pushing local changes has been interrupted");
+                    Thread.currentThread().interrupt();
+                    exceptions.add(e);
+                    return false;
+                }
+            }
+        } finally {
+            pushExecutor.shutdownNow();
+        }
+        return success;
+    }
+
+    /**
+     * Pushes a single locally created/edited/deleted {@link Note} and applies the response of the server.
+     * The {@link Note} itself is only loaded in case it has not been deleted.
+     * Might be called in parallel for different {@link Note}s.
+     *
+     * @param operations the pending {@link OutboxOperation}s of the {@link Note}
+     */
+    private void pushLocalNote(long noteId, @NonNull Set<OutboxOperation.Type> operations) throws Exception {
+        Log.d(TAG, "   Process Local Note #" + noteId + ": " + operations);
+        if (operations.contains(OutboxOperation.Type.DELETE)) {
+            final Long remoteId = repo.getRemoteId(noteId);
+            if (remoteId == null) {
+                Log.v(TAG, "   ...delete (only local, since it has never been synchronized)");
+            } else {
+                Log.v(TAG, "   ...delete (from server and local)");
+                final Response<Void> deleteResponse = notesAPI.deleteNote(remoteId).execute();
+                if (!deleteResponse.isSuccessful()) {
+                    if (deleteResponse.code() == HTTP_NOT_FOUND) {
+                        Log.v(TAG, "   ...delete (note has already been deleted remotely)");
+                    } else {
+                        throw new Exception(deleteResponse.message());
+                    }
+                }
+            }
+            // Please note, that db.deleteNote() realizes an optimistic conflict resolution, which is required for parallel changes of this Note from the UI.
+            repo.deleteByNoteId(noteId, LOCAL_DELETED);
+            return;
+        }
+
+        Note note = repo.getNoteById(noteId);
+        if (note == null || note.getStatus() != DBStatus.LOCAL_EDITED) {
+            Log.w(TAG, "   ...Note #" + noteId + " has pending operations but is not " + DBStatus.LOCAL_EDITED + " (anymore): " + note);
+            return;
+        }
+        Log.v(TAG, "   ..." + (BuildConfig.DEBUG ? note : note.getTitle()));
+        final Note remoteNote;
+        Log.v(TAG, "   ...create/edit");
+        if (note.getRemoteId() != null) {
+            Log.v(TAG, "   ...Note has remoteId → try to edit");
+            Set<OutboxOperation.Type> changes = operations;
+            if (!note.isContentLoaded()) {
+                // Only the metadata is known locally, pushing the content would override the remote one with an outdated one
+                changes = EnumSet.noneOf(OutboxOperation.Type.class);
+                changes.addAll(operations);
+                changes.remove(OutboxOperation.Type.CONTENT);
+                if (changes.isEmpty() || changes.contains(OutboxOperation.Type.FULL)) {
+                    note = requireContent(note);
+                    changes = operations;
                 }
-            } catch (NextcloudHttpRequestFailedException e) {
-                if (e.getStatusCode() == HTTP_NOT_MODIFIED) {
-                    Log.d(TAG, "Server returned HTTP Status Code 304 - Not Modified");
+            }
+            final Response<Note> editResponse = notesAPI.editNote(note, changes).execute();
+            if (editResponse.isSuccessful()) {
+                remoteNote = editResponse.body();
+                if (remoteNote == null) {
+                    Log.e(TAG, "   ...Tried to edit \"" + note.getTitle() + "\" (#" + note.getId() + ") but the server response was null.");
+                    throw new Exception("Server returned null after editing \"" + note.getTitle() + "\" (#" + note.getId() + ")");
+                }
+            } else if (editResponse.code() == HTTP_NOT_FOUND) {
+                Log.v(TAG, "   ...Note does no longer exist on server → recreate");
+                note = requireContent(note);
+                final Response<Note> createResponse = notesAPI.createNote(note).execute();
+                if (createResponse.isSuccessful()) {
+                    remoteNote = createResponse.body();
+                    if (remoteNote == null) {
+                        Log.e(TAG, "   ...Tried to recreate \"" + note.getTitle() + "\" (#" + note.getId() + ") but the server response was null.");
+                        throw new Exception("Server returned null after recreating \"" + note.getTitle() + "\" (#" + note.getId() + ")");
+                    }
                 } else {
-                    exceptions.add(e);
-                    success = false;
+                    throw new Exception(createResponse.message());
                 }
-            } catch (Exception e) {
-                if (e instanceof TokenMismatchException) {
-                    apiProvider.invalidateAPICache(ssoAccount);
+            } else {
+                throw new Exception(editResponse.message());
+            }
+        } else {
+            Log.v(TAG, "   ...Note does not have a remoteId yet → create");
+            note = requireContent(note);
+            final Response<Note> createResponse = notesAPI.createNote(note).execute();
+            if (createResponse.isSuccessful()) {
+                remoteNote = createResponse.body();
+                if (remoteNote == null) {
+                    Log.e(TAG, "   ...Tried to create \"" + note.getTitle() + "\" (#" + note.getId() + ") but the server response was null.");
+                    throw new Exception("Server returned null after creating \"" + note.getTitle() + "\" (#" + note.getId() + ")");
                 }
-                exceptions.add(e);
-                success = false;
+                repo.updateRemoteId(note.getId(), remoteNote.getRemoteId());
+            } else {
+                throw new Exception(createResponse.message());
             }
         }
-        return success;
+        // Please note, that db.updateNote() realized an optimistic conflict resolution, which is required for parallel changes of this Note from the UI.
+        repo.updateIfNotModifiedLocallyDuringSync(note.getId(), remoteNote.getModified(), remoteNote.getTitle(), remoteNote.getFavorite(), remoteNote.getETag(), remoteNote.getContent(), generateNoteExcerpt(remoteNote.getContent(), remoteNote.getTitle()), note.getContent(), note.getCategory(), note.getFavorite());
+    }
+
+    /**
+     * @return the given {@link Note} with its <code>content</code>, which gets fetched first in case only its metadata has been synchronized yet
+     * @throws Exception if the <code>content</code> could not be loaded, so the {@link Note} is not pushed without it and its {@link OutboxOperation}s are kept
+     */
+    @NonNull
+    private Note requireContent(@NonNull Note note) throws Exception {
+        if (note.isContentLoaded()) {
+            return note;
+        }
+        if (repo.ensureContentLoaded(note.getId())) {
+            final Note loadedNote = repo.getNoteById(note.getId());
+            if (loadedNote != null && loadedNote.isContentLoaded()) {
+                return loadedNote;
+            }
+        }
+        throw new Exception("Content of \"" + note.getTitle() + "\" (#" + note.getId() + ") is not available locally, can not push it without the content");
+    }
+
+    /**
+     * Reads all {@link Note}s of the given response and applies them in batches of {@link #PULL_BATCH_SIZE}.
+     *
+     * @param remoteIDs      will be filled with the <code>remoteId</code>s of all {@link Note}s in the response
+     * @param contentExcluded whether the response only contains the metadata of the {@link Note}s
+     */
+    private void applyRemoteNotes(@NonNull StreamingNotesResponse fetchResponse, @NonNull LongLongMap idMap, @NonNull LongSet remoteIDs, boolean contentExcluded) {
+        final List<Note> batch = new ArrayList<>(PULL_BATCH_SIZE);
+        while (fetchResponse.hasNext()) {
+            final Note remoteNote = fetchResponse.next();
+            Log.v(TAG, "   Process Remote Note: " + (BuildConfig.DEBUG ? remoteNote : remoteNote.getTitle()));
+            final Long remoteId = remoteNote.getRemoteId();
+            if (remoteId != null) {
+                remoteIDs.add(remoteId);
+            }
+            if (remoteNote.getModified() == null) {
+                Log.v(TAG, "   ... unchanged");
+            } else {
+                batch.add(remoteNote);
+                if (batch.size() >= PULL_BATCH_SIZE) {
+                    applyRemoteNotes(batch, idMap, contentExcluded);
+                    batch.clear();
+                }
+            }
+        }
+        applyRemoteNotes(batch, idMap, contentExcluded);
+    }
+
+    /**
+     * Updates or creates the given remote {@link Note}s in one transaction, so observers are only notified once per batch.
+     * In case the <code>content</code> has been excluded, it is marked as not loaded and fetched later on, see {@link NotesRepository#fetchMissingContent(long)}.
+     */
+    private void applyRemoteNotes(@NonNull List<Note> remoteNotes, @NonNull LongLongMap idMap, boolean contentExcluded) {
+        if (remoteNotes.isEmpty()) {
+            return;
+        }
+        final long start = SystemClock.elapsedRealtime();
+        repo.runInTransaction(() -> {
+            for (Note remoteNote : remoteNotes) {
+                final Long remoteId = remoteNote.getRemoteId();
+                if (remoteId != null && idMap.containsKey(remoteId)) {
+                    Log.v(TAG, "   ... found → Update");
+                    final long localId = idMap.get(remoteId, -1);
+                    if (contentExcluded) {
+                        repo.updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
+                                localId, remoteNote.getModified(), remoteNote.getTitle(), remoteNote.getFavorite(), remoteNote.getCategory(), remoteNote.getETag());
+                    } else {
+                        repo.updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
+                                localId, remoteNote.getModified(), remoteNote.getTitle(), remoteNote.getFavorite(), remoteNote.getCategory(), remoteNote.getETag(), remoteNote.getContent(), generateNoteExcerpt(remoteNote.getContent(), remoteNote.getTitle()));
+                    }
+                } else {
+                    Log.v(TAG, "   ... create");
+                    remoteNote.setContentLoaded(!contentExcluded);
+                    repo.addNote(localAccount.getId(), remoteNote);
+                }
+            }
+        });
+        Log.d(TAG, "   Applied batch of " + remoteNotes.size() + " remote notes in " + (SystemClock.elapsedRealtime() - start) + " ms");
+        pulledNotes += remoteNotes.size();
+        onPullProgress(pulledNotes);
+    }
+
+    /**
+     * Removes the given {@link Note}s in one transaction, unless they have been modified locally.
+     */
+    private void removeLocalNotes(@NonNull List<Long> localIds) {
+        if (localIds.isEmpty()) {
+            return;
+        }
+        final long start = SystemClock.elapsedRealtime();
+        repo.runInTransaction(() -> {
+            for (Long localId : localIds) {
+                Log.v(TAG, "   ... remove " + localId);
+                repo.deleteByNoteId(localId, DBStatus.VOID);
+            }
+        });
+        Log.d(TAG, "   Removed batch of " + localIds.size() + " notes in " + (SystemClock.elapsedRealtime() - start) + " ms");
     }
 
     /**
@@ -205,7 +409,7 @@ abstract class NotesServerSyncTask extends Thread {
     private boolean pullRemoteChanges() {
         Log.d(TAG, "pullRemoteChanges() for account " + localAccount.getAccountName());
         try {
-            final Map<Long, Long> idMap = repo.getIdMap(localAccount.getId());
+            final LongLongMap idMap = repo.getIdMap(localAccount.getId());
 
             // FIXME re-reading the localAccount is only a workaround for a not-up-to-date eTag in localAccount.
             final Account accountFromDatabase = repo.getAccountById(localAccount.getId());
@@ -216,73 +420,112 @@ abstract class NotesServerSyncTask extends Thread {
             localAccount.setModified(accountFromDatabase.getModified());
             localAccount.setETag(accountFromDatabase.getETag());
 
-            final ParsedResponse<List<Note>> fetchResponse = notesAPI.getNotes(localAccount.getModified(), localAccount.getETag()).blockingSingle();
-            final List<Note> remoteNotes = fetchResponse.getResponse();
-            final Set<Long> remoteIDs = new HashSet<>();
+            final LongSet remoteIDs = new LongSet(idMap.size());
+            final SyncCheckpoint checkpoint = notesAPI.supportsChunkedListing() ? repo.getSyncCheckpoint(localAccount.getId()) : null;
+            // Only list the metadata of an initial (or resumed) import, so large accounts are usable quickly. The content is fetched afterwards by priority.
+            // Incremental synchronizations change only a few notes, which would otherwise cost one additional request per note
+            final boolean excludeContent = notesAPI.supportsExcludingContent() && (localAccount.getETag() == null || checkpoint != null);
+            final Map<String, String> headers;
+            final String eTag;
             // pull remote changes: update or create each remote note
-            for (Note remoteNote : remoteNotes) {
-                Log.v(TAG, "   Process Remote Note: " + (BuildConfig.DEBUG ? remoteNote : remoteNote.getTitle()));
-                remoteIDs.add(remoteNote.getRemoteId());
-                if (remoteNote.getModified() == null) {
-                    Log.v(TAG, "   ... unchanged");
-                } else if (idMap.containsKey(remoteNote.getRemoteId())) {
-                    Log.v(TAG, "   ... found → Update");
-                    Long localId = idMap.get(remoteNote.getRemoteId());
-                    if (localId != null) {
-                        repo.updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                                localId, remoteNote.getModified().getTimeInMillis(), remoteNote.getTitle(), remoteNote.getFavorite(), remoteNote.getCategory(), remoteNote.getETag(), remoteNote.getContent(), generateNoteExcerpt(remoteNote.getContent(), remoteNote.getTitle()));
-                    } else {
-                        Log.e(TAG, "Tried to update note from server, but local id of note is null. " + (BuildConfig.DEBUG ? remoteNote : remoteNote.getTitle()));
-                    }
+            if (notesAPI.supportsChunkedListing()) {
+                final Calendar pruneBefore;
+                String chunkCursor;
+                String firstChunkETag;
+                if (checkpoint == null) {
+                    pruneBefore = localAccount.getModified();
+                    chunkCursor = null;
+                    firstChunkETag = null;
+                    pulledNotes = 0;
                 } else {
-                    Log.v(TAG, "   ... create");
-                    repo.addNote(localAccount.getId(), remoteNote);
+                    Log.i(TAG, "   Resume interrupted synchronization: " + checkpoint);
+                    pruneBefore = Calendar.getInstance();
+                    pruneBefore.setTimeInMillis(checkpoint.getPruneBefore());
+                    chunkCursor = checkpoint.getChunkCursor();
+                    firstChunkETag = checkpoint.getETag();
+                    pulledNotes = checkpoint.getPulledNotes();
+                    onPullProgress(pulledNotes);
                 }
+                Map<String, String> chunkHeaders;
+                do {
+                    try (StreamingNotesResponse fetchResponse = notesAPI.getNotes(pruneBefore, localAccount.getETag(), PULL_CHUNK_SIZE, chunkCursor, excludeContent)) {
+                        chunkHeaders = fetchResponse.getHeaders();
+                        if (chunkCursor == null) {
+                            firstChunkETag = chunkHeaders.get(HEADER_KEY_ETAG);
+                        }
+                        applyRemoteNotes(fetchResponse, idMap, remoteIDs, excludeContent);
+                        chunkCursor = fetchResponse.getChunkCursor();
+                    }
+                    if (chunkCursor != null) {
+                        // All notes of this chunk have already been committed, so an interrupted synchronization can continue with the next chunk
+                        repo.saveSyncCheckpoint(new SyncCheckpoint(localAccount.getId(), chunkCursor, pruneBefore.getTimeInMillis(), firstChunkETag, pulledNotes));
+                    }
+                } while (chunkCursor != null);
+                headers = chunkHeaders;
+                eTag = firstChunkETag;
+            } else {
+                try (StreamingNotesResponse fetchResponse = notesAPI.getNotes(localAccount.getModified(), localAccount.getETag(), 0, null, excludeContent)) {
+                    headers = fetchResponse.getHeaders();
+                    applyRemoteNotes(fetchResponse, idMap, remoteIDs, excludeContent);
+                }
+                eTag = headers.get(HEADER_KEY_ETAG);
             }
             Log.d(TAG, "   Remove remotely deleted Notes (only those without local changes)");
             // remove remotely deleted notes (only those without local changes)
-            for (Map.Entry<Long, Long> entry : idMap.entrySet()) {
-                if (!remoteIDs.contains(entry.getKey())) {
-                    Log.v(TAG, "   ... remove " + entry.getValue());
-                    repo.deleteByNoteId(entry.getValue(), DBStatus.VOID);
+            final List<Long> localIdsToDelete = new ArrayList<>(PULL_BATCH_SIZE);
+            idMap.forEach((remoteId, localId) -> {
+                if (!remoteIDs.contains(remoteId)) {
+                    localIdsToDelete.add(localId);
+                    if (localIdsToDelete.size() >= PULL_BATCH_SIZE) {
+                        removeLocalNotes(localIdsToDelete);
+                        localIdsToDelete.clear();
+                    }
                 }
-            }
+            });
+            removeLocalNotes(localIdsToDelete);
 
             // update ETag and Last-Modified in order to reduce size of next response
-            localAccount.setETag(fetchResponse.getHeaders().get(HEADER_KEY_ETAG));
+            // Must only happen after all notes have been pulled, otherwise the notes of an interrupted pull would be pruned from the next response
+            localAccount.setETag(eTag);
 
             final Calendar lastModified = Calendar.getInstance();
             lastModified.setTimeInMillis(0);
-            final String lastModifiedHeader = fetchResponse.getHeaders().get(HEADER_KEY_LAST_MODIFIED);
+            final String lastModifiedHeader = headers.get(HEADER_KEY_LAST_MODIFIED);
             if (lastModifiedHeader != null)
                 lastModified.setTimeInMillis(Date.parse(lastModifiedHeader));
-            Log.d(TAG, "ETag: " + fetchResponse.getHeaders().get(HEADER_KEY_ETAG) + "; Last-Modified: " + lastModified + " (" + lastModified + ")");
+            Log.d(TAG, "ETag: " + eTag + "; Last-Modified: " + lastModified + " (" + lastModified + ")");
 
             localAccount.setModified(lastModified);
 
             repo.updateETag(localAccount.getId(), localAccount.getETag());
             repo.updateModified(localAccount.getId(), localAccount.getModified().getTimeInMillis());
+            repo.deleteSyncCheckpoint(localAccount.getId());
 
-            final String newApiVersion = ApiVersionUtil.sanitize(fetchResponse.getHeaders().get(HEADER_KEY_X_NOTES_API_VERSIONS));
+            final String newApiVersion = ApiVersionUtil.sanitize(headers.get(HEADER_KEY_X_NOTES_API_VERSIONS));
             localAccount.setApiVersion(newApiVersion);
             repo.updateApiVersion(localAccount.getId(), newApiVersion);
             Log.d(TAG, "ApiVersion: " + newApiVersion);
+
+            if (excludeContent) {
+                repo.fetchMissingContent(localAccount.getId());
+            }
             return true;
         } catch (Throwable t) {
-            final Throwable cause = t.getCause();
-            if (t.getClass() == RuntimeException.class && cause != null) {
-                if (cause.getClass() == NextcloudHttpRequestFailedException.class || cause instanceof NextcloudHttpRequestFailedException) {
-                    final NextcloudHttpRequestFailedException httpException = (NextcloudHttpRequestFailedException) cause;
-                    if (httpException.getStatusCode() == HTTP_NOT_MODIFIED) {
-                        Log.d(TAG, "Server returned HTTP Status Code " + httpException.getStatusCode() + " - Notes not modified.");
-                        return true;
-                    } else if (httpException.getStatusCode() == HTTP_UNAVAILABLE) {
-                        Log.d(TAG, "Server returned HTTP Status Code " + httpException.getStatusCode() + " - Server is in maintenance mode.");
-                        return true;
-                    }
-                } else if (cause.getClass() == NextcloudApiNotRespondingException.class || cause instanceof NextcloudApiNotRespondingException) {
-                    apiProvider.invalidateAPICache(ssoAccount);
+            final Throwable cause = t.getClass() == RuntimeException.class && t.getCause() != null ? t.getCause() : t;
+            if (cause instanceof NextcloudHttpRequestFailedException) {
+                final NextcloudHttpRequestFailedException httpException = (NextcloudHttpRequestFailedException) cause;
+                if (httpException.getStatusCode() == HTTP_NOT_MODIFIED) {
+                    Log.d(TAG, "Server returned HTTP Status Code " + httpException.getStatusCode() + " - Notes not modified.");
+                    return true;
+                } else if (httpException.getStatusCode() == HTTP_UNAVAILABLE) {
+                    Log.d(TAG, "Server returned HTTP Status Code " + httpException.getStatusCode() + " - Server is in maintenance mode.");
+                    return true;
+                } else if (httpException.getStatusCode() == HTTP_BAD_REQUEST) {
+                    Log.w(TAG, "Server returned HTTP Status Code " + httpException.getStatusCode() + " - Chunk cursor might be outdated, next synchronization will start from the beginning.");
+                    repo.deleteSyncCheckpoint(localAccount.getId());
                 }
+            } else if (cause instanceof NextcloudApiNotRespondingException) {
+                apiProvider.invalidateAPICache(ssoAccount);
             }
             exceptions.add(t);
             return false;
@@ -0,0 +1,126 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import android.util.Log;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import it.niedermann.owncloud.notes.persistence.entity.Account;
+
+/**
+ * Merges synchronization requests of the same {@link Account} which arrive within a short window into a single synchronization.
+ * <p>
+ * The window starts with the first request, so bursts like autosaving while typing or changing many {@link it.niedermann.owncloud.notes.persistence.entity.Note}s at once cause only one synchronization,
+ * which is delayed by at most the window.
+ * A full synchronization subsumes requests which only push local changes.
+ */
+class SyncCoalescer {
+
+    private static final String TAG = SyncCoalescer.class.getSimpleName();
+
+    /**
+     * Default time in milliseconds in which requests for the same {@link Account} are merged
+     */
+    static final long DEFAULT_WINDOW_MILLIS = 1_000;
+
+    @NonNull
+    private final ScheduledExecutorService timer;
+    private final long windowMillis;
+    @NonNull
+    private final SyncTrigger trigger;
+
+    // Guarded by this
+    private final Map<Long, PendingSync> pendingSyncs = new HashMap<>();
+
+    /**
+     * @param windowMillis time in milliseconds in which requests are merged, <code>0</code> triggers each request immediately
+     */
+    SyncCoalescer(@NonNull ScheduledExecutorService timer, long windowMillis, @NonNull SyncTrigger trigger) {
+        if (windowMillis < 0) {
+            throw new IllegalArgumentException("windowMillis must not be negative but was " + windowMillis);
+        }
+        this.timer = timer;
+        this.windowMillis = windowMillis;
+        this.trigger = trigger;
+    }
+
+    /**
+     * Requests a synchronization of the given {@link Account} which will be triggered at the end of the current window.
+     *
+     * @param onlyLocalChanges Whether to only push local changes to the server or to also load the whole list of notes from the server.
+     */
+    @AnyThread
+    void request(@NonNull Account account, boolean onlyLocalChanges) {
+        if (windowMillis == 0) {
+            trigger.scheduleSync(account, onlyLocalChanges);
+            return;
+        }
+        synchronized (this) {
+            final PendingSync pendingSync = pendingSyncs.get(account.getId());
+            if (pendingSync == null) {
+                final PendingSync newPendingSync = new PendingSync(account, onlyLocalChanges);
+                pendingSyncs.put(account.getId(), newPendingSync);
+                newPendingSync.future = timer.schedule(() -> flush(account.getId(), newPendingSync), windowMillis, TimeUnit.MILLISECONDS);
+            } else {
+                pendingSync.account = account;
+                pendingSync.onlyLocalChanges &= onlyLocalChanges;
+                pendingSync.requests++;
+            }
+        }
+    }
+
+    /**
+     * Drops the pending request of the given {@link Account}, e. g. because a full synchronization is started anyway.
+     *
+     * @return whether there has been a pending request
+     */
+    @AnyThread
+    synchronized boolean discard(long accountId) {
+        final PendingSync pendingSync = pendingSyncs.remove(accountId);
+        if (pendingSync == null) {
+            return false;
+        }
+        if (pendingSync.future != null) {
+            pendingSync.future.cancel(false);
+        }
+        Log.v(TAG, "Discarded " + pendingSync.requests + " sync requests for account " + accountId);
+        return true;
+    }
+
+    private void flush(long accountId, @NonNull PendingSync pendingSync) {
+        synchronized (this) {
+            if (pendingSyncs.get(accountId) != pendingSync) {
+                return;
+            }
+            pendingSyncs.remove(accountId);
+        }
+        Log.d(TAG, "Coalesced " + pendingSync.requests + " sync requests for account " + accountId + " (" + (pendingSync.onlyLocalChanges ? "onlyLocalChanges" : "full") + ")");
+        // Triggered outside of the lock, because the trigger might discard pending requests itself
+        trigger.scheduleSync(pendingSync.account, pendingSync.onlyLocalChanges);
+    }
+
+    interface SyncTrigger {
+        void scheduleSync(@NonNull Account account, boolean onlyLocalChanges);
+    }
+
+    private static class PendingSync {
+        @NonNull
+        private Account account;
+        private boolean onlyLocalChanges;
+        private int requests = 1;
+        @Nullable
+        private ScheduledFuture<?> future;
+
+        private PendingSync(@NonNull Account account, boolean onlyLocalChanges) {
+            this.account = account;
+            this.onlyLocalChanges = onlyLocalChanges;
+        }
+    }
+}
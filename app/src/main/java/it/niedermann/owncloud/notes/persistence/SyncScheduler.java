@@ -0,0 +1,238 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.AnyThread;
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
+
+import it.niedermann.owncloud.notes.persistence.entity.Account;
+
+/**
+ * Runs synchronizations of different {@link Account}s concurrently, so a slow or hanging {@link Account} does not block the others.
+ * <p>
+ * Synchronizations of the same {@link Account} are executed one after another in the order they have been submitted.
+ * In case more {@link Account}s have pending synchronizations than allowed to run concurrently, the {@link Account}s take turns.
+ */
+class SyncScheduler {
+
+    private static final String TAG = SyncScheduler.class.getSimpleName();
+
+    /**
+     * Default maximum number of {@link Account}s which are synchronized at the same time
+     */
+    static final int DEFAULT_MAX_CONCURRENT_ACCOUNTS = 3;
+
+    @NonNull
+    private final ExecutorService executor;
+    private final int maxConcurrentAccounts;
+
+    // Guarded by this
+    private final Map<Long, Queue<ScheduledSync>> pendingSyncs = new HashMap<>();
+    private final Deque<Long> waitingAccounts = new ArrayDeque<>();
+    private final Map<Long, ScheduledSync> runningSyncs = new HashMap<>();
+    @NonNull
+    private final Metrics metrics = new Metrics();
+
+    SyncScheduler(@NonNull ExecutorService executor, int maxConcurrentAccounts) {
+        if (maxConcurrentAccounts < 1) {
+            throw new IllegalArgumentException("maxConcurrentAccounts must be at least 1 but was " + maxConcurrentAccounts);
+        }
+        this.executor = executor;
+        this.maxConcurrentAccounts = maxConcurrentAccounts;
+    }
+
+    /**
+     * Runs the given {@param sync} as soon as all previously submitted synchronizations of this {@link Account} have finished and a slot is free.
+     */
+    @AnyThread
+    synchronized void submit(long accountId, @NonNull Runnable sync) {
+        Queue<ScheduledSync> queue = pendingSyncs.get(accountId);
+        if (queue == null) {
+            queue = new ArrayDeque<>();
+            pendingSyncs.put(accountId, queue);
+        }
+        queue.add(new ScheduledSync(sync));
+        if (!runningSyncs.containsKey(accountId) && !waitingAccounts.contains(accountId)) {
+            waitingAccounts.add(accountId);
+        }
+        dispatch();
+    }
+
+    /**
+     * @return whether a synchronization of the given {@link Account} which has not been started yet matches the given {@param filter}
+     */
+    @AnyThread
+    synchronized boolean hasPending(long accountId, @NonNull Predicate<Runnable> filter) {
+        final Queue<ScheduledSync> queue = pendingSyncs.get(accountId);
+        if (queue != null) {
+            for (ScheduledSync sync : queue) {
+                if (filter.test(sync.runnable)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Drops all pending synchronizations of the given {@link Account} and interrupts the running one, e. g. because the {@link Account} has been deleted.
+     */
+    @AnyThread
+    synchronized void cancel(long accountId) {
+        final Queue<ScheduledSync> queue = pendingSyncs.remove(accountId);
+        waitingAccounts.remove(accountId);
+        final ScheduledSync running = runningSyncs.remove(accountId);
+        if (running != null && running.future != null) {
+            // The sync might not have been started yet and would therefore never finish
+            running.future.cancel(true);
+        }
+        Log.i(TAG, "Cancelled synchronization of account " + accountId + " (" + (queue == null ? 0 : queue.size()) + " pending, " + (running == null ? "none" : "one") + " running)");
+        dispatch();
+    }
+
+    /**
+     * @return the number of {@link Account}s which are currently synchronized
+     */
+    @AnyThread
+    synchronized int getRunningCount() {
+        return runningSyncs.size();
+    }
+
+    /**
+     * @return a snapshot of the time synchronizations have spent waiting in the queue compared to the time they actually took
+     */
+    @NonNull
+    @AnyThread
+    synchronized Metrics getMetrics() {
+        return new Metrics(metrics);
+    }
+
+    private void dispatch() {
+        while (runningSyncs.size() < maxConcurrentAccounts && !waitingAccounts.isEmpty()) {
+            final long accountId = waitingAccounts.remove();
+            final Queue<ScheduledSync> queue = pendingSyncs.get(accountId);
+            final ScheduledSync sync = queue == null ? null : queue.poll();
+            if (sync == null) {
+                pendingSyncs.remove(accountId);
+                continue;
+            }
+            // Marked as running before the submission, because the executor might run the sync immediately on this thread
+            runningSyncs.put(accountId, sync);
+            sync.future = executor.submit(() -> execute(accountId, sync));
+        }
+    }
+
+    private void execute(long accountId, @NonNull ScheduledSync sync) {
+        final long start = SystemClock.elapsedRealtime();
+        try {
+            sync.runnable.run();
+        } catch (Throwable t) {
+            Log.e(TAG, "Synchronization of account " + accountId + " failed", t);
+        } finally {
+            onFinished(accountId, sync, start - sync.submitted, SystemClock.elapsedRealtime() - start);
+        }
+    }
+
+    private synchronized void onFinished(long accountId, @NonNull ScheduledSync sync, long waitMillis, long executionMillis) {
+        metrics.add(waitMillis, executionMillis);
+        Log.d(TAG, "Synchronized account " + accountId + " in " + executionMillis + " ms after waiting " + waitMillis + " ms in the queue");
+        if (runningSyncs.get(accountId) != sync) {
+            // Has been cancelled meanwhile
+            return;
+        }
+        runningSyncs.remove(accountId);
+        final Queue<ScheduledSync> queue = pendingSyncs.get(accountId);
+        if (queue == null || queue.isEmpty()) {
+            pendingSyncs.remove(accountId);
+        } else {
+            // Enqueue at the end, so other accounts which are waiting get their turn first
+            waitingAccounts.add(accountId);
+        }
+        dispatch();
+    }
+
+    private static class ScheduledSync {
+        @NonNull
+        private final Runnable runnable;
+        private final long submitted = SystemClock.elapsedRealtime();
+        @Nullable
+        private Future<?> future;
+
+        private ScheduledSync(@NonNull Runnable runnable) {
+            this.runnable = runnable;
+        }
+    }
+
+    /**
+     * Aggregated durations of all finished synchronizations in milliseconds
+     */
+    static class Metrics {
+        private int count;
+        private long totalWait;
+        private long maxWait;
+        private long totalExecution;
+        private long maxExecution;
+
+        private Metrics() {
+        }
+
+        private Metrics(@NonNull Metrics metrics) {
+            this.count = metrics.count;
+            this.totalWait = metrics.totalWait;
+            this.maxWait = metrics.maxWait;
+            this.totalExecution = metrics.totalExecution;
+            this.maxExecution = metrics.maxExecution;
+        }
+
+        private void add(long waitMillis, long executionMillis) {
+            count++;
+            totalWait += waitMillis;
+            maxWait = Math.max(maxWait, waitMillis);
+            totalExecution += executionMillis;
+            maxExecution = Math.max(maxExecution, executionMillis);
+        }
+
+        int getCount() {
+            return count;
+        }
+
+        long getTotalWait() {
+            return totalWait;
+        }
+
+        long getMaxWait() {
+            return maxWait;
+        }
+
+        long getTotalExecution() {
+            return totalExecution;
+        }
+
+        long getMaxExecution() {
+            return maxExecution;
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "Metrics{" +
+                    "count=" + count +
+                    ", totalWait=" + totalWait +
+                    ", maxWait=" + maxWait +
+                    ", totalExecution=" + totalExecution +
+                    ", maxExecution=" + maxExecution +
+                    '}';
+        }
+    }
+}
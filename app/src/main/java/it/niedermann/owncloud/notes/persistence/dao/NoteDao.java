@@ -1,51 +1,110 @@
 package it.niedermann.owncloud.notes.persistence.dao;
 
+import android.database.Cursor;
+
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.Transformations;
 import androidx.room.Dao;
 import androidx.room.Insert;
 import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
+import androidx.room.RawQuery;
+import androidx.room.Transaction;
 import androidx.room.Update;
+import androidx.sqlite.db.SupportSQLiteQuery;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 
 import it.niedermann.owncloud.notes.persistence.entity.Account;
 import it.niedermann.owncloud.notes.persistence.entity.CategoryWithNotesCount;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.NoteContent;
+import it.niedermann.owncloud.notes.persistence.entity.NoteWithContent;
 import it.niedermann.owncloud.notes.shared.model.DBStatus;
 
 /**
  * Each method starting with <code>search</code> will return only a partial {@link Note} without any
  * {@link Note#eTag}, {@link Note#status}, {@link Note#content} or {@link Note#scrollY} for performance reasons.
+ * <p>
+ * The <code>content</code> is stored as {@link NoteContent}, so only methods which return a single or locally modified {@link Note}s read it.
+ * Lists, counts and categories are served by the small {@link Note} table alone.
+ * <p>
+ * The <code>query</code> of those methods is a full text search expression for {@link it.niedermann.owncloud.notes.persistence.entity.NoteFts},
+ * see {@link it.niedermann.owncloud.notes.shared.util.NoteUtil#toFtsMatchQuery(CharSequence)}. An empty <code>query</code> matches all {@link Note}s,
+ * {@link it.niedermann.owncloud.notes.shared.util.NoteUtil#FTS_MATCH_NOTHING} none.
  */
 @SuppressWarnings("JavadocReference")
 @Dao
 public interface NoteDao {
 
+    @Transaction
+    default long addNote(Note note) {
+        final long id = addNoteMetadata(note);
+        addNoteContent(new NoteContent(id, note.getTitle(), note.getContent()));
+        return id;
+    }
+
+    @Insert
+    long addNoteMetadata(Note note);
+
+    /**
+     * Not replacing on conflict, because the implicit delete of a replace does not fire the triggers which maintain {@link it.niedermann.owncloud.notes.persistence.entity.NoteFts}
+     */
     @Insert
-    long addNote(Note note);
+    void addNoteContent(NoteContent noteContent);
+
+    /**
+     * A changed <code>content</code> is recorded as {@link it.niedermann.owncloud.notes.persistence.entity.OutboxOperation.Type#CONTENT} before the metadata is updated,
+     * so the trigger for a changed {@link Note#status} does not treat an edit of the <code>content</code> as an unknown change.
+     */
+    @Transaction
+    default int updateNote(Note newNote) {
+        if (updateContent(newNote.getId(), newNote.getContent()) > 0 && newNote.getStatus() == DBStatus.LOCAL_EDITED) {
+            addContentOperation(newNote.getId());
+        }
+        return updateNoteMetadata(newNote);
+    }
 
     @Update(onConflict = OnConflictStrategy.REPLACE)
-    int updateNote(Note newNote);
+    int updateNoteMetadata(Note newNote);
+
+    /**
+     * @return <code>0</code> if the <code>content</code> has not been changed
+     */
+    @Query("UPDATE NoteContent SET content = :content WHERE noteId = :id AND content != :content")
+    int updateContent(long id, String content);
+
+    @Query("INSERT OR IGNORE INTO OutboxOperation(accountId, noteId, type) SELECT accountId, id, 'CONTENT' FROM NOTE WHERE id = :id")
+    void addContentOperation(long id);
 
-    String getNoteById = "SELECT * FROM NOTE WHERE id = :id";
+    String getNoteById = "SELECT NOTE.*, NoteContent.content FROM NOTE LEFT JOIN NoteContent ON NoteContent.noteId = NOTE.id WHERE NOTE.id = :id";
     String count = "SELECT COUNT(*) FROM NOTE WHERE status != 'LOCAL_DELETED' AND accountId = :accountId";
     String countFavorites = "SELECT COUNT(*) FROM NOTE WHERE status != 'LOCAL_DELETED' AND accountId = :accountId AND favorite = 1";
-    String searchRecentByModified = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, '' as content, 0 as scrollY FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (title LIKE :query OR content LIKE :query) ORDER BY favorite DESC, modified DESC";
-    String searchRecentLexicographically = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, '' as content, 0 as scrollY FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (title LIKE :query OR content LIKE :query) ORDER BY favorite DESC, title COLLATE NOCASE ASC";
-    String searchFavoritesByModified = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, '' as content, 0 as scrollY FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (title LIKE :query OR content LIKE :query) AND favorite = 1 ORDER BY modified DESC";
-    String searchFavoritesLexicographically = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, '' as content, 0 as scrollY FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (title LIKE :query OR content LIKE :query) AND favorite = 1 ORDER BY title COLLATE NOCASE ASC";
-    String searchUncategorizedByModified = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, '' as content, 0 as scrollY FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (title LIKE :query OR content LIKE :query) AND category = '' ORDER BY favorite DESC, modified DESC";
-    String searchUncategorizedLexicographically = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, '' as content, 0 as scrollY FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (title LIKE :query OR content LIKE :query) AND category = '' ORDER BY favorite DESC, title COLLATE NOCASE ASC";
-    String searchCategoryByModified = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, '' as content, 0 as scrollY FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (title LIKE :query OR content LIKE :query) AND (category = :category OR category LIKE :category || '/%') ORDER BY category, favorite DESC, modified DESC";
-    String searchCategoryLexicographically = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, '' as content, 0 as scrollY FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (title LIKE :query OR content LIKE :query) AND (category = :category OR category LIKE :category || '/%') ORDER BY category, favorite DESC, title COLLATE NOCASE ASC";
+    String searchRecentByModified = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (:query = '' OR id IN (SELECT rowid FROM NoteFts WHERE NoteFts MATCH :query)) ORDER BY favorite DESC, modified DESC";
+    String searchRecentLexicographically = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (:query = '' OR id IN (SELECT rowid FROM NoteFts WHERE NoteFts MATCH :query)) ORDER BY favorite DESC, title COLLATE NOCASE ASC";
+    String searchFavoritesByModified = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (:query = '' OR id IN (SELECT rowid FROM NoteFts WHERE NoteFts MATCH :query)) AND favorite = 1 ORDER BY modified DESC";
+    String searchFavoritesLexicographically = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (:query = '' OR id IN (SELECT rowid FROM NoteFts WHERE NoteFts MATCH :query)) AND favorite = 1 ORDER BY title COLLATE NOCASE ASC";
+    String searchUncategorizedByModified = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (:query = '' OR id IN (SELECT rowid FROM NoteFts WHERE NoteFts MATCH :query)) AND category = '' ORDER BY favorite DESC, modified DESC";
+    String searchUncategorizedLexicographically = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (:query = '' OR id IN (SELECT rowid FROM NoteFts WHERE NoteFts MATCH :query)) AND category = '' ORDER BY favorite DESC, title COLLATE NOCASE ASC";
+    String searchCategoryByModified = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (:query = '' OR id IN (SELECT rowid FROM NoteFts WHERE NoteFts MATCH :query)) AND (category = :category OR category LIKE :category || '/%') ORDER BY category, favorite DESC, modified DESC";
+    String searchCategoryLexicographically = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND (:query = '' OR id IN (SELECT rowid FROM NoteFts WHERE NoteFts MATCH :query)) AND (category = :category OR category LIKE :category || '/%') ORDER BY category, favorite DESC, title COLLATE NOCASE ASC";
+
+    default LiveData<Note> getNoteById$(long id) {
+        return Transformations.map(getNoteWithContentById$(id), NoteWithContent::toNote);
+    }
+
+    default Note getNoteById(long id) {
+        return NoteWithContent.toNote(getNoteWithContentById(id));
+    }
 
     @Query(getNoteById)
-    LiveData<Note> getNoteById$(long id);
+    LiveData<NoteWithContent> getNoteWithContentById$(long id);
 
     @Query(getNoteById)
-    Note getNoteById(long id);
+    NoteWithContent getNoteWithContentById(long id);
 
     @Query("SELECT remoteId FROM NOTE WHERE id = :id")
     Long getRemoteId(long id);
@@ -110,18 +169,56 @@ public interface NoteDao {
     @Query(searchCategoryLexicographically)
     List<Note> searchCategoryLexicographically(long accountId, String query, String category);
 
+    /**
+     * @param query created by {@link NotesPageQuery#create}
+     */
+    @RawQuery(observedEntities = Note.class)
+    LiveData<List<Note>> getNotesPage$(SupportSQLiteQuery query);
+
+    /**
+     * @param query created by {@link NotesPageQuery#create}
+     */
+    @RawQuery
+    List<Note> getNotesPage(SupportSQLiteQuery query);
+
+    /**
+     * @param query created by {@link NotesPageQuery#createIds}
+     */
+    @RawQuery
+    List<Long> getNoteIds(SupportSQLiteQuery query);
+
+    /**
+     * Reads the metadata of all not deleted {@link Note}s of an {@link Account} to build an index of them.
+     * Returns a {@link Cursor} instead of {@link Note} objects, so no object per row is allocated which is thrown away right after indexing.
+     * The caller is responsible for closing the {@link Cursor}.
+     */
+    @Query("SELECT id, remoteId, title, favorite, excerpt, modified, category, status FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED'")
+    Cursor getNoteMetadata(long accountId);
+
+    /**
+     * @return the same partial {@link Note} as the <code>search</code> methods, including {@link DBStatus#LOCAL_DELETED} {@link Note}s, or <code>null</code> if it does not exist
+     */
+    @Query("SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE WHERE id = :id")
+    Note getNoteMetadataById(long id);
+
     @Query("DELETE FROM NOTE WHERE id = :id AND status = :forceDBStatus")
-    void deleteByNoteId(long id, DBStatus forceDBStatus);
+    int deleteByNoteId(long id, DBStatus forceDBStatus);
 
     @Query("UPDATE NOTE SET scrollY = :scrollY WHERE id = :id")
     void updateScrollY(long id, int scrollY);
 
     @Query("UPDATE NOTE SET status = :status WHERE id = :id")
-    void updateStatus(long id, DBStatus status);
+    int updateStatus(long id, DBStatus status);
 
     @Query("UPDATE NOTE SET category = :category WHERE id = :id")
     void updateCategory(long id, String category);
 
+    /**
+     * Changes the category as a local change, so it will be recorded as {@link it.niedermann.owncloud.notes.persistence.entity.OutboxOperation.Type#CATEGORY}
+     */
+    @Query("UPDATE NOTE SET status = 'LOCAL_EDITED', category = :category WHERE id = :id AND status != 'LOCAL_DELETED'")
+    int updateCategoryAndStatus(long id, String category);
+
     /**
      * Gets all the {@link Note#remoteId}s of all not deleted {@link Note}s of an {@link Account}
      *
@@ -132,11 +229,12 @@ public interface NoteDao {
     List<Long> getRemoteIds(long accountId);
 
     /**
-     * Gets a list of {@link Note} objects with filled {@link Note#id} and {@link Note#remoteId},
-     * where {@link Note#remoteId} is not <code>null</code>
+     * Gets pairs of {@link Note#remoteId} (first column) and {@link Note#id} (second column), where {@link Note#remoteId} is not <code>null</code>.
+     * Returns a {@link Cursor} instead of {@link Note} objects, so the IDs of huge accounts can be read without allocating an object per row.
+     * The caller is responsible for closing the {@link Cursor}.
      */
-    @Query("SELECT id, remoteId, 0 as accountId, '' as title, 0 as favorite, '' as excerpt, 0 as modified, '' as eTag, 0 as status, '' as category, '' as content, 0 as scrollY  FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND remoteId IS NOT NULL")
-    List<Note> getRemoteIdAndId(long accountId);
+    @Query("SELECT remoteId, id FROM NOTE WHERE accountId = :accountId AND status != 'LOCAL_DELETED' AND remoteId IS NOT NULL")
+    Cursor getRemoteIdAndId(long accountId);
 
     /**
      * Get a single {@link Note} by {@link Note#remoteId} (aka. Nextcloud file id)
@@ -152,32 +250,91 @@ public interface NoteDao {
      *
      * @return {@link List<Note>}
      */
-    @Query("SELECT * FROM NOTE WHERE status != '' AND accountId = :accountId")
-    List<Note> getLocalModifiedNotes(long accountId);
+    default List<Note> getLocalModifiedNotes(long accountId) {
+        final List<NoteWithContent> notesWithContent = getLocalModifiedNotesWithContent(accountId);
+        final List<Note> notes = new ArrayList<>(notesWithContent.size());
+        for (NoteWithContent noteWithContent : notesWithContent) {
+            notes.add(NoteWithContent.toNote(noteWithContent));
+        }
+        return notes;
+    }
+
+    @Query("SELECT NOTE.*, NoteContent.content FROM NOTE LEFT JOIN NoteContent ON NoteContent.noteId = NOTE.id WHERE status != '' AND accountId = :accountId")
+    List<NoteWithContent> getLocalModifiedNotesWithContent(long accountId);
 
     @Query("SELECT * FROM NOTE WHERE status != 'LOCAL_DELETED' AND accountId = :accountId ORDER BY modified DESC LIMIT 4")
     List<Note> getRecentNotes(long accountId);
 
     @Query("UPDATE NOTE SET status = 'LOCAL_EDITED', favorite = ((favorite | 1) - (favorite & 1)) WHERE id = :id")
-    void toggleFavorite(long id);
+    int toggleFavorite(long id);
 
     @Query("UPDATE NOTE SET remoteId = :remoteId WHERE id = :id")
-    void updateRemoteId(long id, Long remoteId);
+    int updateRemoteId(long id, Long remoteId);
 
     /**
      * used by: {@link it.niedermann.owncloud.notes.persistence.NotesServerSyncTask#pushLocalChanges()} update only, if not modified locally during the synchronization
      * (i.e. all (!) user changeable columns (content, favorite, category) must still have the same value), uses reference value gathered at start of synchronization
      */
-    @Query("UPDATE NOTE SET title = :targetTitle, modified = :targetModified, favorite = :targetFavorite, etag = :targetETag, content = :targetContent, status = '', excerpt = :targetExcerpt " +
-            "WHERE id = :noteId AND content = :contentBeforeSyncStart AND favorite = :favoriteBeforeSyncStart AND category = :categoryBeforeSyncStart")
-    int updateIfNotModifiedLocallyDuringSync(long noteId, Long targetModified, String targetTitle, boolean targetFavorite, String targetETag, String targetContent, String targetExcerpt, String contentBeforeSyncStart, String categoryBeforeSyncStart, boolean favoriteBeforeSyncStart);
+    @Transaction
+    default int updateIfNotModifiedLocallyDuringSync(long noteId, Long targetModified, String targetTitle, boolean targetFavorite, String targetETag, String targetContent, String targetExcerpt, String contentBeforeSyncStart, String categoryBeforeSyncStart, boolean favoriteBeforeSyncStart) {
+        final int rows = updateMetadataIfNotModifiedLocallyDuringSync(noteId, targetModified, targetTitle, targetFavorite, targetETag, targetExcerpt, contentBeforeSyncStart, categoryBeforeSyncStart, favoriteBeforeSyncStart);
+        if (rows > 0) {
+            updateContent(noteId, targetContent);
+        }
+        return rows;
+    }
+
+    @Query("UPDATE NOTE SET title = :targetTitle, modified = :targetModified, favorite = :targetFavorite, etag = :targetETag, status = '', excerpt = :targetExcerpt, contentLoaded = 1 " +
+            "WHERE id = :noteId AND favorite = :favoriteBeforeSyncStart AND category = :categoryBeforeSyncStart AND EXISTS (SELECT 1 FROM NoteContent WHERE noteId = :noteId AND content = :contentBeforeSyncStart)")
+    int updateMetadataIfNotModifiedLocallyDuringSync(long noteId, Long targetModified, String targetTitle, boolean targetFavorite, String targetETag, String targetExcerpt, String contentBeforeSyncStart, String categoryBeforeSyncStart, boolean favoriteBeforeSyncStart);
 
     /**
      * used by: {@link it.niedermann.owncloud.notes.persistence.NotesServerSyncTask#pullRemoteChanges()} update only, if not modified locally (i.e. STATUS="") and if modified remotely (i.e. any (!) column has changed)
      */
-    @Query("UPDATE NOTE SET title = :title, modified = :modified, favorite = :favorite, etag = :eTag, content = :content, status = '', excerpt = :excerpt " +
-            "WHERE id = :id AND status = '' AND (title != :title OR modified != :modified OR favorite != :favorite OR category != :category OR (eTag IS NULL OR eTag != :eTag) OR content != :content)")
-    int updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(long id, Long modified, String title, boolean favorite, String category, String eTag, String content, String excerpt);
+    @Transaction
+    default int updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(long id, Long modified, String title, boolean favorite, String category, String eTag, String content, String excerpt) {
+        final int rows = updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnOrContentHasChanged(id, modified, title, favorite, category, eTag, content, excerpt);
+        if (rows > 0) {
+            updateContent(id, content);
+        }
+        return rows;
+    }
+
+    @Query("UPDATE NOTE SET title = :title, modified = :modified, favorite = :favorite, etag = :eTag, status = '', excerpt = :excerpt " +
+            "WHERE id = :id AND status = '' AND (title != :title OR modified != :modified OR favorite != :favorite OR category != :category OR (eTag IS NULL OR eTag != :eTag) OR NOT EXISTS (SELECT 1 FROM NoteContent WHERE noteId = :id AND content = :content))")
+    int updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnOrContentHasChanged(long id, Long modified, String title, boolean favorite, String category, String eTag, String content, String excerpt);
+
+    /**
+     * used by: {@link it.niedermann.owncloud.notes.persistence.NotesServerSyncTask#pullRemoteChanges()} in case the <code>content</code> has been excluded from the response.
+     * Keeps the current <code>content</code> but marks it as outdated, so it will be fetched again.
+     */
+    @Query("UPDATE NOTE SET title = :title, modified = :modified, favorite = :favorite, category = :category, etag = :eTag, contentLoaded = 0 " +
+            "WHERE id = :id AND status = '' AND (title != :title OR modified != :modified OR favorite != :favorite OR category != :category OR (eTag IS NULL OR eTag != :eTag))")
+    int updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(long id, Long modified, String title, boolean favorite, String category, String eTag);
+
+    /**
+     * Stores the <code>content</code> which has been fetched after a metadata-only pull, unless the {@link Note} has been deleted or its <code>content</code> is already up to date.
+     */
+    @Transaction
+    default int updateContentIfNotLoaded(long id, String content, String excerpt) {
+        final int rows = updateExcerptIfContentNotLoaded(id, excerpt);
+        if (rows > 0) {
+            updateContent(id, content);
+        }
+        return rows;
+    }
+
+    @Query("UPDATE NOTE SET excerpt = :excerpt, contentLoaded = 1 WHERE id = :id AND contentLoaded = 0 AND status != 'LOCAL_DELETED'")
+    int updateExcerptIfContentNotLoaded(long id, String excerpt);
+
+    @Query("SELECT id FROM NOTE WHERE accountId = :accountId AND contentLoaded = 0 AND status != 'LOCAL_DELETED' ORDER BY modified DESC")
+    List<Long> getIdsWithoutContent(long accountId);
+
+    /**
+     * @return those of the given {@param ids} whose <code>content</code> has not yet been loaded
+     */
+    @Query("SELECT id FROM NOTE WHERE id IN (:ids) AND contentLoaded = 0 AND status != 'LOCAL_DELETED'")
+    List<Long> filterIdsWithoutContent(Collection<Long> ids);
 
     /**
      * This method return all of the categories with given {@param accountId}
@@ -190,7 +347,4 @@ public interface NoteDao {
 
     @Query("SELECT accountId, category, COUNT(*) as 'totalNotes' FROM NOTE WHERE STATUS != 'LOCAL_DELETED' AND accountId = :accountId AND category != '' AND category LIKE :searchTerm GROUP BY category")
     LiveData<List<CategoryWithNotesCount>> searchCategories$(Long accountId, String searchTerm);
-
-    @Query("SELECT COUNT(*) FROM NOTE WHERE STATUS != '' AND accountId = :accountId")
-    Long countUnsynchronizedNotes(long accountId);
 }
@@ -0,0 +1,181 @@
+package it.niedermann.owncloud.notes.persistence.dao;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.sqlite.db.SupportSQLiteQuery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.CategorySortingMethod;
+import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
+
+import static it.niedermann.owncloud.notes.shared.model.CategorySortingMethod.SORT_MODIFIED_DESC;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.DEFAULT_CATEGORY;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.FAVORITES;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.UNCATEGORIZED;
+
+/**
+ * Builds queries for {@link NoteDao#getNotesPage(SupportSQLiteQuery)} which return the same partial {@link Note}s in the same order as the <code>search</code> methods of {@link NoteDao},
+ * but only one page at a time.
+ * <p>
+ * Pages are fetched using keyset pagination: instead of an <code>OFFSET</code> which requires SQLite to step over all previous rows,
+ * the next page starts right after the sort key of the last {@link Note} of the previous page.
+ * Therefore the sort order always ends with the unique <code>id</code>.
+ * <p>
+ * The sort keys match the composite indices of {@link Note}, which also end with the <code>id</code>, so SQLite can walk an index instead of sorting all {@link Note}s of an {@link it.niedermann.owncloud.notes.persistence.entity.Account}.
+ */
+public class NotesPageQuery {
+
+    private static final String SELECT = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status, '' as eTag, 0 as scrollY, 1 as contentLoaded FROM NOTE";
+    private static final String SELECT_IDS = "SELECT id FROM NOTE";
+
+    private final StringBuilder sql;
+    private final List<Object> args = new ArrayList<>();
+    private final List<SortKey> sortKeys = new ArrayList<>(4);
+
+    private NotesPageQuery(@NonNull String select) {
+        // Use create(…) or createIds(…)
+        this.sql = new StringBuilder(select);
+    }
+
+    /**
+     * @param query              a full text search expression, see {@link it.niedermann.owncloud.notes.shared.util.NoteUtil#toFtsMatchQuery(CharSequence)}
+     * @param lastOfPreviousPage the last {@link Note} of the previous page or <code>null</code> to get the first page
+     * @param pageSize           maximum number of {@link Note}s of the page
+     */
+    @NonNull
+    public static SupportSQLiteQuery create(long accountId, @NonNull NavigationCategory selectedCategory, @NonNull String query, @Nullable CategorySortingMethod sortingMethod, @Nullable Note lastOfPreviousPage, int pageSize) {
+        final NotesPageQuery pageQuery = new NotesPageQuery(SELECT);
+        pageQuery.appendWhere(accountId, selectedCategory, query);
+
+        if (selectedCategory.getType() == DEFAULT_CATEGORY) {
+            pageQuery.sortKeys.add(new SortKey("category", false, false, Note::getCategory));
+        }
+
+        if (selectedCategory.getType() != FAVORITES) {
+            pageQuery.sortKeys.add(new SortKey("favorite", true, false, note -> note.getFavorite() ? 1 : 0));
+        }
+
+        if (sortingMethod == SORT_MODIFIED_DESC) {
+            pageQuery.sortKeys.add(new SortKey("modified", true, true, Note::getModified));
+            pageQuery.sortKeys.add(new SortKey("id", true, false, Note::getId));
+        } else {
+            pageQuery.sortKeys.add(new SortKey("title COLLATE NOCASE", false, false, Note::getTitle));
+            pageQuery.sortKeys.add(new SortKey("id", false, false, Note::getId));
+        }
+
+        if (lastOfPreviousPage != null) {
+            pageQuery.appendAfter(lastOfPreviousPage);
+        }
+        pageQuery.appendOrderBy();
+        pageQuery.sql.append(" LIMIT ?");
+        pageQuery.args.add(pageSize);
+        return new SimpleSQLiteQuery(pageQuery.sql.toString(), pageQuery.args.toArray());
+    }
+
+    /**
+     * Builds a query for {@link NoteDao#getNoteIds(SupportSQLiteQuery)} which returns the IDs of all {@link Note}s of all pages, no matter how many pages have been loaded yet.
+     *
+     * @param query a full text search expression, see {@link it.niedermann.owncloud.notes.shared.util.NoteUtil#toFtsMatchQuery(CharSequence)}
+     */
+    @NonNull
+    public static SupportSQLiteQuery createIds(long accountId, @NonNull NavigationCategory selectedCategory, @NonNull String query) {
+        final NotesPageQuery idsQuery = new NotesPageQuery(SELECT_IDS);
+        idsQuery.appendWhere(accountId, selectedCategory, query);
+        return new SimpleSQLiteQuery(idsQuery.sql.toString(), idsQuery.args.toArray());
+    }
+
+    private void appendWhere(long accountId, @NonNull NavigationCategory selectedCategory, @NonNull String query) {
+        sql.append(" WHERE accountId = ? AND status != 'LOCAL_DELETED'");
+        args.add(accountId);
+        if (!query.isEmpty()) {
+            sql.append(" AND id IN (SELECT rowid FROM NoteFts WHERE NoteFts MATCH ?)");
+            args.add(query);
+        }
+
+        if (selectedCategory.getType() == DEFAULT_CATEGORY) {
+            sql.append(" AND (category = ? OR category LIKE ? || '/%')");
+            args.add(selectedCategory.getCategory());
+            args.add(selectedCategory.getCategory());
+        } else if (selectedCategory.getType() == UNCATEGORIZED) {
+            sql.append(" AND category = ''");
+        }
+
+        if (selectedCategory.getType() == FAVORITES) {
+            sql.append(" AND favorite = 1");
+        }
+    }
+
+    /**
+     * Row values like <code>(a, b) &lt; (?, ?)</code> are not supported by older SQLite versions and can't mix sort directions, therefore the condition is expanded to
+     * <code>a &lt; ? OR (a = ? AND b &lt; ?) OR …</code>
+     * <p>
+     * SQLite sorts <code>null</code> values last in descending order, so they follow every other value of a nullable key and nothing follows them.
+     */
+    private void appendAfter(@NonNull Note lastOfPreviousPage) {
+        sql.append(" AND (");
+        boolean first = true;
+        for (int i = 0; i < sortKeys.size(); i++) {
+            final SortKey key = sortKeys.get(i);
+            final Object value = key.valueOf.apply(lastOfPreviousPage);
+            if (value == null) {
+                continue;
+            }
+            if (!first) {
+                sql.append(" OR ");
+            }
+            first = false;
+            sql.append('(');
+            for (int j = 0; j < i; j++) {
+                final SortKey equalKey = sortKeys.get(j);
+                sql.append(equalKey.expression).append(equalKey.nullable ? " IS ? AND " : " = ? AND ");
+                args.add(equalKey.valueOf.apply(lastOfPreviousPage));
+            }
+            if (key.nullable) {
+                sql.append('(').append(key.expression).append(" < ? OR ").append(key.expression).append(" IS NULL)");
+            } else {
+                sql.append(key.expression).append(key.descending ? " < ?" : " > ?");
+            }
+            sql.append(')');
+            args.add(value);
+        }
+        if (first) {
+            sql.append('0');
+        }
+        sql.append(')');
+    }
+
+    private void appendOrderBy() {
+        sql.append(" ORDER BY ");
+        for (int i = 0; i < sortKeys.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            final SortKey key = sortKeys.get(i);
+            sql.append(key.expression).append(key.descending ? " DESC" : " ASC");
+        }
+    }
+
+    private static class SortKey {
+        @NonNull
+        private final String expression;
+        private final boolean descending;
+        /**
+         * Only supported for descending keys
+         */
+        private final boolean nullable;
+        @NonNull
+        private final Function<Note, Object> valueOf;
+
+        private SortKey(@NonNull String expression, boolean descending, boolean nullable, @NonNull Function<Note, Object> valueOf) {
+            this.expression = expression;
+            this.descending = descending;
+            this.nullable = nullable;
+            this.valueOf = valueOf;
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package it.niedermann.owncloud.notes.persistence.dao;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.OutboxOperation;
+
+/**
+ * {@link OutboxOperation}s are only written by triggers, see {@link it.niedermann.owncloud.notes.persistence.NotesDatabase}.
+ */
+@SuppressWarnings("JavadocReference")
+@Dao
+public interface OutboxDao {
+
+    /**
+     * @return all pending {@link OutboxOperation}s of the given account, grouped by {@link Note}
+     */
+    @Query("SELECT * FROM OutboxOperation WHERE accountId = :accountId ORDER BY noteId, id")
+    List<OutboxOperation> getOperations(long accountId);
+
+    @Query("SELECT * FROM OutboxOperation WHERE noteId = :noteId ORDER BY id")
+    List<OutboxOperation> getOperationsOfNote(long noteId);
+
+    /**
+     * @return the number of {@link Note}s with pending {@link OutboxOperation}s, only reads the index of the (usually tiny) outbox instead of all {@link Note}s
+     */
+    @Query("SELECT COUNT(DISTINCT noteId) FROM OutboxOperation WHERE accountId = :accountId")
+    long countNotes(long accountId);
+}
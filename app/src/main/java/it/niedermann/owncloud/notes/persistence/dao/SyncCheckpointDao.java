@@ -0,0 +1,24 @@
+package it.niedermann.owncloud.notes.persistence.dao;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import it.niedermann.owncloud.notes.persistence.entity.SyncCheckpoint;
+
+@Dao
+public interface SyncCheckpointDao {
+
+    @Query("SELECT * FROM SyncCheckpoint WHERE accountId = :accountId")
+    SyncCheckpoint getSyncCheckpoint(long accountId);
+
+    /**
+     * Replaces the previous {@link SyncCheckpoint} of the same {@link it.niedermann.owncloud.notes.persistence.entity.Account}
+     */
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void saveSyncCheckpoint(SyncCheckpoint syncCheckpoint);
+
+    @Query("DELETE FROM SyncCheckpoint WHERE accountId = :accountId")
+    void deleteSyncCheckpoint(long accountId);
+}
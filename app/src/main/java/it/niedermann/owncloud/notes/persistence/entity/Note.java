@@ -10,11 +10,12 @@ import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
 import com.google.gson.annotations.SerializedName;
 
 import java.io.Serializable;
-import java.util.Calendar;
 
+import it.niedermann.owncloud.notes.persistence.sync.EpochSecondsAdapter;
 import it.niedermann.owncloud.notes.shared.model.DBStatus;
 import it.niedermann.owncloud.notes.shared.model.Item;
 
@@ -27,13 +28,14 @@ import it.niedermann.owncloud.notes.shared.model.Item;
                         onDelete = ForeignKey.CASCADE
                 )
         },
+        // Sort orders and collations of the indices can not be declared here, see NotesDatabase.CALLBACK
         indices = {
-                @Index(name = "IDX_NOTE_ACCOUNTID", value = "accountId"),
-                @Index(name = "IDX_NOTE_CATEGORY", value = "category"),
-                @Index(name = "IDX_NOTE_FAVORITE", value = "favorite"),
-                @Index(name = "IDX_NOTE_MODIFIED", value = "modified"),
-                @Index(name = "IDX_NOTE_REMOTEID", value = "remoteId"),
-                @Index(name = "IDX_NOTE_STATUS", value = "status")
+                @Index(name = "IDX_NOTE_ACCOUNTID_FAVORITE_MODIFIED", value = {"accountId", "favorite", "modified"}),
+                @Index(name = "IDX_NOTE_ACCOUNTID_FAVORITE_TITLE", value = {"accountId", "favorite", "title"}),
+                @Index(name = "IDX_NOTE_ACCOUNTID_CATEGORY_FAVORITE_MODIFIED", value = {"accountId", "category", "favorite", "modified"}),
+                @Index(name = "IDX_NOTE_ACCOUNTID_CATEGORY_FAVORITE_TITLE", value = {"accountId", "category", "favorite", "title"}),
+                @Index(name = "IDX_NOTE_ACCOUNTID_REMOTEID_STATUS", value = {"accountId", "remoteId", "status"}),
+                @Index(name = "IDX_NOTE_ACCOUNTID_MODIFIED", value = {"accountId", "modified"})
         }
 )
 public class Note implements Serializable, Item {
@@ -61,12 +63,19 @@ public class Note implements Serializable, Item {
     @ColumnInfo(defaultValue = "")
     private String category = "";
 
+    /**
+     * Milliseconds since the epoch, <code>null</code> in a pruned response if the {@link Note} has not been changed on the server
+     */
     @Expose
     @Nullable
-    private Calendar modified;
+    @JsonAdapter(EpochSecondsAdapter.class)
+    private Long modified;
 
+    /**
+     * Stored as {@link NoteContent}, see {@link it.niedermann.owncloud.notes.persistence.dao.NoteDao}
+     */
     @NonNull
-    @ColumnInfo(defaultValue = "")
+    @Ignore
     @Expose
     private String content = "";
 
@@ -86,12 +95,18 @@ public class Note implements Serializable, Item {
     @ColumnInfo(defaultValue = "0")
     private int scrollY = 0;
 
+    /**
+     * <code>false</code> if only the metadata has been pulled and the {@link #content} still needs to be fetched from the server
+     */
+    @ColumnInfo(defaultValue = "1")
+    private boolean contentLoaded = true;
+
     public Note() {
         super();
     }
 
     @Ignore
-    public Note(@Nullable Long remoteId, @Nullable Calendar modified, @NonNull String title, @NonNull String content, @NonNull String category, boolean favorite, @Nullable String eTag) {
+    public Note(@Nullable Long remoteId, @Nullable Long modified, @NonNull String title, @NonNull String content, @NonNull String category, boolean favorite, @Nullable String eTag) {
         this.remoteId = remoteId;
         this.title = title;
         this.modified = modified;
@@ -102,7 +117,7 @@ public class Note implements Serializable, Item {
     }
 
     @Ignore
-    public Note(long id, @Nullable Long remoteId, @Nullable Calendar modified, @NonNull String title, @NonNull String content, @NonNull String category, boolean favorite, @Nullable String etag, @NonNull DBStatus status, long accountId, @NonNull String excerpt, int scrollY) {
+    public Note(long id, @Nullable Long remoteId, @Nullable Long modified, @NonNull String title, @NonNull String content, @NonNull String category, boolean favorite, @Nullable String etag, @NonNull DBStatus status, long accountId, @NonNull String excerpt, int scrollY) {
         this(remoteId, modified, title, content, category, favorite, etag);
         this.id = id;
         this.status = status;
@@ -164,11 +179,11 @@ public class Note implements Serializable, Item {
     }
 
     @Nullable
-    public Calendar getModified() {
+    public Long getModified() {
         return modified;
     }
 
-    public void setModified(@Nullable Calendar modified) {
+    public void setModified(@Nullable Long modified) {
         this.modified = modified;
     }
 
@@ -215,6 +230,14 @@ public class Note implements Serializable, Item {
         this.scrollY = scrollY;
     }
 
+    public boolean isContentLoaded() {
+        return contentLoaded;
+    }
+
+    public void setContentLoaded(boolean contentLoaded) {
+        this.contentLoaded = contentLoaded;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
@@ -226,6 +249,7 @@ public class Note implements Serializable, Item {
         if (accountId != note.accountId) return false;
         if (favorite != note.favorite) return false;
         if (scrollY != note.scrollY) return false;
+        if (contentLoaded != note.contentLoaded) return false;
         if (remoteId != null ? !remoteId.equals(note.remoteId) : note.remoteId != null)
             return false;
         if (status != note.status) return false;
@@ -252,6 +276,7 @@ public class Note implements Serializable, Item {
         result = 31 * result + (eTag != null ? eTag.hashCode() : 0);
         result = 31 * result + excerpt.hashCode();
         result = 31 * result + scrollY;
+        result = 31 * result + (contentLoaded ? 1 : 0);
         return result;
     }
 
@@ -271,6 +296,7 @@ public class Note implements Serializable, Item {
                 ", eTag='" + eTag + '\'' +
                 ", excerpt='" + excerpt + '\'' +
                 ", scrollY=" + scrollY +
+                ", contentLoaded=" + contentLoaded +
                 '}';
     }
 }
\ No newline at end of file
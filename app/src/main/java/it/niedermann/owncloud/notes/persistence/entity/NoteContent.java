@@ -0,0 +1,78 @@
+package it.niedermann.owncloud.notes.persistence.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+/**
+ * The <code>content</code> of a {@link Note}.
+ * <p>
+ * Stored apart from the metadata, so scanning the {@link Note} table for lists, counts and categories does not have to read the overflow pages of huge {@link Note}s
+ * and updating a single metadata column like {@link Note#getScrollY()} does not rewrite the whole <code>content</code>.
+ * <p>
+ * Also serves as external content of {@link NoteFts}, so the <code>content</code> is not stored a second time by the full text search index.
+ * Therefore the <code>title</code> is a copy of {@link Note#getTitle()}, which is kept up to date by a trigger.
+ */
+@Entity(
+        foreignKeys = {
+                @ForeignKey(
+                        entity = Note.class,
+                        parentColumns = "id",
+                        childColumns = "noteId",
+                        onDelete = ForeignKey.CASCADE
+                )
+        }
+)
+public class NoteContent {
+
+    @PrimaryKey
+    private long noteId;
+
+    @NonNull
+    @ColumnInfo(defaultValue = "")
+    private String title = "";
+
+    @NonNull
+    @ColumnInfo(defaultValue = "")
+    private String content = "";
+
+    public NoteContent() {
+        // Default constructor
+    }
+
+    @Ignore
+    public NoteContent(long noteId, @NonNull String title, @NonNull String content) {
+        this.noteId = noteId;
+        this.title = title;
+        this.content = content;
+    }
+
+    public long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(long noteId) {
+        this.noteId = noteId;
+    }
+
+    @NonNull
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(@NonNull String title) {
+        this.title = title;
+    }
+
+    @NonNull
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(@NonNull String content) {
+        this.content = content;
+    }
+}
@@ -0,0 +1,56 @@
+package it.niedermann.owncloud.notes.persistence.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+import androidx.room.PrimaryKey;
+
+/**
+ * Full text search index for the {@link Note#title} and {@link Note#content} of all {@link Note}s.
+ * The <code>rowid</code> equals the {@link Note#id}.
+ * <p>
+ * Declared with {@link NoteContent} as external content, so only the index is stored and not another copy of each <code>content</code>.
+ * Room maintains the index by triggers on {@link NoteContent}, which is only updated when the <code>title</code> or <code>content</code> actually changes,
+ * see {@link it.niedermann.owncloud.notes.persistence.dao.NoteDao#updateContent(long, String)} and {@link it.niedermann.owncloud.notes.persistence.NotesDatabase}.
+ */
+@SuppressWarnings("JavadocReference")
+@Fts4(contentEntity = NoteContent.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity
+public class NoteFts {
+
+    @PrimaryKey
+    @ColumnInfo(name = "rowid")
+    private long rowid;
+    @NonNull
+    private String title = "";
+    @NonNull
+    private String content = "";
+
+    public long getRowid() {
+        return rowid;
+    }
+
+    public void setRowid(long rowid) {
+        this.rowid = rowid;
+    }
+
+    @NonNull
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(@NonNull String title) {
+        this.title = title;
+    }
+
+    @NonNull
+    public String getContent() {
+        return content;
+    }
+
+    public void setContent(@NonNull String content) {
+        this.content = content;
+    }
+}
@@ -0,0 +1,30 @@
+package it.niedermann.owncloud.notes.persistence.entity;
+
+import androidx.annotation.Nullable;
+import androidx.room.Embedded;
+
+/**
+ * A {@link Note} joined with its {@link NoteContent}, which is only read when a single {@link Note} is needed completely.
+ */
+public class NoteWithContent {
+
+    @Embedded
+    public Note note;
+
+    @Nullable
+    public String content;
+
+    /**
+     * @return the {@link Note} including its <code>content</code> or <code>null</code> if the {@link Note} does not exist
+     */
+    @Nullable
+    public static Note toNote(@Nullable NoteWithContent noteWithContent) {
+        if (noteWithContent == null) {
+            return null;
+        }
+        if (noteWithContent.content != null) {
+            noteWithContent.note.setContent(noteWithContent.content);
+        }
+        return noteWithContent.note;
+    }
+}
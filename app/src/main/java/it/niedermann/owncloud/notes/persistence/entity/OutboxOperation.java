@@ -0,0 +1,121 @@
+package it.niedermann.owncloud.notes.persistence.entity;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * A local change of a {@link Note} which has not yet been pushed to the server.
+ * <p>
+ * Operations are recorded by triggers whenever a {@link Note} gets modified locally, see {@link it.niedermann.owncloud.notes.persistence.NotesDatabase}.
+ * There is at most one operation per {@link Type} and {@link Note}, so editing a {@link Note} many times while offline still results in a single {@link Type#CONTENT} operation.
+ * All operations of a {@link Note} are removed as soon as it has been synchronized.
+ */
+@SuppressWarnings("JavadocReference")
+@Entity(
+        foreignKeys = {
+                @ForeignKey(
+                        entity = Note.class,
+                        parentColumns = "id",
+                        childColumns = "noteId",
+                        onDelete = ForeignKey.CASCADE
+                )
+        },
+        indices = {
+                @Index(name = "IDX_OUTBOXOPERATION_ACCOUNTID_NOTEID", value = {"accountId", "noteId"}),
+                @Index(name = "IDX_UNIQUE_OUTBOXOPERATION_NOTEID_TYPE", value = {"noteId", "type"}, unique = true)
+        }
+)
+public class OutboxOperation {
+
+    @PrimaryKey(autoGenerate = true)
+    private long id;
+    private long accountId;
+    private long noteId;
+    @NonNull
+    private Type type = Type.FULL;
+
+    public OutboxOperation() {
+        // Default constructor
+    }
+
+    @Ignore
+    public OutboxOperation(long accountId, long noteId, @NonNull Type type) {
+        this.accountId = accountId;
+        this.noteId = noteId;
+        this.type = type;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(long accountId) {
+        this.accountId = accountId;
+    }
+
+    public long getNoteId() {
+        return noteId;
+    }
+
+    public void setNoteId(long noteId) {
+        this.noteId = noteId;
+    }
+
+    @NonNull
+    public Type getType() {
+        return type;
+    }
+
+    public void setType(@NonNull Type type) {
+        this.type = type;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "OutboxOperation{" +
+                "id=" + id +
+                ", accountId=" + accountId +
+                ", noteId=" + noteId +
+                ", type=" + type +
+                '}';
+    }
+
+    /**
+     * The kind of change, stored by its name
+     */
+    public enum Type {
+        /**
+         * The whole {@link Note} needs to be pushed, e. g. because it has been created locally or moved to another {@link Account}
+         */
+        FULL,
+        /**
+         * The {@link Note#title} and / or the {@link Note#content} has been changed
+         */
+        CONTENT,
+        /**
+         * The {@link Note#favorite} state has been toggled
+         */
+        FAVORITE,
+        /**
+         * The {@link Note#category} has been changed
+         */
+        CATEGORY,
+        /**
+         * The {@link Note} has been deleted, supersedes all other operations
+         */
+        DELETE
+    }
+}
@@ -0,0 +1,117 @@
+package it.niedermann.owncloud.notes.persistence.entity;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.room.ColumnInfo;
+import androidx.room.Entity;
+import androidx.room.ForeignKey;
+import androidx.room.Ignore;
+import androidx.room.PrimaryKey;
+
+/**
+ * Progress of a chunked pull which has not yet been finished.
+ * <p>
+ * Each chunk is stored as soon as it has been received, so an interrupted synchronization of a huge {@link Account} continues with the next chunk
+ * instead of downloading all {@link Note}s again. The {@link SyncCheckpoint} is removed after the last chunk has been processed.
+ */
+@Entity(
+        foreignKeys = {
+                @ForeignKey(
+                        entity = Account.class,
+                        parentColumns = "id",
+                        childColumns = "accountId",
+                        onDelete = ForeignKey.CASCADE
+                )
+        }
+)
+public class SyncCheckpoint {
+
+    @PrimaryKey
+    private long accountId;
+    /**
+     * Cursor of the next chunk which has to be fetched
+     */
+    @NonNull
+    private String chunkCursor = "";
+    /**
+     * <code>pruneBefore</code> parameter of the first chunk in milliseconds, the following chunks must use the same value
+     */
+    private long pruneBefore;
+    /**
+     * ETag of the first chunk, which is used for the next synchronization after the last chunk has been processed
+     */
+    @Nullable
+    private String eTag;
+    /**
+     * Number of {@link Note}s which have already been pulled, used to display the progress of a resumed synchronization
+     */
+    @ColumnInfo(defaultValue = "0")
+    private int pulledNotes;
+
+    public SyncCheckpoint() {
+        // Default constructor
+    }
+
+    @Ignore
+    public SyncCheckpoint(long accountId, @NonNull String chunkCursor, long pruneBefore, @Nullable String eTag, int pulledNotes) {
+        this.accountId = accountId;
+        this.chunkCursor = chunkCursor;
+        this.pruneBefore = pruneBefore;
+        this.eTag = eTag;
+        this.pulledNotes = pulledNotes;
+    }
+
+    public long getAccountId() {
+        return accountId;
+    }
+
+    public void setAccountId(long accountId) {
+        this.accountId = accountId;
+    }
+
+    @NonNull
+    public String getChunkCursor() {
+        return chunkCursor;
+    }
+
+    public void setChunkCursor(@NonNull String chunkCursor) {
+        this.chunkCursor = chunkCursor;
+    }
+
+    public long getPruneBefore() {
+        return pruneBefore;
+    }
+
+    public void setPruneBefore(long pruneBefore) {
+        this.pruneBefore = pruneBefore;
+    }
+
+    @Nullable
+    public String getETag() {
+        return eTag;
+    }
+
+    public void setETag(@Nullable String eTag) {
+        this.eTag = eTag;
+    }
+
+    public int getPulledNotes() {
+        return pulledNotes;
+    }
+
+    public void setPulledNotes(int pulledNotes) {
+        this.pulledNotes = pulledNotes;
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        return "SyncCheckpoint{" +
+                "accountId=" + accountId +
+                ", chunkCursor='" + chunkCursor + '\'' +
+                ", pruneBefore=" + pruneBefore +
+                ", eTag='" + eTag + '\'' +
+                ", pulledNotes=" + pulledNotes +
+                '}';
+    }
+}
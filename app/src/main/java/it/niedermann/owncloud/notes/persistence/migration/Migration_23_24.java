@@ -0,0 +1,40 @@
+package it.niedermann.owncloud.notes.persistence.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.NoteFts;
+
+/**
+ * Adds a full text search index {@link NoteFts} for the <code>title</code> and <code>content</code> of {@link Note}s,
+ * so searching no longer needs to scan the <code>content</code> of every {@link Note} using <code>LIKE</code>.
+ */
+public class Migration_23_24 extends Migration {
+
+    public Migration_23_24() {
+        super(23, 24);
+    }
+
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase db) {
+        createNoteFtsTable(db);
+        createNoteFtsTriggers(db);
+        fillNoteFtsTable(db);
+    }
+
+    private static void createNoteFtsTable(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `NoteFts` USING FTS4(`title` TEXT, `content` TEXT, tokenize=unicode61)");
+    }
+
+    private static void createNoteFtsTriggers(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_FTS_NOTE_INS AFTER INSERT ON Note BEGIN INSERT INTO NoteFts(rowid, title, content) VALUES (NEW.id, NEW.title, NEW.content); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_FTS_NOTE_UPD AFTER UPDATE OF title, content ON Note WHEN OLD.title IS NOT NEW.title OR OLD.content IS NOT NEW.content BEGIN UPDATE NoteFts SET title = NEW.title, content = NEW.content WHERE rowid = NEW.id; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_FTS_NOTE_DEL AFTER DELETE ON Note BEGIN DELETE FROM NoteFts WHERE rowid = OLD.id; END;");
+    }
+
+    private static void fillNoteFtsTable(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("INSERT INTO NoteFts(rowid, title, content) SELECT id, title, content FROM Note");
+    }
+}
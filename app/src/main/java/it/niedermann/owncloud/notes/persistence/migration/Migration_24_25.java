@@ -0,0 +1,41 @@
+package it.niedermann.owncloud.notes.persistence.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import it.niedermann.owncloud.notes.persistence.entity.CategoryOptions;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+
+/**
+ * Replaces the triggers which cleaned up the whole {@link CategoryOptions} table after <em>every</em> write to a {@link Note}
+ * (including <code>scrollY</code> updates) with triggers which only check the previous category of the changed {@link Note}.
+ */
+public class Migration_24_25 extends Migration {
+
+    public Migration_24_25() {
+        super(24, 25);
+    }
+
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase db) {
+        replaceCategoryCleanupTriggers(db);
+        cleanUpCategoryOptions(db);
+    }
+
+    private static void replaceCategoryCleanupTriggers(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS TRG_CLEANUP_CATEGORIES_DEL");
+        db.execSQL("DROP TRIGGER IF EXISTS TRG_CLEANUP_CATEGORIES_UPD");
+        final String oldCategoryUnused = "NOT EXISTS (SELECT 1 FROM Note WHERE Note.accountId = OLD.accountId AND Note.category = OLD.category)";
+        final String cleanUpStatement = "DELETE FROM CategoryOptions WHERE CategoryOptions.accountId = OLD.accountId AND CategoryOptions.category = OLD.category;";
+        db.execSQL("CREATE TRIGGER TRG_CLEANUP_CATEGORIES_DEL AFTER DELETE ON Note WHEN " + oldCategoryUnused + " BEGIN " + cleanUpStatement + " END;");
+        db.execSQL("CREATE TRIGGER TRG_CLEANUP_CATEGORIES_UPD AFTER UPDATE OF category, accountId ON Note WHEN (OLD.category != NEW.category OR OLD.accountId != NEW.accountId) AND " + oldCategoryUnused + " BEGIN " + cleanUpStatement + " END;");
+    }
+
+    /**
+     * The new triggers only keep the {@link CategoryOptions} clean, so remove all orphans once.
+     */
+    private static void cleanUpCategoryOptions(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM CategoryOptions WHERE CategoryOptions.category NOT IN (SELECT Note.category FROM Note WHERE Note.accountId = CategoryOptions.accountId)");
+    }
+}
@@ -0,0 +1,51 @@
+package it.niedermann.owncloud.notes.persistence.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.OutboxOperation;
+
+/**
+ * Adds the {@link OutboxOperation} table which records the kind of local changes of {@link Note}s,
+ * so pushing no longer needs to load every locally modified {@link Note} by scanning its <code>status</code>.
+ */
+public class Migration_25_26 extends Migration {
+
+    public Migration_25_26() {
+        super(25, 26);
+    }
+
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase db) {
+        createOutboxTable(db);
+        createOutboxTriggers(db);
+        fillOutboxTable(db);
+    }
+
+    private static void createOutboxTable(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `OutboxOperation` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `accountId` INTEGER NOT NULL, `noteId` INTEGER NOT NULL, `type` TEXT NOT NULL, FOREIGN KEY(`noteId`) REFERENCES `Note`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `IDX_OUTBOXOPERATION_ACCOUNTID_NOTEID` ON `OutboxOperation` (`accountId`, `noteId`)");
+        db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `IDX_UNIQUE_OUTBOXOPERATION_NOTEID_TYPE` ON `OutboxOperation` (`noteId`, `type`)");
+    }
+
+    private static void createOutboxTriggers(@NonNull SupportSQLiteDatabase db) {
+        final String insertOperation = "INSERT OR IGNORE INTO OutboxOperation(accountId, noteId, type) VALUES (NEW.accountId, NEW.id, ";
+        final String noColumnChanged = "OLD.title IS NEW.title AND OLD.content IS NEW.content AND OLD.favorite IS NEW.favorite AND OLD.category IS NEW.category";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_INS AFTER INSERT ON Note WHEN NEW.status != '' BEGIN " + insertOperation + "CASE NEW.status WHEN 'LOCAL_DELETED' THEN 'DELETE' ELSE 'FULL' END); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_CONTENT AFTER UPDATE OF title, content ON Note WHEN NEW.status = 'LOCAL_EDITED' AND (OLD.title IS NOT NEW.title OR OLD.content IS NOT NEW.content) BEGIN " + insertOperation + "'CONTENT'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_FAVORITE AFTER UPDATE OF favorite ON Note WHEN NEW.status = 'LOCAL_EDITED' AND OLD.favorite IS NOT NEW.favorite BEGIN " + insertOperation + "'FAVORITE'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_CATEGORY AFTER UPDATE OF category ON Note WHEN NEW.status = 'LOCAL_EDITED' AND OLD.category IS NOT NEW.category BEGIN " + insertOperation + "'CATEGORY'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_EDITED AFTER UPDATE OF status ON Note WHEN NEW.status = 'LOCAL_EDITED' AND (OLD.status IS 'LOCAL_DELETED' OR (" + noColumnChanged + " AND NOT EXISTS (SELECT 1 FROM OutboxOperation WHERE noteId = NEW.id))) BEGIN DELETE FROM OutboxOperation WHERE noteId = NEW.id AND type = 'DELETE'; " + insertOperation + "'FULL'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_DELETED AFTER UPDATE OF status ON Note WHEN NEW.status = 'LOCAL_DELETED' AND OLD.status IS NOT 'LOCAL_DELETED' BEGIN DELETE FROM OutboxOperation WHERE noteId = NEW.id; " + insertOperation + "'DELETE'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_SYNCED AFTER UPDATE OF status ON Note WHEN NEW.status = '' AND OLD.status != '' BEGIN DELETE FROM OutboxOperation WHERE noteId = NEW.id; END;");
+    }
+
+    /**
+     * The kind of existing local changes is unknown, therefore locally modified {@link Note}s are pushed completely once.
+     */
+    private static void fillOutboxTable(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("INSERT OR IGNORE INTO OutboxOperation(accountId, noteId, type) SELECT accountId, id, CASE status WHEN 'LOCAL_DELETED' THEN 'DELETE' ELSE 'FULL' END FROM Note WHERE status != ''");
+    }
+}
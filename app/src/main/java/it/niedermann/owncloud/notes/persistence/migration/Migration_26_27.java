@@ -0,0 +1,22 @@
+package it.niedermann.owncloud.notes.persistence.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import it.niedermann.owncloud.notes.persistence.entity.SyncCheckpoint;
+
+/**
+ * Adds the {@link SyncCheckpoint} table to resume interrupted chunked synchronizations.
+ */
+public class Migration_26_27 extends Migration {
+
+    public Migration_26_27() {
+        super(26, 27);
+    }
+
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `SyncCheckpoint` (`accountId` INTEGER NOT NULL, `chunkCursor` TEXT NOT NULL, `pruneBefore` INTEGER NOT NULL, `eTag` TEXT, PRIMARY KEY(`accountId`), FOREIGN KEY(`accountId`) REFERENCES `Account`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+    }
+}
@@ -0,0 +1,23 @@
+package it.niedermann.owncloud.notes.persistence.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+
+/**
+ * Adds the <code>contentLoaded</code> flag to {@link Note}s, so the <code>content</code> can be fetched after a metadata-only synchronization.
+ * All existing {@link Note}s have been synchronized completely.
+ */
+public class Migration_27_28 extends Migration {
+
+    public Migration_27_28() {
+        super(27, 28);
+    }
+
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("ALTER TABLE `Note` ADD COLUMN `contentLoaded` INTEGER NOT NULL DEFAULT 1");
+    }
+}
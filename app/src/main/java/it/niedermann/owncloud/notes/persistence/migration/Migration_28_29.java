@@ -0,0 +1,22 @@
+package it.niedermann.owncloud.notes.persistence.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import it.niedermann.owncloud.notes.persistence.entity.SyncCheckpoint;
+
+/**
+ * Stores the number of already pulled notes in the {@link SyncCheckpoint}, so the progress of a resumed synchronization can be displayed.
+ */
+public class Migration_28_29 extends Migration {
+
+    public Migration_28_29() {
+        super(28, 29);
+    }
+
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("ALTER TABLE `SyncCheckpoint` ADD COLUMN `pulledNotes` INTEGER NOT NULL DEFAULT 0");
+    }
+}
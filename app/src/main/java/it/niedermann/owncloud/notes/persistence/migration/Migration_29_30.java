@@ -0,0 +1,82 @@
+package it.niedermann.owncloud.notes.persistence.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.NoteContent;
+
+/**
+ * Moves the <code>content</code> of the {@link Note}s to {@link NoteContent}, so queries for lists, counts and categories only read the metadata.
+ * <p>
+ * SQLite can not drop columns on older Android versions, therefore the {@link Note} table is recreated. Foreign keys are not yet enforced while migrating,
+ * so dropping the old table does not cascade to the {@link it.niedermann.owncloud.notes.persistence.entity.OutboxOperation}s and widgets.
+ */
+public class Migration_29_30 extends Migration {
+
+    public Migration_29_30() {
+        super(29, 30);
+    }
+
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase db) {
+        createNoteContentTable(db);
+        recreateNoteTable(db);
+        createNoteIndices(db);
+        createNoteTriggers(db);
+        createNoteContentTriggers(db);
+    }
+
+    private static void createNoteContentTable(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TABLE IF NOT EXISTS `NoteContent` (`noteId` INTEGER NOT NULL, `content` TEXT NOT NULL DEFAULT '', PRIMARY KEY(`noteId`), FOREIGN KEY(`noteId`) REFERENCES `Note`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+        db.execSQL("INSERT INTO NoteContent(noteId, content) SELECT id, content FROM Note");
+    }
+
+    private static void recreateNoteTable(@NonNull SupportSQLiteDatabase db) {
+        final String columns = "id, remoteId, accountId, status, title, category, modified, favorite, eTag, excerpt, scrollY, contentLoaded";
+        db.execSQL("CREATE TABLE `Note_new` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `remoteId` INTEGER, `accountId` INTEGER NOT NULL, `status` TEXT NOT NULL, `title` TEXT NOT NULL DEFAULT '', `category` TEXT NOT NULL DEFAULT '', `modified` INTEGER, `favorite` INTEGER NOT NULL DEFAULT 0, `eTag` TEXT, `excerpt` TEXT NOT NULL DEFAULT '', `scrollY` INTEGER NOT NULL DEFAULT 0, `contentLoaded` INTEGER NOT NULL DEFAULT 1, FOREIGN KEY(`accountId`) REFERENCES `Account`(`id`) ON UPDATE NO ACTION ON DELETE CASCADE )");
+        db.execSQL("INSERT INTO Note_new(" + columns + ") SELECT " + columns + " FROM Note");
+        // Keep the sequence, so IDs of already deleted notes are not reused
+        db.execSQL("UPDATE sqlite_sequence SET seq = (SELECT MAX(seq) FROM sqlite_sequence WHERE name IN ('Note', 'Note_new')) WHERE name = 'Note_new'");
+        db.execSQL("DROP TABLE Note");
+        db.execSQL("ALTER TABLE Note_new RENAME TO Note");
+    }
+
+    private static void createNoteIndices(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS `IDX_NOTE_ACCOUNTID` ON `Note` (`accountId`)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `IDX_NOTE_CATEGORY` ON `Note` (`category`)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `IDX_NOTE_FAVORITE` ON `Note` (`favorite`)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `IDX_NOTE_MODIFIED` ON `Note` (`modified`)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `IDX_NOTE_REMOTEID` ON `Note` (`remoteId`)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS `IDX_NOTE_STATUS` ON `Note` (`status`)");
+    }
+
+    /**
+     * Dropping the old {@link Note} table also dropped its triggers. They no longer look at the <code>content</code>, which is handled by {@link #createNoteContentTriggers(SupportSQLiteDatabase)}
+     * and by {@link it.niedermann.owncloud.notes.persistence.dao.NoteDao#updateNote(Note)}.
+     */
+    private static void createNoteTriggers(@NonNull SupportSQLiteDatabase db) {
+        final String oldCategoryUnused = "NOT EXISTS (SELECT 1 FROM Note WHERE Note.accountId = OLD.accountId AND Note.category = OLD.category)";
+        final String cleanUpStatement = "DELETE FROM CategoryOptions WHERE CategoryOptions.accountId = OLD.accountId AND CategoryOptions.category = OLD.category;";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_CLEANUP_CATEGORIES_DEL AFTER DELETE ON Note WHEN " + oldCategoryUnused + " BEGIN " + cleanUpStatement + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_CLEANUP_CATEGORIES_UPD AFTER UPDATE OF category, accountId ON Note WHEN (OLD.category != NEW.category OR OLD.accountId != NEW.accountId) AND " + oldCategoryUnused + " BEGIN " + cleanUpStatement + " END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_FTS_NOTE_INS AFTER INSERT ON Note BEGIN INSERT INTO NoteFts(rowid, title, content) VALUES (NEW.id, NEW.title, ''); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_FTS_NOTE_UPD AFTER UPDATE OF title ON Note WHEN OLD.title IS NOT NEW.title BEGIN UPDATE NoteFts SET title = NEW.title WHERE rowid = NEW.id; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_FTS_NOTE_DEL AFTER DELETE ON Note BEGIN DELETE FROM NoteFts WHERE rowid = OLD.id; END;");
+        final String insertOperation = "INSERT OR IGNORE INTO OutboxOperation(accountId, noteId, type) VALUES (NEW.accountId, NEW.id, ";
+        final String noColumnChanged = "OLD.title IS NEW.title AND OLD.favorite IS NEW.favorite AND OLD.category IS NEW.category";
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_INS AFTER INSERT ON Note WHEN NEW.status != '' BEGIN " + insertOperation + "CASE NEW.status WHEN 'LOCAL_DELETED' THEN 'DELETE' ELSE 'FULL' END); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_CONTENT AFTER UPDATE OF title ON Note WHEN NEW.status = 'LOCAL_EDITED' AND OLD.title IS NOT NEW.title BEGIN " + insertOperation + "'CONTENT'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_FAVORITE AFTER UPDATE OF favorite ON Note WHEN NEW.status = 'LOCAL_EDITED' AND OLD.favorite IS NOT NEW.favorite BEGIN " + insertOperation + "'FAVORITE'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_CATEGORY AFTER UPDATE OF category ON Note WHEN NEW.status = 'LOCAL_EDITED' AND OLD.category IS NOT NEW.category BEGIN " + insertOperation + "'CATEGORY'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_EDITED AFTER UPDATE OF status ON Note WHEN NEW.status = 'LOCAL_EDITED' AND (OLD.status IS 'LOCAL_DELETED' OR (" + noColumnChanged + " AND NOT EXISTS (SELECT 1 FROM OutboxOperation WHERE noteId = NEW.id))) BEGIN DELETE FROM OutboxOperation WHERE noteId = NEW.id AND type = 'DELETE'; " + insertOperation + "'FULL'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_DELETED AFTER UPDATE OF status ON Note WHEN NEW.status = 'LOCAL_DELETED' AND OLD.status IS NOT 'LOCAL_DELETED' BEGIN DELETE FROM OutboxOperation WHERE noteId = NEW.id; " + insertOperation + "'DELETE'); END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_OUTBOX_NOTE_SYNCED AFTER UPDATE OF status ON Note WHEN NEW.status = '' AND OLD.status != '' BEGIN DELETE FROM OutboxOperation WHERE noteId = NEW.id; END;");
+    }
+
+    private static void createNoteContentTriggers(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_FTS_NOTECONTENT_INS AFTER INSERT ON NoteContent BEGIN UPDATE NoteFts SET content = NEW.content WHERE rowid = NEW.noteId; END;");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_FTS_NOTECONTENT_UPD AFTER UPDATE OF content ON NoteContent WHEN OLD.content IS NOT NEW.content BEGIN UPDATE NoteFts SET content = NEW.content WHERE rowid = NEW.noteId; END;");
+    }
+}
@@ -0,0 +1,42 @@
+package it.niedermann.owncloud.notes.persistence.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+
+/**
+ * Replaces the single column indices of {@link Note} by composite indices which match the filters and sort orders of the queries,
+ * so SQLite does not need to sort all {@link Note}s of an {@link it.niedermann.owncloud.notes.persistence.entity.Account} in a temporary B-tree.
+ */
+public class Migration_30_31 extends Migration {
+
+    public Migration_30_31() {
+        super(30, 31);
+    }
+
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase db) {
+        dropSingleColumnIndices(db);
+        createCompositeIndices(db);
+    }
+
+    private static void dropSingleColumnIndices(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("DROP INDEX IF EXISTS IDX_NOTE_ACCOUNTID");
+        db.execSQL("DROP INDEX IF EXISTS IDX_NOTE_CATEGORY");
+        db.execSQL("DROP INDEX IF EXISTS IDX_NOTE_FAVORITE");
+        db.execSQL("DROP INDEX IF EXISTS IDX_NOTE_MODIFIED");
+        db.execSQL("DROP INDEX IF EXISTS IDX_NOTE_REMOTEID");
+        db.execSQL("DROP INDEX IF EXISTS IDX_NOTE_STATUS");
+    }
+
+    private static void createCompositeIndices(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_NOTE_ACCOUNTID_FAVORITE_MODIFIED ON Note (accountId, favorite, modified)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_NOTE_ACCOUNTID_FAVORITE_TITLE ON Note (accountId, favorite DESC, title COLLATE NOCASE)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_NOTE_ACCOUNTID_CATEGORY_FAVORITE_MODIFIED ON Note (accountId, category DESC, favorite, modified)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_NOTE_ACCOUNTID_CATEGORY_FAVORITE_TITLE ON Note (accountId, category, favorite DESC, title COLLATE NOCASE)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_NOTE_ACCOUNTID_REMOTEID_STATUS ON Note (accountId, remoteId, status)");
+        db.execSQL("CREATE INDEX IF NOT EXISTS IDX_NOTE_ACCOUNTID_MODIFIED ON Note (accountId, modified)");
+    }
+}
@@ -0,0 +1,49 @@
+package it.niedermann.owncloud.notes.persistence.migration;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.NoteContent;
+import it.niedermann.owncloud.notes.persistence.entity.NoteFts;
+
+/**
+ * Recreates {@link NoteFts} with {@link NoteContent} as external content, so the <code>content</code> of each {@link Note} is no longer stored twice.
+ * <p>
+ * The triggers which sync {@link NoteFts} with its external content are created by Room after all migrations ran.
+ * Only the <code>title</code> of the {@link Note} has to be copied to {@link NoteContent} by an own trigger.
+ */
+public class Migration_31_32 extends Migration {
+
+    public Migration_31_32() {
+        super(31, 32);
+    }
+
+    @Override
+    public void migrate(@NonNull SupportSQLiteDatabase db) {
+        dropNoteFtsTriggers(db);
+        addTitleToNoteContent(db);
+        recreateNoteFtsTable(db);
+    }
+
+    private static void dropNoteFtsTriggers(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("DROP TRIGGER IF EXISTS TRG_FTS_NOTE_INS");
+        db.execSQL("DROP TRIGGER IF EXISTS TRG_FTS_NOTE_UPD");
+        db.execSQL("DROP TRIGGER IF EXISTS TRG_FTS_NOTE_DEL");
+        db.execSQL("DROP TRIGGER IF EXISTS TRG_FTS_NOTECONTENT_INS");
+        db.execSQL("DROP TRIGGER IF EXISTS TRG_FTS_NOTECONTENT_UPD");
+    }
+
+    private static void addTitleToNoteContent(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("ALTER TABLE `NoteContent` ADD COLUMN `title` TEXT NOT NULL DEFAULT ''");
+        db.execSQL("UPDATE NoteContent SET title = (SELECT title FROM Note WHERE Note.id = NoteContent.noteId)");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS TRG_NOTECONTENT_TITLE_UPD AFTER UPDATE OF title ON Note WHEN OLD.title IS NOT NEW.title BEGIN UPDATE NoteContent SET title = NEW.title WHERE noteId = NEW.id; END;");
+    }
+
+    private static void recreateNoteFtsTable(@NonNull SupportSQLiteDatabase db) {
+        db.execSQL("DROP TABLE IF EXISTS `NoteFts`");
+        db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `NoteFts` USING FTS4(`title` TEXT NOT NULL, `content` TEXT NOT NULL, tokenize=unicode61, content=`NoteContent`)");
+        db.execSQL("INSERT INTO NoteFts(NoteFts) VALUES('rebuild')");
+    }
+}
@@ -0,0 +1,34 @@
+package it.niedermann.owncloud.notes.persistence.sync;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+/**
+ * The Notes API transfers timestamps as seconds since the epoch while the app stores milliseconds since the epoch.
+ * <p>
+ * Unlike a {@link java.util.Calendar} based adapter this does not allocate a {@link java.util.Calendar} with its {@link java.util.TimeZone} and {@link java.util.Locale} lookups for each deserialized {@link it.niedermann.owncloud.notes.persistence.entity.Note}.
+ */
+public class EpochSecondsAdapter extends TypeAdapter<Long> {
+
+    @Override
+    public void write(JsonWriter out, Long millis) throws IOException {
+        if (millis == null) {
+            out.nullValue();
+        } else {
+            out.value(millis / 1_000);
+        }
+    }
+
+    @Override
+    public Long read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextLong() * 1_000;
+    }
+}
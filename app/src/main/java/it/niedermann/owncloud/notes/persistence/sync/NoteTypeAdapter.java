@@ -0,0 +1,108 @@
+package it.niedermann.owncloud.notes.persistence.sync;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+
+/**
+ * Streaming (de)serialization of the exposed properties of a {@link Note} without reflection.
+ * <p>
+ * Produces the same JSON as the reflection based binding of the {@link com.google.gson.annotations.Expose}d fields, including their order and the omission of <code>null</code> values.
+ * Unknown properties like <code>readonly</code> or <code>error</code> are skipped. <code>null</code> values keep the defaults of a new {@link Note}.
+ */
+public class NoteTypeAdapter extends TypeAdapter<Note> {
+
+    private static final String ID = "id";
+    private static final String TITLE = "title";
+    private static final String CATEGORY = "category";
+    private static final String MODIFIED = "modified";
+    private static final String CONTENT = "content";
+    private static final String FAVORITE = "favorite";
+    private static final String ETAG = "etag";
+
+    private final EpochSecondsAdapter epochSecondsAdapter = new EpochSecondsAdapter();
+
+    @Override
+    public void write(JsonWriter out, Note note) throws IOException {
+        if (note == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        if (note.getRemoteId() != null) {
+            out.name(ID).value(note.getRemoteId());
+        }
+        out.name(TITLE).value(note.getTitle());
+        out.name(CATEGORY).value(note.getCategory());
+        if (note.getModified() != null) {
+            out.name(MODIFIED);
+            epochSecondsAdapter.write(out, note.getModified());
+        }
+        out.name(CONTENT).value(note.getContent());
+        out.name(FAVORITE).value(note.getFavorite());
+        if (note.getETag() != null) {
+            out.name(ETAG).value(note.getETag());
+        }
+        out.endObject();
+    }
+
+    @Override
+    public Note read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        final Note note = new Note();
+        in.beginObject();
+        while (in.hasNext()) {
+            final String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case ID:
+                    note.setRemoteId(in.nextLong());
+                    break;
+                case TITLE:
+                    note.setTitle(in.nextString());
+                    break;
+                case CATEGORY:
+                    note.setCategory(in.nextString());
+                    break;
+                case MODIFIED:
+                    note.setModified(epochSecondsAdapter.read(in));
+                    break;
+                case CONTENT:
+                    note.setContent(in.nextString());
+                    break;
+                case FAVORITE:
+                    note.setFavorite(readBoolean(in));
+                    break;
+                case ETAG:
+                    note.setETag(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return note;
+    }
+
+    /**
+     * Accepts <code>"true"</code> like the reflection based binding does
+     */
+    private static boolean readBoolean(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.STRING) {
+            return Boolean.parseBoolean(in.nextString());
+        }
+        return in.nextBoolean();
+    }
+}
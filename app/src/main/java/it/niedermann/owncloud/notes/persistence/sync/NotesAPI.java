@@ -5,16 +5,25 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
 
+import com.google.gson.Gson;
 import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.JsonAdapter;
+import com.nextcloud.android.sso.aidl.NextcloudRequest;
 import com.nextcloud.android.sso.api.NextcloudAPI;
 import com.nextcloud.android.sso.api.ParsedResponse;
+import com.nextcloud.android.sso.api.Response;
 
 import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
-import io.reactivex.Observable;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.OutboxOperation;
 import it.niedermann.owncloud.notes.shared.model.ApiVersion;
 import it.niedermann.owncloud.notes.shared.model.NotesSettings;
 import retrofit2.Call;
@@ -30,12 +39,19 @@ public class NotesAPI {
     private static final String API_ENDPOINT_NOTES_1_0 = "/index.php/apps/notes/api/v1/";
     private static final String API_ENDPOINT_NOTES_0_2 = "/index.php/apps/notes/api/v0.2/";
 
+    @NonNull
+    private final NextcloudAPI nextcloudAPI;
+    @NonNull
+    private final Gson gson;
     @NonNull
     private final ApiVersion usedApiVersion;
     private final NotesAPI_0_2 notesAPI_0_2;
     private final NotesAPI_1_0 notesAPI_1_0;
+    private final boolean chunkedListingSupported;
 
-    public NotesAPI(@NonNull NextcloudAPI nextcloudAPI, @Nullable ApiVersion preferredApiVersion) {
+    public NotesAPI(@NonNull NextcloudAPI nextcloudAPI, @NonNull Gson gson, @Nullable ApiVersion preferredApiVersion) {
+        this.nextcloudAPI = nextcloudAPI;
+        this.gson = gson;
         if (preferredApiVersion == null) {
             Log.i(TAG, "Using " + ApiVersion.API_VERSION_0_2 + ", preferredApiVersion is null");
             usedApiVersion = ApiVersion.API_VERSION_0_2;
@@ -57,16 +73,104 @@ public class NotesAPI {
             notesAPI_0_2 = new NextcloudRetrofitApiBuilder(nextcloudAPI, API_ENDPOINT_NOTES_0_2).create(NotesAPI_0_2.class);
             notesAPI_1_0 = null;
         }
+        chunkedListingSupported = ApiVersion.API_VERSION_1_0.equals(usedApiVersion) && preferredApiVersion != null && preferredApiVersion.supportsChunkedListing();
+    }
+
+    @VisibleForTesting
+    NotesAPI(@NonNull NextcloudAPI nextcloudAPI, @NonNull Gson gson, @NonNull ApiVersion usedApiVersion, @Nullable NotesAPI_0_2 notesAPI_0_2, @Nullable NotesAPI_1_0 notesAPI_1_0) {
+        this.nextcloudAPI = nextcloudAPI;
+        this.gson = gson;
+        this.usedApiVersion = usedApiVersion;
+        this.notesAPI_0_2 = notesAPI_0_2;
+        this.notesAPI_1_0 = notesAPI_1_0;
+        this.chunkedListingSupported = false;
+    }
+
+    /**
+     * @return whether {@link #getNotes(Calendar, String, int, String)} can be used to fetch the {@link Note}s in multiple chunks
+     */
+    public boolean supportsChunkedListing() {
+        return chunkedListingSupported;
+    }
+
+    /**
+     * Fetches the {@link Note}s without parsing the whole response at once.
+     * {@link Note}s which have not been modified since {@param lastModified} only contain their <code>remoteId</code>.
+     *
+     * @return a {@link StreamingNotesResponse} which must be closed by the caller
+     */
+    public StreamingNotesResponse getNotes(@NonNull Calendar lastModified, @Nullable String lastETag) throws Exception {
+        return getNotes(lastModified, lastETag, 0, null);
+    }
+
+    /**
+     * @return whether {@link #getNotes(Calendar, String, int, String, boolean)} can omit the <code>content</code> of the {@link Note}s
+     */
+    public boolean supportsExcludingContent() {
+        return ApiVersion.API_VERSION_1_0.equals(usedApiVersion);
     }
 
-    public Observable<ParsedResponse<List<Note>>> getNotes(@NonNull Calendar lastModified, String lastETag) {
+    /**
+     * Fetches only the next chunk of at most {@param chunkSize} {@link Note}s, see {@link #supportsChunkedListing()}.
+     * The cursor of the following chunk is available via {@link StreamingNotesResponse#getChunkCursor()}, the last chunk does not have one.
+     * The last chunk additionally contains the <code>remoteId</code>s of all other {@link Note}s, so remotely deleted {@link Note}s can be detected.
+     *
+     * @param chunkSize   maximum number of {@link Note}s in the response or <code>0</code> to fetch all {@link Note}s at once
+     * @param chunkCursor <code>null</code> to fetch the first chunk, otherwise the cursor of the previous chunk
+     * @return a {@link StreamingNotesResponse} which must be closed by the caller
+     */
+    public StreamingNotesResponse getNotes(@NonNull Calendar lastModified, @Nullable String lastETag, int chunkSize, @Nullable String chunkCursor) throws Exception {
+        return getNotes(lastModified, lastETag, chunkSize, chunkCursor, false);
+    }
+
+    /**
+     * @param excludeContent fetch only the metadata of the {@link Note}s, see {@link #supportsExcludingContent()}. The <code>content</code> can be fetched later on via {@link #getNote(long)}.
+     * @return a {@link StreamingNotesResponse} which must be closed by the caller
+     */
+    public StreamingNotesResponse getNotes(@NonNull Calendar lastModified, @Nullable String lastETag, int chunkSize, @Nullable String chunkCursor, boolean excludeContent) throws Exception {
+        final String endpoint;
         if (ApiVersion.API_VERSION_1_0.equals(usedApiVersion)) {
-            return notesAPI_1_0.getNotes(lastModified.getTimeInMillis() / 1_000, lastETag);
+            endpoint = API_ENDPOINT_NOTES_1_0;
         } else if (ApiVersion.API_VERSION_0_2.equals(usedApiVersion)) {
-            return notesAPI_0_2.getNotes(lastModified.getTimeInMillis() / 1_000, lastETag);
+            endpoint = API_ENDPOINT_NOTES_0_2;
         } else {
             throw new UnsupportedOperationException("Used API version " + usedApiVersion + " does not support getNotes().");
         }
+
+        final Map<String, String> parameter = new HashMap<>(4);
+        parameter.put("pruneBefore", String.valueOf(lastModified.getTimeInMillis() / 1_000));
+        if (excludeContent) {
+            parameter.put("exclude", "content");
+        }
+        if (chunkSize > 0) {
+            parameter.put("chunkSize", String.valueOf(chunkSize));
+            if (chunkCursor != null) {
+                parameter.put("chunkCursor", chunkCursor);
+            }
+        }
+        final Map<String, List<String>> header = new HashMap<>(1);
+        // A following chunk is never "not modified", the ETag only refers to the first chunk
+        if (lastETag != null && chunkCursor == null) {
+            header.put("If-None-Match", Collections.singletonList(lastETag));
+        }
+
+        final Response response = nextcloudAPI.performNetworkRequestV2(new NextcloudRequest.Builder()
+                .setMethod("GET")
+                .setUrl(endpoint + "notes")
+                .setParameter(parameter)
+                .setHeader(header)
+                .build());
+        return new StreamingNotesResponse(gson, response.getBody(), new ParsedResponse<>(null, response.getPlainHeaders()).getHeaders());
+    }
+
+    public Call<Note> getNote(long remoteId) {
+        if (ApiVersion.API_VERSION_1_0.equals(usedApiVersion)) {
+            return notesAPI_1_0.getNote(remoteId);
+        } else if (ApiVersion.API_VERSION_0_2.equals(usedApiVersion)) {
+            return notesAPI_0_2.getNote(remoteId);
+        } else {
+            throw new UnsupportedOperationException("Used API version " + usedApiVersion + " does not support getNote().");
+        }
     }
 
     public Call<Note> createNote(Note note) {
@@ -93,6 +197,22 @@ public class NotesAPI {
         }
     }
 
+    /**
+     * Only sends the properties of the {@link Note} which have been changed according to the given {@link OutboxOperation.Type}s,
+     * so e. g. starring a {@link Note} does not upload its whole <code>content</code> again.
+     * Falls back to {@link #editNote(Note)} if the whole {@link Note} has to be pushed or the server does not support partial updates.
+     */
+    public Call<Note> editNote(@NonNull Note note, @NonNull Set<OutboxOperation.Type> changes) {
+        if (changes.isEmpty() || changes.contains(OutboxOperation.Type.FULL) || !ApiVersion.API_VERSION_1_0.equals(usedApiVersion)) {
+            return editNote(note);
+        }
+        final Long remoteId = note.getRemoteId();
+        if (remoteId == null) {
+            throw new IllegalArgumentException("remoteId of a " + Note.class.getSimpleName() + " must not be null if this object is used for editing a remote note.");
+        }
+        return notesAPI_1_0.editNotePartially(new PartialNote_1_0(note, changes), remoteId);
+    }
+
     public Call<Void> deleteNote(long noteId) {
         if (ApiVersion.API_VERSION_1_0.equals(usedApiVersion)) {
             return notesAPI_1_0.deleteNote(noteId);
@@ -127,7 +247,8 @@ public class NotesAPI {
         @Expose
         public final String category;
         @Expose
-        public final Calendar modified;
+        @JsonAdapter(EpochSecondsAdapter.class)
+        public final Long modified;
         @Expose
         public final String content;
         @Expose
@@ -143,4 +264,31 @@ public class NotesAPI {
             this.favorite = note.getFavorite();
         }
     }
+
+    /**
+     * Since {@link ApiVersion#API_VERSION_1_0} all properties are optional when editing a {@link Note}.
+     * Properties which are <code>null</code> will not be serialized and therefore stay untouched on the server.
+     */
+    static class PartialNote_1_0 {
+        @Expose
+        public final String title;
+        @Expose
+        public final String content;
+        @Expose
+        @JsonAdapter(EpochSecondsAdapter.class)
+        public final Long modified;
+        @Expose
+        public final String category;
+        @Expose
+        public final Boolean favorite;
+
+        private PartialNote_1_0(@NonNull Note note, @NonNull Set<OutboxOperation.Type> changes) {
+            final boolean contentChanged = changes.contains(OutboxOperation.Type.CONTENT);
+            this.title = contentChanged ? note.getTitle() : null;
+            this.content = contentChanged ? note.getContent() : null;
+            this.modified = contentChanged ? note.getModified() : null;
+            this.category = changes.contains(OutboxOperation.Type.CATEGORY) ? note.getCategory() : null;
+            this.favorite = changes.contains(OutboxOperation.Type.FAVORITE) ? note.getFavorite() : null;
+        }
+    }
 }
@@ -0,0 +1,96 @@
+package it.niedermann.owncloud.notes.persistence.sync;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonIOException;
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+
+/**
+ * Deserializes the {@link Note}s of a <code>GET notes</code> response one by one while they are read from the network,
+ * so that never more than one {@link Note} has to be kept in memory.
+ * <p>
+ * Must be {@link #close()}d after usage to release the underlying {@link InputStream}.
+ */
+public class StreamingNotesResponse implements Iterator<Note>, Closeable {
+
+    private static final String HEADER_KEY_X_NOTES_CHUNK_CURSOR = "X-Notes-Chunk-Cursor";
+
+    /**
+     * Looked up once instead of for each {@link Note}
+     */
+    @NonNull
+    private final TypeAdapter<Note> noteAdapter;
+    @NonNull
+    private final JsonReader reader;
+    @NonNull
+    private final Map<String, String> headers;
+    private boolean arrayStarted = false;
+
+    public StreamingNotesResponse(@NonNull Gson gson, @NonNull InputStream body, @NonNull Map<String, String> headers) {
+        this.noteAdapter = gson.getAdapter(Note.class);
+        this.reader = new JsonReader(new InputStreamReader(body, StandardCharsets.UTF_8));
+        this.headers = headers;
+    }
+
+    @NonNull
+    public Map<String, String> getHeaders() {
+        return headers;
+    }
+
+    /**
+     * @return the cursor to fetch the next chunk or <code>null</code> if this is the last chunk (or the response is not chunked at all)
+     */
+    @Nullable
+    public String getChunkCursor() {
+        final String chunkCursor = headers.get(HEADER_KEY_X_NOTES_CHUNK_CURSOR);
+        return chunkCursor == null || chunkCursor.isEmpty() ? null : chunkCursor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        try {
+            if (!arrayStarted) {
+                reader.beginArray();
+                arrayStarted = true;
+            }
+            return reader.peek() != JsonToken.END_ARRAY;
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    @Override
+    public Note next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return noteAdapter.read(reader);
+        } catch (IllegalStateException e) {
+            throw new JsonSyntaxException(e);
+        } catch (IOException e) {
+            throw new JsonIOException(e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
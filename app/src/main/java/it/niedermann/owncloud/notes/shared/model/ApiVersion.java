@@ -84,6 +84,13 @@ public class ApiVersion implements Comparable<ApiVersion> {
         return getMajor() >= 1 && getMinor() >= 2;
     }
 
+    /**
+     * @return whether the list of notes can be fetched in chunks using <code>chunkSize</code> and <code>chunkCursor</code>
+     */
+    public boolean supportsChunkedListing() {
+        return getMajor() > 1 || (getMajor() == 1 && getMinor() >= 2);
+    }
+
     /**
      * Checks only the <strong>{@link #major}</strong> version.
      */
@@ -7,10 +7,11 @@ import android.text.TextUtils;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
+import java.util.regex.Pattern;
+
 import it.niedermann.owncloud.notes.R;
 
 import static it.niedermann.android.markdown.MarkdownUtil.removeMarkdown;
-import static it.niedermann.android.markdown.MarkdownUtil.replaceCheckboxesWithEmojis;
 
 /**
  * Provides basic functionality for Note operations.
@@ -20,6 +21,15 @@ import static it.niedermann.android.markdown.MarkdownUtil.replaceCheckboxesWithE
 public class NoteUtil {
 
     public static final String EXCERPT_LINE_SEPARATOR = "   ";
+    private static final int EXCERPT_MAX_LENGTH = 200;
+    /**
+     * Everything which is not treated as part of a token by the <code>unicode61</code> tokenizer
+     */
+    private static final Pattern FTS_TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}\\p{M}]+");
+    /**
+     * An empty phrase, which is not contained in any note
+     */
+    public static final String FTS_MATCH_NOTHING = "\"\"";
 
     private NoteUtil() {
         throw new UnsupportedOperationException("Do not instantiate this util class.");
@@ -39,7 +49,7 @@ public class NoteUtil {
      * @return boolean isEmpty
      */
     public static boolean isEmptyLine(@Nullable String line) {
-        return removeMarkdown(line).trim().length() == 0;
+        return removeMarkdown(line, 1).trim().length() == 0;
     }
 
     /**
@@ -64,17 +74,20 @@ public class NoteUtil {
      */
     @NonNull
     public static String generateNoteExcerpt(@NonNull String content, @Nullable String title) {
-        content = removeMarkdown(replaceCheckboxesWithEmojis(content.trim()));
-        if (TextUtils.isEmpty(content)) {
-            return "";
-        }
-        if (!TextUtils.isEmpty(title)) {
-            final String trimmedTitle = removeMarkdown(replaceCheckboxesWithEmojis(title.trim()));
-            if (content.startsWith(trimmedTitle)) {
-                content = content.substring(trimmedTitle.length());
+        content = content.trim();
+        final String trimmedTitle = TextUtils.isEmpty(title) ? "" : removeMarkdown(title.trim());
+        // Only strip as much Markdown as needed: a few characters more than the title and the excerpt allow to skip whitespace between them
+        for (int maxLength = trimmedTitle.length() + EXCERPT_MAX_LENGTH + 16; ; maxLength *= 2) {
+            final String stripped = removeMarkdown(content, maxLength);
+            String excerpt = stripped;
+            if (!trimmedTitle.isEmpty() && excerpt.startsWith(trimmedTitle)) {
+                excerpt = excerpt.substring(trimmedTitle.length());
+            }
+            excerpt = excerpt.trim();
+            if (excerpt.length() >= EXCERPT_MAX_LENGTH || stripped.length() < maxLength) {
+                return truncateString(excerpt, EXCERPT_MAX_LENGTH).replace("\n", EXCERPT_LINE_SEPARATOR);
             }
         }
-        return truncateString(content.trim(), 200).replace("\n", EXCERPT_LINE_SEPARATOR);
     }
 
     @NonNull
@@ -106,20 +119,61 @@ public class NoteUtil {
      */
     @NonNull
     public static String getLineWithoutMarkdown(@NonNull String content, int lineNumber) {
-        String line = "";
-        if (content.contains("\n")) {
-            String[] lines = content.split("\n");
-            int currentLine = lineNumber;
-            while (currentLine < lines.length && NoteUtil.isEmptyLine(lines[currentLine])) {
-                currentLine++;
+        if (!content.contains("\n")) {
+            return removeMarkdown(content, Integer.MAX_VALUE);
+        }
+        // Equivalent to content.split("\n"), but without splitting the whole content in case the first lines already contain text
+        int lineStart = 0;
+        for (int currentLine = 0; currentLine < lineNumber && lineStart >= 0; currentLine++) {
+            lineStart = nextLineStart(content, lineStart);
+        }
+        while (lineStart >= 0 && lineStart < content.length()) {
+            final int lineEnd = content.indexOf('\n', lineStart);
+            final String line = content.substring(lineStart, lineEnd < 0 ? content.length() : lineEnd);
+            if (!isEmptyLine(line)) {
+                return removeMarkdown(line, Integer.MAX_VALUE);
             }
-            if (currentLine < lines.length) {
-                line = removeMarkdown(lines[currentLine]);
+            lineStart = lineEnd < 0 ? -1 : lineEnd + 1;
+        }
+        return "";
+    }
+
+    private static int nextLineStart(@NonNull String content, int lineStart) {
+        final int lineEnd = content.indexOf('\n', lineStart);
+        return lineEnd < 0 ? -1 : lineEnd + 1;
+    }
+
+    /**
+     * Transforms a search term as entered by the user into a full text search expression.
+     * Each word of the search term is treated as prefix, all words must be contained in either the title or the content.
+     * A search term which only consists of separators like <code>#</code> or <code>++</code> can not be found in the index, so it matches no note at all.
+     * <pre>
+     * null        -> ""
+     * "  "        -> ""
+     * "foo"       -> "\"foo*\""
+     * "Foo, bar"  -> "\"Foo*\" \"bar*\""
+     * "++"        -> "\"\""
+     * </pre>
+     *
+     * @param searchTerm the raw search term
+     * @return a match expression for the <code>search</code> methods of {@link it.niedermann.owncloud.notes.persistence.dao.NoteDao}, an empty {@link String} to match all notes
+     * or {@link #FTS_MATCH_NOTHING}
+     */
+    @NonNull
+    public static String toFtsMatchQuery(@Nullable CharSequence searchTerm) {
+        if (searchTerm == null || TextUtils.getTrimmedLength(searchTerm) == 0) {
+            return "";
+        }
+        final StringBuilder query = new StringBuilder();
+        for (String token : FTS_TOKEN_SEPARATOR.split(searchTerm)) {
+            if (!token.isEmpty()) {
+                if (query.length() > 0) {
+                    query.append(' ');
+                }
+                query.append('"').append(token).append("*\"");
             }
-        } else {
-            line = removeMarkdown(content);
         }
-        return line;
+        return query.length() == 0 ? FTS_MATCH_NOTHING : query.toString();
     }
 
     @NonNull
@@ -61,17 +61,17 @@ public class NoteListWidgetFactory implements RemoteViewsService.RemoteViewsFact
             Log.v(TAG, "--- data - " + data);
             switch (data.getMode()) {
                 case MODE_DISPLAY_ALL:
-                    dbNotes.addAll(repo.searchRecentByModified(data.getAccountId(), "%"));
+                    dbNotes.addAll(repo.searchRecentByModified(data.getAccountId(), ""));
                     break;
                 case MODE_DISPLAY_STARRED:
-                    dbNotes.addAll(repo.searchFavoritesByModified(data.getAccountId(), "%"));
+                    dbNotes.addAll(repo.searchFavoritesByModified(data.getAccountId(), ""));
                     break;
                 case MODE_DISPLAY_CATEGORY:
                 default:
                     if (data.getCategory() != null) {
-                        dbNotes.addAll(repo.searchCategoryByModified(data.getAccountId(), "%", data.getCategory()));
+                        dbNotes.addAll(repo.searchCategoryByModified(data.getAccountId(), "", data.getCategory()));
                     } else {
-                        dbNotes.addAll(repo.searchUncategorizedByModified(data.getAccountId(), "%"));
+                        dbNotes.addAll(repo.searchUncategorizedByModified(data.getAccountId(), ""));
                     }
                     break;
             }
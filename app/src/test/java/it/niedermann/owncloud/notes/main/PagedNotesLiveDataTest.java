@@ -0,0 +1,281 @@
+package it.niedermann.owncloud.notes.main;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.niedermann.owncloud.notes.R;
+import it.niedermann.owncloud.notes.main.items.section.SectionItem;
+import it.niedermann.owncloud.notes.main.slots.SlotterUtil;
+import it.niedermann.owncloud.notes.main.slots.Timeslotter;
+import it.niedermann.owncloud.notes.persistence.ApiProvider;
+import it.niedermann.owncloud.notes.persistence.NotesDatabase;
+import it.niedermann.owncloud.notes.persistence.NotesRepository;
+import it.niedermann.owncloud.notes.persistence.entity.Account;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.Capabilities;
+import it.niedermann.owncloud.notes.shared.model.Item;
+import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
+
+import static it.niedermann.owncloud.notes.main.PagedNotesLiveData.PAGE_SIZE;
+import static it.niedermann.owncloud.notes.shared.model.CategorySortingMethod.SORT_LEXICOGRAPHICAL_ASC;
+import static it.niedermann.owncloud.notes.shared.model.CategorySortingMethod.SORT_MODIFIED_DESC;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.RECENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Uses a large synthetic account, the main thread (which is the test thread) must only submit work to the executor.
+ * The submitted tasks are executed on a separate thread.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class PagedNotesLiveDataTest {
+
+    private static final String TAG = PagedNotesLiveDataTest.class.getSimpleName();
+
+    private static final int NOTE_COUNT = 10_000;
+    private static final int NOTES_PER_CATEGORY = 30;
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    private final List<Runnable> tasks = new ArrayList<>();
+    private final List<List<Item>> values = new ArrayList<>();
+    private final Observer<List<Item>> observer = values::add;
+    private final AtomicInteger slottedNotes = new AtomicInteger(0);
+    private final List<Thread> slottingThreads = new ArrayList<>();
+
+    private NotesDatabase db;
+    private NotesRepository repo;
+    private Account account;
+    private PagedNotesLiveData pagedNotes;
+
+    @Before
+    public void setup() throws Exception {
+        final Context context = ApplicationProvider.getApplicationContext();
+        db = Room
+                .inMemoryDatabaseBuilder(context, NotesDatabase.class)
+                .addCallback(NotesDatabase.CALLBACK)
+                .allowMainThreadQueries()
+                .build();
+
+        final Constructor<NotesRepository> constructor = NotesRepository.class.getDeclaredConstructor(Context.class, NotesDatabase.class, ExecutorService.class, ExecutorService.class, ApiProvider.class);
+        constructor.setAccessible(true);
+        final ExecutorService directExecutor = MoreExecutors.newDirectExecutorService();
+        repo = constructor.newInstance(context, db, directExecutor, directExecutor, ApiProvider.getInstance());
+
+        db.getAccountDao().insert(new Account("https://example.com", "example", "example@example.com", null, new Capabilities()));
+        account = db.getAccountDao().getAccountByName("example@example.com");
+        db.runInTransaction(() -> {
+            for (int i = 0; i < NOTE_COUNT; i++) {
+                db.getNoteDao().addNote(new Note(0, (long) i + 1, 1_600_000_000_000L + i * 1_000L, String.format("Note %05d", i), "Content " + i, "Category " + i / NOTES_PER_CATEGORY, false, String.valueOf(i), VOID, account.getId(), "", 0));
+            }
+        });
+
+        pagedNotes = new PagedNotesLiveData(repo, tasks::add, account.getId(), new NavigationCategory(RECENT), "", SORT_LEXICOGRAPHICAL_ASC, (items, page, lastSection) -> {
+            synchronized (slottingThreads) {
+                slottingThreads.add(Thread.currentThread());
+            }
+            slottedNotes.addAndGet(page.size());
+            return SlotterUtil.appendByCategory(items, page, lastSection);
+        }, false);
+    }
+
+    @After
+    public void closeDb() {
+        pagedNotes.removeObserver(observer);
+        db.close();
+    }
+
+    @Test
+    public void observe_onlySubmitsWorkOnTheMainThread() throws InterruptedException {
+        final long start = System.nanoTime();
+        pagedNotes.observeForever(observer);
+        final long mainThreadNanos = System.nanoTime() - start;
+
+        assertEquals("Loading the first page should have been submitted to the executor", 1, tasks.size());
+        assertNull("Nothing should have been slotted on the main thread", pagedNotes.getValue());
+        assertEquals(0, slottedNotes.get());
+
+        final long backgroundNanos = runTasksInBackground();
+        Log.i(TAG, "First page of " + NOTE_COUNT + " notes: main thread " + mainThreadNanos / 1_000 + " µs, background " + backgroundNanos / 1_000 + " µs");
+
+        assertEquals(1, values.size());
+        assertEquals(PAGE_SIZE, countNotes(values.get(0)));
+        assertEquals(PAGE_SIZE, slottedNotes.get());
+        for (Thread thread : slottingThreads) {
+            assertNotSame("Slotting must not happen on the main thread", Thread.currentThread(), thread);
+        }
+    }
+
+    @Test
+    public void reload_onlySlotsChangedNotes() throws InterruptedException {
+        pagedNotes.observeForever(observer);
+        runTasksInBackground();
+        pagedNotes.loadNextPage();
+        runTasksInBackground();
+        final List<Item> before = values.get(values.size() - 1);
+        assertEquals(2 * PAGE_SIZE, countNotes(before));
+        slottedNotes.set(0);
+
+        final int changedNoteIndex = 142;
+        final Note changedNote = getNote(before, changedNoteIndex);
+        changeCategory(changedNote.getId());
+        final long start = System.nanoTime();
+        runTasksInBackground();
+        Log.i(TAG, "Reloading " + 2 * PAGE_SIZE + " of " + NOTE_COUNT + " notes after a change took " + (System.nanoTime() - start) / 1_000 + " µs");
+
+        final List<Item> after = values.get(values.size() - 1);
+        assertEquals("Only the changed note and its successor, which now needs a SectionItem, should have been slotted again", 2, slottedNotes.get());
+        assertEquals("Changed", getNote(after, changedNoteIndex).getCategory());
+        assertSame(getNote(before, 0), getNote(after, 0));
+        assertSame(getNote(before, changedNoteIndex - 1), getNote(after, changedNoteIndex - 1));
+        assertSame(getNote(before, changedNoteIndex + 1), getNote(after, changedNoteIndex + 1));
+        assertSame(getNote(before, 2 * PAGE_SIZE - 1), getNote(after, 2 * PAGE_SIZE - 1));
+
+        final List<Note> notes = new ArrayList<>();
+        for (Item item : after) {
+            if (!item.isSection()) {
+                notes.add((Note) item);
+            }
+        }
+        assertEquals("Patching should result in the same items as slotting all notes", SlotterUtil.fillListByCategory(notes, null), after);
+    }
+
+    @Test
+    public void reload_skipsStaleWork() throws InterruptedException {
+        pagedNotes.observeForever(observer);
+        changeCategory(getNoteId(0));
+        changeCategory(getNoteId(1));
+        assertEquals("Each emission of the first page should have been submitted", 3, tasks.size());
+
+        runTasksInBackground();
+        assertEquals("Only the latest emission should have been slotted", PAGE_SIZE, slottedNotes.get());
+        assertEquals(1, values.size());
+        assertEquals("Changed", getNote(values.get(0), 1).getCategory());
+
+        changeCategory(getNoteId(2));
+        pagedNotes.cancel();
+        runTasksInBackground();
+        assertEquals("Cancelled work should be skipped", 1, values.size());
+    }
+
+    @Test
+    public void reload_slotsAllNotesAfterMidnight() throws InterruptedException {
+        final Calendar startOfToday = Calendar.getInstance();
+        startOfToday.set(Calendar.HOUR_OF_DAY, 0);
+        startOfToday.set(Calendar.MINUTE, 0);
+        startOfToday.set(Calendar.SECOND, 0);
+        startOfToday.set(Calendar.MILLISECOND, 0);
+        final long[] now = {startOfToday.getTimeInMillis() + TimeUnit.HOURS.toMillis(12)};
+        db.getNoteDao().addNote(new Note(0, null, startOfToday.getTimeInMillis(), "Today", "", "", false, null, VOID, account.getId(), "", 0));
+        final long yesterday = db.getNoteDao().addNote(new Note(0, null, startOfToday.getTimeInMillis() - 1, "Yesterday", "", "", false, null, VOID, account.getId(), "", 0));
+        final Context context = ApplicationProvider.getApplicationContext();
+        final Timeslotter timeslotter = new Timeslotter(context, () -> now[0]);
+        pagedNotes = new PagedNotesLiveData(repo, tasks::add, account.getId(), new NavigationCategory(RECENT), "", SORT_MODIFIED_DESC, new PagedNotesLiveData.SectionSlotter() {
+            @Override
+            public long getSectionsVersion() {
+                return timeslotter.getValidUntil();
+            }
+
+            @Override
+            public String append(@NonNull List<Item> items, @NonNull List<Note> page, @Nullable String lastSection) {
+                return SlotterUtil.appendByTime(items, timeslotter, page, lastSection);
+            }
+        }, false);
+        pagedNotes.observeForever(observer);
+        runTasksInBackground();
+        final List<Item> before = values.get(values.size() - 1);
+        assertEquals(new SectionItem(context.getString(R.string.listview_updated_yesterday)), before.get(1));
+        assertEquals(yesterday, getNote(before, 1).getId());
+
+        now[0] += TimeUnit.DAYS.toMillis(1);
+        changeCategory(getNoteId(NOTE_COUNT - 10));
+        runTasksInBackground();
+
+        final List<Item> after = values.get(values.size() - 1);
+        final List<Note> notes = new ArrayList<>();
+        for (Item item : after) {
+            if (!item.isSection()) {
+                notes.add((Note) item);
+            }
+        }
+        final List<Item> expected = new ArrayList<>();
+        SlotterUtil.appendByTime(expected, new Timeslotter(context, () -> now[0]), notes, null);
+        assertNotEquals("The note of yesterday is older than yesterday after midnight", new SectionItem(context.getString(R.string.listview_updated_yesterday)), after.get(1));
+        assertEquals("All sections should be up to date after midnight", expected, after);
+    }
+
+    /**
+     * @return the duration of executing the submitted tasks
+     */
+    private long runTasksInBackground() throws InterruptedException {
+        final List<Runnable> submitted = new ArrayList<>(tasks);
+        tasks.clear();
+        final long start = System.nanoTime();
+        final Thread thread = new Thread(() -> submitted.forEach(Runnable::run));
+        thread.start();
+        thread.join();
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Changes the category like a synchronization does, so the change is applied to the index of the {@link NotesRepository}
+     */
+    private void changeCategory(long noteId) {
+        final Note note = db.getNoteDao().getNoteById(noteId);
+        repo.updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(noteId, note.getModified(), note.getTitle(), note.getFavorite(), "Changed", note.getETag());
+    }
+
+    private long getNoteId(int index) {
+        return db.getNoteDao().getLocalIdByRemoteId(account.getId(), index + 1);
+    }
+
+    @NonNull
+    private static Note getNote(@NonNull List<Item> items, int index) {
+        int position = -1;
+        for (Item item : items) {
+            if (!item.isSection() && ++position == index) {
+                return (Note) item;
+            }
+        }
+        throw new IndexOutOfBoundsException("No note at index " + index);
+    }
+
+    private static int countNotes(@NonNull List<Item> items) {
+        int count = 0;
+        for (Item item : items) {
+            if (!item.isSection()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,210 @@
+package it.niedermann.owncloud.notes.main;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+import androidx.lifecycle.Observer;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.reflect.Constructor;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import it.niedermann.owncloud.notes.main.slots.SlotterUtil;
+import it.niedermann.owncloud.notes.persistence.ApiProvider;
+import it.niedermann.owncloud.notes.persistence.NotesDatabase;
+import it.niedermann.owncloud.notes.persistence.NotesRepository;
+import it.niedermann.owncloud.notes.persistence.entity.Account;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.Capabilities;
+import it.niedermann.owncloud.notes.shared.model.Item;
+import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
+
+import static android.os.Looper.getMainLooper;
+import static it.niedermann.owncloud.notes.main.PagedNotesLiveData.PAGE_SIZE;
+import static it.niedermann.owncloud.notes.shared.model.CategorySortingMethod.SORT_LEXICOGRAPHICAL_ASC;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.RECENT;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+/**
+ * Counts the full text search queries which are executed for typed sequences of search terms.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class SearchPipelineTest {
+
+    private static final int NOTE_COUNT = 1_000;
+    private static final Duration KEYSTROKE = Duration.ofMillis(SearchPipeline.DEBOUNCE_MILLIS / 3);
+    private static final Duration DEBOUNCE = Duration.ofMillis(SearchPipeline.DEBOUNCE_MILLIS);
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    private final AtomicInteger searchQueries = new AtomicInteger(0);
+    private final MutableLiveData<String> searchTerm = new MutableLiveData<>();
+    private final List<List<Item>> values = new ArrayList<>();
+    private final Observer<List<Item>> observer = values::add;
+
+    private NotesDatabase db;
+    private Account account;
+    private SearchPipeline searchPipeline;
+    private LiveData<List<Item>> items;
+
+    @Before
+    public void setup() throws Exception {
+        final Context context = ApplicationProvider.getApplicationContext();
+        db = Room
+                .inMemoryDatabaseBuilder(context, NotesDatabase.class)
+                .addCallback(NotesDatabase.CALLBACK)
+                .setQueryCallback((sql, bindArgs) -> {
+                    if (sql.contains("NoteFts MATCH")) {
+                        searchQueries.incrementAndGet();
+                    }
+                }, Runnable::run)
+                .allowMainThreadQueries()
+                .build();
+
+        final Constructor<NotesRepository> constructor = NotesRepository.class.getDeclaredConstructor(Context.class, NotesDatabase.class, ExecutorService.class, ExecutorService.class, ApiProvider.class);
+        constructor.setAccessible(true);
+        final ExecutorService directExecutor = MoreExecutors.newDirectExecutorService();
+        final NotesRepository repo = constructor.newInstance(context, db, directExecutor, directExecutor, ApiProvider.getInstance());
+
+        db.getAccountDao().insert(new Account("https://example.com", "example", "example@example.com", null, new Capabilities()));
+        account = db.getAccountDao().getAccountByName("example@example.com");
+        db.runInTransaction(() -> {
+            for (int i = 0; i < NOTE_COUNT; i++) {
+                db.getNoteDao().addNote(new Note(0, (long) i + 1, 1_600_000_000_000L + i * 1_000L, (i % 2 == 0 ? "Note " : "Todo ") + i, "Content " + i, "", false, String.valueOf(i), VOID, account.getId(), "", 0));
+            }
+        });
+
+        searchPipeline = new SearchPipeline(repo, Runnable::run, account.getId(), new NavigationCategory(RECENT), SORT_LEXICOGRAPHICAL_ASC, (items, page, lastSection) -> SlotterUtil.appendByCategory(items, page, lastSection));
+        items = searchPipeline.search(searchTerm);
+        items.observeForever(observer);
+    }
+
+    @After
+    public void closeDb() {
+        items.removeObserver(observer);
+        db.close();
+    }
+
+    @Test
+    public void search_debouncesTypedTerms() {
+        searchTerm.setValue("");
+        assertEquals("The initial search term should be applied immediately", PAGE_SIZE, getLatestNotesCount());
+        assertEquals(0, searchQueries.get());
+
+        type("N", "No", "Not", "Note");
+        assertEquals("Search terms should not be queried while typing", 0, searchQueries.get());
+        shadowOf(getMainLooper()).idleFor(DEBOUNCE);
+        assertEquals("Only the last typed search term should be queried", 1, searchQueries.get());
+        assertEquals(PAGE_SIZE, getLatestNotesCount());
+        assertTrue(getNote(0).getTitle().startsWith("Note"));
+
+        type("Note 9", "Note 99", "Note 9", "Note");
+        shadowOf(getMainLooper()).idleFor(DEBOUNCE);
+        assertEquals("Typing back to the queried term should not query again", 1, searchQueries.get());
+
+        searchTerm.setValue("");
+        assertEquals("Clearing the search term should be applied immediately", PAGE_SIZE, getLatestNotesCount());
+        assertEquals(1, searchQueries.get());
+    }
+
+    @Test
+    public void search_cancelsPendingTerms() {
+        searchTerm.setValue("");
+        final int valuesBefore = values.size();
+
+        type("Note");
+        searchPipeline.cancel();
+        shadowOf(getMainLooper()).idleFor(DEBOUNCE);
+        assertEquals(0, searchQueries.get());
+        assertEquals(valuesBefore, values.size());
+    }
+
+    @Test
+    public void search_narrowsEmptyResults() {
+        searchTerm.setValue("");
+        type("Notexy");
+        shadowOf(getMainLooper()).idleFor(DEBOUNCE);
+        assertEquals(1, searchQueries.get());
+        assertEquals(0, getLatestNotesCount());
+
+        type("Notexyz");
+        shadowOf(getMainLooper()).idleFor(DEBOUNCE);
+        type("Notexyz 4");
+        shadowOf(getMainLooper()).idleFor(DEBOUNCE);
+        assertEquals("Terms which extend a term without result should not be queried", 1, searchQueries.get());
+        assertEquals(0, getLatestNotesCount());
+
+        db.getNoteDao().addNote(new Note(0, null, System.currentTimeMillis(), "Notexyz 42", "", "", false, null, VOID, account.getId(), "", 0));
+        assertEquals("Changes of the notes should be queried", 2, searchQueries.get());
+        assertEquals(1, getLatestNotesCount());
+        assertEquals("Notexyz 42", getNote(0).getTitle());
+
+        type("Notexyz 42 Todo");
+        shadowOf(getMainLooper()).idleFor(DEBOUNCE);
+        assertEquals(3, searchQueries.get());
+        assertEquals(0, getLatestNotesCount());
+
+        type("Todo");
+        shadowOf(getMainLooper()).idleFor(DEBOUNCE);
+        assertEquals("Terms which do not extend the previous term should be queried", 4, searchQueries.get());
+        assertEquals(PAGE_SIZE, getLatestNotesCount());
+    }
+
+    @Test
+    public void isNarrowing() {
+        assertTrue(SearchPipeline.isNarrowing("", "Note"));
+        assertTrue(SearchPipeline.isNarrowing("No", "Note"));
+        assertTrue(SearchPipeline.isNarrowing("Note", "Note 1"));
+        assertFalse(SearchPipeline.isNarrowing(null, "Note"));
+        assertFalse(SearchPipeline.isNarrowing("Note", "No"));
+        assertFalse(SearchPipeline.isNarrowing("Note", "Todo"));
+        assertFalse("A term without any token matches nothing, so it can not be narrowed", SearchPipeline.isNarrowing("#", "#Note"));
+    }
+
+    /**
+     * Sets the given search terms with less delay between them than the debounce timeout
+     */
+    private void type(@NonNull String... terms) {
+        for (String term : terms) {
+            searchTerm.setValue(term);
+            shadowOf(getMainLooper()).idleFor(KEYSTROKE);
+        }
+    }
+
+    private int getLatestNotesCount() {
+        int count = 0;
+        for (Item item : values.get(values.size() - 1)) {
+            if (!item.isSection()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @NonNull
+    private Note getNote(int index) {
+        return (Note) values.get(values.size() - 1).get(index);
+    }
+}
@@ -0,0 +1,210 @@
+package it.niedermann.owncloud.notes.main.items;
+
+import android.content.Context;
+import android.content.ContextWrapper;
+import android.text.Spanned;
+import android.util.Log;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import it.niedermann.owncloud.notes.R;
+import it.niedermann.owncloud.notes.main.items.section.SectionItem;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.Item;
+import it.niedermann.owncloud.notes.shared.model.NoteClickListener;
+
+import static android.os.Looper.getMainLooper;
+import static android.view.View.MeasureSpec.EXACTLY;
+import static android.view.View.MeasureSpec.makeMeasureSpec;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_EDITED;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static it.niedermann.owncloud.notes.shared.util.BenchmarkUtil.bestOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.robolectric.Shadows.shadowOf;
+
+@RunWith(RobolectricTestRunner.class)
+public class ItemAdapterTest {
+
+    private static final String TAG = ItemAdapterTest.class.getSimpleName();
+
+    private static final int NOTE_COUNT = 5_000;
+    private static final int NOTES_PER_SECTION = 100;
+
+    private CountingItemAdapter adapter;
+    private RecyclerView recyclerView;
+
+    @Before
+    public void setup() {
+        final NoteClickListenerContext context = new NoteClickListenerContext(ApplicationProvider.getApplicationContext());
+        adapter = new CountingItemAdapter(context);
+        recyclerView = new RecyclerView(context);
+        recyclerView.setLayoutManager(new LinearLayoutManager(context));
+        recyclerView.setItemAnimator(null);
+        recyclerView.setAdapter(adapter);
+    }
+
+    @Test
+    public void setItemList_onlyRebindsChangedNotes() {
+        final List<Item> items = createItems();
+        setItemListAndLayout(items);
+        assertEquals(NOTE_COUNT + NOTE_COUNT / NOTES_PER_SECTION, adapter.getItemCount());
+        assertTrue("Visible items should have been bound initially", adapter.bindCount > 0);
+
+        final List<Item> changedTitle = new ArrayList<>(items);
+        final Note note = (Note) changedTitle.get(3);
+        changedTitle.set(3, new Note(note.getId(), note.getRemoteId(), note.getModified(), "Changed title", note.getContent(), note.getCategory(), note.getFavorite(), note.getETag(), LOCAL_EDITED, note.getAccountId(), note.getExcerpt(), note.getScrollY()));
+        setItemListAndLayout(changedTitle);
+        assertEquals("Only the changed note should be bound again", 1, adapter.bindCount);
+        assertEquals("Changed title", ((Note) adapter.getItem(3)).getTitle());
+
+        final List<Item> changedContent = new ArrayList<>(changedTitle);
+        final Note changedNote = (Note) changedContent.get(4);
+        changedContent.set(4, new Note(changedNote.getId(), changedNote.getRemoteId(), System.currentTimeMillis(), changedNote.getTitle(), "Changed content", changedNote.getCategory(), changedNote.getFavorite(), "other ETag", changedNote.getStatus(), changedNote.getAccountId(), changedNote.getExcerpt(), 42));
+        setItemListAndLayout(changedContent);
+        assertEquals("Properties which are not rendered should not cause a bind", 0, adapter.bindCount);
+    }
+
+    @Test
+    public void setItemList_callsBackAfterCommit() {
+        final List<Item> items = createItems();
+        setItemListAndLayout(items);
+
+        final List<Item> changedTitle = new ArrayList<>(items);
+        final Note note = (Note) changedTitle.get(3);
+        changedTitle.set(3, new Note(note.getId(), note.getRemoteId(), note.getModified(), "Changed title", note.getContent(), note.getCategory(), note.getFavorite(), note.getETag(), LOCAL_EDITED, note.getAccountId(), note.getExcerpt(), note.getScrollY()));
+        final List<String> titlesOnCommit = new ArrayList<>();
+        adapter.setItemList(changedTitle, () -> titlesOnCommit.add(((Note) adapter.getItem(3)).getTitle()));
+        assertTrue("The new items have not been committed yet", titlesOnCommit.isEmpty());
+        shadowOf(getMainLooper()).idle();
+
+        assertEquals("The callback should see the committed items", Collections.singletonList("Changed title"), titlesOnCommit);
+    }
+
+    @Test
+    public void setHighlightSearchQuery_onlyRebindsOnChange() {
+        setItemListAndLayout(createItems());
+
+        adapter.setHighlightSearchQuery("Note");
+        layout();
+        assertTrue("Visible items should be bound to highlight the search query", adapter.bindCount > 0);
+
+        adapter.bindCount = 0;
+        adapter.setHighlightSearchQuery("Note");
+        layout();
+        assertEquals(0, adapter.bindCount);
+    }
+
+    /**
+     * Binds real {@link NoteViewHolder}s, once without and once with highlighting a search query.
+     */
+    @Test
+    public void onBindViewHolder_benchmarkSearch() {
+        final NoteClickListenerContext context = new NoteClickListenerContext(ApplicationProvider.getApplicationContext());
+        final ItemAdapter itemAdapter = new ItemAdapter(context, false, Runnable::run);
+        final List<Item> items = new ArrayList<>(NOTES_PER_SECTION);
+        for (int i = 0; i < NOTES_PER_SECTION; i++) {
+            items.add(new Note(i + 1, (long) i + 1, System.currentTimeMillis(), "Note " + i, "", "Category", false, String.valueOf(i), VOID, 1, "Excerpt of note " + i, 0));
+        }
+        itemAdapter.setItemList(items);
+        shadowOf(getMainLooper()).idle();
+        final RecyclerView.ViewHolder holder = itemAdapter.onCreateViewHolder(recyclerView, ItemAdapter.TYPE_NOTE_WITH_EXCERPT);
+
+        itemAdapter.setHighlightSearchQuery(null);
+        final long withoutSearchNanos = bestOf(20, () -> {
+            for (int position = 0; position < items.size(); position++) {
+                itemAdapter.onBindViewHolder(holder, position);
+            }
+        });
+        itemAdapter.setHighlightSearchQuery("note");
+        final long withSearchNanos = bestOf(20, () -> {
+            for (int position = 0; position < items.size(); position++) {
+                itemAdapter.onBindViewHolder(holder, position);
+            }
+        });
+
+        Log.i(TAG, "Binding " + items.size() + " notes: without search " + withoutSearchNanos / 1_000 + " µs, with search " + withSearchNanos / 1_000 + " µs");
+        assertTrue("The title of the last bound note should be highlighted", ((TextView) holder.itemView.findViewById(R.id.noteTitle)).getText() instanceof Spanned);
+    }
+
+    private void setItemListAndLayout(@NonNull List<Item> items) {
+        adapter.setItemList(items);
+        shadowOf(getMainLooper()).idle();
+        adapter.bindCount = 0;
+        layout();
+    }
+
+    private void layout() {
+        recyclerView.measure(makeMeasureSpec(1_000, EXACTLY), makeMeasureSpec(1_000, EXACTLY));
+        recyclerView.layout(0, 0, 1_000, 1_000);
+    }
+
+    private static List<Item> createItems() {
+        final List<Item> items = new ArrayList<>(NOTE_COUNT + NOTE_COUNT / NOTES_PER_SECTION);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            if (i % NOTES_PER_SECTION == 0) {
+                items.add(new SectionItem("Section " + i / NOTES_PER_SECTION));
+            }
+            items.add(new Note(i + 1, (long) i + 1, System.currentTimeMillis(), "Note " + i, "Content " + i, "", false, String.valueOf(i), VOID, 1, "", 0));
+        }
+        return items;
+    }
+
+    /**
+     * Renders every {@link Item} as a simple {@link View} with a fixed height, so only the bind calls are counted.
+     */
+    private static class CountingItemAdapter extends ItemAdapter {
+
+        int bindCount = 0;
+
+        <T extends Context & NoteClickListener> CountingItemAdapter(@NonNull T context) {
+            super(context, false, Runnable::run);
+        }
+
+        @NonNull
+        @Override
+        public RecyclerView.ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+            final View view = new View(parent.getContext());
+            view.setLayoutParams(new RecyclerView.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT, 100));
+            return new RecyclerView.ViewHolder(view) {
+            };
+        }
+
+        @Override
+        public void onBindViewHolder(@NonNull RecyclerView.ViewHolder holder, int position) {
+            bindCount++;
+        }
+    }
+
+    private static class NoteClickListenerContext extends ContextWrapper implements NoteClickListener {
+
+        NoteClickListenerContext(Context base) {
+            super(base);
+        }
+
+        @Override
+        public void onNoteClick(int position, View v) {
+
+        }
+
+        @Override
+        public void onNoteFavoriteClick(int position, View v) {
+
+        }
+    }
+}
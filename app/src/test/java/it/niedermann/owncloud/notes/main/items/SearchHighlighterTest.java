@@ -0,0 +1,136 @@
+package it.niedermann.owncloud.notes.main.items;
+
+import android.graphics.Color;
+import android.text.SpannableString;
+import android.text.Spanned;
+import android.text.style.BackgroundColorSpan;
+import android.text.style.ForegroundColorSpan;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static it.niedermann.owncloud.notes.shared.util.BenchmarkUtil.bestOf;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+
+@RunWith(RobolectricTestRunner.class)
+public class SearchHighlighterTest {
+
+    private static final String TAG = SearchHighlighterTest.class.getSimpleName();
+
+    @Test
+    public void highlight_caseInsensitiveOccurrences() {
+        final SearchHighlighter highlighter = new SearchHighlighter("note", Color.RED, Color.YELLOW);
+
+        assertArrayEquals(new int[]{0, 4, 9, 13, 20, 24}, getHighlightedRanges(highlighter.highlight("Note and NOTE or nOtE")));
+        assertArrayEquals(new int[]{0, 4}, getHighlightedRanges(highlighter.highlight("notenot")));
+        assertEquals("Texts without occurrence should not be wrapped", String.class, highlighter.highlight("Nothing to see").getClass());
+        assertEquals(String.class, highlighter.highlight("").getClass());
+
+        assertArrayEquals("Regular expressions should be matched literally", new int[]{4, 9}, getHighlightedRanges(new SearchHighlighter("(.*)", Color.RED, Color.YELLOW).highlight("Foo (.*) bar")));
+        assertArrayEquals("Non ASCII characters should be matched case insensitive", new int[]{0, 5}, getHighlightedRanges(new SearchHighlighter("ärger", Color.RED, Color.YELLOW).highlight("ÄRGER über Übel")));
+        assertThrows(IllegalArgumentException.class, () -> new SearchHighlighter("", Color.RED, Color.YELLOW));
+    }
+
+    @Test
+    public void highlight_matchesPattern() {
+        final String[] texts = {"Title", "My first note", "A note about notes and NOTES", "Nothing", "no te", "note"};
+        final SearchHighlighter highlighter = new SearchHighlighter("note", Color.RED, Color.YELLOW);
+        for (String text : texts) {
+            assertArrayEquals(text, getHighlightedRanges(highlightWithPattern("note", text)), getHighlightedRanges(highlighter.highlight(text)));
+        }
+    }
+
+    @Test
+    public void highlight_reusesSpansAndCachesResults() {
+        final SearchHighlighter highlighter = new SearchHighlighter("note", Color.RED, Color.YELLOW);
+
+        final Spanned first = (Spanned) highlighter.highlight("First note, second note");
+        final Spanned second = (Spanned) highlighter.highlight("Another note");
+        assertSame("Cached texts should be reused", first, highlighter.highlight("First note, second note"));
+        assertSame("The first occurrence of each text should use the same span", first.getSpans(0, 10, ForegroundColorSpan.class)[0], second.getSpans(0, 12, ForegroundColorSpan.class)[0]);
+        assertSame(first.getSpans(0, 10, BackgroundColorSpan.class)[0], second.getSpans(0, 12, BackgroundColorSpan.class)[0]);
+        assertEquals(Color.RED, first.getSpans(0, 10, ForegroundColorSpan.class)[0].getForegroundColor());
+        assertEquals(Color.YELLOW, first.getSpans(0, 10, BackgroundColorSpan.class)[0].getBackgroundColor());
+    }
+
+    /**
+     * The {@link SearchHighlighter} is measured without its cache, which is what binding a row for the first time costs.
+     */
+    @Test
+    public void highlight_benchmark() {
+        final List<String> texts = new ArrayList<>(5_000);
+        for (int i = 0; i < 5_000; i++) {
+            texts.add(i % 10 == 0 ? "Note " + i + " about the things to do" : "Title " + i + " with an excerpt about the things to do");
+        }
+        final List<String> visibleTexts = texts.subList(0, 50);
+
+        final long patternNanos = bestOf(10, () -> {
+            for (String text : texts) {
+                highlightWithPattern("note", text);
+            }
+        });
+        final long highlighterNanos = bestOf(10, () -> {
+            final SearchHighlighter highlighter = new SearchHighlighter("note", Color.RED, Color.YELLOW);
+            for (String text : texts) {
+                highlighter.highlight(text);
+            }
+        });
+        final SearchHighlighter cachingHighlighter = new SearchHighlighter("note", Color.RED, Color.YELLOW);
+        final long cachedNanos = bestOf(10, () -> {
+            for (int i = 0; i < texts.size() / visibleTexts.size(); i++) {
+                for (String text : visibleTexts) {
+                    cachingHighlighter.highlight(text);
+                }
+            }
+        });
+
+        Log.i(TAG, "Highlighting " + texts.size() + " texts: Pattern " + patternNanos / 1_000 + " µs, " + SearchHighlighter.class.getSimpleName() + " " + highlighterNanos / 1_000 + " µs, cached " + cachedNanos / 1_000 + " µs");
+        assertArrayEquals(getHighlightedRanges(highlightWithPattern("note", texts.get(0))), getHighlightedRanges(new SearchHighlighter("note", Color.RED, Color.YELLOW).highlight(texts.get(0))));
+    }
+
+    /**
+     * Highlights like the {@link NoteViewHolder}s did before the {@link SearchHighlighter} has been introduced
+     */
+    @NonNull
+    private static CharSequence highlightWithPattern(@NonNull String searchQuery, @NonNull String content) {
+        final Pattern pattern = Pattern.compile("(" + Pattern.quote(searchQuery) + ")", Pattern.CASE_INSENSITIVE);
+        final SpannableString spannableString = new SpannableString(content);
+        final Matcher matcher = pattern.matcher(spannableString);
+        while (matcher.find()) {
+            spannableString.setSpan(new ForegroundColorSpan(Color.RED), matcher.start(), matcher.end(), 0);
+            spannableString.setSpan(new BackgroundColorSpan(Color.YELLOW), matcher.start(), matcher.end(), 0);
+        }
+        return spannableString;
+    }
+
+    /**
+     * @return start and end of each {@link ForegroundColorSpan}, which must be covered by a {@link BackgroundColorSpan}
+     */
+    @NonNull
+    private static int[] getHighlightedRanges(@NonNull CharSequence text) {
+        if (!(text instanceof Spanned)) {
+            return new int[0];
+        }
+        final Spanned spanned = (Spanned) text;
+        final ForegroundColorSpan[] spans = spanned.getSpans(0, spanned.length(), ForegroundColorSpan.class);
+        final int[] ranges = new int[spans.length * 2];
+        for (int i = 0; i < spans.length; i++) {
+            ranges[i * 2] = spanned.getSpanStart(spans[i]);
+            ranges[i * 2 + 1] = spanned.getSpanEnd(spans[i]);
+            assertEquals(1, spanned.getSpans(ranges[i * 2], ranges[i * 2 + 1], BackgroundColorSpan.class).length);
+        }
+        return ranges;
+    }
+}
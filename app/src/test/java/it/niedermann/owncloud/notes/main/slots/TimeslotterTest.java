@@ -0,0 +1,168 @@
+package it.niedermann.owncloud.notes.main.slots;
+
+import android.content.Context;
+import android.text.format.DateUtils;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import it.niedermann.owncloud.notes.R;
+import it.niedermann.owncloud.notes.main.items.section.SectionItem;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.Item;
+
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static it.niedermann.owncloud.notes.shared.util.BenchmarkUtil.bestOf;
+import static it.niedermann.owncloud.notes.shared.util.BenchmarkUtil.measureAllocatedBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class TimeslotterTest {
+
+    private static final String TAG = TimeslotterTest.class.getSimpleName();
+
+    private static final int NOTE_COUNT = 50_000;
+
+    private final Context context = ApplicationProvider.getApplicationContext();
+
+    @Test
+    public void getTimeslot_matchesCalendarBasedTimeslots() {
+        final Timeslotter timeslotter = new Timeslotter(context);
+        final LegacyTimeslotter legacyTimeslotter = new LegacyTimeslotter(context);
+        for (Note note : createNotes()) {
+            assertEquals("Modified: " + note.getModified(), legacyTimeslotter.getTimeslot(note), timeslotter.getTimeslot(note));
+        }
+        final Note withoutModified = new Note(null, null, "Title", "", "", false, null);
+        assertEquals(legacyTimeslotter.getTimeslot(withoutModified), timeslotter.getTimeslot(withoutModified));
+        final Note favorite = new Note(null, System.currentTimeMillis(), "Title", "", "", true, null);
+        assertEquals("", timeslotter.getTimeslot(favorite));
+    }
+
+    @Test
+    public void getTimeslot_doesNotAllocate() {
+        final List<Note> notes = createNotes();
+        final Timeslotter timeslotter = new Timeslotter(context);
+
+        final long allocatedBytes = measureAllocatedBytes(() -> {
+            for (Note note : notes) {
+                timeslotter.getTimeslot(note);
+            }
+        });
+
+        Log.i(TAG, "Slotting " + NOTE_COUNT + " notes allocated " + allocatedBytes + " bytes");
+        assertTrue("Slotting should not allocate an object per note, but allocated " + allocatedBytes + " bytes for " + NOTE_COUNT + " notes", allocatedBytes < NOTE_COUNT * 4L);
+    }
+
+    @Test
+    public void fillListByTime_benchmark() {
+        final List<Note> notes = createNotes();
+
+        final long legacyNanos = bestOf(10, () -> fillListByTime(new LegacyTimeslotter(context), notes));
+        final long precomputedNanos = bestOf(10, () -> SlotterUtil.fillListByTime(context, notes));
+
+        Log.i(TAG, "Slotting " + NOTE_COUNT + " notes by time: Calendar " + legacyNanos / 1_000 + " µs, precomputed " + precomputedNanos / 1_000 + " µs");
+        assertEquals(fillListByTime(new LegacyTimeslotter(context), notes), SlotterUtil.fillListByTime(context, notes));
+    }
+
+    /**
+     * @return {@link Note}s sorted by their modification date, half of them within the last two months and the others within the last 50 years
+     */
+    @NonNull
+    private static List<Note> createNotes() {
+        final Random random = new Random(42);
+        final long now = System.currentTimeMillis();
+        final List<Long> modified = new ArrayList<>(NOTE_COUNT);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            modified.add(now - (long) (random.nextDouble() * (i % 2 == 0 ? TimeUnit.DAYS.toMillis(62) : TimeUnit.DAYS.toMillis(50 * 365))));
+        }
+        modified.sort((a, b) -> Long.compare(b, a));
+        final List<Note> notes = new ArrayList<>(NOTE_COUNT);
+        for (int i = 0; i < NOTE_COUNT; i++) {
+            notes.add(new Note(i, (long) i, modified.get(i), "Title " + i, "", "", false, null, VOID, 1, "", 0));
+        }
+        return notes;
+    }
+
+    /**
+     * Slots like {@link SlotterUtil#appendByTime(List, Timeslotter, List, String)}
+     */
+    @NonNull
+    private static List<Item> fillListByTime(@NonNull LegacyTimeslotter timeslotter, @NonNull List<Note> notes) {
+        final List<Item> items = new ArrayList<>();
+        String lastTimeslot = null;
+        for (Note note : notes) {
+            final String timeslot = timeslotter.getTimeslot(note);
+            if (lastTimeslot != null && !timeslot.equals(lastTimeslot)) {
+                items.add(new SectionItem(timeslot));
+            }
+            items.add(note);
+            lastTimeslot = timeslot;
+        }
+        return items;
+    }
+
+    /**
+     * Compares each {@link Note} with the {@link Calendar} based starts of the timeslots like before they have been precomputed
+     */
+    private static class LegacyTimeslotter {
+        private final List<Timeslot> timeslots = new ArrayList<>();
+        private final long lastYear;
+        private final Context context;
+
+        LegacyTimeslotter(@NonNull Context context) {
+            this.context = context;
+            final Calendar now = Calendar.getInstance();
+            final int month = now.get(Calendar.MONTH);
+            final int day = now.get(Calendar.DAY_OF_MONTH);
+            final int offsetWeekStart = (now.get(Calendar.DAY_OF_WEEK) - now.getFirstDayOfWeek() + 7) % 7;
+            timeslots.add(createTimeslot(context.getString(R.string.listview_updated_today), month, day));
+            timeslots.add(createTimeslot(context.getString(R.string.listview_updated_yesterday), month, day - 1));
+            timeslots.add(createTimeslot(context.getString(R.string.listview_updated_this_week), month, day - offsetWeekStart));
+            timeslots.add(createTimeslot(context.getString(R.string.listview_updated_last_week), month, day - offsetWeekStart - 7));
+            timeslots.add(createTimeslot(context.getString(R.string.listview_updated_this_month), month, 1));
+            timeslots.add(createTimeslot(context.getString(R.string.listview_updated_last_month), month - 1, 1));
+            final Calendar lastYear = Calendar.getInstance();
+            lastYear.set(now.get(Calendar.YEAR) - 1, 0, 1, 0, 0, 0);
+            lastYear.set(Calendar.MILLISECOND, 0);
+            this.lastYear = lastYear.getTimeInMillis();
+        }
+
+        private static Timeslot createTimeslot(String label, int month, int day) {
+            final Calendar time = Calendar.getInstance();
+            time.set(time.get(Calendar.YEAR), month, day, 0, 0, 0);
+            time.set(Calendar.MILLISECOND, 0);
+            return new Timeslot(label, time.getTimeInMillis());
+        }
+
+        String getTimeslot(Note note) {
+            if (note.getFavorite()) {
+                return "";
+            }
+            final long modified = note.getModified() == null ? 0 : note.getModified();
+            for (Timeslot timeslot : timeslots) {
+                if (modified >= timeslot.getTime()) {
+                    return timeslot.getLabel();
+                }
+            }
+            if (modified >= this.lastYear) {
+                return DateUtils.formatDateTime(context, modified, DateUtils.FORMAT_SHOW_DATE | DateUtils.FORMAT_SHOW_YEAR | DateUtils.FORMAT_NO_MONTH_DAY);
+            } else {
+                final Calendar calendar = Calendar.getInstance();
+                calendar.setTimeInMillis(modified);
+                return Integer.toString(calendar.get(Calendar.YEAR));
+            }
+        }
+    }
+}
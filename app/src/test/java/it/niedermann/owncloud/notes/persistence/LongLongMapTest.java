@@ -0,0 +1,176 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import android.util.Log;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+
+import static it.niedermann.owncloud.notes.shared.util.BenchmarkUtil.measureAllocatedBytes;
+import static java.util.stream.Collectors.toMap;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class LongLongMapTest {
+
+    private static final String TAG = LongLongMapTest.class.getSimpleName();
+
+    /**
+     * Number of {@link Note}s of a huge synthetic account
+     */
+    private static final int NOTES_COUNT = 50_000;
+
+    @Test
+    public void put_get_containsKey() {
+        final LongLongMap map = new LongLongMap();
+        assertTrue(map.isEmpty());
+
+        map.put(4711L, 1L);
+        map.put(1234L, 2L);
+        map.put(4711L, 3L);
+
+        assertEquals(2, map.size());
+        assertFalse(map.isEmpty());
+        assertTrue(map.containsKey(4711L));
+        assertEquals(3L, map.get(4711L, -1));
+        assertEquals(2L, map.get(1234L, -1));
+        assertFalse(map.containsKey(6969L));
+        assertEquals(-1L, map.get(6969L, -1));
+    }
+
+    @Test
+    public void put_zeroAndNegativeKeys() {
+        final LongLongMap map = new LongLongMap();
+        assertFalse(map.containsKey(0L));
+        assertEquals(-1L, map.get(0L, -1));
+
+        map.put(0L, 5L);
+        map.put(-1L, 6L);
+        map.put(Long.MIN_VALUE, 7L);
+
+        assertEquals(3, map.size());
+        assertEquals(5L, map.get(0L, -1));
+        assertEquals(6L, map.get(-1L, -1));
+        assertEquals(7L, map.get(Long.MIN_VALUE, -1));
+    }
+
+    @Test
+    public void put_growsBeyondExpectedSize() {
+        final LongLongMap map = new LongLongMap(2);
+        for (long remoteId = 1; remoteId <= 10_000; remoteId++) {
+            map.put(remoteId, remoteId * 10);
+        }
+
+        assertEquals(10_000, map.size());
+        for (long remoteId = 1; remoteId <= 10_000; remoteId++) {
+            assertEquals(remoteId * 10, map.get(remoteId, -1));
+        }
+        assertFalse(map.containsKey(10_001L));
+    }
+
+    @Test
+    public void forEach_visitsEachMappingOnce() {
+        final LongLongMap map = new LongLongMap();
+        for (long remoteId = 0; remoteId < 1_000; remoteId++) {
+            map.put(remoteId, remoteId + 1);
+        }
+
+        final Map<Long, Long> visited = new HashMap<>();
+        map.forEach((key, value) -> assertTrue("Visited " + key + " twice", visited.put(key, value) == null));
+
+        assertEquals(1_000, visited.size());
+        for (long remoteId = 0; remoteId < 1_000; remoteId++) {
+            assertEquals(Long.valueOf(remoteId + 1), visited.get(remoteId));
+        }
+    }
+
+    @Test
+    public void longSet_add_contains() {
+        final LongSet set = new LongSet(2);
+        assertTrue(set.add(0L));
+        assertFalse(set.add(0L));
+        for (long remoteId = 1; remoteId <= 10_000; remoteId++) {
+            assertTrue(set.add(remoteId));
+        }
+        assertFalse(set.add(4711L));
+
+        assertEquals(10_001, set.size());
+        assertTrue(set.contains(0L));
+        assertTrue(set.contains(10_000L));
+        assertFalse(set.contains(10_001L));
+        assertFalse(set.contains(-1L));
+    }
+
+    /**
+     * Compares the bookkeeping of a synchronization of a huge account, which needs a map of all <code>remoteId</code>s to local <code>id</code>s and a set of all <code>remoteId</code>s of the response.
+     * Previously a {@link Note} has been materialized for each row and the IDs have been boxed into a {@link HashMap} and a {@link HashSet}.
+     */
+    @Test
+    public void syncBookkeeping_allocatesLessThanBoxedCollections() {
+        final long boxedBytes = measureAllocatedBytes(LongLongMapTest::boxedBookkeeping);
+        final long primitiveBytes = measureAllocatedBytes(LongLongMapTest::primitiveBookkeeping);
+
+        Log.i(TAG, "Bookkeeping of " + NOTES_COUNT + " notes: boxed " + boxedBytes + " bytes, primitive " + primitiveBytes + " bytes");
+        assertEquals(NOTES_COUNT, boxedBookkeeping());
+        assertEquals(NOTES_COUNT, primitiveBookkeeping());
+        assertTrue("Primitive bookkeeping should need less memory (boxed: " + boxedBytes + " bytes, primitive: " + primitiveBytes + " bytes)", primitiveBytes < boxedBytes);
+    }
+
+    private static int boxedBookkeeping() {
+        final List<Note> rows = new ArrayList<>(NOTES_COUNT);
+        for (int i = 0; i < NOTES_COUNT; i++) {
+            final Note note = new Note();
+            note.setId(i + 1);
+            note.setRemoteId(remoteId(i));
+            rows.add(note);
+        }
+        final Map<Long, Long> idMap = rows.stream().collect(toMap(Note::getRemoteId, Note::getId));
+        final Set<Long> remoteIDs = new HashSet<>();
+        for (int i = 0; i < NOTES_COUNT; i++) {
+            remoteIDs.add(remoteId(i));
+        }
+        int unchanged = 0;
+        for (Map.Entry<Long, Long> entry : idMap.entrySet()) {
+            if (remoteIDs.contains(entry.getKey())) {
+                unchanged++;
+            }
+        }
+        return unchanged;
+    }
+
+    private static int primitiveBookkeeping() {
+        final LongLongMap idMap = new LongLongMap(NOTES_COUNT);
+        for (int i = 0; i < NOTES_COUNT; i++) {
+            idMap.put(remoteId(i), i + 1);
+        }
+        final LongSet remoteIDs = new LongSet(idMap.size());
+        for (int i = 0; i < NOTES_COUNT; i++) {
+            remoteIDs.add(remoteId(i));
+        }
+        final int[] unchanged = {0};
+        idMap.forEach((remoteId, localId) -> {
+            if (remoteIDs.contains(remoteId)) {
+                unchanged[0]++;
+            }
+        });
+        return unchanged[0];
+    }
+
+    /**
+     * @return a <code>remoteId</code> outside of the range of cached {@link Long}s, like on real servers
+     */
+    private static long remoteId(int i) {
+        return 100_000L + i;
+    }
+}
@@ -0,0 +1,152 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static it.niedermann.owncloud.notes.persistence.NoteContentLoader.Priority.BACKGROUND;
+import static it.niedermann.owncloud.notes.persistence.NoteContentLoader.Priority.OPENED;
+import static it.niedermann.owncloud.notes.persistence.NoteContentLoader.Priority.VISIBLE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class NoteContentLoaderTest {
+
+    private static final long BLOCKING_NOTE_ID = 0;
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final CountDownLatch blocker = new CountDownLatch(1);
+    private final List<Long> fetched = Collections.synchronizedList(new ArrayList<>());
+    private final NoteContentLoader loader = new NoteContentLoader(executor, noteId -> {
+        if (noteId == BLOCKING_NOTE_ID) {
+            blocker.await();
+        } else {
+            fetched.add(noteId);
+        }
+        return true;
+    }, 1);
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void load_servesOpenedNoteBeforeVisibleAndBackgroundNotes() throws Exception {
+        loader.load(1, BLOCKING_NOTE_ID, BACKGROUND);
+        for (long noteId = 1; noteId <= 5; noteId++) {
+            loader.load(1, noteId, BACKGROUND);
+        }
+        loader.load(1, 10, VISIBLE);
+        loader.load(1, 11, VISIBLE);
+        final Future<Boolean> opened = loader.load(1, 20, OPENED);
+
+        blocker.countDown();
+
+        assertTrue(opened.get(5, TimeUnit.SECONDS));
+        awaitIdle();
+        assertEquals("Opened note first, then the most recently visible notes, then the background notes in order", Arrays.asList(20L, 11L, 10L, 1L, 2L, 3L, 4L, 5L), fetched);
+    }
+
+    @Test
+    public void load_raisesPriorityOfQueuedNote() throws Exception {
+        loader.load(1, BLOCKING_NOTE_ID, BACKGROUND);
+        final Future<Boolean> background = loader.load(1, 1, BACKGROUND);
+        loader.load(1, 2, BACKGROUND);
+        loader.load(1, 3, VISIBLE);
+
+        final Future<Boolean> opened = loader.load(1, 2, OPENED);
+        assertSame("Already queued background note should not be queued twice", background, loader.load(1, 1, BACKGROUND));
+        assertEquals(3, loader.getQueuedCount());
+
+        blocker.countDown();
+
+        assertTrue(opened.get(5, TimeUnit.SECONDS));
+        awaitIdle();
+        assertEquals(Arrays.asList(2L, 3L, 1L), fetched);
+    }
+
+    @Test
+    public void discard_dropsQueuedRequestsOfAccount() throws Exception {
+        loader.load(1, BLOCKING_NOTE_ID, BACKGROUND);
+        final Future<Boolean> discarded = loader.load(1, 1, BACKGROUND);
+        loader.load(2, 2, BACKGROUND);
+
+        loader.discard(1);
+        blocker.countDown();
+
+        assertTrue(discarded.isCancelled());
+        awaitIdle();
+        assertEquals(Collections.singletonList(2L), fetched);
+    }
+
+    @Test
+    public void setHeld_keepsQueuedRequestsUntilReleased() throws Exception {
+        loader.setHeld(true);
+        final Future<Boolean> background = loader.load(1, 1, BACKGROUND);
+        loader.load(1, 2, VISIBLE);
+        assertTrue("Nobody should wait for an opened note while the loader is held", loader.load(1, 3, OPENED).isCancelled());
+        assertEquals(2, loader.getQueuedCount());
+
+        loader.setHeld(false);
+
+        assertTrue(background.get(5, TimeUnit.SECONDS));
+        awaitIdle();
+        assertEquals(Arrays.asList(2L, 1L), fetched);
+    }
+
+    @Test
+    public void setHeld_cancelsQueuedOpenedNotes() throws Exception {
+        loader.load(1, BLOCKING_NOTE_ID, BACKGROUND);
+        final Future<Boolean> opened = loader.load(1, 1, OPENED);
+        loader.load(1, 2, BACKGROUND);
+
+        loader.setHeld(true);
+        blocker.countDown();
+
+        assertTrue(opened.isCancelled());
+        assertEquals(1, loader.getQueuedCount());
+        loader.setHeld(false);
+        awaitIdle();
+        assertEquals(Collections.singletonList(2L), fetched);
+    }
+
+    @Test
+    public void load_propagatesFailures() {
+        final NoteContentLoader failingLoader = new NoteContentLoader(executor, noteId -> {
+            throw new IllegalStateException("Server not reachable");
+        }, 1);
+
+        final Future<Boolean> future = failingLoader.load(1, 1, OPENED);
+
+        final ExecutionException exception = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertTrue(exception.getCause() instanceof IllegalStateException);
+    }
+
+    @Test
+    public void constructor_requiresAtLeastOneFetch() {
+        assertThrows(IllegalArgumentException.class, () -> new NoteContentLoader(executor, noteId -> true, 0));
+    }
+
+    private void awaitIdle() throws InterruptedException, ExecutionException, TimeoutException {
+        // Requests are served one after another, so the last enqueued background request finishes last
+        loader.load(1, Long.MAX_VALUE, BACKGROUND).get(5, TimeUnit.SECONDS);
+        fetched.remove(Long.MAX_VALUE);
+    }
+}
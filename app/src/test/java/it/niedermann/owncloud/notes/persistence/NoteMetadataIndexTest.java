@@ -0,0 +1,262 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.room.Room;
+import androidx.test.core.app.ApplicationProvider;
+
+import com.google.common.util.concurrent.MoreExecutors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.reflect.Constructor;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+
+import it.niedermann.owncloud.notes.persistence.dao.NotesPageQuery;
+import it.niedermann.owncloud.notes.persistence.entity.Account;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.Capabilities;
+import it.niedermann.owncloud.notes.shared.model.CategorySortingMethod;
+import it.niedermann.owncloud.notes.shared.model.DBStatus;
+import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
+
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_DELETED;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_EDITED;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.FAVORITES;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.RECENT;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.UNCATEGORIZED;
+import static it.niedermann.owncloud.notes.shared.util.BenchmarkUtil.bestOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compares the pages of the {@link NoteMetadataIndex} with the pages of {@link NotesPageQuery} for all navigation and sorting combinations.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class NoteMetadataIndexTest {
+
+    private static final String TAG = NoteMetadataIndexTest.class.getSimpleName();
+
+    private static final int NOTE_COUNT = 5_000;
+    private static final int PAGE_SIZE = 37;
+    private static final String[] CATEGORIES = {"", "", "Movies", "Movies/Action", "movies/Drama", "Movies2", "Mov", "Music", "Ärger", "ärger/Sub", "Ärger/Sub/Deep"};
+    private static final String[] TITLES = {"apple", "Apple", "APPLE pie", "banana", "Zebra", "zebra", "ärger", "Ärger", "Éclair", "éclair", "123", "_underscore", "Z", "美好的一天"};
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    private NotesDatabase db;
+    private NotesRepository repo;
+    private Account account;
+    private Account secondAccount;
+
+    @Before
+    public void setup() throws Exception {
+        final Context context = ApplicationProvider.getApplicationContext();
+        db = Room
+                .inMemoryDatabaseBuilder(context, NotesDatabase.class)
+                .addCallback(NotesDatabase.CALLBACK)
+                .allowMainThreadQueries()
+                .build();
+
+        final Constructor<NotesRepository> constructor = NotesRepository.class.getDeclaredConstructor(Context.class, NotesDatabase.class, ExecutorService.class, ExecutorService.class, ApiProvider.class);
+        constructor.setAccessible(true);
+        final ExecutorService directExecutor = MoreExecutors.newDirectExecutorService();
+        repo = constructor.newInstance(context, db, directExecutor, directExecutor, ApiProvider.getInstance());
+
+        db.getAccountDao().insert(new Account("https://example.com", "example", "example@example.com", null, new Capabilities()));
+        db.getAccountDao().insert(new Account("https://example.org", "test", "test@example.org", null, new Capabilities()));
+        account = db.getAccountDao().getAccountByName("example@example.com");
+        secondAccount = db.getAccountDao().getAccountByName("test@example.org");
+
+        final Random random = new Random(42);
+        db.runInTransaction(() -> {
+            for (int i = 0; i < NOTE_COUNT; i++) {
+                db.getNoteDao().addNote(createNote(random, i % 10 == 0 ? secondAccount : account, i));
+            }
+        });
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void getPage_matchesNotesPageQuery() {
+        final NoteMetadataIndex index = repo.getMetadataIndex(account.getId());
+        assertEquals(count(account.getId()), index.size());
+        assertSame("The index should be built only once per account", index, repo.getMetadataIndex(account.getId()));
+        assertAllPagesMatch(account.getId());
+        assertAllPagesMatch(secondAccount.getId());
+    }
+
+    @Test
+    public void writes_keepIndexCurrent() {
+        final NoteMetadataIndex index = repo.getMetadataIndex(account.getId());
+        repo.getMetadataIndex(secondAccount.getId());
+        final List<Note> notes = getAllPages(account.getId(), new NavigationCategory(RECENT), CategorySortingMethod.SORT_MODIFIED_DESC);
+
+        final Note added = repo.addNote(account.getId(), new Note(null, 1_600_000_000_000L, "Added", "Content", "Movies/Added", true, null));
+        // Only notes without local changes are updated by a synchronization
+        final Note changed = notes.subList(22, notes.size()).stream().filter(note -> note.getStatus() == VOID).findFirst().orElseThrow(IllegalStateException::new);
+        repo.updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(changed.getId(), changed.getModified(), changed.getTitle(), !changed.getFavorite(), "Changed", "changed");
+        repo.runInTransaction(() -> {
+            for (int i = 2; i < 20; i++) {
+                final Note pulled = notes.get(i);
+                repo.updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(pulled.getId(), pulled.getModified() == null ? 0 : pulled.getModified() + 1, "Pulled " + i, pulled.getFavorite(), pulled.getCategory(), "pulled", "Pulled content", "Pulled excerpt");
+            }
+        });
+        repo.updateRemoteId(notes.get(20).getId(), 4711L);
+        repo.deleteByNoteId(notes.get(21).getId(), notes.get(21).getStatus());
+        repo.addNote(secondAccount.getId(), new Note(null, 1_600_000_000_000L, "Added to second account", "Content", "Movies", false, null));
+
+        assertEquals(count(account.getId()), index.size());
+        assertAllPagesMatch(account.getId());
+        assertAllPagesMatch(secondAccount.getId());
+        assertTrue(getAllPages(account.getId(), new NavigationCategory(FAVORITES), CategorySortingMethod.SORT_MODIFIED_DESC).contains(db.getNoteDao().getNoteMetadataById(added.getId())));
+
+        final List<List<Note>> values = new ArrayList<>();
+        repo.getFirstNotesPage$(account.getId(), new NavigationCategory(account.getId(), "Changed"), "", CategorySortingMethod.SORT_MODIFIED_DESC, PAGE_SIZE).observeForever(values::add);
+        assertEquals(1, values.get(values.size() - 1).size());
+        repo.deleteByNoteId(changed.getId(), VOID);
+        assertEquals("Observers should be notified after the index has been updated", 0, values.get(values.size() - 1).size());
+    }
+
+    @Test
+    public void rolledBackWrites_dropIndex() {
+        final NoteMetadataIndex index = repo.getMetadataIndex(account.getId());
+        final NavigationCategory rolledBack = new NavigationCategory(account.getId(), "Rolled back");
+        final List<List<Note>> values = new ArrayList<>();
+        repo.getFirstNotesPage$(account.getId(), rolledBack, "", CategorySortingMethod.SORT_MODIFIED_DESC, PAGE_SIZE).observeForever(values::add);
+        assertEquals(0, values.get(values.size() - 1).size());
+
+        assertThrows(IllegalStateException.class, () -> repo.runInTransaction(() -> {
+            repo.addNote(account.getId(), new Note(null, 1_600_000_000_000L, "Rolled back", "Content", "Rolled back", false, null));
+            assertEquals(1, index.getPage(rolledBack, CategorySortingMethod.SORT_MODIFIED_DESC, null, PAGE_SIZE).size());
+            throw new IllegalStateException("Simulated failure");
+        }));
+
+        assertNotSame("The index should be built again after a rollback", index, repo.getMetadataIndex(account.getId()));
+        assertEquals(count(account.getId()), repo.getMetadataIndex(account.getId()).size());
+        assertAllPagesMatch(account.getId());
+        assertEquals(0, values.get(values.size() - 1).size());
+    }
+
+    @Test
+    public void compare_matchesSQLiteCollations() {
+        assertEquals(0, NoteMetadataIndex.compare("Apple", "aPPLE", true));
+        assertNotEquals(0, NoteMetadataIndex.compare("Ärger", "ärger", true));
+        assertTrue(NoteMetadataIndex.compare("Apple", "apple", false) < 0);
+        assertTrue(NoteMetadataIndex.compare("Z", "a", false) < 0);
+        assertTrue(NoteMetadataIndex.compare("Z", "a", true) > 0);
+        assertTrue(NoteMetadataIndex.compare("_", "a", true) < 0);
+        assertTrue(NoteMetadataIndex.compare("_", "A", false) > 0);
+        assertTrue(NoteMetadataIndex.compare("Movies", "Movies/Action", false) < 0);
+        assertTrue("Supplementary characters sort after all other characters like in UTF-8", NoteMetadataIndex.compare("\uD83D\uDE00", "\uFFFD", false) > 0);
+    }
+
+    /**
+     * Switching through all navigation and sorting combinations is measured once right after storing a changed {@link Note} and once without changes.
+     */
+    @Test
+    public void getPage_benchmark() {
+        final NoteMetadataIndex index = repo.getMetadataIndex(account.getId());
+        final List<NavigationCategory> navigationCategories = getNavigationCategories(account.getId());
+        final Note note = index.getPage(new NavigationCategory(RECENT), null, null, 1).get(0);
+
+        final long queryNanos = bestOf(10, () -> {
+            for (NavigationCategory navigationCategory : navigationCategories) {
+                for (CategorySortingMethod sortingMethod : CategorySortingMethod.values()) {
+                    db.getNoteDao().getNotesPage(NotesPageQuery.create(account.getId(), navigationCategory, "", sortingMethod, null, PAGE_SIZE));
+                }
+            }
+        });
+        final long indexNanos = bestOf(10, () -> {
+            index.put(note);
+            getAllFirstPages(index, navigationCategories);
+        });
+        final long cachedNanos = bestOf(10, () -> getAllFirstPages(index, navigationCategories));
+
+        final long bytes = index.estimateMemoryUsage();
+        Log.i(TAG, "First pages of " + navigationCategories.size() * CategorySortingMethod.values().length + " combinations of " + index.size() + " notes: query " + queryNanos / 1_000 + " µs, index " + indexNanos / 1_000 + " µs, cached " + cachedNanos / 1_000 + " µs");
+        Log.i(TAG, "Index of " + index.size() + " notes uses about " + bytes / 1024 + " KiB");
+        assertTrue(bytes > index.size() * 40L);
+        assertEquals(count(account.getId()), index.size());
+    }
+
+    private static void getAllFirstPages(@NonNull NoteMetadataIndex index, @NonNull List<NavigationCategory> navigationCategories) {
+        for (NavigationCategory navigationCategory : navigationCategories) {
+            for (CategorySortingMethod sortingMethod : CategorySortingMethod.values()) {
+                index.getPage(navigationCategory, sortingMethod, null, PAGE_SIZE);
+            }
+        }
+    }
+
+    private void assertAllPagesMatch(long accountId) {
+        for (NavigationCategory navigationCategory : getNavigationCategories(accountId)) {
+            for (CategorySortingMethod sortingMethod : CategorySortingMethod.values()) {
+                final List<Note> expected = new ArrayList<>();
+                List<Note> page = db.getNoteDao().getNotesPage(NotesPageQuery.create(accountId, navigationCategory, "", sortingMethod, null, PAGE_SIZE));
+                while (!page.isEmpty()) {
+                    expected.addAll(page);
+                    page = db.getNoteDao().getNotesPage(NotesPageQuery.create(accountId, navigationCategory, "", sortingMethod, page.get(page.size() - 1), PAGE_SIZE));
+                }
+                assertEquals(navigationCategory + " " + sortingMethod, expected, getAllPages(accountId, navigationCategory, sortingMethod));
+            }
+        }
+    }
+
+    @NonNull
+    private List<Note> getAllPages(long accountId, @NonNull NavigationCategory navigationCategory, @NonNull CategorySortingMethod sortingMethod) {
+        final NoteMetadataIndex index = repo.getMetadataIndex(accountId);
+        final List<Note> notes = new ArrayList<>();
+        List<Note> page = index.getPage(navigationCategory, sortingMethod, null, PAGE_SIZE);
+        while (!page.isEmpty()) {
+            notes.addAll(page);
+            page = index.getPage(navigationCategory, sortingMethod, page.get(page.size() - 1), PAGE_SIZE);
+        }
+        return notes;
+    }
+
+    @NonNull
+    private static List<NavigationCategory> getNavigationCategories(long accountId) {
+        final List<NavigationCategory> navigationCategories = new ArrayList<>(Arrays.asList(new NavigationCategory(RECENT), new NavigationCategory(FAVORITES), new NavigationCategory(UNCATEGORIZED)));
+        for (String category : Arrays.asList("Movies", "movies", "Mov", "Ärger", "ärger", "Music", "Changed", "Does not exist")) {
+            navigationCategories.add(new NavigationCategory(accountId, category));
+        }
+        return navigationCategories;
+    }
+
+    private int count(long accountId) {
+        return db.getNoteDao().count(accountId);
+    }
+
+    /**
+     * @return {@link Note}s with many equal sort keys, some without modification date and some deleted
+     */
+    @NonNull
+    private static Note createNote(@NonNull Random random, @NonNull Account account, int i) {
+        final Long modified = random.nextInt(20) == 0 ? null : 1_600_000_000_000L + random.nextInt(500) * 60_000L;
+        final String title = TITLES[random.nextInt(TITLES.length)] + (random.nextBoolean() ? "" : " " + random.nextInt(10));
+        final DBStatus status = random.nextInt(10) == 0 ? LOCAL_DELETED : random.nextInt(3) == 0 ? LOCAL_EDITED : VOID;
+        return new Note(0, random.nextBoolean() ? (long) i + 1 : null, modified, title, "Content " + i, CATEGORIES[random.nextInt(CATEGORIES.length)], random.nextInt(5) == 0, String.valueOf(i), status, account.getId(), "Excerpt " + i, 0);
+    }
+}
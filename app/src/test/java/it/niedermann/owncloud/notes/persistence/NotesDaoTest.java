@@ -1,10 +1,13 @@
 package it.niedermann.owncloud.notes.persistence;
 
+import android.database.Cursor;
 import android.database.sqlite.SQLiteConstraintException;
+import android.util.Log;
 
 import androidx.annotation.NonNull;
 import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
 import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 import androidx.test.core.app.ApplicationProvider;
 
 import org.junit.After;
@@ -14,27 +17,45 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
-import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
+import it.niedermann.owncloud.notes.persistence.dao.NotesPageQuery;
 import it.niedermann.owncloud.notes.persistence.entity.Account;
+import it.niedermann.owncloud.notes.persistence.entity.CategoryOptions;
 import it.niedermann.owncloud.notes.persistence.entity.CategoryWithNotesCount;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
 import it.niedermann.owncloud.notes.shared.model.Capabilities;
+import it.niedermann.owncloud.notes.shared.model.CategorySortingMethod;
 import it.niedermann.owncloud.notes.shared.model.DBStatus;
+import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
+import it.niedermann.owncloud.notes.shared.util.NoteUtil;
 
 import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_DELETED;
 import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_EDITED;
 import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.FAVORITES;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.RECENT;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.UNCATEGORIZED;
+import static it.niedermann.owncloud.notes.shared.util.BenchmarkUtil.bestOf;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 @RunWith(RobolectricTestRunner.class)
 public class NotesDaoTest {
 
+    private static final String TAG = NotesDaoTest.class.getSimpleName();
+
     @Rule
     public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
 
@@ -46,6 +67,7 @@ public class NotesDaoTest {
     public void setupDB() {
         db = Room
                 .inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), NotesDatabase.class)
+                .addCallback(NotesDatabase.CALLBACK)
                 .allowMainThreadQueries()
                 .build();
         db.getAccountDao().insert(new Account("https://äöüß.example.com", "彼得", "彼得@äöüß.example.com", null, new Capabilities()));
@@ -59,12 +81,12 @@ public class NotesDaoTest {
 
     @Test
     public void deleteNoteById() throws InterruptedException {
-        db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
         db.getNoteDao().deleteByNoteId(1, LOCAL_DELETED);
         assertNull(db.getNoteDao().getNoteById(1));
         assertNull(NotesTestingUtil.getOrAwaitValue(db.getNoteDao().getNoteById$(1)));
 
-        db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
         db.getNoteDao().deleteByNoteId(1, VOID);
         assertEquals(1, db.getNoteDao().getNoteById(1).getId());
         assertEquals(1, NotesTestingUtil.getOrAwaitValue(db.getNoteDao().getNoteById$(1)).getId());
@@ -72,45 +94,73 @@ public class NotesDaoTest {
 
     @Test
     public void updateScrollY() {
-        db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
         db.getNoteDao().updateScrollY(1, 128);
         assertEquals(128, db.getNoteDao().getNoteById(1).getScrollY());
+        assertEquals("C", db.getNoteDao().getNoteById(1).getContent());
     }
 
     @Test
     public void updateStatus() {
-        db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
         db.getNoteDao().updateStatus(1, LOCAL_EDITED);
         assertEquals(LOCAL_EDITED, db.getNoteDao().getNoteById(1).getStatus());
     }
 
     @Test(expected = SQLiteConstraintException.class)
     public void updateStatus_NullConstraint() {
-        db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
         db.getNoteDao().updateStatus(1, null);
     }
 
     @Test
     public void updateCategory() {
-        db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
         db.getNoteDao().updateCategory(1, "日记");
         assertEquals("日记", db.getNoteDao().getNoteById(1).getCategory());
     }
 
     @Test(expected = SQLiteConstraintException.class)
     public void updateCategory_NullConstraint() {
-        db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
         db.getNoteDao().updateCategory(1, null);
     }
 
+    @Test
+    public void updateMetadataAndContent() {
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "C", 0));
+        db.getNoteDao().addNote(new Note(2, 2L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_EDITED, account.getId(), "C", 0));
+
+        assertEquals(1, db.getNoteDao().updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(1, System.currentTimeMillis(), "Remote", true, "Movies", "2"));
+        assertEquals("Locally modified notes must not be overridden", 0, db.getNoteDao().updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(2, System.currentTimeMillis(), "Remote", true, "Movies", "2"));
+
+        final Note metadataOnly = db.getNoteDao().getNoteById(1);
+        assertEquals("Remote", metadataOnly.getTitle());
+        assertEquals("Movies", metadataOnly.getCategory());
+        assertTrue(metadataOnly.getFavorite());
+        assertEquals("Outdated content is kept until the new one has been fetched", "C", metadataOnly.getContent());
+        assertFalse(metadataOnly.isContentLoaded());
+        assertTrue(db.getNoteDao().getNoteById(2).isContentLoaded());
+        assertEquals(Collections.singletonList(1L), db.getNoteDao().getIdsWithoutContent(account.getId()));
+        assertEquals(Collections.singletonList(1L), db.getNoteDao().filterIdsWithoutContent(Arrays.asList(1L, 2L, 3L)));
+
+        assertEquals(1, db.getNoteDao().updateContentIfNotLoaded(1, "Remote content", "Remote content"));
+        assertEquals("Content must only be stored once", 0, db.getNoteDao().updateContentIfNotLoaded(1, "Outdated content", "Outdated content"));
+
+        final Note loaded = db.getNoteDao().getNoteById(1);
+        assertEquals("Remote content", loaded.getContent());
+        assertTrue(loaded.isContentLoaded());
+        assertTrue(db.getNoteDao().getIdsWithoutContent(account.getId()).isEmpty());
+    }
+
     @Test
     public void getRemoteIds() {
         final Account secondAccount = setupSecondAccount();
 
-        db.getNoteDao().addNote(new Note(1, 4711L, Calendar.getInstance(), "T", "C", "", false, "1", VOID, account.getId(), "", 0));
-        db.getNoteDao().addNote(new Note(2, 1234L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_EDITED, account.getId(), "", 0));
-        db.getNoteDao().addNote(new Note(3, 1234L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_EDITED, secondAccount.getId(), "", 0));
-        db.getNoteDao().addNote(new Note(4, 6969L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(1, 4711L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(2, 1234L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_EDITED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(3, 1234L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_EDITED, secondAccount.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(4, 6969L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
 
         final List<Long> remoteIdsOfAccount = db.getNoteDao().getRemoteIds(account.getId());
         assertTrue(remoteIdsOfAccount.stream().anyMatch(id -> 4711 == id));
@@ -121,23 +171,28 @@ public class NotesDaoTest {
 
     @Test
     public void getRemoteIdAndId() {
-        db.getNoteDao().addNote(new Note(815, 4711L, Calendar.getInstance(), "T", "C", "", false, "1", VOID, account.getId(), "", 0));
-        db.getNoteDao().addNote(new Note(666, 1234L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_EDITED, account.getId(), "", 0));
-        db.getNoteDao().addNote(new Note(987, 6969L, Calendar.getInstance(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
-
-        final List<Note> pair = db.getNoteDao().getRemoteIdAndId(account.getId());
+        db.getNoteDao().addNote(new Note(815, 4711L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(666, 1234L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_EDITED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(987, 6969L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+
+        final Map<Long, Long> pair = new HashMap<>();
+        try (Cursor cursor = db.getNoteDao().getRemoteIdAndId(account.getId())) {
+            while (cursor.moveToNext()) {
+                pair.put(cursor.getLong(0), cursor.getLong(1));
+            }
+        }
         assertEquals(2, pair.size());
-        assertTrue(pair.stream().anyMatch(note -> 815 == note.getId() && Long.valueOf(4711).equals(note.getRemoteId())));
-        assertTrue(pair.stream().anyMatch(note -> 666 == note.getId() && Long.valueOf(1234).equals(note.getRemoteId())));
-        assertFalse("Result must not contain deleted note", pair.stream().anyMatch(note -> 987 == note.getId()));
-        assertFalse("Result must not contain deleted note", pair.stream().anyMatch(note -> Long.valueOf(6969).equals(note.getRemoteId())));
+        assertEquals(Long.valueOf(815), pair.get(4711L));
+        assertEquals(Long.valueOf(666), pair.get(1234L));
+        assertFalse("Result must not contain deleted note", pair.containsValue(987L));
+        assertFalse("Result must not contain deleted note", pair.containsKey(6969L));
     }
 
     @Test
     public void getLocalIdByRemoteId() {
-        db.getNoteDao().addNote(new Note(815, 4711L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0));
-        db.getNoteDao().addNote(new Note(666, 1234L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", LOCAL_EDITED, account.getId(), "", 0));
-        db.getNoteDao().addNote(new Note(987, 6969L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(815, 4711L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(666, 1234L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", LOCAL_EDITED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(987, 6969L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
 
         assertEquals(Long.valueOf(815), db.getNoteDao().getLocalIdByRemoteId(account.getId(), 4711));
         assertEquals(Long.valueOf(666), db.getNoteDao().getLocalIdByRemoteId(account.getId(), 1234));
@@ -174,6 +229,7 @@ public class NotesDaoTest {
         assertEquals(6, accountNotes.size());
         for (Note note : accountNotes) {
             assertNotEquals(VOID, note.getStatus());
+            assertEquals("Local changes must be pushed including their content", "C", note.getContent());
         }
 
         final List<Note> secondAccountNotes = db.getNoteDao().getLocalModifiedNotes(secondAccount.getId());
@@ -185,7 +241,7 @@ public class NotesDaoTest {
 
     @Test
     public void toggleFavorite() {
-        final Note note = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", LOCAL_DELETED, account.getId(), "", 0);
+        final Note note = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", LOCAL_DELETED, account.getId(), "", 0);
         db.getNoteDao().addNote(note);
         db.getNoteDao().toggleFavorite(note.getId());
         assertTrue(db.getNoteDao().getNoteById(note.getId()).getFavorite());
@@ -197,7 +253,7 @@ public class NotesDaoTest {
 
     @Test
     public void updateRemoteId() {
-        final Note note = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", LOCAL_DELETED, account.getId(), "", 0);
+        final Note note = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", LOCAL_DELETED, account.getId(), "", 0);
         db.getNoteDao().addNote(note);
         db.getNoteDao().updateRemoteId(1, 5L);
         assertEquals(Long.valueOf(5), db.getNoteDao().getNoteById(1).getRemoteId());
@@ -205,132 +261,132 @@ public class NotesDaoTest {
 
     @Test
     public void updateIfNotModifiedLocallyDuringSync_NotModified() {
-        final Note localNote = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
-        final Note targetNote = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
+        final Note localNote = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
+        final Note targetNote = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
 
         db.getNoteDao().addNote(localNote);
 
-        assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyDuringSync(localNote.getId(), targetNote.getModified().getTimeInMillis(), targetNote.getTitle(), targetNote.getFavorite(), targetNote.getETag(), targetNote.getContent(), targetNote.getExcerpt(), localNote.getContent(), localNote.getCategory(), localNote.getFavorite()));
+        assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyDuringSync(localNote.getId(), targetNote.getModified(), targetNote.getTitle(), targetNote.getFavorite(), targetNote.getETag(), targetNote.getContent(), targetNote.getExcerpt(), localNote.getContent(), localNote.getCategory(), localNote.getFavorite()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyDuringSync_ModifiedContent() {
-        final Note localNote = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
-        final Note targetNote = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
+        final Note localNote = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
+        final Note targetNote = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
 
         db.getNoteDao().addNote(localNote);
 
         localNote.setContent("My-Modified-Content");
 
-        assertEquals(0, db.getNoteDao().updateIfNotModifiedLocallyDuringSync(localNote.getId(), targetNote.getModified().getTimeInMillis(), targetNote.getTitle(), targetNote.getFavorite(), targetNote.getETag(), targetNote.getContent(), targetNote.getExcerpt(), localNote.getContent(), localNote.getCategory(), localNote.getFavorite()));
+        assertEquals(0, db.getNoteDao().updateIfNotModifiedLocallyDuringSync(localNote.getId(), targetNote.getModified(), targetNote.getTitle(), targetNote.getFavorite(), targetNote.getETag(), targetNote.getContent(), targetNote.getExcerpt(), localNote.getContent(), localNote.getCategory(), localNote.getFavorite()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyDuringSync_ModifiedFavorite() {
-        final Note localNote = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
-        final Note targetNote = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
+        final Note localNote = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
+        final Note targetNote = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
 
         db.getNoteDao().addNote(localNote);
 
         localNote.setFavorite(true);
 
-        assertEquals(0, db.getNoteDao().updateIfNotModifiedLocallyDuringSync(localNote.getId(), targetNote.getModified().getTimeInMillis(), targetNote.getTitle(), targetNote.getFavorite(), targetNote.getETag(), targetNote.getContent(), targetNote.getExcerpt(), localNote.getContent(), localNote.getCategory(), localNote.getFavorite()));
+        assertEquals(0, db.getNoteDao().updateIfNotModifiedLocallyDuringSync(localNote.getId(), targetNote.getModified(), targetNote.getTitle(), targetNote.getFavorite(), targetNote.getETag(), targetNote.getContent(), targetNote.getExcerpt(), localNote.getContent(), localNote.getCategory(), localNote.getFavorite()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyDuringSync_ModifiedCategory() {
-        final Note localNote = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
-        final Note targetNote = new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
+        final Note localNote = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
+        final Note targetNote = new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0);
 
         db.getNoteDao().addNote(localNote);
 
         localNote.setCategory("Modified-Category");
 
-        assertEquals(0, db.getNoteDao().updateIfNotModifiedLocallyDuringSync(localNote.getId(), targetNote.getModified().getTimeInMillis(), targetNote.getTitle(), targetNote.getFavorite(), targetNote.getETag(), targetNote.getContent(), targetNote.getExcerpt(), localNote.getContent(), localNote.getCategory(), localNote.getFavorite()));
+        assertEquals(0, db.getNoteDao().updateIfNotModifiedLocallyDuringSync(localNote.getId(), targetNote.getModified(), targetNote.getTitle(), targetNote.getFavorite(), targetNote.getETag(), targetNote.getContent(), targetNote.getExcerpt(), localNote.getContent(), localNote.getCategory(), localNote.getFavorite()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_Nothing() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
         assertEquals(0, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_Nothing_ETagWasAndIsNull() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0)));
         assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), null, localNote.getContent(), localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), null, localNote.getContent(), localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_Nothing_ETagWasNullButChanged() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, null, VOID, account.getId(), "", 0)));
         assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), "1", localNote.getContent(), localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), "1", localNote.getContent(), localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_Modified() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
         assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis() + 1000, localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified() + 1000, localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_Title() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
         assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle() + " ", localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle() + " ", localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_Favorite() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
         assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), !localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), !localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_Category() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
         assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory() + " ", localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory() + " ", localNote.getETag(), localNote.getContent(), localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_ETag() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
         assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag() + " ", localNote.getContent(), localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag() + " ", localNote.getContent(), localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_Content() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
         assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent() + " ", localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent() + " ", localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_Excerpt() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", VOID, account.getId(), "", 0)));
         assertEquals("Excerpt is a local property, and therefore should not prevent updating if different", 0, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt() + " "));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent(), localNote.getExcerpt() + " "));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_ContentChangedButWasLocalEdited() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", LOCAL_EDITED, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", LOCAL_EDITED, account.getId(), "", 0)));
         assertEquals(0, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent() + " ", localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent() + " ", localNote.getExcerpt()));
     }
 
     @Test
     public void updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged_ContentChangedButWasLocalDeleted() {
-        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, Calendar.getInstance(), "My-Title", "My-Content", "", false, "1", LOCAL_DELETED, account.getId(), "", 0)));
+        final Note localNote = db.getNoteDao().getNoteById(db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "My-Title", "My-Content", "", false, "1", LOCAL_DELETED, account.getId(), "", 0)));
         assertEquals(0, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(
-                localNote.getId(), localNote.getModified().getTimeInMillis(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent() + " ", localNote.getExcerpt()));
+                localNote.getId(), localNote.getModified(), localNote.getTitle(), localNote.getFavorite(), localNote.getCategory(), localNote.getETag(), localNote.getContent() + " ", localNote.getExcerpt()));
     }
 
     @Test
@@ -386,6 +442,288 @@ public class NotesDaoTest {
         }
     }
 
+    @Test
+    public void searchFullText() {
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "Shopping list", "Milk, bread and Butter", "", false, null, VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(2, 2L, System.currentTimeMillis(), "Recipes", "Bread with butter", "", false, null, VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(3, 3L, System.currentTimeMillis(), "Äpfel", "Birnen", "", false, null, VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(4, 4L, System.currentTimeMillis(), "Deleted bread", "", "", false, null, LOCAL_DELETED, account.getId(), "", 0));
+
+        assertEquals(3, db.getNoteDao().searchRecentByModified(account.getId(), "").size());
+        assertEquals(2, db.getNoteDao().searchRecentByModified(account.getId(), "\"bread*\"").size());
+        assertEquals(2, db.getNoteDao().searchRecentByModified(account.getId(), "\"BUT*\"").size());
+        assertEquals(1, db.getNoteDao().searchRecentByModified(account.getId(), "\"shop*\" \"butter*\"").size());
+        assertEquals(1, db.getNoteDao().searchRecentByModified(account.getId(), "\"äpf*\"").size());
+        assertEquals(0, db.getNoteDao().searchRecentByModified(account.getId(), "\"cheese*\"").size());
+
+        db.getNoteDao().updateNote(new Note(1, 1L, System.currentTimeMillis(), "Shopping list", "Cheese", "", false, null, VOID, account.getId(), "", 0));
+        assertEquals(1, db.getNoteDao().searchRecentByModified(account.getId(), "\"bread*\"").size());
+        assertEquals(1, db.getNoteDao().searchRecentByModified(account.getId(), "\"cheese*\"").size());
+
+        db.getNoteDao().updateNote(new Note(1, 1L, System.currentTimeMillis(), "Groceries", "Cheese", "", false, null, VOID, account.getId(), "", 0));
+        assertEquals(0, db.getNoteDao().searchRecentByModified(account.getId(), "\"shop*\"").size());
+        assertEquals(1, db.getNoteDao().searchRecentByModified(account.getId(), "\"groc*\"").size());
+        assertEquals(1, db.getNoteDao().searchRecentByModified(account.getId(), "\"groc*\" \"cheese*\"").size());
+
+        db.getNoteDao().deleteByNoteId(2, VOID);
+        assertEquals(0, db.getNoteDao().searchRecentByModified(account.getId(), "\"bread*\"").size());
+    }
+
+    @Test
+    public void searchFullText_withoutTokens() {
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "C++", "#cpp - see ...", "", false, null, VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(2, 2L, System.currentTimeMillis(), "Recipes", "Bread with butter", "", false, null, VOID, account.getId(), "", 0));
+
+        assertEquals("No search term matches all notes", 2, db.getNoteDao().searchRecentByModified(account.getId(), NoteUtil.toFtsMatchQuery("  ")).size());
+        for (String searchTerm : new String[]{"-", "#", "++", "..."}) {
+            final String query = NoteUtil.toFtsMatchQuery(searchTerm);
+            assertEquals(searchTerm, 0, db.getNoteDao().searchRecentByModified(account.getId(), query).size());
+            assertEquals(searchTerm, 0, db.getNoteDao().getNotesPage(NotesPageQuery.create(account.getId(), new NavigationCategory(RECENT), query, CategorySortingMethod.SORT_MODIFIED_DESC, null, Integer.MAX_VALUE)).size());
+            assertEquals(searchTerm, 0, db.getNoteDao().getNoteIds(NotesPageQuery.createIds(account.getId(), new NavigationCategory(RECENT), query)).size());
+        }
+        assertEquals(1, db.getNoteDao().searchRecentByModified(account.getId(), NoteUtil.toFtsMatchQuery("C++")).size());
+    }
+
+    @Test
+    public void noteFts_doesNotStoreContent() {
+        try (Cursor cursor = db.getOpenHelper().getReadableDatabase().query("SELECT name FROM sqlite_master WHERE name LIKE 'NoteFts%'")) {
+            final List<String> tables = new ArrayList<>();
+            while (cursor.moveToNext()) {
+                tables.add(cursor.getString(0));
+            }
+            assertTrue(tables.contains("NoteFts"));
+            assertFalse("The content is read from NoteContent instead", tables.contains("NoteFts_content"));
+        }
+    }
+
+    @Test
+    public void cleanUpCategoryOptions() throws InterruptedException {
+        final Account secondAccount = setupSecondAccount();
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "Movies", false, null, VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(2, 2L, System.currentTimeMillis(), "T", "C", "Movies", false, null, VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(3, 3L, System.currentTimeMillis(), "T", "C", "Movies", false, null, VOID, secondAccount.getId(), "", 0));
+        addCategoryOptions(account.getId(), "Movies");
+        addCategoryOptions(secondAccount.getId(), "Movies");
+
+        db.getNoteDao().updateScrollY(1, 128);
+        db.getNoteDao().updateStatus(1, LOCAL_EDITED);
+        assertNotNull(NotesTestingUtil.getOrAwaitValue(db.getCategoryOptionsDao().getCategoryOrder(account.getId(), "Movies")));
+
+        db.getNoteDao().updateCategory(1, "Music");
+        assertNotNull("Category is still used by another note", NotesTestingUtil.getOrAwaitValue(db.getCategoryOptionsDao().getCategoryOrder(account.getId(), "Movies")));
+
+        db.getNoteDao().updateCategory(2, "Music");
+        assertNull(NotesTestingUtil.getOrAwaitValue(db.getCategoryOptionsDao().getCategoryOrder(account.getId(), "Movies")));
+        assertNotNull("Options of other accounts must not be touched", NotesTestingUtil.getOrAwaitValue(db.getCategoryOptionsDao().getCategoryOrder(secondAccount.getId(), "Movies")));
+
+        db.getNoteDao().deleteByNoteId(3, VOID);
+        assertNull(NotesTestingUtil.getOrAwaitValue(db.getCategoryOptionsDao().getCategoryOrder(secondAccount.getId(), "Movies")));
+    }
+
+    @Test
+    public void getNotesPage() {
+        final long sameModified = System.currentTimeMillis();
+        final String[] titles = {"Apple", "apple", "Banana", "banana", "Cherry", "ümlaut", "123", "Zebra"};
+        final String[] categories = {"", "Movies", "Movies/Action", "Music"};
+        for (int i = 1; i <= 40; i++) {
+            final Long modified;
+            if (i % 7 == 0) {
+                modified = null;
+            } else if (i % 3 == 0) {
+                modified = sameModified;
+            } else {
+                modified = sameModified - i * 60_000L;
+            }
+            db.getNoteDao().addNote(new Note(i, (long) i, modified, titles[i % titles.length], "Content " + i, categories[i % categories.length], i % 5 == 0, null, i % 11 == 0 ? LOCAL_DELETED : VOID, account.getId(), "", 0));
+        }
+
+        final NavigationCategory[] navigationCategories = {
+                new NavigationCategory(RECENT),
+                new NavigationCategory(FAVORITES),
+                new NavigationCategory(UNCATEGORIZED),
+                new NavigationCategory(account.getId(), "Movies")
+        };
+        for (NavigationCategory navigationCategory : navigationCategories) {
+            for (CategorySortingMethod sortingMethod : CategorySortingMethod.values()) {
+                for (String query : new String[]{"", "\"content*\""}) {
+                    final List<Note> allAtOnce = db.getNoteDao().getNotesPage(NotesPageQuery.create(account.getId(), navigationCategory, query, sortingMethod, null, Integer.MAX_VALUE));
+                    final List<Note> pageByPage = new ArrayList<>();
+                    List<Note> page = db.getNoteDao().getNotesPage(NotesPageQuery.create(account.getId(), navigationCategory, query, sortingMethod, null, 3));
+                    while (!page.isEmpty()) {
+                        pageByPage.addAll(page);
+                        page = db.getNoteDao().getNotesPage(NotesPageQuery.create(account.getId(), navigationCategory, query, sortingMethod, page.get(page.size() - 1), 3));
+                    }
+                    final String message = navigationCategory.getType() + " " + sortingMethod + " " + query;
+                    assertFalse(message, allAtOnce.isEmpty());
+                    assertEquals(message, allAtOnce.stream().map(Note::getId).collect(Collectors.toList()), pageByPage.stream().map(Note::getId).collect(Collectors.toList()));
+                    assertTrue(message, isSortedByFavorite(allAtOnce));
+                }
+            }
+        }
+
+        final List<Long> recentByModified = db.getNoteDao().searchRecentByModified(account.getId(), "").stream().map(Note::getId).sorted().collect(Collectors.toList());
+        final List<Long> recentPaged = db.getNoteDao().getNotesPage(NotesPageQuery.create(account.getId(), new NavigationCategory(RECENT), "", CategorySortingMethod.SORT_MODIFIED_DESC, null, Integer.MAX_VALUE)).stream().map(Note::getId).sorted().collect(Collectors.toList());
+        assertEquals(recentByModified, recentPaged);
+    }
+
+    @Test
+    public void getNoteIds() {
+        final String[] categories = {"", "Movies", "Movies/Action", "Music"};
+        for (int i = 1; i <= 40; i++) {
+            db.getNoteDao().addNote(new Note(i, (long) i, System.currentTimeMillis() - i * 60_000L, "Title " + i, "Content " + i, categories[i % categories.length], i % 5 == 0, null, i % 11 == 0 ? LOCAL_DELETED : VOID, account.getId(), "", 0));
+        }
+
+        final NavigationCategory[] navigationCategories = {
+                new NavigationCategory(RECENT),
+                new NavigationCategory(FAVORITES),
+                new NavigationCategory(UNCATEGORIZED),
+                new NavigationCategory(account.getId(), "Movies")
+        };
+        for (NavigationCategory navigationCategory : navigationCategories) {
+            for (String query : new String[]{"", "\"content*\""}) {
+                final List<Long> allPages = db.getNoteDao().getNotesPage(NotesPageQuery.create(account.getId(), navigationCategory, query, CategorySortingMethod.SORT_MODIFIED_DESC, null, Integer.MAX_VALUE)).stream().map(Note::getId).sorted().collect(Collectors.toList());
+                final List<Long> firstPage = db.getNoteDao().getNotesPage(NotesPageQuery.create(account.getId(), navigationCategory, query, CategorySortingMethod.SORT_MODIFIED_DESC, null, 3)).stream().map(Note::getId).collect(Collectors.toList());
+                final List<Long> noteIds = db.getNoteDao().getNoteIds(NotesPageQuery.createIds(account.getId(), navigationCategory, query)).stream().sorted().collect(Collectors.toList());
+                final String message = navigationCategory.getType() + " " + query;
+                assertTrue(message, allPages.size() > firstPage.size());
+                assertEquals(message, allPages, noteIds);
+            }
+        }
+    }
+
+    @Test
+    public void getNoteById_joinsContent() throws InterruptedException {
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "My-Content", "", false, "1", VOID, account.getId(), "", 0));
+
+        assertEquals("My-Content", db.getNoteDao().getNoteById(1).getContent());
+        assertEquals("My-Content", NotesTestingUtil.getOrAwaitValue(db.getNoteDao().getNoteById$(1)).getContent());
+        assertEquals("Lists must not contain the content", "", db.getNoteDao().searchRecentByModified(account.getId(), "").get(0).getContent());
+    }
+
+    /**
+     * Compares scanning the metadata of {@link Note}s with large <code>content</code>s with the former layout, which stored the <code>content</code> inline.
+     */
+    @Test
+    public void searchRecentByModified_benchmarkLargeNotes() {
+        final int notesCount = 100;
+        final char[] largeContent = new char[256 * 1024];
+        Arrays.fill(largeContent, 'x');
+        for (int i = 1; i <= notesCount; i++) {
+            db.getNoteDao().addNote(new Note(i, (long) i, System.currentTimeMillis() - i * 60_000L, "Title " + i, new String(largeContent), "", i % 5 == 0, "1", VOID, account.getId(), "Excerpt " + i, 0));
+        }
+
+        final SupportSQLiteDatabase sqLiteDatabase = db.getOpenHelper().getWritableDatabase();
+        sqLiteDatabase.execSQL("CREATE TABLE `NoteInline` (`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `remoteId` INTEGER, `accountId` INTEGER NOT NULL, `status` TEXT NOT NULL, `title` TEXT NOT NULL DEFAULT '', `category` TEXT NOT NULL DEFAULT '', `modified` INTEGER, `content` TEXT NOT NULL DEFAULT '', `favorite` INTEGER NOT NULL DEFAULT 0, `eTag` TEXT, `excerpt` TEXT NOT NULL DEFAULT '', `scrollY` INTEGER NOT NULL DEFAULT 0, `contentLoaded` INTEGER NOT NULL DEFAULT 1)");
+        sqLiteDatabase.execSQL("CREATE INDEX `IDX_NOTEINLINE_ACCOUNTID` ON `NoteInline` (`accountId`)");
+        sqLiteDatabase.execSQL("INSERT INTO NoteInline SELECT Note.id, remoteId, accountId, status, title, category, modified, NoteContent.content, favorite, eTag, excerpt, scrollY, contentLoaded FROM Note JOIN NoteContent ON NoteContent.noteId = Note.id");
+
+        final String select = "SELECT id, remoteId, accountId, title, favorite, excerpt, modified, category, status FROM %s WHERE accountId = ? AND status != 'LOCAL_DELETED' ORDER BY favorite DESC, modified DESC";
+        final long inlineNanos = bestOf(10, () -> queryIds(sqLiteDatabase, String.format(select, "NoteInline")));
+        final long splitNanos = bestOf(10, () -> queryIds(sqLiteDatabase, String.format(select, "Note")));
+
+        final List<Long> inlineIds = queryIds(sqLiteDatabase, String.format(select, "NoteInline"));
+        final List<Long> splitIds = queryIds(sqLiteDatabase, String.format(select, "Note"));
+        Log.i(TAG, "Listing " + notesCount + " notes with " + largeContent.length / 1024 + " KiB content each: inline content " + inlineNanos / 1_000 + " µs, separate content " + splitNanos / 1_000 + " µs");
+        assertEquals(notesCount, splitIds.size());
+        assertEquals(inlineIds, splitIds);
+        assertEquals(splitIds, db.getNoteDao().searchRecentByModified(account.getId(), "").stream().map(Note::getId).collect(Collectors.toList()));
+    }
+
+    /**
+     * Compares searching with {@link it.niedermann.owncloud.notes.persistence.entity.NoteFts} to scanning the <code>title</code> and <code>content</code> using <code>LIKE</code>.
+     */
+    @Test
+    public void searchRecentByModified_benchmarkFullTextSearch() {
+        final SupportSQLiteDatabase sqLiteDatabase = db.getOpenHelper().getWritableDatabase();
+        final String like = "SELECT Note.id FROM Note JOIN NoteContent ON NoteContent.noteId = Note.id WHERE accountId = ? AND status != 'LOCAL_DELETED' AND (Note.title LIKE '%needle%' OR content LIKE '%needle%') ORDER BY favorite DESC, modified DESC";
+        int notesCount = 0;
+        for (int targetCount : new int[]{1_000, 10_000, 50_000}) {
+            addGeneratedNotes(sqLiteDatabase, notesCount + 1, targetCount);
+            notesCount = targetCount;
+
+            final long likeNanos = bestOf(5, () -> queryIds(sqLiteDatabase, like));
+            final long ftsNanos = bestOf(5, () -> db.getNoteDao().searchRecentByModified(account.getId(), "\"needle*\""));
+
+            final List<Long> likeIds = queryIds(sqLiteDatabase, like);
+            final List<Long> ftsIds = db.getNoteDao().searchRecentByModified(account.getId(), "\"needle*\"").stream().map(Note::getId).collect(Collectors.toList());
+            Log.i(TAG, "Searching " + notesCount + " notes: LIKE " + likeNanos / 1_000 + " µs, full text search " + ftsNanos / 1_000 + " µs");
+            assertEquals(notesCount / 100, ftsIds.size());
+            assertEquals(likeIds, ftsIds);
+        }
+    }
+
+    /**
+     * Times storing the <code>scrollY</code> and an autosave of the <code>content</code> at very different numbers of {@link Note}s.
+     * Neither changes the <code>category</code>, so the clean up of {@link CategoryOptions} must not scan all {@link Note}s and the timings should hardly grow.
+     */
+    @Test
+    public void updateScrollY_benchmarkNotesCount() throws InterruptedException {
+        final SupportSQLiteDatabase sqLiteDatabase = db.getOpenHelper().getWritableDatabase();
+        for (int i = 0; i < 10; i++) {
+            addCategoryOptions(account.getId(), "Category " + i);
+        }
+        int notesCount = 0;
+        for (int targetCount : new int[]{100, 20_000}) {
+            addGeneratedNotes(sqLiteDatabase, notesCount + 1, targetCount);
+            notesCount = targetCount;
+
+            final long noteId = notesCount / 2;
+            final Note note = db.getNoteDao().getNoteById(noteId);
+            note.setStatus(LOCAL_EDITED);
+            final AtomicInteger scrollY = new AtomicInteger();
+            final long scrollYNanos = bestOf(10, () -> db.getNoteDao().updateScrollY(noteId, scrollY.incrementAndGet()));
+            final AtomicInteger autosaves = new AtomicInteger();
+            final long autosaveNanos = bestOf(10, () -> {
+                note.setContent("Autosave " + targetCount + " " + autosaves.getAndIncrement());
+                db.getNoteDao().updateNote(note);
+            });
+
+            Log.i(TAG, "Updating one of " + notesCount + " notes: scrollY " + scrollYNanos / 1_000 + " µs, autosave " + autosaveNanos / 1_000 + " µs");
+            assertEquals("Autosave " + notesCount + " 9", db.getNoteDao().getNoteById(noteId).getContent());
+            for (int i = 0; i < 10; i++) {
+                assertNotNull(NotesTestingUtil.getOrAwaitValue(db.getCategoryOptionsDao().getCategoryOrder(account.getId(), "Category " + i)));
+            }
+        }
+    }
+
+    /**
+     * Inserts notes with a few hundred characters of <code>content</code> each, every 100th of them mentions a <code>needle</code>.
+     * Uses plain SQL, so all triggers fire like for {@link it.niedermann.owncloud.notes.persistence.dao.NoteDao#addNote(Note)}, but without the overhead of one transaction per {@link Note}.
+     */
+    private void addGeneratedNotes(@NonNull SupportSQLiteDatabase sqLiteDatabase, int fromId, int toId) {
+        final String sequence = "WITH RECURSIVE seq(i) AS (SELECT " + fromId + " UNION ALL SELECT i + 1 FROM seq WHERE i < " + toId + ") ";
+        final String content = "'Lorem ipsum dolor sit amet, consetetur sadipscing elitr, sed diam nonumy eirmod tempor invidunt ut labore et dolore magna aliquyam erat. ' || " +
+                "CASE WHEN i % 100 = 0 THEN 'Find the needle in the haystack. ' ELSE 'Only hay in this stack. ' END || " +
+                "'At vero eos et accusam et justo duo dolores et ea rebum. Stet clita kasd gubergren, no sea takimata sanctus est. Note number ' || i";
+        sqLiteDatabase.beginTransaction();
+        try {
+            sqLiteDatabase.execSQL(sequence + "INSERT INTO Note(id, remoteId, accountId, status, title, category, modified, favorite, excerpt) " +
+                    "SELECT i, i, " + account.getId() + ", '', 'Title ' || i, 'Category ' || (i % 10), " + System.currentTimeMillis() + " - i * 60000, i % 7 = 0, '' FROM seq");
+            sqLiteDatabase.execSQL(sequence + "INSERT INTO NoteContent(noteId, title, content) SELECT i, 'Title ' || i, " + content + " FROM seq");
+            sqLiteDatabase.setTransactionSuccessful();
+        } finally {
+            sqLiteDatabase.endTransaction();
+        }
+    }
+
+    private List<Long> queryIds(@NonNull SupportSQLiteDatabase sqLiteDatabase, @NonNull String sql) {
+        final List<Long> ids = new ArrayList<>();
+        try (Cursor cursor = sqLiteDatabase.query(sql, new Object[]{account.getId()})) {
+            while (cursor.moveToNext()) {
+                ids.add(cursor.getLong(0));
+            }
+        }
+        return ids;
+    }
+
+    private void addCategoryOptions(long accountId, String category) {
+        final CategoryOptions categoryOptions = new CategoryOptions();
+        categoryOptions.setAccountId(accountId);
+        categoryOptions.setCategory(category);
+        categoryOptions.setSortingMethod(CategorySortingMethod.SORT_LEXICOGRAPHICAL_ASC);
+        db.getCategoryOptionsDao().addCategoryOptions(categoryOptions);
+    }
+
     private static boolean isSortedByFavorite(List<Note> notes) {
         for (int i = 0; i < notes.size() - 1; ++i) {
             if (Boolean.compare(notes.get(i).getFavorite(), notes.get(i + 1).getFavorite()) < 0)
@@ -404,26 +742,26 @@ public class NotesDaoTest {
 
         long uniqueId = 1;
         final Note[] notes = new Note[]{
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Movies", false, null, VOID, account.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Movies", false, null, LOCAL_EDITED, account.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Movies", false, null, LOCAL_EDITED, account.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Music", false, null, VOID, account.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Music", false, null, LOCAL_EDITED, account.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Music", true, null, LOCAL_DELETED, account.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "ToDo", true, null, VOID, account.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "ToDo", true, null, LOCAL_DELETED, account.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "ToDo", true, null, LOCAL_DELETED, account.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "美好的一天", " 兄弟，这真是美好的一天。", "日记", false, null, VOID, account.getId(), "", 0),
-
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Movies", false, null, VOID, secondAccount.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Movies", false, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "t", "C", "Movies", false, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Movies", false, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "Music", true, null, VOID, secondAccount.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "t", "C", "Music", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "ToDo", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0),
-                new Note(uniqueId++, uniqueId++, Calendar.getInstance(), "T", "C", "ToDo", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0),
-                new Note(uniqueId++, uniqueId, Calendar.getInstance(), "T", "C", "ToDo", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0)
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Movies", false, null, VOID, account.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Movies", false, null, LOCAL_EDITED, account.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Movies", false, null, LOCAL_EDITED, account.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Music", false, null, VOID, account.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Music", false, null, LOCAL_EDITED, account.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Music", true, null, LOCAL_DELETED, account.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "ToDo", true, null, VOID, account.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "ToDo", true, null, LOCAL_DELETED, account.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "ToDo", true, null, LOCAL_DELETED, account.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "美好的一天", " 兄弟，这真是美好的一天。", "日记", false, null, VOID, account.getId(), "", 0),
+
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Movies", false, null, VOID, secondAccount.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Movies", false, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "t", "C", "Movies", false, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Movies", false, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "Music", true, null, VOID, secondAccount.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "t", "C", "Music", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "ToDo", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0),
+                new Note(uniqueId++, uniqueId++, System.currentTimeMillis(), "T", "C", "ToDo", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0),
+                new Note(uniqueId++, uniqueId, System.currentTimeMillis(), "T", "C", "ToDo", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0)
         };
         for (Note note : notes) {
             db.getNoteDao().addNote(note);
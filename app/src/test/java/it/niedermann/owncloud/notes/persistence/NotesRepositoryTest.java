@@ -23,9 +23,8 @@ import java.io.IOException;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
-import java.util.Calendar;
-import java.util.Map;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import it.niedermann.owncloud.notes.persistence.entity.Account;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
@@ -68,6 +67,7 @@ public class NotesRepositoryTest {
         final Context context = ApplicationProvider.getApplicationContext();
         db = Room
                 .inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), NotesDatabase.class)
+                .addCallback(NotesDatabase.CALLBACK)
                 .allowMainThreadQueries()
                 .build();
 
@@ -103,15 +103,15 @@ public class NotesRepositoryTest {
         secondAccount = repo.getAccountByName("test@example.org");
 
         Arrays.stream(new Note[]{
-                new Note(1, 1001L, Calendar.getInstance(), "美好的一天", "C", "Movies", false, null, VOID, account.getId(), "", 0),
-                new Note(2, null, Calendar.getInstance(), "T", "C", "Movies", false, null, LOCAL_EDITED, account.getId(), "", 0),
-                new Note(3, 1003L, Calendar.getInstance(), "美好的一天", "C", "Movies", false, null, LOCAL_EDITED, account.getId(), "", 0),
-                new Note(4, null, Calendar.getInstance(), "T", "C", "Music", false, null, VOID, account.getId(), "", 0),
-                new Note(5, 1005L, Calendar.getInstance(), "美好的一天", "C", " 兄弟，这真是美好的一天。", false, null, LOCAL_EDITED, account.getId(), "", 0),
-                new Note(6, 1006L, Calendar.getInstance(), "美好的一天", "C", " 兄弟，这真是美好的一天。", false, null, LOCAL_DELETED, account.getId(), "", 0),
-                new Note(7, null, Calendar.getInstance(), "T", "C", "Music", true, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
-                new Note(8, 1008L, Calendar.getInstance(), "美好的一天", "C", "ToDo", true, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
-                new Note(9, 1009L, Calendar.getInstance(), "美好的一天", "C", "ToDo", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0)
+                new Note(1, 1001L, System.currentTimeMillis(), "美好的一天", "C", "Movies", false, null, VOID, account.getId(), "", 0),
+                new Note(2, null, System.currentTimeMillis(), "T", "C", "Movies", false, null, LOCAL_EDITED, account.getId(), "", 0),
+                new Note(3, 1003L, System.currentTimeMillis(), "美好的一天", "C", "Movies", false, null, LOCAL_EDITED, account.getId(), "", 0),
+                new Note(4, null, System.currentTimeMillis(), "T", "C", "Music", false, null, VOID, account.getId(), "", 0),
+                new Note(5, 1005L, System.currentTimeMillis(), "美好的一天", "C", " 兄弟，这真是美好的一天。", false, null, LOCAL_EDITED, account.getId(), "", 0),
+                new Note(6, 1006L, System.currentTimeMillis(), "美好的一天", "C", " 兄弟，这真是美好的一天。", false, null, LOCAL_DELETED, account.getId(), "", 0),
+                new Note(7, null, System.currentTimeMillis(), "T", "C", "Music", true, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
+                new Note(8, 1008L, System.currentTimeMillis(), "美好的一天", "C", "ToDo", true, null, LOCAL_EDITED, secondAccount.getId(), "", 0),
+                new Note(9, 1009L, System.currentTimeMillis(), "美好的一天", "C", "ToDo", true, null, LOCAL_DELETED, secondAccount.getId(), "", 0)
         }).forEach(note -> db.getNoteDao().addNote(note));
     }
 
@@ -129,15 +129,15 @@ public class NotesRepositoryTest {
 
     @Test
     public void testGetIdMap() {
-        final Map<Long, Long> idMapOfFirstAccount = repo.getIdMap(account.getId());
+        final LongLongMap idMapOfFirstAccount = repo.getIdMap(account.getId());
         assertEquals(3, idMapOfFirstAccount.size());
-        assertEquals(Long.valueOf(1L), idMapOfFirstAccount.get(1001L));
-        assertEquals(Long.valueOf(3L), idMapOfFirstAccount.get(1003L));
-        assertEquals(Long.valueOf(5L), idMapOfFirstAccount.get(1005L));
+        assertEquals(1L, idMapOfFirstAccount.get(1001L, -1));
+        assertEquals(3L, idMapOfFirstAccount.get(1003L, -1));
+        assertEquals(5L, idMapOfFirstAccount.get(1005L, -1));
 
-        final Map<Long, Long> idMapOfSecondAccount = repo.getIdMap(secondAccount.getId());
+        final LongLongMap idMapOfSecondAccount = repo.getIdMap(secondAccount.getId());
         assertEquals(1, idMapOfSecondAccount.size());
-        assertEquals(Long.valueOf(8L), idMapOfSecondAccount.get(1008L));
+        assertEquals(8L, idMapOfSecondAccount.get(1008L, -1));
     }
 
     @Test
@@ -168,15 +168,26 @@ public class NotesRepositoryTest {
         assertNull(repo.getAccountById(account.getId()));
     }
 
+    @Test
+    public void testDeleteAccount_finishesWaitingCallbacks() throws IOException {
+        NotesTestingUtil.mockSingleSignOn(new SingleSignOnAccount(account.getAccountName(), account.getUserName(), "1337", account.getUrl(), ""));
+        final AtomicInteger finished = new AtomicInteger();
+
+        repo.addCallbackPull(account, finished::incrementAndGet);
+        repo.deleteAccount(account);
+
+        assertEquals("Callbacks must not wait for a synchronization which will never run", 1, finished.get());
+    }
+
     @Test
     public void testAddNote() {
-        final Note localNote = new Note(null, Calendar.getInstance(), "Fancy Title", "MyContent", "Samples", false, "123");
+        final Note localNote = new Note(null, System.currentTimeMillis(), "Fancy Title", "MyContent", "Samples", false, "123");
         localNote.setId(99);
         final Note createdNoteFromLocal = repo.addNote(account.getId(), localNote);
         assertEquals(LOCAL_EDITED, createdNoteFromLocal.getStatus());
         assertEquals("MyContent", createdNoteFromLocal.getExcerpt());
 
-        final Note createdNoteFromRemote = repo.addNote(account.getId(), new Note(null, Calendar.getInstance(), "Fancy Title", "MyContent", "Samples", false, "123"));
+        final Note createdNoteFromRemote = repo.addNote(account.getId(), new Note(null, System.currentTimeMillis(), "Fancy Title", "MyContent", "Samples", false, "123"));
         assertEquals(VOID, createdNoteFromRemote.getStatus());
         assertEquals("MyContent", createdNoteFromRemote.getExcerpt());
     }
@@ -1,10 +1,12 @@
 package it.niedermann.owncloud.notes.persistence;
 
 import android.content.Context;
+import android.util.Log;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
 
-import com.nextcloud.android.sso.api.ParsedResponse;
 import com.nextcloud.android.sso.exceptions.NextcloudFilesAppAccountNotFoundException;
 import com.nextcloud.android.sso.model.SingleSignOnAccount;
 
@@ -14,25 +16,51 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.robolectric.RobolectricTestRunner;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.Calendar;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
-import io.reactivex.Observable;
 import it.niedermann.owncloud.notes.persistence.entity.Account;
 import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.OutboxOperation;
+import it.niedermann.owncloud.notes.persistence.entity.SyncCheckpoint;
 import it.niedermann.owncloud.notes.persistence.sync.NotesAPI;
+import it.niedermann.owncloud.notes.persistence.sync.StreamingNotesResponse;
 import it.niedermann.owncloud.notes.shared.model.SyncResultStatus;
+import okhttp3.ResponseBody;
+import retrofit2.Call;
+import retrofit2.Response;
 
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_DELETED;
 import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_EDITED;
 import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -40,6 +68,8 @@ import static org.mockito.Mockito.when;
 @RunWith(RobolectricTestRunner.class)
 public class NotesServerSyncTaskTest {
 
+    private static final String TAG = NotesServerSyncTaskTest.class.getSimpleName();
+
     @Rule
     public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
 
@@ -49,10 +79,15 @@ public class NotesServerSyncTaskTest {
     private final NotesRepository repo = mock(NotesRepository.class);
     private final NotesAPI notesAPI = mock(NotesAPI.class);
     private final ApiProvider apiProvider = mock(ApiProvider.class);
+    private final List<Integer> pullProgress = new ArrayList<>();
 
     @Before
     public void setup() throws NextcloudFilesAppAccountNotFoundException, IOException {
         when(apiProvider.getNotesAPI(any(), any(), any())).thenReturn(notesAPI);
+        doAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).when(repo).runInTransaction(any());
         NotesTestingUtil.mockSingleSignOn(new SingleSignOnAccount(account.getAccountName(), account.getUserName(), "", account.getUrl(), ""));
         this.task = new NotesServerSyncTask(mock(Context.class), repo, account, false, apiProvider) {
             @Override
@@ -64,35 +99,393 @@ public class NotesServerSyncTaskTest {
             void onPostExecute(SyncResultStatus status) {
 
             }
+
+            @Override
+            void onPullProgress(int pulledNotes) {
+                pullProgress.add(pulledNotes);
+            }
         };
     }
 
     @Test
     public void testPushLocalChanges() {
-        when(repo.getLocalModifiedNotes(anyLong())).thenReturn(Arrays.asList(
-                new Note(1, null, Calendar.getInstance(), "Does not has a remoteId yet, therefore", "This note should be created on the server", "", false, "1", LOCAL_EDITED, 0, "", 0),
-                new Note(1, 2L, Calendar.getInstance(), "Has already a remoteId, therefore", "This note should be updated on the server", "", false, "1", LOCAL_EDITED, 0, "", 0)
+        mockLocalModifiedNotes(Arrays.asList(
+                new Note(1, null, System.currentTimeMillis(), "Does not has a remoteId yet, therefore", "This note should be created on the server", "", false, "1", LOCAL_EDITED, 0, "", 0),
+                new Note(2, 2L, System.currentTimeMillis(), "Has already a remoteId, therefore", "This note should be updated on the server", "", false, "1", LOCAL_EDITED, 0, "", 0)
         ));
 
         this.task.run();
 
         verify(notesAPI).createNote(argThat(argument -> "This note should be created on the server".equals(argument.getContent())));
-        verify(notesAPI).editNote(argThat(argument -> "This note should be updated on the server".equals(argument.getContent())));
+        verify(notesAPI).editNote(argThat(argument -> "This note should be updated on the server".equals(argument.getContent())), any());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPushLocalChanges_deletedNoteIsNotLoaded() throws IOException {
+        when(repo.getPendingOperations(anyLong())).thenReturn(Map.of(
+                1L, EnumSet.of(OutboxOperation.Type.DELETE),
+                2L, EnumSet.of(OutboxOperation.Type.DELETE)
+        ));
+        when(repo.getRemoteId(1L)).thenReturn(null);
+        when(repo.getRemoteId(2L)).thenReturn(2000L);
+        final Call<Void> deleteCall = mock(Call.class);
+        when(deleteCall.execute()).thenReturn(Response.success(null));
+        when(notesAPI.deleteNote(2000L)).thenReturn(deleteCall);
+
+        this.task.run();
+
+        verify(notesAPI, never()).deleteNote(1L);
+        verify(notesAPI).deleteNote(2000L);
+        verify(repo).deleteByNoteId(1L, LOCAL_DELETED);
+        verify(repo).deleteByNoteId(2L, LOCAL_DELETED);
+        verify(repo, never()).getNoteById(anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPushLocalChanges_contentNotLoaded() throws IOException {
+        final Note note = new Note(1, 1000L, System.currentTimeMillis(), "Only the metadata has been pulled", "", "Category", true, "1", LOCAL_EDITED, 0, "", 0);
+        note.setContentLoaded(false);
+        when(repo.getNoteById(1L)).thenReturn(note);
+        when(repo.getPendingOperations(anyLong())).thenReturn(Map.of(1L, EnumSet.of(OutboxOperation.Type.FAVORITE)));
+        final Call<Note> editCall = mock(Call.class);
+        when(editCall.execute()).thenReturn(Response.success(new Note(0, 1000L, System.currentTimeMillis(), note.getTitle(), "Remote content", "Category", true, "2", VOID, 0, "", 0)));
+        when(notesAPI.editNote(any(), any())).thenReturn(editCall);
+
+        this.task.run();
+
+        verify(notesAPI).editNote(any(), eq(EnumSet.of(OutboxOperation.Type.FAVORITE)));
+        verify(repo, never()).ensureContentLoaded(anyLong());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testPushLocalChanges_recreateRequiresContent() throws IOException {
+        final Note note = new Note(1, 1000L, System.currentTimeMillis(), "Deleted remotely", "", "", false, "1", LOCAL_EDITED, 0, "", 0);
+        note.setContentLoaded(false);
+        when(repo.getNoteById(1L)).thenReturn(note);
+        when(repo.getPendingOperations(anyLong())).thenReturn(Map.of(1L, EnumSet.of(OutboxOperation.Type.CATEGORY)));
+        final Call<Note> editCall = mock(Call.class);
+        when(editCall.execute()).thenReturn(Response.error(404, ResponseBody.create(null, "Not Found")));
+        when(notesAPI.editNote(any(), any())).thenReturn(editCall);
+        when(repo.ensureContentLoaded(1L)).thenReturn(false);
+
+        this.task.run();
+
+        verify(notesAPI, never()).createNote(any());
+        verify(repo, never()).updateIfNotModifiedLocallyDuringSync(anyLong(), anyLong(), anyString(), anyBoolean(), anyString(), anyString(), anyString(), anyString(), anyString(), anyBoolean());
+        assertEquals("The push should fail, so the pending operations are kept", 1, this.task.exceptions.size());
+
+        final Note loadedNote = new Note(1, 1000L, System.currentTimeMillis(), "Deleted remotely", "Local content", "", false, "1", LOCAL_EDITED, 0, "", 0);
+        when(repo.ensureContentLoaded(1L)).thenReturn(true);
+        when(repo.getNoteById(1L)).thenReturn(note, loadedNote);
+        final Call<Note> createCall = mock(Call.class);
+        when(createCall.execute()).thenReturn(Response.success(new Note(0, 2000L, System.currentTimeMillis(), "Deleted remotely", "Local content", "", false, "2", VOID, 0, "", 0)));
+        when(notesAPI.createNote(any())).thenReturn(createCall);
+
+        this.task.run();
+
+        verify(notesAPI).createNote(argThat(argument -> "Local content".equals(argument.getContent())));
     }
 
     @Test
-    public void testPullRemoteChanges() {
+    public void testPushLocalChanges_parallel() throws Exception {
+        final int count = 40;
+        final long latency = 50;
+        final List<Note> notes = new ArrayList<>(count);
+        for (int i = 1; i <= count; i++) {
+            notes.add(new Note(i, (long) i, System.currentTimeMillis(), "Title " + i, "Content " + i, "", false, "1", LOCAL_EDITED, 0, "", 0));
+        }
+        mockLocalModifiedNotes(notes);
+
+        final AtomicInteger inFlight = new AtomicInteger();
+        final AtomicInteger maxInFlight = new AtomicInteger();
+        when(notesAPI.editNote(any(), any())).then(invocation -> {
+            final Note note = invocation.getArgument(0);
+            // Simulates a server with a fixed latency which fails for one of the notes
+            return mock(Call.class, execution -> {
+                if (!"execute".equals(execution.getMethod().getName())) {
+                    return null;
+                }
+                maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                try {
+                    Thread.sleep(latency);
+                } finally {
+                    inFlight.decrementAndGet();
+                }
+                if (note.getId() == 7) {
+                    return Response.error(500, ResponseBody.create(null, "Internal Server Error"));
+                }
+                return Response.success(new Note(0, note.getRemoteId(), System.currentTimeMillis(), note.getTitle(), note.getContent(), note.getCategory(), note.getFavorite(), "2", VOID, 0, "", 0));
+            });
+        });
+
+        final long sequentialStart = System.currentTimeMillis();
+        createTask(1).run();
+        final long sequentialDuration = System.currentTimeMillis() - sequentialStart;
+        assertEquals(1, maxInFlight.get());
+
+        maxInFlight.set(0);
+        final long parallelStart = System.currentTimeMillis();
+        final NotesServerSyncTask parallelTask = createTask(8);
+        parallelTask.run();
+        final long parallelDuration = System.currentTimeMillis() - parallelStart;
+        assertEquals("Should push 8 notes at the same time", 8, maxInFlight.get());
+
+        // Only logs the durations, because they depend on the machine
+        Log.i(TAG, "Pushing " + count + " notes with a latency of " + latency + " ms: sequential " + sequentialDuration + " ms, parallel " + parallelDuration + " ms");
+
+        // A failing note must neither stop nor affect the other notes
+        assertEquals(1, parallelTask.exceptions.size());
+        verify(repo, times(2 * (count - 1))).updateIfNotModifiedLocallyDuringSync(anyLong(), anyLong(), anyString(), anyBoolean(), anyString(), anyString(), anyString(), anyString(), anyString(), anyBoolean());
+        verify(repo, never()).updateIfNotModifiedLocallyDuringSync(eq(7L), anyLong(), anyString(), anyBoolean(), anyString(), anyString(), anyString(), anyString(), anyString(), anyBoolean());
+    }
+
+    @Test
+    public void testPullRemoteChanges() throws Exception {
         when(repo.getAccountById(anyLong())).thenReturn(account);
-        when(repo.getIdMap(anyLong())).thenReturn(Map.of(1000L, 1L, 2000L, 2L));
+        when(repo.getIdMap(anyLong())).thenReturn(idMap(1000L, 1L, 2000L, 2L));
         when(repo.updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(anyLong(), anyLong(), anyString(), anyBoolean(), anyString(), anyString(), anyString(), anyString())).thenReturn(1);
-        when(notesAPI.getNotes(any(), any())).thenReturn(Observable.just(ParsedResponse.of(Arrays.asList(
-                new Note(0, 1000L, Calendar.getInstance(), "RemoteId is in the idMap, therefore", "This note should be updated locally", "", false, "1", VOID, 0, "", 0),
-                new Note(0, 3000L, Calendar.getInstance(), "Is a new RemoteId, therefore", "This note should be created locally", "", false, "1", VOID, 0, "", 0)
-        ))));
+        when(notesAPI.getNotes(any(), any(), anyInt(), any(), anyBoolean())).thenReturn(new StreamingNotesResponse(ApiProvider.GSON, new ByteArrayInputStream(ApiProvider.GSON.toJson(Arrays.asList(
+                new Note(0, 1000L, System.currentTimeMillis(), "RemoteId is in the idMap, therefore", "This note should be updated locally", "", false, "1", VOID, 0, "", 0),
+                new Note(0, 3000L, System.currentTimeMillis(), "Is a new RemoteId, therefore", "This note should be created locally", "", false, "1", VOID, 0, "", 0)
+        )).getBytes(StandardCharsets.UTF_8)), Collections.emptyMap()));
 
         this.task.run();
 
         verify(repo).addNote(anyLong(), argThat(argument -> "This note should be created locally".equals(argument.getContent())));
         verify(repo).updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(anyLong(), anyLong(), anyString(), anyBoolean(), anyString(), anyString(), argThat("This note should be updated locally"::equals), anyString());
+        verify(repo).deleteByNoteId(2L, VOID);
+        verify(repo, times(2)).runInTransaction(any());
+    }
+
+    @Test
+    public void testPullRemoteChanges_contentExcluded() throws Exception {
+        when(notesAPI.supportsExcludingContent()).thenReturn(true);
+        when(repo.getAccountById(anyLong())).thenReturn(account);
+        when(account.getId()).thenReturn(4711L);
+        when(account.getModified()).thenReturn(Calendar.getInstance());
+        when(repo.getIdMap(anyLong())).thenReturn(idMap(1000L, 1L));
+        when(notesAPI.getNotes(any(), any(), anyInt(), any(), eq(true))).thenReturn(new StreamingNotesResponse(ApiProvider.GSON, new ByteArrayInputStream((
+                "[{\"id\":1000,\"etag\":\"2\",\"title\":\"Renamed\",\"category\":\"\",\"favorite\":true,\"modified\":1600000000}," +
+                        "{\"id\":3000,\"etag\":\"1\",\"title\":\"New\",\"category\":\"\",\"favorite\":false,\"modified\":1600000000}]"
+        ).getBytes(StandardCharsets.UTF_8)), Collections.emptyMap()));
+
+        this.task.run();
+
+        verify(repo).updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(eq(1L), anyLong(), eq("Renamed"), eq(true), eq(""), eq("2"));
+        verify(repo, never()).updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(anyLong(), anyLong(), anyString(), anyBoolean(), anyString(), anyString(), anyString(), anyString());
+        verify(repo).addNote(anyLong(), argThat(argument -> "New".equals(argument.getTitle()) && !argument.isContentLoaded()));
+        verify(repo).fetchMissingContent(4711L);
+    }
+
+    @Test
+    public void testPullRemoteChanges_incrementalSyncIncludesContent() throws Exception {
+        when(notesAPI.supportsExcludingContent()).thenReturn(true);
+        when(repo.getAccountById(anyLong())).thenReturn(account);
+        when(account.getId()).thenReturn(4711L);
+        when(account.getETag()).thenReturn("1");
+        when(account.getModified()).thenReturn(Calendar.getInstance());
+        when(repo.getIdMap(anyLong())).thenReturn(idMap(1000L, 1L));
+        when(repo.updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(anyLong(), anyLong(), anyString(), anyBoolean(), anyString(), anyString(), anyString(), anyString())).thenReturn(1);
+        when(notesAPI.getNotes(any(), any(), anyInt(), any(), anyBoolean())).thenReturn(new StreamingNotesResponse(ApiProvider.GSON, new ByteArrayInputStream(
+                "[{\"id\":1000,\"etag\":\"2\",\"title\":\"Renamed\",\"content\":\"Changed\",\"category\":\"\",\"favorite\":true,\"modified\":1600000000}]".getBytes(StandardCharsets.UTF_8)), Collections.emptyMap()));
+
+        this.task.run();
+
+        verify(notesAPI).getNotes(any(), eq("1"), anyInt(), any(), eq(false));
+        verify(repo).updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(eq(1L), anyLong(), eq("Renamed"), eq(true), eq(""), eq("2"), eq("Changed"), anyString());
+        verify(repo, never()).fetchMissingContent(anyLong());
+
+        // A resumed initial import keeps listing only the metadata
+        when(notesAPI.supportsChunkedListing()).thenReturn(true);
+        when(repo.getSyncCheckpoint(4711L)).thenReturn(new SyncCheckpoint(4711L, "100", 0L, "chunk-0", 100));
+        when(notesAPI.getNotes(any(), any(), anyInt(), any(), anyBoolean())).thenReturn(new StreamingNotesResponse(ApiProvider.GSON, new ByteArrayInputStream("[]".getBytes(StandardCharsets.UTF_8)), Collections.emptyMap()));
+
+        this.task.run();
+
+        verify(notesAPI).getNotes(any(), any(), anyInt(), eq("100"), eq(true));
+        verify(repo).fetchMissingContent(4711L);
+    }
+
+    @Test
+    public void testPullRemoteChanges_largeResponseIsStreamed() throws Exception {
+        final int count = 10_000;
+        final GeneratedNotesInputStream body = new GeneratedNotesInputStream(count);
+        final long[] bytesReadBeforeFirstNote = {-1};
+
+        when(repo.getAccountById(anyLong())).thenReturn(account);
+        when(repo.getIdMap(anyLong())).thenReturn(new LongLongMap());
+        when(notesAPI.getNotes(any(), any(), anyInt(), any(), anyBoolean())).thenReturn(new StreamingNotesResponse(ApiProvider.GSON, body, Collections.emptyMap()));
+        doAnswer(invocation -> {
+            if (bytesReadBeforeFirstNote[0] < 0) {
+                bytesReadBeforeFirstNote[0] = body.bytesRead;
+            }
+            return null;
+        }).when(repo).addNote(anyLong(), any());
+
+        this.task.run();
+
+        verify(repo, times(count)).addNote(anyLong(), any());
+        verify(repo, times(count / 100)).runInTransaction(any());
+        assertTrue("Response size should be > 10 MB", body.bytesRead > 10_000_000);
+        assertTrue("First note should be processed before the whole response has been read", bytesReadBeforeFirstNote[0] < 64 * 1024);
+    }
+
+    @Test
+    public void testPullRemoteChanges_chunkedPullResumesAfterInterruption() throws Exception {
+        final int count = 50_000;
+        final int chunks = count / NotesServerSyncTask.PULL_CHUNK_SIZE;
+        final FakeChunkedNotesServer server = new FakeChunkedNotesServer(count);
+        final SyncCheckpoint[] checkpoint = {null};
+
+        when(account.getModified()).thenReturn(Calendar.getInstance());
+        when(repo.getAccountById(anyLong())).thenReturn(account);
+        when(repo.getIdMap(anyLong())).thenReturn(new LongLongMap());
+        when(repo.getSyncCheckpoint(anyLong())).then(invocation -> checkpoint[0]);
+        doAnswer(invocation -> checkpoint[0] = invocation.getArgument(0)).when(repo).saveSyncCheckpoint(any());
+        doAnswer(invocation -> checkpoint[0] = null).when(repo).deleteSyncCheckpoint(anyLong());
+        when(notesAPI.supportsChunkedListing()).thenReturn(true);
+        when(notesAPI.getNotes(any(), any(), anyInt(), any(), anyBoolean())).then(invocation -> server.getNotes(invocation.getArgument(2), invocation.getArgument(3)));
+
+        // Connection gets lost in the middle of the initial synchronization
+        server.failAtChunk = 20;
+        this.task.run();
+
+        assertEquals(1, this.task.exceptions.size());
+        verify(repo, times(20 * NotesServerSyncTask.PULL_CHUNK_SIZE)).addNote(anyLong(), any());
+        assertNotNull(checkpoint[0]);
+        assertEquals(String.valueOf(20 * NotesServerSyncTask.PULL_CHUNK_SIZE), checkpoint[0].getChunkCursor());
+        assertEquals(20 * NotesServerSyncTask.PULL_CHUNK_SIZE, checkpoint[0].getPulledNotes());
+        verify(repo, never()).updateETag(anyLong(), any());
+
+        pullProgress.clear();
+        server.failAtChunk = -1;
+        this.task.run();
+
+        assertEquals("Progress of the resumed synchronization should start with the already pulled notes", Integer.valueOf(20 * NotesServerSyncTask.PULL_CHUNK_SIZE), pullProgress.get(0));
+        assertEquals(Integer.valueOf(count), pullProgress.get(pullProgress.size() - 1));
+
+        assertEquals(1, this.task.exceptions.size());
+        verify(repo, times(count)).addNote(anyLong(), any());
+        assertEquals("Chunks which have already been committed must not be fetched again", chunks + 1, server.requests);
+        assertNull(checkpoint[0]);
+        verify(repo).updateETag(anyLong(), eq("chunk-0"));
+        verify(repo, never()).deleteByNoteId(anyLong(), any());
+    }
+
+    /**
+     * Pretends each of the given {@link Note}s to be pushed completely
+     */
+    private void mockLocalModifiedNotes(@NonNull List<Note> notes) {
+        final Map<Long, Set<OutboxOperation.Type>> pendingOperations = new LinkedHashMap<>();
+        for (Note note : notes) {
+            pendingOperations.put(note.getId(), EnumSet.of(OutboxOperation.Type.FULL));
+            when(repo.getNoteById(note.getId())).thenReturn(note);
+        }
+        when(repo.getPendingOperations(anyLong())).thenReturn(pendingOperations);
+    }
+
+    /**
+     * @param remoteAndLocalIds alternating <code>remoteId</code>s and local <code>id</code>s
+     */
+    private static LongLongMap idMap(long... remoteAndLocalIds) {
+        final LongLongMap idMap = new LongLongMap();
+        for (int i = 0; i < remoteAndLocalIds.length; i += 2) {
+            idMap.put(remoteAndLocalIds[i], remoteAndLocalIds[i + 1]);
+        }
+        return idMap;
+    }
+
+    private NotesServerSyncTask createTask(int maxParallelPushes) throws NextcloudFilesAppAccountNotFoundException {
+        return new NotesServerSyncTask(mock(Context.class), repo, account, true, apiProvider, maxParallelPushes) {
+            @Override
+            void onPreExecute() {
+
+            }
+
+            @Override
+            void onPostExecute(SyncResultStatus status) {
+
+            }
+        };
+    }
+
+    /**
+     * Simulates a server which supports chunked <code>GET notes</code> requests.
+     * The cursor is the index of the first {@link Note} of the next chunk, the last chunk also contains the IDs of all other {@link Note}s.
+     */
+    private static class FakeChunkedNotesServer {
+
+        private final int count;
+        int failAtChunk = -1;
+        int requests = 0;
+
+        FakeChunkedNotesServer(int count) {
+            this.count = count;
+        }
+
+        StreamingNotesResponse getNotes(int chunkSize, @Nullable String chunkCursor) throws IOException {
+            requests++;
+            final int from = chunkCursor == null ? 0 : Integer.parseInt(chunkCursor);
+            if (failAtChunk >= 0 && from == failAtChunk * chunkSize) {
+                throw new IOException("Connection lost");
+            }
+            final int to = Math.min(from + chunkSize, count);
+            final StringBuilder body = new StringBuilder("[");
+            for (int i = from; i < to; i++) {
+                if (i > from) {
+                    body.append(",");
+                }
+                body.append("{\"id\":").append(i + 1).append(",\"title\":\"Note ").append(i).append("\",\"content\":\"Content ").append(i).append("\",\"category\":\"\",\"favorite\":false,\"etag\":\"").append(i).append("\",\"modified\":1600000000}");
+            }
+            final Map<String, String> headers = new HashMap<>();
+            headers.put("ETag", "chunk-" + from);
+            if (to < count) {
+                headers.put("X-Notes-Chunk-Cursor", String.valueOf(to));
+            } else {
+                for (int i = 0; i < from; i++) {
+                    body.append(",{\"id\":").append(i + 1).append("}");
+                }
+            }
+            body.append("]");
+            return new StreamingNotesResponse(ApiProvider.GSON, new ByteArrayInputStream(body.toString().getBytes(StandardCharsets.UTF_8)), headers);
+        }
+    }
+
+    /**
+     * Simulates a huge <code>GET notes</code> response which is generated while it is read.
+     */
+    private static class GeneratedNotesInputStream extends InputStream {
+
+        private static final String CONTENT = String.join("", Collections.nCopies(1_000, "x"));
+
+        private final int count;
+        private int notesGenerated = 0;
+        private byte[] buffer = "[".getBytes(StandardCharsets.UTF_8);
+        private int position = 0;
+        long bytesRead = 0;
+
+        GeneratedNotesInputStream(int count) {
+            this.count = count;
+        }
+
+        @Override
+        public int read() {
+            if (position >= buffer.length) {
+                if (notesGenerated > count) {
+                    return -1;
+                } else if (notesGenerated == count) {
+                    buffer = "]".getBytes(StandardCharsets.UTF_8);
+                } else {
+                    buffer = ((notesGenerated == 0 ? "" : ",") + "{\"id\":" + (notesGenerated + 1) + ",\"title\":\"Note " + notesGenerated + "\",\"content\":\"" + CONTENT + "\",\"category\":\"\",\"favorite\":false,\"etag\":\"" + notesGenerated + "\",\"modified\":1600000000}").getBytes(StandardCharsets.UTF_8);
+                }
+                notesGenerated++;
+                position = 0;
+            }
+            bytesRead++;
+            return buffer[position++] & 0xFF;
+        }
     }
 }
\ No newline at end of file
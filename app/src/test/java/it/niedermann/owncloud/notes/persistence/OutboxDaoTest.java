@@ -0,0 +1,203 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.room.Room;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import it.niedermann.owncloud.notes.persistence.entity.Account;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.OutboxOperation;
+import it.niedermann.owncloud.notes.shared.model.Capabilities;
+
+import static it.niedermann.owncloud.notes.persistence.entity.OutboxOperation.Type.CATEGORY;
+import static it.niedermann.owncloud.notes.persistence.entity.OutboxOperation.Type.CONTENT;
+import static it.niedermann.owncloud.notes.persistence.entity.OutboxOperation.Type.DELETE;
+import static it.niedermann.owncloud.notes.persistence.entity.OutboxOperation.Type.FAVORITE;
+import static it.niedermann.owncloud.notes.persistence.entity.OutboxOperation.Type.FULL;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_DELETED;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_EDITED;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class OutboxDaoTest {
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    @NonNull
+    private NotesDatabase db;
+    private Account account;
+
+    @Before
+    public void setupDB() {
+        db = Room
+                .inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), NotesDatabase.class)
+                .addCallback(NotesDatabase.CALLBACK)
+                .allowMainThreadQueries()
+                .build();
+        db.getAccountDao().insert(new Account("https://äöüß.example.com", "彼得", "彼得@äöüß.example.com", null, new Capabilities()));
+        account = db.getAccountDao().getAccountByName("彼得@äöüß.example.com");
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void insert() {
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(2, null, System.currentTimeMillis(), "T", "C", "", false, null, LOCAL_EDITED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(3, 3L, System.currentTimeMillis(), "T", "C", "", false, "1", LOCAL_DELETED, account.getId(), "", 0));
+
+        assertEquals(Collections.emptyList(), getTypes(1));
+        assertEquals(Collections.singletonList(FULL), getTypes(2));
+        assertEquals(Collections.singletonList(DELETE), getTypes(3));
+        assertEquals(2, db.getOutboxDao().countNotes(account.getId()));
+    }
+
+    @Test
+    public void editContent_isCompacted() {
+        final Note note = new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0);
+        db.getNoteDao().addNote(note);
+        for (int i = 0; i < 30; i++) {
+            note.setContent("Content " + i);
+            note.setStatus(LOCAL_EDITED);
+            db.getNoteDao().updateNote(note);
+        }
+
+        assertEquals(Collections.singletonList(CONTENT), getTypes(1));
+        assertEquals(1, db.getOutboxDao().countNotes(account.getId()));
+    }
+
+    @Test
+    public void toggleFavoriteAndCategory() {
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0));
+        db.getNoteDao().toggleFavorite(1);
+        db.getNoteDao().toggleFavorite(1);
+        db.getNoteDao().updateCategoryAndStatus(1, "Movies");
+
+        assertEquals(List.of(FAVORITE, CATEGORY), getTypes(1));
+    }
+
+    @Test
+    public void delete_supersedesOtherOperations() {
+        final Note note = new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0);
+        db.getNoteDao().addNote(note);
+        db.getNoteDao().toggleFavorite(1);
+        db.getNoteDao().updateCategoryAndStatus(1, "Movies");
+        db.getNoteDao().updateStatus(1, LOCAL_DELETED);
+
+        assertEquals(Collections.singletonList(DELETE), getTypes(1));
+
+        db.getNoteDao().updateCategoryAndStatus(1, "Music");
+        assertEquals("Deleted notes must not be changed anymore", Collections.singletonList(DELETE), getTypes(1));
+
+        db.getNoteDao().deleteByNoteId(1, LOCAL_DELETED);
+        assertEquals("Operations must be removed together with their note", 0, db.getOutboxDao().countNotes(account.getId()));
+    }
+
+    @Test
+    public void undoDelete_pushesWholeNote() {
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0));
+        db.getNoteDao().updateStatus(1, LOCAL_DELETED);
+        db.getNoteDao().updateStatus(1, LOCAL_EDITED);
+
+        assertEquals(Collections.singletonList(FULL), getTypes(1));
+    }
+
+    @Test
+    public void sync_clearsOperations() {
+        final Note note = new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0);
+        db.getNoteDao().addNote(note);
+        note.setContent("Modified");
+        note.setStatus(LOCAL_EDITED);
+        db.getNoteDao().updateNote(note);
+        db.getNoteDao().toggleFavorite(1);
+        assertEquals(List.of(CONTENT, FAVORITE), getTypes(1));
+
+        assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyDuringSync(1, System.currentTimeMillis(), "T", true, "2", "Modified", "", "Modified", "", true));
+        assertEquals(Collections.emptyList(), getTypes(1));
+    }
+
+    @Test
+    public void pull_isNotRecorded() {
+        db.getNoteDao().addNote(new Note(1, 1L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0));
+        assertEquals(1, db.getNoteDao().updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(1, System.currentTimeMillis(), "Remote", true, "Remote", "2", "Remote", ""));
+
+        assertTrue(db.getOutboxDao().getOperations(account.getId()).isEmpty());
+    }
+
+    @Test
+    public void countNotes_perAccount() {
+        db.getAccountDao().insert(new Account("https://example.org", "test", "test@example.org", null, new Capabilities()));
+        final Account secondAccount = db.getAccountDao().getAccountByName("test@example.org");
+        db.getNoteDao().addNote(new Note(1, null, System.currentTimeMillis(), "T", "C", "", false, null, LOCAL_EDITED, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(2, 2L, System.currentTimeMillis(), "T", "C", "", false, "1", VOID, account.getId(), "", 0));
+        db.getNoteDao().addNote(new Note(3, null, System.currentTimeMillis(), "T", "C", "", false, null, LOCAL_EDITED, secondAccount.getId(), "", 0));
+        db.getNoteDao().toggleFavorite(1);
+        db.getNoteDao().toggleFavorite(2);
+        db.getNoteDao().updateCategoryAndStatus(2, "Movies");
+
+        assertEquals(2, db.getOutboxDao().countNotes(account.getId()));
+        assertEquals(1, db.getOutboxDao().countNotes(secondAccount.getId()));
+        assertEquals(4, db.getOutboxDao().getOperations(account.getId()).size());
+    }
+
+    @Test
+    public void insert_afterDestructiveMigration() {
+        // A destructive migration recreates all tables, which drops the triggers and indices which are not managed by Room
+        final SupportSQLiteDatabase sqLiteDatabase = db.getOpenHelper().getWritableDatabase();
+        final List<String> triggers = new ArrayList<>();
+        try (Cursor cursor = sqLiteDatabase.query("SELECT name FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'TRG_%'")) {
+            while (cursor.moveToNext()) {
+                triggers.add(cursor.getString(0));
+            }
+        }
+        assertTrue(triggers.contains("TRG_OUTBOX_NOTE_INS"));
+        for (String trigger : triggers) {
+            sqLiteDatabase.execSQL("DROP TRIGGER " + trigger);
+        }
+        sqLiteDatabase.execSQL("DROP INDEX IDX_NOTE_ACCOUNTID_FAVORITE_TITLE");
+        sqLiteDatabase.execSQL("CREATE INDEX `IDX_NOTE_ACCOUNTID_FAVORITE_TITLE` ON `Note` (`accountId`, `favorite`, `title`)");
+
+        NotesDatabase.CALLBACK.onOpen(sqLiteDatabase);
+        NotesDatabase.CALLBACK.onOpen(sqLiteDatabase);
+
+        try (Cursor cursor = sqLiteDatabase.query("SELECT COUNT(*) FROM sqlite_master WHERE type = 'trigger' AND name LIKE 'TRG_%'")) {
+            assertTrue(cursor.moveToFirst());
+            assertEquals(triggers.size(), cursor.getInt(0));
+        }
+        try (Cursor cursor = sqLiteDatabase.query("SELECT sql FROM sqlite_master WHERE type = 'index' AND name = 'IDX_NOTE_ACCOUNTID_FAVORITE_TITLE'")) {
+            assertTrue(cursor.moveToFirst());
+            assertTrue(cursor.getString(0).contains("favorite DESC"));
+        }
+        db.getNoteDao().addNote(new Note(1, null, System.currentTimeMillis(), "T", "C", "", false, null, LOCAL_EDITED, account.getId(), "", 0));
+        assertEquals(Collections.singletonList(FULL), getTypes(1));
+    }
+
+    private List<OutboxOperation.Type> getTypes(long noteId) {
+        return db.getOutboxDao().getOperationsOfNote(noteId)
+                .stream()
+                .map(OutboxOperation::getType)
+                .collect(Collectors.toList());
+    }
+}
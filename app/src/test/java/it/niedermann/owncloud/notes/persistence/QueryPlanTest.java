@@ -0,0 +1,199 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.arch.core.executor.testing.InstantTaskExecutorRule;
+import androidx.room.Room;
+import androidx.sqlite.db.SimpleSQLiteQuery;
+import androidx.test.core.app.ApplicationProvider;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import it.niedermann.owncloud.notes.persistence.dao.NoteDao;
+import it.niedermann.owncloud.notes.persistence.dao.NotesPageQuery;
+import it.niedermann.owncloud.notes.persistence.entity.Account;
+import it.niedermann.owncloud.notes.persistence.entity.CategoryOptions;
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.shared.model.Capabilities;
+import it.niedermann.owncloud.notes.shared.model.CategorySortingMethod;
+import it.niedermann.owncloud.notes.shared.model.NavigationCategory;
+
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_EDITED;
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.FAVORITES;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.RECENT;
+import static it.niedermann.owncloud.notes.shared.model.ENavigationCategoryType.UNCATEGORIZED;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Records every statement which is executed by the DAOs and fails if SQLite plans to scan a whole table or to sort the rows in a temporary B-tree.
+ * Scanning the full text index is fine.
+ */
+@RunWith(RobolectricTestRunner.class)
+public class QueryPlanTest {
+
+    @Rule
+    public InstantTaskExecutorRule instantTaskExecutorRule = new InstantTaskExecutorRule();
+
+    /**
+     * SQL and bind arguments of each executed statement
+     */
+    private final Map<String, List<Object>> statements = new LinkedHashMap<>();
+    private boolean recording = false;
+
+    @NonNull
+    private NotesDatabase db;
+    private Account account;
+
+    @Before
+    public void setupDB() {
+        db = Room
+                .inMemoryDatabaseBuilder(ApplicationProvider.getApplicationContext(), NotesDatabase.class)
+                .addCallback(NotesDatabase.CALLBACK)
+                .setQueryCallback((sql, bindArgs) -> {
+                    synchronized (statements) {
+                        if (recording && !sql.contains("room_")) {
+                            statements.put(sql, new ArrayList<>(bindArgs));
+                        }
+                    }
+                }, Runnable::run)
+                .allowMainThreadQueries()
+                .build();
+        db.getAccountDao().insert(new Account("https://example.com", "example", "example@example.com", null, new Capabilities()));
+        account = db.getAccountDao().getAccountByName("example@example.com");
+        for (int i = 1; i <= 20; i++) {
+            db.getNoteDao().addNote(new Note(i, (long) i, i % 4 == 0 ? null : System.currentTimeMillis() - i * 60_000L, "Title " + i, "Content " + i, i % 3 == 0 ? "" : "Movies", i % 5 == 0, String.valueOf(i), VOID, account.getId(), "", 0));
+        }
+    }
+
+    @After
+    public void closeDb() {
+        db.close();
+    }
+
+    @Test
+    public void noteDao() throws InterruptedException {
+        final NoteDao dao = db.getNoteDao();
+        final long accountId = account.getId();
+        recording = true;
+
+        dao.addNote(new Note(21, 21L, System.currentTimeMillis(), "T", "C", "Movies", false, "1", VOID, accountId, "", 0));
+        dao.updateNote(new Note(21, 21L, System.currentTimeMillis(), "T", "Changed", "Movies", false, "1", LOCAL_EDITED, accountId, "", 0));
+        dao.getNoteById(1);
+        NotesTestingUtil.getOrAwaitValue(dao.getNoteById$(1));
+        dao.getRemoteId(1);
+        dao.count(accountId);
+        NotesTestingUtil.getOrAwaitValue(dao.count$(accountId));
+        dao.countFavorites(accountId);
+        NotesTestingUtil.getOrAwaitValue(dao.countFavorites$(accountId));
+
+        for (String query : new String[]{"", "\"title*\""}) {
+            dao.searchRecentByModified(accountId, query);
+            dao.searchRecentLexicographically(accountId, query);
+            dao.searchFavoritesByModified(accountId, query);
+            dao.searchFavoritesLexicographically(accountId, query);
+            dao.searchUncategorizedByModified(accountId, query);
+            dao.searchUncategorizedLexicographically(accountId, query);
+            dao.searchCategoryByModified(accountId, query, "Movies");
+            dao.searchCategoryLexicographically(accountId, query, "Movies");
+            NotesTestingUtil.getOrAwaitValue(dao.searchRecentByModified$(accountId, query));
+            NotesTestingUtil.getOrAwaitValue(dao.searchCategoryLexicographically$(accountId, query, "Movies"));
+
+            for (NavigationCategory navigationCategory : new NavigationCategory[]{
+                    new NavigationCategory(RECENT),
+                    new NavigationCategory(FAVORITES),
+                    new NavigationCategory(UNCATEGORIZED),
+                    new NavigationCategory(accountId, "Movies")
+            }) {
+                for (CategorySortingMethod sortingMethod : CategorySortingMethod.values()) {
+                    final List<Note> firstPage = dao.getNotesPage(NotesPageQuery.create(accountId, navigationCategory, query, sortingMethod, null, 3));
+                    if (!firstPage.isEmpty()) {
+                        dao.getNotesPage(NotesPageQuery.create(accountId, navigationCategory, query, sortingMethod, firstPage.get(firstPage.size() - 1), 3));
+                    }
+                }
+            }
+        }
+
+        dao.updateScrollY(1, 42);
+        dao.updateStatus(1, LOCAL_EDITED);
+        dao.updateCategory(1, "Music");
+        dao.updateCategoryAndStatus(1, "Movies");
+        dao.getRemoteIds(accountId);
+        try (Cursor cursor = dao.getRemoteIdAndId(accountId)) {
+            cursor.moveToFirst();
+        }
+        dao.getLocalIdByRemoteId(accountId, 2);
+        dao.getLocalModifiedNotes(accountId);
+        dao.getRecentNotes(accountId);
+        dao.toggleFavorite(2);
+        dao.updateRemoteId(2, 4711L);
+        dao.updateIfNotModifiedLocallyDuringSync(1, System.currentTimeMillis(), "T", false, "2", "New", "New", "Content 1", "Movies", true);
+        dao.updateIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(3, System.currentTimeMillis(), "T", false, "", "2", "New", "New");
+        dao.updateMetadataIfNotModifiedLocallyAndAnyRemoteColumnHasChanged(4, System.currentTimeMillis(), "T", false, "", "2");
+        dao.updateContentIfNotLoaded(4, "Loaded", "Loaded");
+        dao.getIdsWithoutContent(accountId);
+        dao.filterIdsWithoutContent(Arrays.asList(1L, 2L, 3L));
+        NotesTestingUtil.getOrAwaitValue(dao.getCategories$(accountId));
+        NotesTestingUtil.getOrAwaitValue(dao.searchCategories$(accountId, "M%"));
+        dao.deleteByNoteId(21, LOCAL_EDITED);
+
+        assertQueryPlans();
+    }
+
+    @Test
+    public void categoryOptionsDao() throws InterruptedException {
+        recording = true;
+
+        final CategoryOptions categoryOptions = new CategoryOptions();
+        categoryOptions.setAccountId(account.getId());
+        categoryOptions.setCategory("Movies");
+        categoryOptions.setSortingMethod(CategorySortingMethod.SORT_MODIFIED_DESC);
+        db.getCategoryOptionsDao().addCategoryOptions(categoryOptions);
+        db.getCategoryOptionsDao().modifyCategoryOrder(account.getId(), "Movies", CategorySortingMethod.SORT_LEXICOGRAPHICAL_ASC);
+        NotesTestingUtil.getOrAwaitValue(db.getCategoryOptionsDao().getCategoryOrder(account.getId(), "Movies"));
+
+        assertQueryPlans();
+    }
+
+    private void assertQueryPlans() {
+        final Map<String, List<Object>> executed;
+        synchronized (statements) {
+            recording = false;
+            executed = new LinkedHashMap<>(statements);
+        }
+        assertFalse(executed.isEmpty());
+
+        final List<String> violations = new ArrayList<>();
+        for (Map.Entry<String, List<Object>> statement : executed.entrySet()) {
+            final String sql = statement.getKey().trim();
+            final String keyword = sql.split("\\s", 2)[0].toUpperCase(Locale.ROOT);
+            if (!Arrays.asList("SELECT", "UPDATE", "DELETE", "INSERT").contains(keyword)) {
+                continue;
+            }
+            try (Cursor cursor = db.getOpenHelper().getWritableDatabase().query(new SimpleSQLiteQuery("EXPLAIN QUERY PLAN " + sql, statement.getValue().toArray()))) {
+                final int detailColumn = cursor.getColumnIndexOrThrow("detail");
+                while (cursor.moveToNext()) {
+                    final String detail = cursor.getString(detailColumn);
+                    if (detail.contains("TEMP B-TREE") || (detail.startsWith("SCAN") && !detail.contains("VIRTUAL TABLE"))) {
+                        violations.add(detail + " ← " + sql);
+                    }
+                }
+            }
+        }
+        assertTrue(executed.size() + " statements checked, violations:\n" + String.join("\n", violations), violations.isEmpty());
+    }
+}
@@ -0,0 +1,132 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import androidx.annotation.NonNull;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+import it.niedermann.owncloud.notes.persistence.entity.Account;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+@RunWith(RobolectricTestRunner.class)
+public class SyncCoalescerTest {
+
+    private static final long WINDOW = 200;
+
+    private final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+    private final CountingSyncTrigger trigger = new CountingSyncTrigger();
+    private final SyncCoalescer coalescer = new SyncCoalescer(timer, WINDOW, trigger);
+    private final Account account = mockAccount(1);
+    private final Account secondAccount = mockAccount(2);
+
+    @After
+    public void shutdown() {
+        timer.shutdownNow();
+    }
+
+    @Test
+    public void request_burstCausesSingleSync() throws InterruptedException {
+        for (int i = 0; i < 50; i++) {
+            coalescer.request(account, true);
+        }
+        assertEquals("Sync should not be triggered before the window ends", 0, trigger.syncs.size());
+
+        awaitWindow();
+        assertEquals(Collections.singletonList("1 push"), trigger.syncs);
+    }
+
+    @Test
+    public void request_fullSyncSubsumesPushes() throws InterruptedException {
+        coalescer.request(account, true);
+        coalescer.request(account, false);
+        coalescer.request(account, true);
+
+        awaitWindow();
+        assertEquals(Collections.singletonList("1 full"), trigger.syncs);
+    }
+
+    @Test
+    public void request_accountsAreCoalescedSeparately() throws InterruptedException {
+        for (int i = 0; i < 10; i++) {
+            coalescer.request(account, true);
+            coalescer.request(secondAccount, true);
+        }
+
+        awaitWindow();
+        assertEquals(2, trigger.syncs.size());
+        assertTrue(trigger.syncs.contains("1 push"));
+        assertTrue(trigger.syncs.contains("2 push"));
+    }
+
+    @Test
+    public void request_afterWindowCausesNextSync() throws InterruptedException {
+        coalescer.request(account, true);
+        awaitWindow();
+        coalescer.request(account, true);
+        coalescer.request(account, true);
+        awaitWindow();
+
+        assertEquals(2, trigger.syncs.size());
+    }
+
+    @Test
+    public void discard_dropsPendingRequests() throws InterruptedException {
+        coalescer.request(account, true);
+        coalescer.request(account, true);
+
+        assertTrue(coalescer.discard(account.getId()));
+        assertFalse(coalescer.discard(account.getId()));
+
+        awaitWindow();
+        assertEquals(0, trigger.syncs.size());
+    }
+
+    @Test
+    public void request_withoutWindow() {
+        final CountingSyncTrigger immediateTrigger = new CountingSyncTrigger();
+        final SyncCoalescer immediateCoalescer = new SyncCoalescer(timer, 0, immediateTrigger);
+
+        immediateCoalescer.request(account, true);
+        immediateCoalescer.request(account, false);
+
+        assertEquals(2, immediateTrigger.syncs.size());
+        assertThrows(IllegalArgumentException.class, () -> new SyncCoalescer(timer, -1, immediateTrigger));
+    }
+
+    private static void awaitWindow() throws InterruptedException {
+        Thread.sleep(WINDOW * 3);
+    }
+
+    private static Account mockAccount(long id) {
+        final Account account = mock(Account.class);
+        when(account.getId()).thenReturn(id);
+        return account;
+    }
+
+    /**
+     * Records each triggered sync, which would be one network round trip per account
+     */
+    private static class CountingSyncTrigger implements SyncCoalescer.SyncTrigger {
+
+        private final List<String> syncs = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void scheduleSync(@NonNull Account account, boolean onlyLocalChanges) {
+            syncs.add(account.getId() + (onlyLocalChanges ? " push" : " full"));
+        }
+    }
+}
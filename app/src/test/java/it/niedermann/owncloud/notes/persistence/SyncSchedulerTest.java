@@ -0,0 +1,194 @@
+package it.niedermann.owncloud.notes.persistence;
+
+import org.junit.After;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertThrows;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class SyncSchedulerTest {
+
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+
+    @After
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void submit_slowAccountDoesNotBlockOthers() throws InterruptedException {
+        final SyncScheduler scheduler = new SyncScheduler(executor, 2);
+        final CountDownLatch hangingAccount = new CountDownLatch(1);
+        final CountDownLatch otherAccount = new CountDownLatch(1);
+
+        scheduler.submit(1, () -> await(hangingAccount));
+        scheduler.submit(2, otherAccount::countDown);
+
+        assertTrue("Second account should be synchronized while the first one hangs", otherAccount.await(5, TimeUnit.SECONDS));
+        hangingAccount.countDown();
+    }
+
+    @Test
+    public void submit_serializesSyncsOfOneAccount() throws InterruptedException {
+        final SyncScheduler scheduler = new SyncScheduler(executor, 4);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final List<Integer> order = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch finished = new CountDownLatch(5);
+
+        for (int i = 0; i < 5; i++) {
+            final int index = i;
+            scheduler.submit(1, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(20);
+                order.add(index);
+                running.decrementAndGet();
+                finished.countDown();
+            });
+        }
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(1, maxRunning.get());
+        assertEquals(Arrays.asList(0, 1, 2, 3, 4), order);
+    }
+
+    @Test
+    public void submit_respectsMaxConcurrentAccounts() throws InterruptedException {
+        final SyncScheduler scheduler = new SyncScheduler(executor, 2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        final CountDownLatch finished = new CountDownLatch(6);
+
+        for (long accountId = 1; accountId <= 6; accountId++) {
+            scheduler.submit(accountId, () -> {
+                maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+                sleep(50);
+                running.decrementAndGet();
+                finished.countDown();
+            });
+        }
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(2, maxRunning.get());
+    }
+
+    @Test
+    public void submit_accountsTakeTurns() throws InterruptedException {
+        final SyncScheduler scheduler = new SyncScheduler(executor, 1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final List<String> order = Collections.synchronizedList(new ArrayList<>());
+        final CountDownLatch finished = new CountDownLatch(4);
+
+        scheduler.submit(1, () -> {
+            await(blocker);
+            order.add("A1");
+            finished.countDown();
+        });
+        scheduler.submit(1, () -> {
+            order.add("A2");
+            finished.countDown();
+        });
+        scheduler.submit(1, () -> {
+            order.add("A3");
+            finished.countDown();
+        });
+        scheduler.submit(2, () -> {
+            order.add("B1");
+            finished.countDown();
+        });
+        blocker.countDown();
+
+        assertTrue(finished.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("A1", "B1", "A2", "A3"), order);
+    }
+
+    @Test
+    public void cancel_dropsPendingAndInterruptsRunningSync() throws InterruptedException {
+        final SyncScheduler scheduler = new SyncScheduler(executor, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        final CountDownLatch otherAccount = new CountDownLatch(1);
+        final AtomicInteger pendingExecuted = new AtomicInteger();
+
+        scheduler.submit(1, () -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+        });
+        scheduler.submit(1, pendingExecuted::incrementAndGet);
+        scheduler.submit(2, otherAccount::countDown);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+
+        scheduler.cancel(1);
+
+        assertTrue("Running sync should be interrupted", interrupted.await(5, TimeUnit.SECONDS));
+        assertTrue("Other accounts should take over the free slot", otherAccount.await(5, TimeUnit.SECONDS));
+        assertEquals("Pending syncs of the cancelled account should be dropped", 0, pendingExecuted.get());
+    }
+
+    @Test
+    public void hasPending_onlyMatchesSyncsWhichHaveNotStarted() throws InterruptedException {
+        final SyncScheduler scheduler = new SyncScheduler(executor, 1);
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final Runnable running = () -> {
+            started.countDown();
+            await(blocker);
+        };
+        final Runnable pending = () -> {
+        };
+
+        scheduler.submit(1, running);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(scheduler.hasPending(1, sync -> true));
+
+        scheduler.submit(1, pending);
+        assertTrue(scheduler.hasPending(1, sync -> sync == pending));
+        assertFalse(scheduler.hasPending(1, sync -> sync == running));
+        assertFalse(scheduler.hasPending(2, sync -> true));
+
+        scheduler.cancel(1);
+        assertFalse(scheduler.hasPending(1, sync -> true));
+        blocker.countDown();
+    }
+
+    @Test
+    public void constructor_requiresAtLeastOneConcurrentAccount() {
+        assertThrows(IllegalArgumentException.class, () -> new SyncScheduler(executor, 0));
+        assertFalse(new SyncScheduler(executor, 1).getRunningCount() > 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package it.niedermann.owncloud.notes.persistence.sync;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.annotations.Expose;
+import com.google.gson.annotations.SerializedName;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.Calendar;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+
+import static it.niedermann.owncloud.notes.shared.util.BenchmarkUtil.measureAllocatedBytes;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class EpochSecondsAdapterTest {
+
+    private static final String TAG = EpochSecondsAdapterTest.class.getSimpleName();
+
+    private static final int NOTES_COUNT = 10_000;
+
+    /**
+     * Same configuration as the {@link Gson} instance which is used for the actual requests, plus the former adapter for {@link Calendar}s which is only needed to deserialize {@link CalendarNote}s
+     */
+    private final Gson gson = new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation()
+            .registerTypeHierarchyAdapter(Calendar.class, (JsonDeserializer<Calendar>) (src, typeOfSrc, ctx) -> {
+                final Calendar calendar = Calendar.getInstance();
+                calendar.setTimeInMillis(src.getAsLong() * 1_000);
+                return calendar;
+            })
+            .create();
+
+    @Test
+    public void read_convertsSecondsToMillis() {
+        final Note note = gson.fromJson("{\"id\":4711,\"title\":\"T\",\"modified\":1600000000}", Note.class);
+        assertEquals(Long.valueOf(1_600_000_000_000L), note.getModified());
+    }
+
+    @Test
+    public void read_keepsMissingAndNullValues() {
+        assertNull("Unchanged notes of a pruned response have no modified property", gson.fromJson("{\"id\":4711}", Note.class).getModified());
+        assertNull(gson.fromJson("{\"id\":4711,\"modified\":null}", Note.class).getModified());
+    }
+
+    @Test
+    public void write_convertsMillisToSeconds() {
+        final Note note = new Note();
+        note.setModified(1_600_000_000_999L);
+        assertEquals(1_600_000_000L, JsonParser.parseString(gson.toJson(note)).getAsJsonObject().get("modified").getAsLong());
+
+        note.setModified(null);
+        final JsonObject json = JsonParser.parseString(gson.toJson(note)).getAsJsonObject();
+        assertFalse("Null values should not be serialized", json.has("modified"));
+    }
+
+    @Test
+    public void read_allocatesLessThanCalendar() {
+        final String json = createResponse();
+
+        final long calendarBytes = measureAllocatedBytes(() -> gson.fromJson(json, CalendarNote[].class));
+        final long epochBytes = measureAllocatedBytes(() -> gson.fromJson(json, Note[].class));
+
+        Log.i(TAG, "Deserializing " + NOTES_COUNT + " notes: Calendar " + calendarBytes + " bytes, epoch millis " + epochBytes + " bytes");
+        final CalendarNote[] calendarNotes = gson.fromJson(json, CalendarNote[].class);
+        final Note[] notes = gson.fromJson(json, Note[].class);
+        assertEquals(NOTES_COUNT, calendarNotes.length);
+        assertEquals(NOTES_COUNT, notes.length);
+        assertEquals(calendarNotes[42].modified.getTimeInMillis(), (long) notes[42].getModified());
+        assertTrue("Deserializing epoch millis should allocate less than deserializing Calendars (Calendar: " + calendarBytes + " bytes, epoch millis: " + epochBytes + " bytes)", epochBytes < calendarBytes);
+    }
+
+    private static String createResponse() {
+        final StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < NOTES_COUNT; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append("{\"id\":").append(i + 1)
+                    .append(",\"etag\":\"").append(i).append('"')
+                    .append(",\"title\":\"Title ").append(i).append('"')
+                    .append(",\"category\":\"\",\"favorite\":false")
+                    .append(",\"modified\":").append(1_600_000_000L + i)
+                    .append('}');
+        }
+        return json.append(']').toString();
+    }
+
+    /**
+     * The metadata of a {@link Note} like it has been deserialized before timestamps have been stored as epoch millis
+     */
+    private static class CalendarNote {
+        @Expose
+        @SerializedName("id")
+        Long remoteId;
+        @Expose
+        @SerializedName("etag")
+        String eTag;
+        @Expose
+        String title;
+        @Expose
+        String category;
+        @Expose
+        boolean favorite;
+        @Expose
+        Calendar modified;
+    }
+}
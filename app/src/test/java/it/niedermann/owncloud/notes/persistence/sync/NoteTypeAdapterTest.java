@@ -0,0 +1,115 @@
+package it.niedermann.owncloud.notes.persistence.sync;
+
+import android.util.Log;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.reflect.TypeToken;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.VOID;
+import static it.niedermann.owncloud.notes.shared.util.BenchmarkUtil.bestOf;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+@RunWith(RobolectricTestRunner.class)
+public class NoteTypeAdapterTest {
+
+    private static final String TAG = NoteTypeAdapterTest.class.getSimpleName();
+    private static final Type NOTE_LIST = new TypeToken<List<Note>>() {
+    }.getType();
+
+    /**
+     * Binds the {@link com.google.gson.annotations.Expose}d fields via reflection like before
+     */
+    private final Gson reflective = new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation()
+            .create();
+    private final Gson streaming = new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation()
+            .registerTypeAdapter(Note.class, new NoteTypeAdapter())
+            .create();
+
+    @Test
+    public void write_isCompatibleWithReflection() {
+        final List<Note> notes = Arrays.asList(
+                new Note(0, 4711L, 1_600_000_000_000L, "Title", "Content", "Category", true, "1", VOID, 1, "", 0),
+                new Note(0, null, 1_600_000_000_999L, "New", "Not yet synchronized", "", false, null, VOID, 1, "", 0),
+                new Note(0, 4712L, null, "", "", "", false, "2", VOID, 1, "", 0),
+                new Note(0, 4713L, 1_600_000_000_000L, "\"Quotes\" & <html>", "Line\nbreak\t 彼得 😀", "Movies/Action", false, "3", VOID, 1, "", 0)
+        );
+        for (Note note : notes) {
+            assertEquals(reflective.toJson(note), streaming.toJson(note));
+        }
+        assertEquals(reflective.toJson(notes, NOTE_LIST), streaming.toJson(notes, NOTE_LIST));
+        assertEquals(reflective.toJson(null, Note.class), streaming.toJson(null, Note.class));
+    }
+
+    @Test
+    public void read_isCompatibleWithReflection() {
+        final String json = "[" +
+                "{\"id\":4711,\"etag\":\"1\",\"readonly\":false,\"modified\":1600000000,\"title\":\"Title\",\"category\":\"Category\",\"content\":\"Content\",\"favorite\":true}," +
+                "{\"id\":4712,\"modified\":1600000000,\"title\":\"Metadata only\",\"category\":\"\",\"favorite\":false,\"etag\":\"2\"}," +
+                "{\"id\":4713}," +
+                "{\"id\":\"4714\",\"favorite\":\"true\",\"error\":false,\"errorMessage\":\"\",\"nested\":{\"ignored\":[1,2,{}]}}" +
+                "]";
+
+        final List<Note> expected = reflective.fromJson(json, NOTE_LIST);
+        final List<Note> actual = streaming.fromJson(json, NOTE_LIST);
+
+        assertEquals(expected, actual);
+        assertEquals(Long.valueOf(1_600_000_000_000L), actual.get(0).getModified());
+        assertNull(actual.get(2).getModified());
+        assertTrue(actual.get(3).getFavorite());
+    }
+
+    @Test
+    public void read_keepsDefaultsForNullValues() {
+        final Note note = streaming.fromJson("{\"id\":4711,\"title\":null,\"category\":null,\"content\":null,\"etag\":null,\"modified\":null,\"favorite\":null}", Note.class);
+
+        assertEquals(Long.valueOf(4711), note.getRemoteId());
+        assertEquals("", note.getTitle());
+        assertEquals("", note.getCategory());
+        assertEquals("", note.getContent());
+        assertNull(note.getETag());
+        assertNull(note.getModified());
+        assertFalse(note.getFavorite());
+        assertNull(streaming.fromJson("null", Note.class));
+    }
+
+    /**
+     * HotSpot optimizes reflection far better than older ART versions, so the difference on devices is bigger than on the JVM.
+     */
+    @Test
+    public void read_benchmark() {
+        final String json = createResponse(10_000);
+
+        final long reflectiveNanos = bestOf(30, () -> reflective.fromJson(json, NOTE_LIST));
+        final long streamingNanos = bestOf(30, () -> streaming.fromJson(json, NOTE_LIST));
+
+        final List<Note> expected = reflective.fromJson(json, NOTE_LIST);
+        final List<Note> actual = streaming.fromJson(json, NOTE_LIST);
+        Log.i(TAG, "Deserializing " + actual.size() + " notes: reflection " + reflectiveNanos / 1_000 + " µs, streaming " + streamingNanos / 1_000 + " µs");
+        assertEquals(expected, actual);
+    }
+
+    private String createResponse(int count) {
+        final List<Note> notes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            notes.add(new Note(0, (long) i + 1, 1_600_000_000_000L + i * 1_000L, "Title " + i, "Content of note " + i, i % 3 == 0 ? "" : "Category " + i % 7, i % 5 == 0, String.valueOf(i), VOID, 0, "", 0));
+        }
+        return reflective.toJson(notes, NOTE_LIST);
+    }
+}
@@ -0,0 +1,132 @@
+package it.niedermann.owncloud.notes.persistence.sync;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.nextcloud.android.sso.api.NextcloudAPI;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.robolectric.RobolectricTestRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.EnumSet;
+
+import it.niedermann.owncloud.notes.persistence.entity.Note;
+import it.niedermann.owncloud.notes.persistence.entity.OutboxOperation;
+import it.niedermann.owncloud.notes.shared.model.ApiVersion;
+
+import static it.niedermann.owncloud.notes.shared.model.DBStatus.LOCAL_EDITED;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+@RunWith(RobolectricTestRunner.class)
+public class NotesAPITest {
+
+    private static final long REMOTE_ID = 4711;
+
+    /**
+     * Same exclusion strategy as the {@link Gson} instance which is used for the actual requests
+     */
+    private final Gson gson = new GsonBuilder()
+            .excludeFieldsWithoutExposeAnnotation()
+            .create();
+    private final NotesAPI_1_0 notesAPI_1_0 = mock(NotesAPI_1_0.class);
+    private final NotesAPI_0_2 notesAPI_0_2 = mock(NotesAPI_0_2.class);
+    private final NotesAPI apiV1 = new NotesAPI(mock(NextcloudAPI.class), gson, ApiVersion.API_VERSION_1_0, null, notesAPI_1_0);
+    private final NotesAPI apiV02 = new NotesAPI(mock(NextcloudAPI.class), gson, ApiVersion.API_VERSION_0_2, notesAPI_0_2, null);
+
+    @Test
+    public void editNote_metadataOnlyChangesAreSmall() {
+        final Note note = createLargeNote();
+
+        final int fullBytes = measure(editNote(note, EnumSet.of(OutboxOperation.Type.FULL)));
+        final int favoriteBytes = measure(editNote(note, EnumSet.of(OutboxOperation.Type.FAVORITE)));
+        final int categoryBytes = measure(editNote(note, EnumSet.of(OutboxOperation.Type.CATEGORY)));
+        final int metadataBytes = measure(editNote(note, EnumSet.of(OutboxOperation.Type.FAVORITE, OutboxOperation.Type.CATEGORY)));
+
+        assertTrue("Full body should contain the whole content (" + fullBytes + " bytes)", fullBytes > 1_000_000);
+        assertTrue("Toggling the favorite state should need only a few bytes, but needed " + favoriteBytes, favoriteBytes < 32);
+        assertTrue("Changing the category should need only a few bytes, but needed " + categoryBytes, categoryBytes < 64);
+        assertTrue("Metadata changes should need only a few bytes, but needed " + metadataBytes, metadataBytes < 64);
+    }
+
+    @Test
+    public void editNote_partialBodyContainsOnlyChangedProperties() {
+        final Note note = createLargeNote();
+
+        final JsonObject favorite = JsonParser.parseString(gson.toJson(editNote(note, EnumSet.of(OutboxOperation.Type.FAVORITE)))).getAsJsonObject();
+        assertEquals(1, favorite.size());
+        assertTrue(favorite.get("favorite").getAsBoolean());
+
+        final JsonObject category = JsonParser.parseString(gson.toJson(editNote(note, EnumSet.of(OutboxOperation.Type.CATEGORY)))).getAsJsonObject();
+        assertEquals(1, category.size());
+        assertEquals("Logs", category.get("category").getAsString());
+
+        final JsonObject content = JsonParser.parseString(gson.toJson(editNote(note, EnumSet.of(OutboxOperation.Type.CONTENT)))).getAsJsonObject();
+        assertTrue(content.has("title"));
+        assertTrue(content.has("content"));
+        assertTrue(content.has("modified"));
+        assertFalse(content.has("category"));
+        assertFalse(content.has("favorite"));
+    }
+
+    @Test
+    public void editNote_fallsBackToFullBodyForApi_0_2() {
+        final Note note = createLargeNote();
+
+        apiV02.editNote(note, EnumSet.of(OutboxOperation.Type.FAVORITE));
+
+        final ArgumentCaptor<NotesAPI.Note_0_2> captor = ArgumentCaptor.forClass(NotesAPI.Note_0_2.class);
+        verify(notesAPI_0_2).editNote(captor.capture(), eq(REMOTE_ID));
+        assertEquals(note.getContent(), captor.getValue().content);
+        assertTrue(captor.getValue().favorite);
+    }
+
+    @Test
+    public void editNote_fullChangeSendsWholeNote() {
+        final Note note = createLargeNote();
+
+        apiV1.editNote(note, EnumSet.of(OutboxOperation.Type.FULL, OutboxOperation.Type.FAVORITE));
+
+        verify(notesAPI_1_0).editNote(note, REMOTE_ID);
+        verify(notesAPI_1_0, never()).editNotePartially(any(), eq(REMOTE_ID));
+    }
+
+    /**
+     * @return the body which has been sent to the server
+     */
+    private Object editNote(Note note, EnumSet<OutboxOperation.Type> changes) {
+        apiV1.editNote(note, changes);
+        if (changes.contains(OutboxOperation.Type.FULL)) {
+            return note;
+        }
+        final ArgumentCaptor<NotesAPI.PartialNote_1_0> captor = ArgumentCaptor.forClass(NotesAPI.PartialNote_1_0.class);
+        verify(notesAPI_1_0, atLeastOnce()).editNotePartially(captor.capture(), eq(REMOTE_ID));
+        return captor.getValue();
+    }
+
+    private int measure(Object body) {
+        return gson.toJson(body).getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    /**
+     * @return a {@link Note} with a large pasted log as content
+     */
+    private static Note createLargeNote() {
+        final StringBuilder content = new StringBuilder();
+        while (content.length() < 2_000_000) {
+            content.append("2021-08-01 12:00:00.000 DEBUG Something happened in a very verbose way\n");
+        }
+        return new Note(1, REMOTE_ID, System.currentTimeMillis(), "Log", content.toString(), "Logs", true, "1", LOCAL_EDITED, 1, "", 0);
+    }
+}
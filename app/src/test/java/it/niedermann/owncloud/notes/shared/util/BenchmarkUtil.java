@@ -0,0 +1,49 @@
+package it.niedermann.owncloud.notes.shared.util;
+
+import androidx.annotation.NonNull;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assume.assumeTrue;
+
+/**
+ * Measures the time and memory needed by a piece of code in local unit tests.
+ * A single measurement is dominated by class loading, JIT compilation and garbage collection and all numbers depend on the machine, so benchmarks should only log them.
+ * Tests which assert allocations are skipped on JVMs which can not measure them and should only assert generous bounds.
+ */
+public class BenchmarkUtil {
+
+    private BenchmarkUtil() {
+        // Util class
+    }
+
+    /**
+     * @return the duration of the fastest of the given number of <code>rounds</code> in nanoseconds
+     */
+    public static long bestOf(int rounds, @NonNull Runnable runnable) {
+        long bestNanos = Long.MAX_VALUE;
+        for (int round = 0; round < rounds; round++) {
+            final long start = System.nanoTime();
+            runnable.run();
+            bestNanos = Math.min(bestNanos, System.nanoTime() - start);
+        }
+        return bestNanos;
+    }
+
+    /**
+     * Runs the <code>runnable</code> once to warm up and measures a second run.
+     *
+     * @return the number of bytes which have been allocated by the current thread during the second run
+     */
+    public static long measureAllocatedBytes(@NonNull Runnable runnable) {
+        final com.sun.management.ThreadMXBean threadMXBean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        assumeTrue("Measuring allocations is not supported by this JVM", threadMXBean.isThreadAllocatedMemorySupported());
+        threadMXBean.setThreadAllocatedMemoryEnabled(true);
+        final long threadId = Thread.currentThread().getId();
+
+        runnable.run();
+        final long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        runnable.run();
+        return threadMXBean.getThreadAllocatedBytes(threadId) - start;
+    }
+}
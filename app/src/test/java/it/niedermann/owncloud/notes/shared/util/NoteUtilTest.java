@@ -83,4 +83,22 @@ public class NoteUtilTest extends TestCase {
         assertEquals("Foo", NoteUtil.generateNoteExcerpt("# Title\n- Foo", "- Title"));
         assertEquals("Title   Bar", NoteUtil.generateNoteExcerpt("- Title\nTitle\nBar", "- Title"));
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testToFtsMatchQuery() {
+        assertEquals("", NoteUtil.toFtsMatchQuery(null));
+        assertEquals("", NoteUtil.toFtsMatchQuery(""));
+        assertEquals("", NoteUtil.toFtsMatchQuery("  "));
+        assertEquals(NoteUtil.FTS_MATCH_NOTHING, NoteUtil.toFtsMatchQuery("\" * -"));
+        assertEquals(NoteUtil.FTS_MATCH_NOTHING, NoteUtil.toFtsMatchQuery("-"));
+        assertEquals(NoteUtil.FTS_MATCH_NOTHING, NoteUtil.toFtsMatchQuery("#"));
+        assertEquals(NoteUtil.FTS_MATCH_NOTHING, NoteUtil.toFtsMatchQuery(" ++ "));
+        assertEquals(NoteUtil.FTS_MATCH_NOTHING, NoteUtil.toFtsMatchQuery("..."));
+        assertEquals("\"C*\"", NoteUtil.toFtsMatchQuery("C++"));
+        assertEquals("\"foo*\"", NoteUtil.toFtsMatchQuery("foo"));
+        assertEquals("\"foo*\"", NoteUtil.toFtsMatchQuery(" foo "));
+        assertEquals("\"Foo*\" \"bar*\"", NoteUtil.toFtsMatchQuery("Foo, bar"));
+        assertEquals("\"foo*\" \"OR*\" \"bar*\"", NoteUtil.toFtsMatchQuery("\"foo\" OR bar*"));
+        assertEquals("\"彼得*\" \"äöüß*\"", NoteUtil.toFtsMatchQuery("彼得 äöüß"));
+    }
+}
@@ -0,0 +1,912 @@
+package it.niedermann.android.markdown;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.core.text.HtmlCompat;
+
+import java.util.Arrays;
+
+import it.niedermann.android.markdown.model.EListType;
+
+/**
+ * Single pass replacement for rendering Markdown to HTML and converting it to plain text again using {@link HtmlCompat#FROM_HTML_MODE_COMPACT}.
+ * <p>
+ * Supports paragraphs, ATX and setext headings, thematic breaks, list items, checkboxes, emphasis, code spans, backslash escapes, line breaks,
+ * inline links, images and URI autolinks, which is what the vast majority of notes consists of.
+ * As soon as anything else is detected (reference links, quotes, code blocks, HTML, entities, tabs, …) {@link #strip(String, int)} gives up and returns <code>null</code>,
+ * so the caller can use {@link MarkdownUtil#removeMarkdown(String)} instead.
+ */
+final class MarkdownStripper {
+
+    private static final int MAX_ATX_HEADING_LEVEL = 6;
+    private static final int MAX_ORDERED_LIST_NUMBER_DIGITS = 9;
+    private static final int MIN_FENCE_LENGTH = 3;
+    private static final int MIN_THEMATIC_BREAK_LENGTH = 3;
+    private static final int CODE_BLOCK_INDENT = 4;
+    private static final int MAX_LINK_DESTINATION_NESTING = 32;
+    private static final int MIN_AUTOLINK_SCHEME_LENGTH = 2;
+    private static final int MAX_AUTOLINK_SCHEME_LENGTH = 32;
+    private static final int MAX_ENTITY_NAME_LENGTH = 32;
+    private static final int MAX_DECIMAL_ENTITY_LENGTH = 7;
+    private static final int MAX_HEXADECIMAL_ENTITY_LENGTH = 6;
+    /**
+     * {@link HtmlCompat#fromHtml(String, int)} renders each image as an object replacement character
+     */
+    private static final char IMAGE_REPLACEMENT = '\uFFFC';
+
+    private final int maxLength;
+    @NonNull
+    private final StringBuilder out;
+
+    /**
+     * Raw content of the current paragraph, lines are joined with <code>\n</code> and their leading spaces are already stripped.
+     */
+    private final StringBuilder paragraph = new StringBuilder();
+    /**
+     * Content columns of the currently open (nested) list items, which are relevant to decide what the indentation of a line means.
+     */
+    private int[] listItemColumns = new int[4];
+    private int listItemCount = 0;
+
+    /**
+     * Inline content of the current block after code spans and backslash escapes have been resolved.
+     */
+    private final StringBuilder literal = new StringBuilder();
+    /**
+     * Trailing spaces of {@link #literal} before this position belong to a code span or link and must not be stripped.
+     */
+    private int literalProtectedEnd = 0;
+    /**
+     * Bounds of the block which is currently rendered, delimiter runs and links look at the characters around them within these bounds.
+     */
+    private int inlineStart;
+    private int inlineEnd;
+    /**
+     * Set as soon as inline content is found which is not supported, while unsupported blocks are reported by {@link #processLine(CharSequence, int, int)} directly.
+     */
+    private boolean unsupported = false;
+
+    // Delimiter runs of * and _ in the current block, see https://spec.commonmark.org/0.29/#emphasis-and-strong-emphasis
+    private int runCount = 0;
+    private int[] runStart = new int[8];
+    private int[] runLength = new int[8];
+    private int[] runRemaining = new int[8];
+    private char[] runChar = new char[8];
+    private boolean[] runCanOpen = new boolean[8];
+    private boolean[] runCanClose = new boolean[8];
+    private int[] runPrevious = new int[8];
+    private int[] runNext = new int[8];
+
+    private MarkdownStripper(int maxLength) {
+        this.maxLength = maxLength;
+        this.out = new StringBuilder(Math.min(maxLength, 256) + 16);
+    }
+
+    /**
+     * @return the same as {@link MarkdownUtil#removeMarkdown(String)} or a prefix of it which is longer than {@param maxLength},
+     * <code>null</code> if {@param s} contains Markdown which is not supported.
+     */
+    @Nullable
+    static String strip(@NonNull String s, int maxLength) {
+        return new MarkdownStripper(maxLength).strip(s);
+    }
+
+    @Nullable
+    private String strip(@NonNull String s) {
+        final int length = s.length();
+        int lineStart = 0;
+        while (lineStart <= length) {
+            if (isDone()) {
+                return out.toString().trim();
+            }
+            int lineEnd = s.indexOf('\n', lineStart);
+            if (lineEnd < 0) {
+                lineEnd = length;
+            }
+            final boolean supported;
+            if (mayStartWithCheckbox(s, lineStart, lineEnd)) {
+                String line = s.substring(lineStart, lineEnd);
+                if (MarkdownUtil.lineStartsWithCheckbox(line) && line.trim().length() > EListType.DASH.checkboxChecked.length()) {
+                    line = MarkdownUtil.replaceCheckboxesWithEmojisInLine(line);
+                }
+                supported = processLine(line, 0, line.length());
+            } else {
+                supported = processLine(s, lineStart, lineEnd);
+            }
+            if (!supported || unsupported) {
+                return null;
+            }
+            lineStart = lineEnd + 1;
+        }
+        finishParagraph();
+        return unsupported ? null : out.toString().trim();
+    }
+
+    /**
+     * @return whether the trimmed plain text collected so far is long enough, it will not change anymore by the following blocks
+     */
+    private boolean isDone() {
+        int end = out.length();
+        while (end > 0 && out.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        if (end <= maxLength) {
+            return false;
+        }
+        int start = 0;
+        while (out.charAt(start) <= ' ') {
+            start++;
+        }
+        return end - start > maxLength;
+    }
+
+    /**
+     * @return <code>false</code> if the line contains something which is not supported
+     */
+    private boolean processLine(@NonNull CharSequence line, int start, int end) {
+        for (int i = start; i < end; i++) {
+            final char c = line.charAt(i);
+            if (c < ' ') {
+                return false;
+            }
+        }
+        final int contentStart = skipSpaces(line, start, end);
+        if (contentStart == end) {
+            finishParagraph();
+            return true;
+        }
+        int matchedListItems = 0;
+        while (matchedListItems < listItemCount && listItemColumns[matchedListItems] <= contentStart - start) {
+            matchedListItems++;
+        }
+        return processBlock(line, start, contentStart, end, matchedListItems);
+    }
+
+    /**
+     * @param lineStart        position of the first character of the line, used to calculate columns
+     * @param start            position of the first non-space character
+     * @param matchedListItems number of open list items which contain this line
+     * @return <code>false</code> if the block is not supported
+     */
+    private boolean processBlock(@NonNull CharSequence line, int lineStart, int start, int end, int matchedListItems) {
+        final int indent = start - lineStart - (matchedListItems > 0 ? listItemColumns[matchedListItems - 1] : 0);
+        final boolean paragraphMatched = isInParagraph() && matchedListItems == listItemCount;
+        if (indent >= CODE_BLOCK_INDENT) {
+            // An indented code block can not interrupt a paragraph
+            if (isInParagraph()) {
+                appendParagraphLine(line, start, end);
+                return true;
+            }
+            return false;
+        }
+
+        // Text of a tight list item is rendered without <p>, so a block which follows it in the same list item leaves a space before the line break.
+        // Whether the list is tight is only known once it ended, therefore such blocks are not supported.
+        final boolean endsParagraphOfListItem = isInParagraph() && listItemCount > 0 && matchedListItems == listItemCount;
+
+        final char c = line.charAt(start);
+        if (c == '>') {
+            return false;
+        } else if (c == '<' && start + 1 < end && mayStartHtml(line.charAt(start + 1)) && findAutolinkEnd(line, start, end) < 0) {
+            // HTML block
+            return false;
+        } else if ((c == '`' || c == '~') && countRun(line, start, end, c) >= MIN_FENCE_LENGTH) {
+            return false;
+        } else if (c == '#' && isAtxHeading(line, start, end)) {
+            if (endsParagraphOfListItem) {
+                return false;
+            }
+            closeBlocks(matchedListItems);
+            renderAtxHeading(line, start, end);
+            return true;
+        } else if (isThematicBreak(line, start, end)) {
+            if (endsParagraphOfListItem) {
+                return false;
+            }
+            closeBlocks(matchedListItems);
+            return true;
+        } else if (paragraphMatched && isSetextHeadingUnderline(line, start, end)) {
+            finishParagraph();
+            return true;
+        }
+
+        int markerEnd = -1;
+        boolean canInterruptParagraph = true;
+        if (c == '-' || c == '+' || c == '*') {
+            markerEnd = start + 1;
+        } else if (c >= '0' && c <= '9') {
+            int number = 0;
+            int i = start;
+            while (i < end && i - start < MAX_ORDERED_LIST_NUMBER_DIGITS && line.charAt(i) >= '0' && line.charAt(i) <= '9') {
+                number = number * 10 + line.charAt(i) - '0';
+                i++;
+            }
+            if (i < end && (line.charAt(i) == '.' || line.charAt(i) == ')')) {
+                markerEnd = i + 1;
+                canInterruptParagraph = number == 1;
+            }
+        }
+        if (markerEnd >= 0 && (markerEnd == end || line.charAt(markerEnd) == ' ')) {
+            final int itemStart = skipSpaces(line, markerEnd, end);
+            final boolean empty = itemStart == end;
+            if (paragraphMatched && (empty || !canInterruptParagraph)) {
+                appendParagraphLine(line, start, end);
+                return true;
+            }
+            if ((!empty && itemStart - markerEnd > CODE_BLOCK_INDENT) || endsParagraphOfListItem) {
+                // Starts with an indented code block or is nested in a list item with text
+                return false;
+            }
+            closeBlocks(matchedListItems);
+            addListItem((empty ? markerEnd + 1 : itemStart) - lineStart);
+            return empty || processBlock(line, lineStart, itemStart, end, listItemCount);
+        }
+
+        if (!isInParagraph()) {
+            closeBlocks(matchedListItems);
+        }
+        // Otherwise either a paragraph continuation or a lazy continuation line which keeps all list items open
+        appendParagraphLine(line, start, end);
+        return true;
+    }
+
+    private void closeBlocks(int remainingListItems) {
+        finishParagraph();
+        listItemCount = remainingListItems;
+    }
+
+    private void addListItem(int contentColumn) {
+        if (listItemCount == listItemColumns.length) {
+            listItemColumns = Arrays.copyOf(listItemColumns, listItemCount * 2);
+        }
+        listItemColumns[listItemCount++] = contentColumn;
+    }
+
+    private static boolean isAtxHeading(@NonNull CharSequence line, int start, int end) {
+        final int level = countRun(line, start, end, '#');
+        return level <= MAX_ATX_HEADING_LEVEL && (start + level == end || line.charAt(start + level) == ' ');
+    }
+
+    private void renderAtxHeading(@NonNull CharSequence line, int start, int end) {
+        final int contentStart = skipSpaces(line, start + countRun(line, start, end, '#'), end);
+        int contentEnd = end;
+        while (contentEnd > contentStart && line.charAt(contentEnd - 1) == ' ') {
+            contentEnd--;
+        }
+        int closingSequenceStart = contentEnd;
+        while (closingSequenceStart > contentStart && line.charAt(closingSequenceStart - 1) == '#') {
+            closingSequenceStart--;
+        }
+        if (closingSequenceStart == contentStart || line.charAt(closingSequenceStart - 1) == ' ') {
+            contentEnd = closingSequenceStart;
+        }
+        renderInline(line, contentStart, contentEnd);
+    }
+
+    private static boolean isThematicBreak(@NonNull CharSequence line, int start, int end) {
+        final char c = line.charAt(start);
+        if (c != '-' && c != '*' && c != '_') {
+            return false;
+        }
+        int count = 0;
+        for (int i = start; i < end; i++) {
+            if (line.charAt(i) == c) {
+                count++;
+            } else if (line.charAt(i) != ' ') {
+                return false;
+            }
+        }
+        return count >= MIN_THEMATIC_BREAK_LENGTH;
+    }
+
+    private static boolean isSetextHeadingUnderline(@NonNull CharSequence line, int start, int end) {
+        final char c = line.charAt(start);
+        if (c != '=' && c != '-') {
+            return false;
+        }
+        final int underlineEnd = start + countRun(line, start, end, c);
+        return skipSpaces(line, underlineEnd, end) == end;
+    }
+
+    private boolean isInParagraph() {
+        return paragraph.length() > 0;
+    }
+
+    private void appendParagraphLine(@NonNull CharSequence line, int start, int end) {
+        if (isInParagraph()) {
+            paragraph.append('\n');
+        }
+        paragraph.append(line, start, end);
+    }
+
+    private void finishParagraph() {
+        if (isInParagraph()) {
+            if (mayStartWithLinkReferenceDefinition(paragraph)) {
+                unsupported = true;
+            } else {
+                renderInline(paragraph, 0, paragraph.length());
+            }
+            paragraph.setLength(0);
+        }
+    }
+
+    /**
+     * Link reference definitions are only recognized at the beginning of a paragraph, see https://spec.commonmark.org/0.29/#link-reference-definitions
+     */
+    private static boolean mayStartWithLinkReferenceDefinition(@NonNull CharSequence s) {
+        if (s.charAt(0) != '[') {
+            return false;
+        }
+        for (int i = 1; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            if (c == '\\' && i + 1 < s.length() && isAsciiPunctuation(s.charAt(i + 1))) {
+                i++;
+            } else if (c == '[') {
+                return false;
+            } else if (c == ']') {
+                return i + 1 < s.length() && s.charAt(i + 1) == ':';
+            }
+        }
+        return false;
+    }
+
+    private void renderInline(@NonNull CharSequence s, int from, int to) {
+        while (to > from && s.charAt(to - 1) == ' ') {
+            to--;
+        }
+        literal.setLength(0);
+        literalProtectedEnd = 0;
+        runCount = 0;
+        inlineStart = from;
+        inlineEnd = to;
+
+        appendInline(s, from, to);
+        if (unsupported) {
+            return;
+        }
+        processEmphasis(0);
+
+        int run = 0;
+        for (int position = 0; position < literal.length(); ) {
+            if (run < runCount && runStart[run] == position) {
+                for (int j = 0; j < runRemaining[run]; j++) {
+                    appendCollapsingWhitespace(runChar[run]);
+                }
+                position += runLength[run];
+                run++;
+            } else {
+                appendCollapsingWhitespace(literal.charAt(position));
+                position++;
+            }
+        }
+
+        // End of block
+        if (out.length() > 0 && out.charAt(out.length() - 1) != '\n') {
+            out.append('\n');
+        }
+    }
+
+    /**
+     * Resolves the inline content between {@param from} and {@param to} to {@link #literal} and delimiter runs.
+     */
+    private void appendInline(@NonNull CharSequence s, int from, int to) {
+        int i = from;
+        while (i < to && !unsupported) {
+            final char c = s.charAt(i);
+            if (c == '\\') {
+                if (i + 1 < to && (s.charAt(i + 1) == '\n' || isAsciiPunctuation(s.charAt(i + 1)))) {
+                    // Hard line break or escaped character
+                    literal.append(s.charAt(i + 1));
+                    i += 2;
+                } else {
+                    literal.append(c);
+                    i++;
+                }
+            } else if (c == '`') {
+                final int openingLength = countRun(s, i, to, c);
+                final int contentStart = i + openingLength;
+                final int closing = findClosingBackticks(s, contentStart, to, openingLength);
+                if (closing < 0) {
+                    literal.append(s, i, contentStart);
+                    i = contentStart;
+                } else {
+                    appendCodeSpan(s, contentStart, closing);
+                    i = closing + openingLength;
+                }
+            } else if (c == '*' || c == '_') {
+                final int length = countRun(s, i, to, c);
+                addRun(c, length, i > inlineStart ? s.charAt(i - 1) : '\n', i + length < inlineEnd ? s.charAt(i + length) : '\n');
+                i += length;
+            } else if (c == '[' || (c == '!' && i + 1 < to && s.charAt(i + 1) == '[')) {
+                i = appendLinkOrImage(s, i, to);
+            } else if (c == '<') {
+                i = appendAutolink(s, i, to);
+            } else if (c == '&' && isEntity(s, i, to)) {
+                unsupported = true;
+            } else if (c == '\n') {
+                // Soft line break
+                while (literal.length() > literalProtectedEnd && literal.charAt(literal.length() - 1) == ' ') {
+                    literal.setLength(literal.length() - 1);
+                }
+                literal.append(c);
+                i = skipSpaces(s, i + 1, to);
+            } else {
+                literal.append(c);
+                i++;
+            }
+        }
+    }
+
+    /**
+     * Inline links and images, see https://spec.commonmark.org/0.29/#inline-link.
+     * Brackets which do not form an inline link might be a reference link, which depends on the rest of the note, therefore they are not supported.
+     *
+     * @param start position of the <code>[</code> or of the <code>!</code> of an image
+     * @return position after the link or image
+     */
+    private int appendLinkOrImage(@NonNull CharSequence s, int start, int to) {
+        final boolean image = s.charAt(start) == '!';
+        final int textStart = start + (image ? 2 : 1);
+        final int textEnd = findLinkTextEnd(s, textStart, to);
+        final int end = textEnd < 0 || textEnd + 1 == to || s.charAt(textEnd + 1) != '('
+                ? -1
+                : findInlineLinkEnd(s, textEnd + 1, to);
+        if (end < 0) {
+            unsupported = true;
+            return to;
+        }
+        if (image) {
+            // The description is only used as alternative text
+            literal.append(IMAGE_REPLACEMENT);
+        } else {
+            // Only spaces of a text directly before a line break are stripped, not those before or at the end of a link
+            literalProtectedEnd = literal.length();
+            // Delimiter runs in the link text are matched with each other only, the remaining ones are plain text
+            final int firstRun = runCount;
+            appendInline(s, textStart, textEnd);
+            processEmphasis(firstRun);
+            for (int run = firstRun; run < runCount; run++) {
+                runCanOpen[run] = false;
+                runCanClose[run] = false;
+            }
+            literalProtectedEnd = literal.length();
+        }
+        return end;
+    }
+
+    /**
+     * @return position of the <code>]</code> which closes the link text, <code>-1</code> if there is none or it contains nested brackets or HTML
+     */
+    private static int findLinkTextEnd(@NonNull CharSequence s, int from, int to) {
+        int i = from;
+        while (i < to) {
+            final char c = s.charAt(i);
+            if (c == '\\' && i + 1 < to && isAsciiPunctuation(s.charAt(i + 1))) {
+                i += 2;
+            } else if (c == '`') {
+                final int openingLength = countRun(s, i, to, c);
+                final int closing = findClosingBackticks(s, i + openingLength, to, openingLength);
+                i = closing < 0 ? i + openingLength : closing + openingLength;
+            } else if (c == ']') {
+                return i;
+            } else if (c == '[' || c == '<') {
+                return -1;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Scans the destination and the optional title of an inline link like the commonmark parser does.
+     *
+     * @param from position of the <code>(</code>
+     * @return position after the closing <code>)</code>, <code>-1</code> if it is not an inline link or the destination is enclosed in <code>&lt;&gt;</code>
+     */
+    private static int findInlineLinkEnd(@NonNull CharSequence s, int from, int to) {
+        int i = skipSpacesAndLineBreak(s, from + 1, to);
+        if (i < to && s.charAt(i) == '<') {
+            return -1;
+        }
+        i = findLinkDestinationEnd(s, i, to);
+        if (i < 0) {
+            return -1;
+        }
+        i = skipSpacesAndLineBreak(s, i, to);
+        if (i < to && isSpaceOrLineBreak(s.charAt(i - 1))) {
+            final int titleEnd = findLinkTitleEnd(s, i, to);
+            if (titleEnd >= 0) {
+                i = skipSpacesAndLineBreak(s, titleEnd, to);
+            }
+        }
+        return i < to && s.charAt(i) == ')' ? i + 1 : -1;
+    }
+
+    private static int findLinkDestinationEnd(@NonNull CharSequence s, int from, int to) {
+        int nesting = 0;
+        for (int i = from; i < to; i++) {
+            final char c = s.charAt(i);
+            if (c == ' ' || Character.isISOControl(c)) {
+                return i == from ? -1 : i;
+            } else if (c == '\\') {
+                if (i + 1 < to && isAsciiPunctuation(s.charAt(i + 1))) {
+                    i++;
+                }
+            } else if (c == '(') {
+                nesting++;
+                if (nesting > MAX_LINK_DESTINATION_NESTING) {
+                    return -1;
+                }
+            } else if (c == ')') {
+                if (nesting == 0) {
+                    return i;
+                }
+                nesting--;
+            }
+        }
+        return from == to ? -1 : to;
+    }
+
+    /**
+     * @return position after the title which starts at {@param from}, <code>-1</code> if there is none
+     */
+    private static int findLinkTitleEnd(@NonNull CharSequence s, int from, int to) {
+        final char opening = s.charAt(from);
+        final char closing;
+        if (opening == '"' || opening == '\'') {
+            closing = opening;
+        } else if (opening == '(') {
+            closing = ')';
+        } else {
+            return -1;
+        }
+        for (int i = from + 1; i < to; i++) {
+            final char c = s.charAt(i);
+            if (c == '\\' && i + 1 < to && isAsciiPunctuation(s.charAt(i + 1))) {
+                i++;
+            } else if (c == closing) {
+                return i + 1;
+            } else if (opening == '(' && c == '(') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * URI autolinks are rendered as their URI, see https://spec.commonmark.org/0.29/#autolinks.
+     * A <code>&lt;</code> which might start an email autolink or HTML is not supported, any other is plain text.
+     *
+     * @return position after the autolink or the <code>&lt;</code>
+     */
+    private int appendAutolink(@NonNull CharSequence s, int start, int to) {
+        final int end = findAutolinkEnd(s, start, to);
+        if (end >= 0) {
+            literal.append(s, start + 1, end - 1);
+            return end;
+        }
+        int tokenEnd = start + 1;
+        while (tokenEnd < to && s.charAt(tokenEnd) > ' ' && s.charAt(tokenEnd) != '<' && s.charAt(tokenEnd) != '>') {
+            tokenEnd++;
+        }
+        if ((tokenEnd < to && s.charAt(tokenEnd) == '>') || (start + 1 < to && mayStartHtml(s.charAt(start + 1)))) {
+            unsupported = true;
+            return to;
+        }
+        literal.append('<');
+        return start + 1;
+    }
+
+    /**
+     * @param start position of the <code>&lt;</code>
+     * @return position after the closing <code>&gt;</code> of the URI autolink, <code>-1</code> if there is none
+     */
+    private static int findAutolinkEnd(@NonNull CharSequence s, int start, int to) {
+        if (start + 1 == to || !isAsciiLetter(s.charAt(start + 1))) {
+            return -1;
+        }
+        int schemeEnd = start + 1;
+        while (schemeEnd < to && isAutolinkSchemeCharacter(s.charAt(schemeEnd))) {
+            schemeEnd++;
+        }
+        final int schemeLength = schemeEnd - start - 1;
+        if (schemeLength < MIN_AUTOLINK_SCHEME_LENGTH || schemeLength > MAX_AUTOLINK_SCHEME_LENGTH || schemeEnd == to || s.charAt(schemeEnd) != ':') {
+            return -1;
+        }
+        for (int i = schemeEnd + 1; i < to; i++) {
+            final char c = s.charAt(i);
+            if (c == '>') {
+                return i + 1;
+            } else if (c <= ' ' || c == '<') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return whether {@param s} contains an entity or numeric character reference at {@param start}, see https://spec.commonmark.org/0.29/#entity-and-numeric-character-references
+     */
+    private static boolean isEntity(@NonNull CharSequence s, int start, int to) {
+        int i = start + 1;
+        final int maxLength;
+        final boolean lettersAllowed;
+        if (i < to && s.charAt(i) == '#') {
+            i++;
+            lettersAllowed = i < to && (s.charAt(i) == 'x' || s.charAt(i) == 'X');
+            if (lettersAllowed) {
+                i++;
+            }
+            maxLength = lettersAllowed ? MAX_HEXADECIMAL_ENTITY_LENGTH : MAX_DECIMAL_ENTITY_LENGTH;
+        } else if (i < to && isAsciiLetter(s.charAt(i))) {
+            lettersAllowed = true;
+            maxLength = MAX_ENTITY_NAME_LENGTH;
+        } else {
+            return false;
+        }
+        // Also matches some invalid references like &#xZZ; which only makes it fall back more often
+        final int nameStart = i;
+        while (i < to && i - nameStart < maxLength && isAlphanumeric(s.charAt(i), lettersAllowed)) {
+            i++;
+        }
+        return i > nameStart && i < to && s.charAt(i) == ';';
+    }
+
+    private static int findClosingBackticks(@NonNull CharSequence s, int from, int to, int length) {
+        int i = from;
+        while (i < to) {
+            if (s.charAt(i) == '`') {
+                final int candidateLength = countRun(s, i, to, '`');
+                if (candidateLength == length) {
+                    return i;
+                }
+                i += candidateLength;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    private void appendCodeSpan(@NonNull CharSequence s, int contentStart, int contentEnd) {
+        if (contentEnd - contentStart >= 3
+                && isSpaceOrLineBreak(s.charAt(contentStart))
+                && isSpaceOrLineBreak(s.charAt(contentEnd - 1))
+                && !isBlank(s, contentStart, contentEnd)) {
+            contentStart++;
+            contentEnd--;
+        }
+        for (int i = contentStart; i < contentEnd; i++) {
+            final char c = s.charAt(i);
+            literal.append(c == '\n' ? ' ' : c);
+        }
+        literalProtectedEnd = literal.length();
+    }
+
+    private void addRun(char c, int length, char before, char after) {
+        if (runCount == runStart.length) {
+            final int capacity = runCount * 2;
+            runStart = Arrays.copyOf(runStart, capacity);
+            runLength = Arrays.copyOf(runLength, capacity);
+            runRemaining = Arrays.copyOf(runRemaining, capacity);
+            runChar = Arrays.copyOf(runChar, capacity);
+            runCanOpen = Arrays.copyOf(runCanOpen, capacity);
+            runCanClose = Arrays.copyOf(runCanClose, capacity);
+            runPrevious = Arrays.copyOf(runPrevious, capacity);
+            runNext = Arrays.copyOf(runNext, capacity);
+        }
+        final boolean beforeIsWhitespace = isUnicodeWhitespace(before);
+        final boolean beforeIsPunctuation = isPunctuation(before);
+        final boolean afterIsWhitespace = isUnicodeWhitespace(after);
+        final boolean afterIsPunctuation = isPunctuation(after);
+        final boolean leftFlanking = !afterIsWhitespace && (!afterIsPunctuation || beforeIsWhitespace || beforeIsPunctuation);
+        final boolean rightFlanking = !beforeIsWhitespace && (!beforeIsPunctuation || afterIsWhitespace || afterIsPunctuation);
+
+        runStart[runCount] = literal.length();
+        runLength[runCount] = length;
+        runRemaining[runCount] = length;
+        runChar[runCount] = c;
+        if (c == '_') {
+            runCanOpen[runCount] = leftFlanking && (!rightFlanking || beforeIsPunctuation);
+            runCanClose[runCount] = rightFlanking && (!leftFlanking || afterIsPunctuation);
+        } else {
+            runCanOpen[runCount] = leftFlanking;
+            runCanClose[runCount] = rightFlanking;
+        }
+        runCount++;
+        for (int i = 0; i < length; i++) {
+            literal.append(c);
+        }
+    }
+
+    /**
+     * Matches delimiter runs like the commonmark parser does, but only keeps track of how many delimiters of each run are left as plain text.
+     */
+    private void processEmphasis(int firstRun) {
+        for (int run = firstRun; run < runCount; run++) {
+            runPrevious[run] = run > firstRun ? run - 1 : -1;
+            runNext[run] = run + 1 < runCount ? run + 1 : -1;
+        }
+        int openersBottomAsterisk = -1;
+        int openersBottomUnderscore = -1;
+        int closer = runCount > firstRun ? firstRun : -1;
+        while (closer >= 0) {
+            if (!runCanClose[closer]) {
+                closer = runNext[closer];
+                continue;
+            }
+            final char c = runChar[closer];
+            final int openersBottom = c == '*' ? openersBottomAsterisk : openersBottomUnderscore;
+            int used = 0;
+            boolean potentialOpenerFound = false;
+            int opener = runPrevious[closer];
+            while (opener >= 0 && opener != openersBottom) {
+                if (runCanOpen[opener] && runChar[opener] == c) {
+                    potentialOpenerFound = true;
+                    used = getDelimiterUse(opener, closer);
+                    if (used > 0) {
+                        break;
+                    }
+                }
+                opener = runPrevious[opener];
+            }
+            if (used == 0) {
+                final int next = runNext[closer];
+                if (!potentialOpenerFound) {
+                    if (c == '*') {
+                        openersBottomAsterisk = runPrevious[closer];
+                    } else {
+                        openersBottomUnderscore = runPrevious[closer];
+                    }
+                    if (!runCanOpen[closer]) {
+                        unlinkRun(closer);
+                    }
+                }
+                closer = next;
+                continue;
+            }
+            runRemaining[opener] -= used;
+            runRemaining[closer] -= used;
+            // Delimiters between opener and closer can not be matched anymore
+            runNext[opener] = closer;
+            runPrevious[closer] = opener;
+            if (runRemaining[opener] == 0) {
+                unlinkRun(opener);
+            }
+            if (runRemaining[closer] == 0) {
+                final int next = runNext[closer];
+                unlinkRun(closer);
+                closer = next;
+            }
+        }
+    }
+
+    private int getDelimiterUse(int opener, int closer) {
+        // "Multiple of 3" rule for internal delimiter runs
+        if ((runCanClose[opener] || runCanOpen[closer])
+                && runLength[closer] % 3 != 0
+                && (runLength[opener] + runLength[closer]) % 3 == 0) {
+            return 0;
+        }
+        return runRemaining[opener] >= 2 && runRemaining[closer] >= 2 ? 2 : 1;
+    }
+
+    private void unlinkRun(int run) {
+        final int previous = runPrevious[run];
+        final int next = runNext[run];
+        if (previous >= 0) {
+            runNext[previous] = next;
+        }
+        if (next >= 0) {
+            runPrevious[next] = previous;
+        }
+    }
+
+    /**
+     * Collapses whitespace like {@link HtmlCompat#fromHtml(String, int)} does with text nodes, line breaks are kept.
+     */
+    private void appendCollapsingWhitespace(char c) {
+        if (c == ' ') {
+            final int length = out.length();
+            if (length == 0 || out.charAt(length - 1) == ' ' || out.charAt(length - 1) == '\n') {
+                return;
+            }
+        }
+        out.append(c);
+    }
+
+    /**
+     * Cheap check to avoid creating a {@link String} for each line just to call {@link MarkdownUtil#lineStartsWithCheckbox(String)}.
+     */
+    private static boolean mayStartWithCheckbox(@NonNull String s, int start, int end) {
+        final int i = skipSpaces(s, start, end);
+        if (i + 2 >= end) {
+            return false;
+        }
+        final char c = s.charAt(i);
+        return (c == '-' || c == '*' || c == '+') && s.charAt(i + 1) == ' ' && s.charAt(i + 2) == '[';
+    }
+
+    private static int skipSpaces(@NonNull CharSequence s, int from, int to) {
+        int i = from;
+        while (i < to && s.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    private static int skipSpacesAndLineBreak(@NonNull CharSequence s, int from, int to) {
+        int i = skipSpaces(s, from, to);
+        if (i < to && s.charAt(i) == '\n') {
+            i = skipSpaces(s, i + 1, to);
+        }
+        return i;
+    }
+
+    private static int countRun(@NonNull CharSequence s, int from, int to, char c) {
+        int i = from;
+        while (i < to && s.charAt(i) == c) {
+            i++;
+        }
+        return i - from;
+    }
+
+    private static boolean isBlank(@NonNull CharSequence s, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (!isSpaceOrLineBreak(s.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSpaceOrLineBreak(char c) {
+        return c == ' ' || c == '\n';
+    }
+
+    private static boolean isUnicodeWhitespace(char c) {
+        return c == '\n' || c == '\t' || c == '\r' || c == '\f' || Character.getType(c) == Character.SPACE_SEPARATOR;
+    }
+
+    private static boolean isAsciiLetter(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+    }
+
+    private static boolean isAlphanumeric(char c, boolean lettersAllowed) {
+        return (c >= '0' && c <= '9') || (lettersAllowed && isAsciiLetter(c));
+    }
+
+    private static boolean isAutolinkSchemeCharacter(char c) {
+        return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '+' || c == '.' || c == '-';
+    }
+
+    /**
+     * @return whether a <code>&lt;</code> followed by {@param c} might start an HTML tag, comment, processing instruction or declaration
+     */
+    private static boolean mayStartHtml(char c) {
+        return isAsciiLetter(c) || c == '/' || c == '!' || c == '?';
+    }
+
+    private static boolean isAsciiPunctuation(char c) {
+        return (c >= '!' && c <= '/') || (c >= ':' && c <= '@') || (c >= '[' && c <= '`') || (c >= '{' && c <= '~');
+    }
+
+    private static boolean isPunctuation(char c) {
+        if (isAsciiPunctuation(c)) {
+            return true;
+        }
+        switch (Character.getType(c)) {
+            case Character.CONNECTOR_PUNCTUATION:
+            case Character.DASH_PUNCTUATION:
+            case Character.END_PUNCTUATION:
+            case Character.FINAL_QUOTE_PUNCTUATION:
+            case Character.INITIAL_QUOTE_PUNCTUATION:
+            case Character.OTHER_PUNCTUATION:
+            case Character.START_PUNCTUATION:
+                return true;
+            default:
+                return false;
+        }
+    }
+}
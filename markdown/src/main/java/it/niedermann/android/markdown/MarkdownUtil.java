@@ -95,18 +95,24 @@ public class MarkdownUtil {
 
     @NonNull
     public static String replaceCheckboxesWithEmojis(@NonNull String content) {
-        return runForEachCheckbox(content, (line) -> {
-            for (EListType listType : EListType.values()) {
-                if (CHECKBOX_CHECKED_EMOJI.isPresent()) {
-                    line = line.replace(listType.checkboxChecked, CHECKBOX_CHECKED_EMOJI.get());
-                    line = line.replace(listType.checkboxCheckedUpperCase, CHECKBOX_CHECKED_EMOJI.get());
-                }
-                if (CHECKBOX_UNCHECKED_EMOJI.isPresent()) {
-                    line = line.replace(listType.checkboxUnchecked, CHECKBOX_UNCHECKED_EMOJI.get());
-                }
+        return runForEachCheckbox(content, MarkdownUtil::replaceCheckboxesWithEmojisInLine);
+    }
+
+    /**
+     * Replaces the checkboxes of a single line which is <em>not</em> part of a fenced code block.
+     */
+    @NonNull
+    static String replaceCheckboxesWithEmojisInLine(@NonNull String line) {
+        for (EListType listType : EListType.values()) {
+            if (CHECKBOX_CHECKED_EMOJI.isPresent()) {
+                line = line.replace(listType.checkboxChecked, CHECKBOX_CHECKED_EMOJI.get());
+                line = line.replace(listType.checkboxCheckedUpperCase, CHECKBOX_CHECKED_EMOJI.get());
+            }
+            if (CHECKBOX_UNCHECKED_EMOJI.isPresent()) {
+                line = line.replace(listType.checkboxUnchecked, CHECKBOX_UNCHECKED_EMOJI.get());
             }
-            return line;
-        });
+        }
+        return line;
     }
 
     @NonNull
@@ -517,4 +523,24 @@ public class MarkdownUtil {
         final Spanned spanned = HtmlCompat.fromHtml(html, HtmlCompat.FROM_HTML_MODE_COMPACT);
         return spanned.toString().trim();
     }
+
+    /**
+     * Returns the same as {@link #removeMarkdown(String)}, but at most the first {@param maxLength} characters of it.
+     * <p>
+     * Intended for excerpts and titles: common notes are stripped in a single pass which stops as soon as enough plain text has been collected,
+     * instead of rendering the whole {@link String} to HTML and parsing it again.
+     * Markdown which can not be stripped this way (like reference links, quotes, code blocks or inline HTML) falls back to {@link #removeMarkdown(String)}.
+     */
+    @NonNull
+    public static String removeMarkdown(@Nullable String s, int maxLength) {
+        if (TextUtils.isEmpty(s)) {
+            return "";
+        }
+        assert s != null;
+        String stripped = MarkdownStripper.strip(s, maxLength);
+        if (stripped == null) {
+            stripped = removeMarkdown(s);
+        }
+        return stripped.length() > maxLength ? stripped.substring(0, maxLength) : stripped;
+    }
 }
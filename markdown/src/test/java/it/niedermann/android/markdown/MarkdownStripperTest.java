@@ -0,0 +1,255 @@
+package it.niedermann.android.markdown;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+@RunWith(RobolectricTestRunner.class)
+public class MarkdownStripperTest {
+
+    /**
+     * Lines which are supported by {@link MarkdownStripper} and should therefore not fall back to {@link MarkdownUtil#removeMarkdown(String)}
+     */
+    private static final String[] SUPPORTED_LINES = {
+            "",
+            "",
+            "   ",
+            "Lorem ipsum dolor sit amet, consetetur sadipscing elitr",
+            "sed diam nonumy eirmod tempor invidunt ut labore",
+            "  indented by two",
+            "trailing spaces for a hard break  ",
+            "trailing backslash for a hard break\\",
+            "# Heading",
+            "## Heading with closing sequence ##",
+            "###### Heading ###### 6",
+            "####### No heading",
+            "#hashtag",
+            "No Header #",
+            "===",
+            "---",
+            "--",
+            "--=--",
+            "* * *",
+            "___",
+            "- Bullet",
+            "* Bullet *",
+            "+ Bullet",
+            "-",
+            "  - Nested bullet",
+            "- - Bullet in bullet",
+            "- # Heading in bullet",
+            "1. First",
+            "2. Second",
+            "1) First",
+            "10. Tenth",
+            "   3. Indented third",
+            "1.",
+            "2021-03-24 - Example text",
+            "**bold** and *italic* and ***both***",
+            "__bold__ and _italic_",
+            "Foo*Test**Bar",
+            "Foo***Test**Bar",
+            "Foo_Test_Bar",
+            "snake_case_identifier and __init__",
+            "*unclosed emphasis",
+            "**nested *emphasis* inside**",
+            "*a **b** c*",
+            "**a*",
+            "_ not emphasis _",
+            "“*quoted*” ¡*español*!",
+            "`code` and ``code with ` inside`` and ` spaced `",
+            "`unclosed code",
+            "`*no emphasis in code*`",
+            "\\*escaped\\* \\_escaped\\_ \\# \\\\ \\a",
+            "Umlauts äöü ß and emojis 😀",
+            "a   lot   of   spaces",
+            "~~not~~ strikethrough",
+            "|no|table|",
+            "Mail: foo@example.com, https://example.com",
+            "[Link](https://example.com)",
+            "[Link with title](https://example.com \"Title\") and [empty link]()",
+            "[**bold** link *text](https://example.com)",
+            "*emphasis [around](https://example.com) a* link",
+            "[`code` and \\] in a link](https://example.com/path_(with)_parentheses?a=1&b=2 'Title')",
+            "![Image](https://example.com/image.png)",
+            "<https://example.com> and <mailto:foo@example.com>",
+            "<https://example.com>",
+            "Tom & Jerry",
+            "1 < 2 > 0",
+            "] no link",
+    };
+
+    /**
+     * Only supported by {@link MarkdownStripper} in case checkbox emojis are available
+     */
+    private static final String[] CHECKBOX_LINES = {
+            "- [ ] Unchecked",
+            "- [x] Checked",
+            "* [X] Checked",
+            "  + [ ] Nested unchecked",
+    };
+
+    /**
+     * Lines which are not supported by {@link MarkdownStripper} and should therefore fall back to {@link MarkdownUtil#removeMarkdown(String)}
+     */
+    private static final String[] UNSUPPORTED_LINES = {
+            "> Quote",
+            "```",
+            "~~~",
+            "[Reference link][ref]",
+            "[ref]: https://example.com",
+            "[Link] without destination",
+            "[Link](https://example.com \"Unclosed title)",
+            "[Link](<https://example.com>)",
+            "[![Image](https://example.com/image.png)](https://example.com)",
+            "<foo@example.com>",
+            "<b>HTML</b>",
+            "Inline <b>HTML</b>",
+            "Tom &amp; Jerry",
+            "    Indented code",
+            "    - Deeply nested bullet",
+            "\tTab",
+            "Windows line break\r",
+            "-      Bullet starting with code",
+    };
+
+    /**
+     * Real-world notes in <code>src/test/resources/stripper</code>: each <code>.md</code> file has a <code>.txt</code> file with the expected plain text
+     */
+    private static final String[] GOLDEN_NOTES = {
+            "shopping-list",
+            "meeting-notes",
+            "journal",
+            "table",
+            "nested-lists",
+            "links",
+            "html",
+            "recipe",
+            "bookmarks",
+    };
+
+    /**
+     * {@link #GOLDEN_NOTES} which are expected to be stripped by {@link MarkdownStripper} instead of falling back to {@link MarkdownUtil#removeMarkdown(String)}
+     */
+    private static final List<String> GOLDEN_NOTES_SUPPORTED = Arrays.asList(
+            "shopping-list",
+            "meeting-notes",
+            "journal",
+            "table",
+            "bookmarks"
+    );
+
+    @Test
+    public void removeMarkdown_matchesGoldenNotes() throws IOException {
+        for (String name : GOLDEN_NOTES) {
+            final String note = readResource("stripper/" + name + ".md");
+            final String expected = readResource("stripper/" + name + ".txt");
+
+            assertEquals(name, expected, MarkdownUtil.removeMarkdown(note));
+            assertEquals(name, GOLDEN_NOTES_SUPPORTED.contains(name), MarkdownStripper.strip(note, Integer.MAX_VALUE) != null);
+            for (int maxLength = 0; maxLength <= expected.length() + 1; maxLength++) {
+                assertEquals(name + " " + maxLength, expected.substring(0, Math.min(maxLength, expected.length())), MarkdownUtil.removeMarkdown(note, maxLength));
+            }
+        }
+    }
+
+    @Test
+    public void removeMarkdown_matchesFullRendering() {
+        for (String note : generateCorpus()) {
+            final String expected = MarkdownUtil.removeMarkdown(note);
+            assertEquals(note, expected, MarkdownUtil.removeMarkdown(note, Integer.MAX_VALUE));
+            for (int maxLength : new int[]{0, 1, 10, 50, 200}) {
+                assertEquals(note, expected.substring(0, Math.min(maxLength, expected.length())), MarkdownUtil.removeMarkdown(note, maxLength));
+            }
+        }
+    }
+
+    @Test
+    public void strip_supportsCommonMarkdown() {
+        for (String line : SUPPORTED_LINES) {
+            assertNotNull(line, MarkdownStripper.strip(line, Integer.MAX_VALUE));
+        }
+        assertNotNull(MarkdownStripper.strip(String.join("\n", SUPPORTED_LINES), Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void strip_fallsBackForUnsupportedMarkdown() {
+        for (String line : UNSUPPORTED_LINES) {
+            assertNull(line, MarkdownStripper.strip(line, Integer.MAX_VALUE));
+        }
+    }
+
+    @Test
+    public void strip_rendersLinks() {
+        assertEquals("Read the docs first", MarkdownStripper.strip("Read [the *docs*](https://example.com \"Docs\") first", Integer.MAX_VALUE));
+        assertEquals("See https://example.com", MarkdownStripper.strip("See <https://example.com>", Integer.MAX_VALUE));
+        assertEquals("\uFFFC Logo", MarkdownStripper.strip("![Nextcloud](https://example.com/logo.png) Logo", Integer.MAX_VALUE));
+    }
+
+    @Test
+    public void strip_stopsEarly() {
+        final StringBuilder note = new StringBuilder("# Title\n\n");
+        for (int i = 0; i < 10_000; i++) {
+            note.append("- Line *").append(i).append("*\n");
+        }
+        // Would fall back if the last line would be read
+        note.append("> Quote");
+
+        assertEquals("Title\nLine 0\nLine 1\nLine 2", MarkdownStripper.strip(note.toString(), 20));
+    }
+
+    @NonNull
+    private static String readResource(@NonNull String name) throws IOException {
+        final InputStream inputStream = MarkdownStripperTest.class.getClassLoader().getResourceAsStream(name);
+        assertNotNull(name, inputStream);
+        try (final BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8))) {
+            return reader.lines().collect(Collectors.joining("\n"));
+        }
+    }
+
+    /**
+     * Generates notes from random combinations of mostly {@link #SUPPORTED_LINES} with a fixed seed.
+     */
+    private static List<String> generateCorpus() {
+        final List<String> corpus = new ArrayList<>(Arrays.asList(SUPPORTED_LINES));
+        corpus.addAll(Arrays.asList(CHECKBOX_LINES));
+        corpus.addAll(Arrays.asList(UNSUPPORTED_LINES));
+        final Random random = new Random(42);
+        for (int i = 0; i < 2_000; i++) {
+            final int lineCount = 1 + random.nextInt(12);
+            final StringBuilder note = new StringBuilder();
+            for (int line = 0; line < lineCount; line++) {
+                if (line > 0) {
+                    note.append('\n');
+                }
+                final int kind = random.nextInt(20);
+                if (kind == 0) {
+                    note.append(UNSUPPORTED_LINES[random.nextInt(UNSUPPORTED_LINES.length)]);
+                } else if (kind < 3) {
+                    note.append(CHECKBOX_LINES[random.nextInt(CHECKBOX_LINES.length)]);
+                } else {
+                    note.append(SUPPORTED_LINES[random.nextInt(SUPPORTED_LINES.length)]);
+                }
+            }
+            corpus.add(note.toString());
+        }
+        return corpus;
+    }
+}